@@ -442,6 +442,74 @@ public final class JTS {
         return transformer.transform(geom);
     }
 
+    /**
+     * Transforms an array of geometries with the same transform. The transformer and its
+     * coordinate buffers are set up once and reused for all the geometries, making this method
+     * more efficient than calling {@link #transform(Geometry, MathTransform)} for each one.
+     *
+     * @param geometries
+     *            The geometries to transform, may contain null values
+     * @param transform
+     *            the transform to use during the transformation.
+     * @return a new array with the transformed geometries, in the same order, with null values
+     *         for the null input geometries
+     * @throws MismatchedDimensionException
+     *             if a geometry doesn't have the expected dimension for the specified transform.
+     * @throws TransformException
+     *             if a point can't be transformed.
+     * @since 16.0
+     */
+    public static Geometry[] transform(final Geometry[] geometries, final MathTransform transform)
+            throws MismatchedDimensionException, TransformException {
+        ensureNonNull("geometries", geometries);
+        ensureNonNull("transform", transform);
+        final Geometry[] result = new Geometry[geometries.length];
+        if (transform.isIdentity()) {
+            System.arraycopy(geometries, 0, result, 0, geometries.length);
+            return result;
+        }
+        final GeometryCoordinateSequenceTransformer transformer = new GeometryCoordinateSequenceTransformer();
+        transformer.setMathTransform(transform);
+        for (int i = 0; i < geometries.length; i++) {
+            if (geometries[i] != null) {
+                result[i] = transformer.transform(geometries[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Transforms an array of geometries from the source to the target CRS. The math transform
+     * is looked up once, and then applied to all the geometries as in
+     * {@link #transform(Geometry[], MathTransform)}.
+     *
+     * @param geometries
+     *            The geometries to transform, may contain null values
+     * @param sourceCRS
+     *            The CRS of the geometries
+     * @param targetCRS
+     *            The CRS to transform the geometries into
+     * @param lenient
+     *            {@code true} if the math transform should be created even when there is no
+     *            information available for a datum shift
+     * @return a new array with the transformed geometries, in the same order
+     * @throws TransformException
+     *             if the transform cannot be found, or a point can't be transformed.
+     * @since 16.0
+     */
+    public static Geometry[] transform(final Geometry[] geometries,
+            final CoordinateReferenceSystem sourceCRS, final CoordinateReferenceSystem targetCRS,
+            boolean lenient) throws TransformException {
+        final MathTransform transform;
+        try {
+            transform = CRS.findMathTransform(sourceCRS, targetCRS, lenient);
+        } catch (FactoryException exception) {
+            throw new TransformException(Errors.format(ErrorKeys.CANT_REPROJECT_$1, sourceCRS),
+                    exception);
+        }
+        return transform(geometries, transform);
+    }
+
     
     /**
      * Transforms the coordinate using the provided math transform.
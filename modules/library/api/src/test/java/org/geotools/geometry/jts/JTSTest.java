@@ -18,6 +18,7 @@ package org.geotools.geometry.jts;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.awt.Polygon;
@@ -30,6 +31,7 @@ import org.geotools.geometry.GeneralDirectPosition;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeocentricCRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.referencing.operation.transform.AffineTransform2D;
 import org.junit.Test;
 import org.opengis.geometry.BoundingBox;
 import org.opengis.geometry.DirectPosition;
@@ -335,4 +337,24 @@ public class JTSTest extends JTSTestBase {
         assertEquals(5, polygon1.getNumPoints());
         assertEquals(5, polygon2.getNumPoints());
     }
+    @Test
+    public void transformGeometryArray() throws Exception {
+        GeometryFactory gf = new GeometryFactory();
+        Geometry[] geometries = new Geometry[] {
+                gf.createPoint(new Coordinate(1, 2)),
+                null,
+                gf.createLineString(new Coordinate[] { new Coordinate(0, 0),
+                        new Coordinate(10, 10) }) };
+        MathTransform mt = new AffineTransform2D(2, 0, 0, 2, 10, 20);
+        Geometry[] transformed = JTS.transform(geometries, mt);
+        assertEquals(3, transformed.length);
+        for (int i = 0; i < geometries.length; i++) {
+            if (geometries[i] == null) {
+                assertNull(transformed[i]);
+            } else {
+                assertTrue(transformed[i].equalsExact(JTS.transform(geometries[i], mt)));
+            }
+        }
+        assertEquals(new Coordinate(12, 24), transformed[0].getCoordinate());
+    }
 }
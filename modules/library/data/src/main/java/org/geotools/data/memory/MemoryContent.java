@@ -0,0 +1,714 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.memory;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.And;
+import org.opengis.filter.Filter;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Multi version storage for the features of a {@link MemoryEntry}.
+ * <p>
+ * Each feature is stored as a chain of versions, every change creating a new version tagged
+ * with a store wide, monotonically increasing version number. Readers open a {@link Snapshot}
+ * at the current version and only see the versions created before it, without taking any lock,
+ * so they never block writers and are never affected by them. Writers are serialized among
+ * themselves, and drop the old versions no open snapshot can see anymore.
+ * <p>
+ * The default geometry is indexed by a {@link MemorySpatialIndex}, attributes can also be
+ * indexed by value to speed up equality filters. Queries return candidate records, which are
+ * then checked for visibility and evaluated against the full filter by the caller.
+ */
+class MemoryContent {
+
+    /**
+     * A version of a feature, a null feature marks a deletion
+     */
+    static final class Version {
+        final SimpleFeature feature;
+
+        final long version;
+
+        volatile Version previous;
+
+        /**
+         * The spatial index entry of this version, if any
+         */
+        MemorySpatialIndex.Entry entry;
+
+        Version(SimpleFeature feature, long version, Version previous) {
+            this.feature = feature;
+            this.version = version;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * The versions of a feature, in insertion order
+     */
+    static final class Record {
+        final String id;
+
+        final long sequence;
+
+        volatile Version head;
+
+        Record(String id, long sequence) {
+            this.id = id;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Returns the feature as seen by the specified snapshot, or null if it did not exist
+         */
+        SimpleFeature visible(long snapshot) {
+            for (Version v = head; v != null; v = v.previous) {
+                if (v.version <= snapshot) {
+                    return v.feature;
+                }
+            }
+            return null;
+        }
+    }
+
+    static final Comparator<Record> SEQUENCE_ORDER = new Comparator<Record>() {
+        public int compare(Record r1, Record r2) {
+            return Long.compare(r1.sequence, r2.sequence);
+        }
+    };
+
+    /**
+     * A read only view of the content at a given version. Must be released once done.
+     */
+    final class Snapshot {
+        final long version;
+
+        boolean released;
+
+        Snapshot(long version) {
+            this.version = version;
+        }
+
+        public void release() {
+            if (!released) {
+                released = true;
+                unregister(version);
+                // opportunistic cleanup, without ever waiting for a writer
+                if (writeLock.tryLock()) {
+                    try {
+                        cleanup();
+                    } finally {
+                        writeLock.unlock();
+                    }
+                }
+            }
+        }
+    }
+
+    final SimpleFeatureType schema;
+
+    final ConcurrentSkipListMap<Long, Record> bySequence =
+            new ConcurrentSkipListMap<Long, Record>();
+
+    final ConcurrentHashMap<String, Record> byId = new ConcurrentHashMap<String, Record>();
+
+    /**
+     * Number of readers at each open snapshot version
+     */
+    final ConcurrentSkipListMap<Long, Integer> readers =
+            new ConcurrentSkipListMap<Long, Integer>();
+
+    final ReentrantLock writeLock = new ReentrantLock();
+
+    final MemorySpatialIndex spatialIndex;
+
+    final Map<String, Map<Object, Set<Record>>> attributeIndexes =
+            new ConcurrentHashMap<String, Map<Object, Set<Record>>>();
+
+    /**
+     * The indexed attributes holding values of a class other than their binding, their indexes
+     * cannot be used since equality filters compare values of different classes leniently
+     */
+    final Set<String> inexactIndexes = ConcurrentHashMap.<String> newKeySet();
+
+    /**
+     * The last committed version
+     */
+    volatile long version;
+
+    /**
+     * Number of features at the last committed version
+     */
+    volatile int size;
+
+    /**
+     * Records holding versions, or deletions, that might be pruned once the open snapshots move
+     * on. Guarded by the write lock.
+     */
+    final Set<Record> pending = new LinkedHashSet<Record>();
+
+    /**
+     * Guarded by the write lock
+     */
+    long nextSequence;
+
+    /**
+     * The horizon used by the last pending records cleanup. Guarded by the write lock.
+     */
+    long prunedHorizon = -1;
+
+    MemoryContent(SimpleFeatureType schema) {
+        this.schema = schema;
+        this.spatialIndex = new MemorySpatialIndex();
+    }
+
+    /**
+     * Opens a snapshot on the last committed version
+     */
+    Snapshot open() {
+        while (true) {
+            long v = version;
+            register(v);
+            // if a commit happened in between the writer might not have seen the registration
+            if (version == v) {
+                return new Snapshot(v);
+            }
+            unregister(v);
+        }
+    }
+
+    private void register(long v) {
+        while (true) {
+            Integer count = readers.get(v);
+            if (count == null) {
+                if (readers.putIfAbsent(v, 1) == null) {
+                    return;
+                }
+            } else if (readers.replace(v, count, count + 1)) {
+                return;
+            }
+        }
+    }
+
+    private void unregister(long v) {
+        while (true) {
+            Integer count = readers.get(v);
+            if (count == null) {
+                return;
+            } else if (count == 1) {
+                if (readers.remove(v, count)) {
+                    return;
+                }
+            } else if (readers.replace(v, count, count - 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the oldest version that might still be read. Versions that were superseded before
+     * this one can be dropped.
+     */
+    private long horizon() {
+        // the previous version is always kept, a reader might be registering on it
+        long horizon = version - 1;
+        Map.Entry<Long, Integer> oldest = readers.firstEntry();
+        if (oldest != null && oldest.getKey() < horizon) {
+            horizon = oldest.getKey();
+        }
+        return horizon;
+    }
+
+    /**
+     * Returns the current version of a feature
+     */
+    SimpleFeature get(String id) {
+        Record record = byId.get(id);
+        return record == null ? null : record.head.feature;
+    }
+
+    /**
+     * Adds or replaces a feature
+     *
+     * @return the previous version of the feature, if any
+     */
+    SimpleFeature put(SimpleFeature feature) {
+        String id = feature.getID();
+        writeLock.lock();
+        try {
+            long next = version + 1;
+            Record record = byId.get(id);
+            SimpleFeature previous = record == null ? null : record.head.feature;
+            Version created;
+            if (previous == null) {
+                // a deleted record stays in place for the older snapshots
+                record = new Record(id, nextSequence++);
+                created = new Version(feature, next, null);
+                record.head = created;
+                bySequence.put(record.sequence, record);
+                byId.put(id, record);
+                size++;
+            } else {
+                created = new Version(feature, next, record.head);
+                record.head = created;
+                pending.add(record);
+            }
+            index(record, created);
+            version = next;
+            cleanup();
+            return previous;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a feature
+     *
+     * @return the removed feature, or null if not found
+     */
+    SimpleFeature remove(String id) {
+        writeLock.lock();
+        try {
+            Record record = byId.get(id);
+            if (record == null || record.head.feature == null) {
+                return null;
+            }
+            SimpleFeature previous = record.head.feature;
+            long next = version + 1;
+            record.head = new Version(null, next, record.head);
+            size--;
+            pending.add(record);
+            version = next;
+            cleanup();
+            return previous;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void index(Record record, Version created) {
+        Object geometry = created.feature.getDefaultGeometry();
+        if (geometry instanceof Geometry) {
+            Envelope envelope = ((Geometry) geometry).getEnvelopeInternal();
+            if (!envelope.isNull()) {
+                created.entry = spatialIndex.insert(envelope, record);
+            }
+        }
+        for (Map.Entry<String, Map<Object, Set<Record>>> index : attributeIndexes.entrySet()) {
+            Object value = created.feature.getAttribute(index.getKey());
+            if (value != null) {
+                index(index.getKey(), index.getValue(), value, record);
+            }
+        }
+    }
+
+    private void index(String attribute, Map<Object, Set<Record>> index, Object value,
+            Record record) {
+        Set<Record> records = index.get(value);
+        if (records == null) {
+            records = ConcurrentHashMap.<Record> newKeySet();
+            index.put(value, records);
+        }
+        records.add(record);
+        if (value.getClass() != schema.getDescriptor(attribute).getType().getBinding()) {
+            inexactIndexes.add(attribute);
+        }
+    }
+
+    /**
+     * Drops the versions no snapshot can see anymore and compacts the spatial index. Must be
+     * called with the write lock held.
+     */
+    void cleanup() {
+        prunePending();
+        spatialIndex.compact();
+    }
+
+    private void prunePending() {
+        long horizon = horizon();
+        if (horizon == prunedHorizon || pending.isEmpty()) {
+            return;
+        }
+        prunedHorizon = horizon;
+        for (Iterator<Record> it = pending.iterator(); it.hasNext();) {
+            if (prune(it.next(), horizon)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the versions of the record superseded before the horizon
+     *
+     * @return true if the record holds a single version, or has been removed altogether
+     */
+    private boolean prune(Record record, long horizon) {
+        // the newest version visible at the horizon is the oldest one to keep
+        Version keep = record.head;
+        while (keep != null && keep.version > horizon) {
+            keep = keep.previous;
+        }
+        if (keep == null) {
+            return false;
+        }
+        Version dropped = keep.previous;
+        keep.previous = null;
+        for (Version v = dropped; v != null; v = v.previous) {
+            unindex(record, v);
+        }
+        if (keep == record.head && keep.feature == null) {
+            // deleted before any open snapshot
+            bySequence.remove(record.sequence);
+            byId.remove(record.id, record);
+            return true;
+        }
+        return record.head.previous == null;
+    }
+
+    private void unindex(Record record, Version dropped) {
+        if (dropped.feature == null) {
+            return;
+        }
+        if (dropped.entry != null) {
+            spatialIndex.remove(dropped.entry);
+        }
+        for (Map.Entry<String, Map<Object, Set<Record>>> index : attributeIndexes.entrySet()) {
+            Object value = dropped.feature.getAttribute(index.getKey());
+            if (value == null || hasValue(record, index.getKey(), value)) {
+                continue;
+            }
+            Set<Record> records = index.getValue().get(value);
+            if (records != null) {
+                records.remove(record);
+                if (records.isEmpty()) {
+                    index.getValue().remove(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if any of the retained versions of the record has the specified value
+     */
+    private boolean hasValue(Record record, String attribute, Object value) {
+        for (Version v = record.head; v != null; v = v.previous) {
+            if (v.feature != null && value.equals(v.feature.getAttribute(attribute))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indexes the values of the specified attribute, equality filters against it will then only
+     * look at the matching features
+     */
+    void createAttributeIndex(String attribute) {
+        AttributeDescriptor descriptor = schema.getDescriptor(attribute);
+        if (descriptor == null) {
+            throw new IllegalArgumentException("Attribute " + attribute + " not found in "
+                    + schema.getTypeName());
+        }
+        if (descriptor instanceof GeometryDescriptor) {
+            throw new IllegalArgumentException("Geometry attribute " + attribute
+                    + " cannot be indexed by value");
+        }
+        writeLock.lock();
+        try {
+            if (attributeIndexes.containsKey(attribute)) {
+                return;
+            }
+            Map<Object, Set<Record>> index = new ConcurrentHashMap<Object, Set<Record>>();
+            for (Record record : bySequence.values()) {
+                for (Version v = record.head; v != null; v = v.previous) {
+                    Object value = v.feature == null ? null : v.feature.getAttribute(attribute);
+                    if (value != null) {
+                        index(attribute, index, value, record);
+                    }
+                }
+            }
+            attributeIndexes.put(attribute, index);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the records that might match the filter, in insertion order. Uses an attribute
+     * index for equality filters on indexed attributes, the spatial index for filters with a
+     * bounding box, and returns all the records otherwise.
+     */
+    Collection<Record> candidates(Filter filter) {
+        if (filter == null || filter == Filter.INCLUDE) {
+            return bySequence.values();
+        }
+        Set<Record> matches = equalityCandidates(filter);
+        if (matches == null && hasSingleGeometry()) {
+            Envelope envelope = (Envelope) filter.accept(
+                    ExtractBoundsFilterVisitor.BOUNDS_VISITOR, new Envelope());
+            if (envelope != null && !Double.isInfinite(envelope.getWidth())
+                    && !Double.isInfinite(envelope.getHeight())) {
+                matches = spatialIndex.query(envelope);
+            }
+        }
+        if (matches == null) {
+            return bySequence.values();
+        }
+        Record[] sorted = matches.toArray(new Record[matches.size()]);
+        Arrays.sort(sorted, SEQUENCE_ORDER);
+        return Arrays.asList(sorted);
+    }
+
+    private Set<Record> equalityCandidates(Filter filter) {
+        if (attributeIndexes.isEmpty()) {
+            return null;
+        }
+        List<Filter> filters = new ArrayList<Filter>();
+        if (filter instanceof And) {
+            filters.addAll(((And) filter).getChildren());
+        } else {
+            filters.add(filter);
+        }
+        Set<Record> best = null;
+        for (Filter f : filters) {
+            if (!(f instanceof PropertyIsEqualTo)) {
+                continue;
+            }
+            PropertyIsEqualTo equal = (PropertyIsEqualTo) f;
+            Expression e1 = equal.getExpression1();
+            Expression e2 = equal.getExpression2();
+            if (e1 instanceof Literal && e2 instanceof PropertyName) {
+                Expression tmp = e1;
+                e1 = e2;
+                e2 = tmp;
+            }
+            if (!(e1 instanceof PropertyName) || !(e2 instanceof Literal)) {
+                continue;
+            }
+            String attribute = ((PropertyName) e1).getPropertyName();
+            Map<Object, Set<Record>> index = attributeIndexes.get(attribute);
+            if (index == null || inexactIndexes.contains(attribute)) {
+                continue;
+            }
+            Class<?> binding = schema.getDescriptor(attribute).getType().getBinding();
+            if (binding == String.class && !equal.isMatchingCase()) {
+                continue;
+            }
+            Object value = indexKey(((Literal) e2).getValue(), binding);
+            if (value == null) {
+                continue;
+            }
+            Set<Record> records = index.get(value);
+            if (records == null) {
+                return Collections.emptySet();
+            }
+            if (best == null || records.size() < best.size()) {
+                best = records;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the index key of the values the literal is equal to, following the same rules as
+     * the equality filter, or null if the index cannot be used to find all of them. Only
+     * strings, booleans and integral numbers are supported, numbers being compared by value.
+     */
+    static Object indexKey(Object literal, Class<?> binding) {
+        if (literal == null) {
+            return null;
+        }
+        if (binding == String.class || binding == Boolean.class) {
+            return literal.getClass() == binding ? literal : null;
+        }
+        if (binding != Long.class && binding != Integer.class && binding != Short.class
+                && binding != Byte.class) {
+            return null;
+        }
+        if (literal.getClass() == binding) {
+            return literal;
+        }
+        Number number;
+        if (literal instanceof Number) {
+            number = (Number) literal;
+        } else if (literal instanceof CharSequence) {
+            try {
+                number = Long.valueOf(literal.toString());
+            } catch (NumberFormatException e) {
+                try {
+                    number = Double.valueOf(literal.toString());
+                } catch (NumberFormatException e2) {
+                    return null;
+                }
+            }
+        } else {
+            return null;
+        }
+        long value = number.longValue();
+        if (number.doubleValue() != (double) value) {
+            return null;
+        }
+        if (binding == Long.class) {
+            return value;
+        } else if (binding == Integer.class && value == (int) value) {
+            return (int) value;
+        } else if (binding == Short.class && value == (short) value) {
+            return (short) value;
+        } else if (binding == Byte.class && value == (byte) value) {
+            return (byte) value;
+        }
+        return null;
+    }
+
+    /**
+     * Spatial filters are assumed to work on the default geometry, only safe if there is no
+     * other geometry
+     */
+    boolean hasSingleGeometry() {
+        int count = 0;
+        for (AttributeDescriptor descriptor : schema.getAttributeDescriptors()) {
+            if (descriptor instanceof GeometryDescriptor) {
+                count++;
+            }
+        }
+        return count == 1;
+    }
+
+    /**
+     * Returns a live map view of the last committed version, keyed by feature id and in
+     * insertion order. Changes made through the map are committed immediately.
+     */
+    Map<String, SimpleFeature> asMap() {
+        return new AbstractMap<String, SimpleFeature>() {
+
+            @Override
+            public SimpleFeature get(Object key) {
+                return key instanceof String ? MemoryContent.this.get((String) key) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public SimpleFeature put(String key, SimpleFeature value) {
+                if (!key.equals(value.getID())) {
+                    throw new IllegalArgumentException("Features must be stored by id, "
+                            + key + " does not match " + value.getID());
+                }
+                return MemoryContent.this.put(value);
+            }
+
+            @Override
+            public SimpleFeature remove(Object key) {
+                return key instanceof String ? MemoryContent.this.remove((String) key) : null;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Set<Map.Entry<String, SimpleFeature>> entrySet() {
+                return new AbstractSet<Map.Entry<String, SimpleFeature>>() {
+
+                    @Override
+                    public Iterator<Map.Entry<String, SimpleFeature>> iterator() {
+                        return new LatestIterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Iterates over the latest version of each feature
+     */
+    class LatestIterator implements Iterator<Map.Entry<String, SimpleFeature>> {
+        final Iterator<Record> records = bySequence.values().iterator();
+
+        Map.Entry<String, SimpleFeature> next;
+
+        String last;
+
+        public boolean hasNext() {
+            while (next == null && records.hasNext()) {
+                Record record = records.next();
+                SimpleFeature feature = record.head.feature;
+                if (feature != null) {
+                    next = new AbstractMap.SimpleImmutableEntry<String, SimpleFeature>(
+                            record.id, feature);
+                }
+            }
+            return next != null;
+        }
+
+        public Map.Entry<String, SimpleFeature> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, SimpleFeature> result = next;
+            next = null;
+            last = result.getKey();
+            return result;
+        }
+
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            MemoryContent.this.remove(last);
+            last = null;
+        }
+    }
+}
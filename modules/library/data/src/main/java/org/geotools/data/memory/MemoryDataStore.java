@@ -247,6 +247,23 @@ public class MemoryDataStore extends ContentDataStore {
         }
     }
 
+    /**
+     * Creates an index on the values of an attribute, used by the queries comparing the attribute
+     * with a literal for equality.
+     * <p>
+     * The default geometry is always indexed, geometry attributes cannot be used here.
+     * </p>
+     *
+     * @param typeName Name of the feature type
+     * @param attributeName Name of the attribute to index
+     * @throws IOException If typeName cannot be found
+     * @throws IllegalArgumentException If the attribute is not found or is a geometry
+     * @since 16.0
+     */
+    public void createAttributeIndex(String typeName, String attributeName) throws IOException {
+        entry(typeName).content.createAttributeIndex(attributeName);
+    }
+
     /**
      * Access MemoryState for typeName.
      * <p>
@@ -16,7 +16,6 @@
  */
 package org.geotools.data.memory;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.geotools.data.store.ContentEntry;
@@ -26,11 +25,8 @@ import org.opengis.feature.simple.SimpleFeatureType;
 /**
  * Entry used to store features (of a single FeatureType).
  * <p>
- * <p>
- * Please be sure to synchronize on entry before access:
- * <pre><code> synchronize ( entry ){
- *     entry.memory.put( feature.getID(), feature );
- * }</code></pre>
+ * The features are held in a multi version {@link MemoryContent}, readers work against
+ * snapshots and do not need any synchronization.
  * 
  * @author Jody Garnett (Boundless)
  */
@@ -42,14 +38,15 @@ public class MemoryEntry extends ContentEntry {
     final SimpleFeatureType schema;
 
     /**
-     * Memory storage for features (addressed by fid).
-     * <p>
-     * Please be sure to synchronize on entry before access:
-     * <pre><code> synchronize ( entry ){
-     *     entry.memory.put( feature.getID(), feature );
-     * }</code></pre>
+     * Versioned storage for the features
+     */
+    final MemoryContent content;
+
+    /**
+     * Live view of the latest version of the features (addressed by fid), changes made through
+     * it are committed immediately.
      */
-    Map<String, SimpleFeature> memory;
+    final Map<String, SimpleFeature> memory;
 
     /**
      * Entry to store content of the provided SimpleFeatureType.
@@ -60,7 +57,8 @@ public class MemoryEntry extends ContentEntry {
     MemoryEntry( MemoryDataStore store, SimpleFeatureType schema){
         super( store, schema.getName() );
         this.schema = schema;
-        memory = new LinkedHashMap<String, SimpleFeature>();
+        content = new MemoryContent(schema);
+        memory = content.asMap();
     }
 
     protected MemoryState createContentState(ContentEntry entry) {
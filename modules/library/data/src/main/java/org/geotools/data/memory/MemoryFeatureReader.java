@@ -17,14 +17,14 @@
 package org.geotools.data.memory;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.geotools.data.DataSourceException;
 import org.geotools.data.FeatureReader;
 import org.geotools.data.Query;
+import org.geotools.data.memory.MemoryContent.Record;
+import org.geotools.data.memory.MemoryContent.Snapshot;
 import org.geotools.data.store.ContentState;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.opengis.feature.IllegalAttributeException;
@@ -33,21 +33,29 @@ import org.opengis.feature.simple.SimpleFeatureType;
 
 /**
  * Read contents from MemoryDataStore.
+ * <p>
+ * The reader works against a snapshot of the content taken when it's opened, later changes are
+ * not visible to it. The snapshot is released when the reader is closed or exhausted.
+ * <p>
+ * When the query filter contains a bounding box, or an equality against an indexed attribute,
+ * only the features that might match are returned, the caller is still responsible for
+ * evaluating the filter on them.
  */
 public class MemoryFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature>{
 
     SimpleFeatureType featureType;
-    Iterator<SimpleFeature> iterator;
+    Iterator<Record> iterator;
+    Snapshot snapshot;
+    SimpleFeature next;
 
     public MemoryFeatureReader(ContentState state, Query query) throws IOException {
         featureType = state.getFeatureType();
         MemoryEntry entry = (MemoryEntry) state.getEntry();
-        
-        synchronized (entry) {
-            final List<SimpleFeature> internalCollection = new ArrayList<SimpleFeature>(
-                    entry.memory.values());
-            iterator = internalCollection.iterator();
-        }
+
+        // the candidates must be looked up after the snapshot is taken
+        snapshot = entry.content.open();
+        iterator = entry.content.candidates(query != null ? query.getFilter() : null)
+                .iterator();
     }
 
     public SimpleFeatureType getFeatureType() {
@@ -59,25 +67,38 @@ public class MemoryFeatureReader implements FeatureReader<SimpleFeatureType, Sim
         if (iterator == null) {
             throw new IOException("Feature Reader has been closed");
         }
-
-        try {
-            return SimpleFeatureBuilder.copy((SimpleFeature) iterator.next());
-        } catch (NoSuchElementException end) {
-            throw new DataSourceException("There are no more Features", end);
+        if (!hasNext()) {
+            throw new DataSourceException("There are no more Features",
+                    new NoSuchElementException());
         }
+        SimpleFeature feature = next;
+        next = null;
+        return SimpleFeatureBuilder.copy(feature);
     }
 
     public boolean hasNext(){
-        return (iterator != null) && iterator.hasNext();
+        if (iterator == null) {
+            return false;
+        }
+        while (next == null && iterator.hasNext()) {
+            next = iterator.next().visible(snapshot.version);
+        }
+        if (next == null) {
+            // exhausted, no need to hold on old versions any longer
+            snapshot.release();
+        }
+        return next != null;
     }
 
     public void close(){
         if (iterator != null) {
             iterator = null;
+            snapshot.release();
         }
 
         if (featureType != null) {
             featureType = null;
         }
+        next = null;
     }
-}
\ No newline at end of file
+}
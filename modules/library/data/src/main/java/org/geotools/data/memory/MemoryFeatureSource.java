@@ -82,10 +82,7 @@ public class MemoryFeatureSource extends ContentFeatureSource {
     @Override
     protected int getCountInternal(Query query) throws IOException {
         if (query.getFilter() == Filter.INCLUDE) {
-            MemoryEntry entry = getEntry();
-            synchronized (entry) {
-                return entry.memory.size();
-            }
+            return getEntry().content.size;
         }
         //feature by feature count required
         return -1;
@@ -23,22 +23,29 @@ import java.util.NoSuchElementException;
 import org.geotools.data.DataSourceException;
 import org.geotools.data.FeatureWriter;
 import org.geotools.data.Query;
+import org.geotools.data.memory.MemoryContent.Record;
+import org.geotools.data.memory.MemoryContent.Snapshot;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
-import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.IllegalAttributeException;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.Name;
+import org.opengis.filter.Filter;
 
 /**
- * Update contents of MemoryDataStore. 
+ * Update contents of MemoryDataStore.
+ * <p>
+ * The writer walks the features of a snapshot taken when it's opened, each write or removal is
+ * committed to the store right away.
  */
 public class MemoryFeatureWriter implements FeatureWriter<SimpleFeatureType, SimpleFeature>{
     MemoryState state;
     SimpleFeatureType featureType;
     Name typeName;
 
-    Iterator<SimpleFeature> iterator;
+    Iterator<Record> iterator;
+    Snapshot snapshot;
+    SimpleFeature nextLive;
 
     SimpleFeature live = null;
     SimpleFeature current = null; // current Feature returned to user        
@@ -49,9 +56,8 @@ public class MemoryFeatureWriter implements FeatureWriter<SimpleFeatureType, Sim
         this.featureType = state.getFeatureType();
         
         MemoryEntry entry = state.getEntry();
-        synchronized (entry) {
-            iterator = entry.memory.values().iterator();
-        }
+        snapshot = entry.content.open();
+        iterator = entry.content.candidates(Filter.INCLUDE).iterator();
     }
     
     public SimpleFeatureType getFeatureType() {
@@ -61,7 +67,8 @@ public class MemoryFeatureWriter implements FeatureWriter<SimpleFeatureType, Sim
     public SimpleFeature next() throws IOException, NoSuchElementException {
         if (hasNext()) {
             // existing content
-            live = iterator.next();
+            live = nextLive;
+            nextLive = null;
 
             try {
                 current = SimpleFeatureBuilder.copy(live);
@@ -96,7 +103,7 @@ public class MemoryFeatureWriter implements FeatureWriter<SimpleFeatureType, Sim
 
         if (live != null) {
             // remove existing content
-            iterator.remove();
+            state.getEntry().content.remove(live.getID());
             live = null;
             current = null;
         } else {
@@ -121,27 +128,15 @@ public class MemoryFeatureWriter implements FeatureWriter<SimpleFeatureType, Sim
                 live = null;
                 current = null;
             } else {
-                // accept modifications
+                // accept modifications, as a new version
                 //
-                try {
-                    live.setAttributes(current.getAttributes());
-                } catch (Exception e) {
-                    throw new DataSourceException("Unable to accept modifications to "
-                        + live.getID() + " on " + typeName);
-                }
-    
-                ReferencedEnvelope bounds = new ReferencedEnvelope();
-                bounds.expandToInclude(new ReferencedEnvelope(live.getBounds()));
-                bounds.expandToInclude(new ReferencedEnvelope(current.getBounds()));
+                state.getEntry().content.put(current);
                 live = null;
                 current = null;
             }
         } else {
             // add new content
-            MemoryEntry entry = state.getEntry();
-            synchronized (entry) {
-                entry.memory.put(current.getID(), current);    
-            }
+            state.getEntry().content.put(current);
             current = null;
         }
     }
@@ -150,12 +145,16 @@ public class MemoryFeatureWriter implements FeatureWriter<SimpleFeatureType, Sim
         if (iterator == null) {
             throw new IOException("FeatureWriter has been closed");
         }
-        return (iterator != null) && iterator.hasNext();
+        while (nextLive == null && iterator.hasNext()) {
+            nextLive = iterator.next().visible(snapshot.version);
+        }
+        return nextLive != null;
     }
     
     public void close(){
         if (iterator != null) {
             iterator = null;
+            snapshot.release();
         }
         
         if (featureType != null) {
@@ -163,5 +162,6 @@ public class MemoryFeatureWriter implements FeatureWriter<SimpleFeatureType, Sim
         }
         current = null;
         live = null;
+        nextLive = null;
     }
 }
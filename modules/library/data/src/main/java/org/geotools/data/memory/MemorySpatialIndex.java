@@ -0,0 +1,172 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.memory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.geotools.data.memory.MemoryContent.Record;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.ItemVisitor;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * Incremental spatial index of the {@link MemoryContent} records.
+ * <p>
+ * The bulk of the entries is held in an immutable, fully built {@link STRtree}, the entries
+ * inserted since it was built are appended to a concurrent delta list. Removed entries are only
+ * flagged as dead. Once the delta and the dead entries grow past a fraction of the tree, the
+ * tree is rebuilt and published in a single step. Queries can thus run concurrently with the
+ * changes without any locking, they might return some extra records, which the caller is
+ * expected to check anyway. Changes must be serialized by the caller.
+ */
+class MemorySpatialIndex {
+
+    /**
+     * Minimum number of changes before the tree is rebuilt
+     */
+    static final int MIN_REBUILD_CHANGES = 1024;
+
+    /**
+     * An indexed envelope
+     */
+    static final class Entry {
+        final Envelope envelope;
+
+        final Record record;
+
+        volatile boolean dead;
+
+        Entry(Envelope envelope, Record record) {
+            this.envelope = envelope;
+            this.record = record;
+        }
+    }
+
+    /**
+     * The published state of the index
+     */
+    static final class Tree {
+        final STRtree tree;
+
+        /**
+         * All the entries of the tree, used when rebuilding
+         */
+        final List<Entry> entries;
+
+        final ConcurrentLinkedQueue<Entry> delta = new ConcurrentLinkedQueue<Entry>();
+
+        Tree(List<Entry> entries) {
+            this.entries = entries;
+            if (entries.isEmpty()) {
+                this.tree = null;
+            } else {
+                this.tree = new STRtree();
+                for (Entry entry : entries) {
+                    tree.insert(entry.envelope, entry);
+                }
+                // built before publication, queries are read only from here on
+                tree.build();
+            }
+        }
+    }
+
+    volatile Tree current = new Tree(new ArrayList<Entry>());
+
+    /**
+     * Number of entries in the delta, guarded by the caller
+     */
+    int deltaSize;
+
+    /**
+     * Number of dead entries, guarded by the caller
+     */
+    int deadCount;
+
+    /**
+     * Indexes the envelope of a record version
+     */
+    Entry insert(Envelope envelope, Record record) {
+        Entry entry = new Entry(envelope, record);
+        current.delta.add(entry);
+        deltaSize++;
+        return entry;
+    }
+
+    /**
+     * Flags an entry as removed
+     */
+    void remove(Entry entry) {
+        if (!entry.dead) {
+            entry.dead = true;
+            deadCount++;
+        }
+    }
+
+    /**
+     * Rebuilds the tree if enough changes accumulated
+     */
+    void compact() {
+        Tree tree = current;
+        int threshold = Math.max(MIN_REBUILD_CHANGES, tree.entries.size() / 8);
+        if (deltaSize + deadCount < threshold) {
+            return;
+        }
+        List<Entry> live = new ArrayList<Entry>(tree.entries.size() + deltaSize - deadCount);
+        for (Entry entry : tree.entries) {
+            if (!entry.dead) {
+                live.add(entry);
+            }
+        }
+        for (Entry entry : tree.delta) {
+            if (!entry.dead) {
+                live.add(entry);
+            }
+        }
+        current = new Tree(live);
+        deltaSize = 0;
+        deadCount = 0;
+    }
+
+    /**
+     * Returns the records having a version whose envelope intersects the specified one
+     */
+    Set<Record> query(final Envelope envelope) {
+        Tree tree = current;
+        final Set<Record> result = new HashSet<Record>();
+        if (tree.tree != null) {
+            tree.tree.query(envelope, new ItemVisitor() {
+                public void visitItem(Object item) {
+                    Entry entry = (Entry) item;
+                    if (!entry.dead) {
+                        result.add(entry.record);
+                    }
+                }
+            });
+        }
+        for (Entry entry : tree.delta) {
+            if (!entry.dead && entry.envelope.intersects(envelope)) {
+                result.add(entry.record);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.store;
+
+import org.opengis.filter.Filter;
+
+/**
+ * A way a {@link ContentFeatureSource} can read the features matching a query, such as a full
+ * scan, or a lookup in one of its indexes.
+ * <p>
+ * Feature sources offering more than one access path list them in
+ * {@link ContentFeatureSource#getAccessPaths(org.geotools.data.Query)}, the
+ * {@link QueryPlanner} picks the cheapest and hands it back to
+ * {@link ContentFeatureSource#getReaderInternal(org.geotools.data.Query)} as the
+ * {@link QueryPlanner#ACCESS_PATH} query hint. Whatever the path, the reader must still return
+ * only the features matching the query filter.
+ * </p>
+ *
+ * @since 16.0
+ */
+public class AccessPath {
+
+    /**
+     * The kinds of access path
+     */
+    public enum Type {
+        /** Reads all the features */
+        FULL_SCAN,
+        /** Looks up the features by id */
+        FID_LOOKUP,
+        /** Reads the features whose envelope intersects an area */
+        SPATIAL_INDEX,
+        /** Reads the features whose attribute values satisfy some conditions */
+        ATTRIBUTE_INDEX
+    }
+
+    final Type type;
+
+    final String description;
+
+    final Filter filter;
+
+    final int estimatedRows;
+
+    /**
+     * Builds a new access path
+     *
+     * @param type The access path type
+     * @param description A short description of the path, such as the index name
+     * @param filter The part of the query filter the path uses to narrow the features read,
+     *        {@link Filter#INCLUDE} if it reads them all
+     * @param estimatedRows The number of features the path will read, if the source can tell
+     *        cheaply and reliably, or -1, in which case the planner will estimate it from the
+     *        filter
+     */
+    public AccessPath(Type type, String description, Filter filter, int estimatedRows) {
+        if (type == null) {
+            throw new IllegalArgumentException("The access path type must be specified");
+        }
+        this.type = type;
+        this.description = description;
+        this.filter = filter == null ? Filter.INCLUDE : filter;
+        this.estimatedRows = estimatedRows;
+    }
+
+    /**
+     * Returns a path reading all the features
+     */
+    public static AccessPath fullScan() {
+        return new AccessPath(Type.FULL_SCAN, "full scan", Filter.INCLUDE, -1);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * The part of the query filter the path uses to narrow the features read
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * The number of features the path will read, or -1 if unknown
+     */
+    public int getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(type.name());
+        if (description != null) {
+            sb.append(" (").append(description).append(")");
+        }
+        if (filter != Filter.INCLUDE) {
+            sb.append(" on ").append(filter);
+        }
+        return sb.toString();
+    }
+}
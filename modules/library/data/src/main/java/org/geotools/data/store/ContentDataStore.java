@@ -159,6 +159,11 @@ public abstract class ContentDataStore implements DataStore {
      * factory used to create the datastore
      */
     protected DataStoreFactorySpi dataStoreFactory;
+
+    /**
+     * planner choosing among the access paths offered by the feature sources
+     */
+    protected QueryPlanner queryPlanner = new QueryPlanner();
     
     public ContentDataStore() {
         // get a concurrent map so that we can do reads in parallel with writes (writes vs writes
@@ -277,6 +282,20 @@ public abstract class ContentDataStore implements DataStore {
         this.namespaceURI = namespaceURI;
     }
 
+    /**
+     * The planner choosing among the access paths offered by the feature sources.
+     */
+    public QueryPlanner getQueryPlanner() {
+        return queryPlanner;
+    }
+
+    /**
+     * Sets the planner choosing among the access paths offered by the feature sources.
+     */
+    public void setQueryPlanner(QueryPlanner queryPlanner) {
+        this.queryPlanner = queryPlanner;
+    }
+
     /**
      * The logger for the datastore.
      */
@@ -58,6 +58,7 @@ import org.geotools.factory.Hints.Key;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.SchemaException;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.feature.visitor.ParallelFeatureVisitor;
 import org.geotools.filter.function.Collection_AverageFunction;
 import org.geotools.filter.function.Collection_BoundsFunction;
 import org.geotools.filter.function.Collection_MaxFunction;
@@ -624,6 +625,20 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
         if (!query.getJoins().isEmpty() && getQueryCapabilities().isJoiningSupported()) {
             throw new IOException("Feature source does not support joins");
         }
+
+        // let the planner pick the access path, if the subclass offers a choice
+        List<AccessPath> accessPaths = getAccessPaths(query);
+        if (accessPaths.size() > 1) {
+            QueryPlan plan = getDataStore().getQueryPlanner().plan(this, query, accessPaths);
+            Logger logger = getDataStore().getLogger();
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(plan.toString());
+            }
+            Hints hints = new Hints(query.getHints());
+            hints.put(QueryPlanner.ACCESS_PATH, plan.getAccessPath());
+            query = new Query(query);
+            query.setHints(hints);
+        }
         
         // if the implementation can retype but not sort, we might have
         // to remove the retyping, or we won't be able to sort in memory
@@ -745,6 +760,56 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
         return reader;
     }
     
+    /**
+     * Returns the ways the subclass can read the features matching the query.
+     * <p>
+     * The default implementation returns a full scan only. Subclasses maintaining indexes
+     * should return a path for each index that can narrow down the features read, along with
+     * the full scan. When more than one path is returned the {@link QueryPlanner} picks the
+     * cheapest, and {@link #getReaderInternal(Query)} receives it in the
+     * {@link QueryPlanner#ACCESS_PATH} query hint.
+     * </p>
+     */
+    protected List<AccessPath> getAccessPaths(Query query) throws IOException {
+        return Collections.singletonList(AccessPath.fullScan());
+    }
+
+    /**
+     * Returns the plan that would be used to run the query, for diagnostic purposes: the access
+     * paths considered, with their estimated costs, the one chosen, and the post processing
+     * performed in memory on the features read.
+     */
+    public QueryPlan explain(Query query) throws IOException {
+        query = joinQuery(query);
+        query = resolvePropertyNames(query);
+        QueryPlan plan = getDataStore().getQueryPlanner().plan(this, query);
+
+        if (!canTransact() && transaction != null && transaction != Transaction.AUTO_COMMIT) {
+            plan.addPostProcessing("merge transaction changes");
+        }
+        if (!canFilter() && query.getFilter() != null && query.getFilter() != Filter.INCLUDE) {
+            plan.addPostProcessing("filter " + query.getFilter());
+        }
+        if (query.getSortBy() != null && query.getSortBy().length != 0 && !canSort()) {
+            plan.addPostProcessing("sort " + Arrays.toString(query.getSortBy()));
+        }
+        if (!canRetype() && query.getPropertyNames() != Query.ALL_NAMES) {
+            plan.addPostProcessing("retype " + Arrays.toString(query.getPropertyNames()));
+        }
+        if (!canOffset() && query.getStartIndex() != null && query.getStartIndex() > 0) {
+            plan.addPostProcessing("skip " + query.getStartIndex());
+        }
+        if (!canLimit() && query.getMaxFeatures() != -1
+                && query.getMaxFeatures() < Integer.MAX_VALUE) {
+            plan.addPostProcessing("limit " + query.getMaxFeatures());
+        }
+        if (!canReproject() && query.getCoordinateSystemReproject() != null) {
+            plan.addPostProcessing("reproject to "
+                    + query.getCoordinateSystemReproject().getName());
+        }
+        return plan;
+    }
+
     /**
      * Returns all the properties used in the sortBy (excluding primary keys and the like, e.g.,
      * natural sorting)
@@ -802,6 +867,9 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
         }
 
         //subclass could not handle, resort to manually walkign through
+        // partitionable calculations are run on several threads while this one reads
+        ParallelFeatureVisitor parallel = ParallelFeatureVisitor.wrap(visitor, query.getHints());
+        FeatureVisitor target = parallel != null ? parallel : visitor;
         FeatureReader<SimpleFeatureType, SimpleFeature> reader = getReader(query);
         try{
             float size = progress instanceof NullProgressListener ? 0.0f : (float) getCount( query );
@@ -812,7 +880,7 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
                 if (size > 0) progress.progress( position++/size );
                 try {
                     feature = reader.next();
-                    visitor.visit(feature);
+                    target.visit(feature);
                 }
                 catch( IOException erp ){
                     progress.exceptionOccurred( erp );
@@ -825,8 +893,20 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
                             + ":" + unexpected, unexpected);
                 }
             }
+            if (parallel != null) {
+                try {
+                    parallel.complete();
+                } catch (Exception unexpected) {
+                    progress.exceptionOccurred(unexpected);
+                    throw new IOException("Problem visiting " + query.getTypeName() + ":"
+                            + unexpected, unexpected);
+                }
+            }
         }
         finally {
+            if (parallel != null) {
+                parallel.cancel();
+            }
             progress.complete();            
             reader.close();
         }
@@ -874,6 +954,11 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
      *   <li>{@link #canTransact()} - handles transactions natively</li>
      * </ul>
      * </p>
+     * <p>
+     * Subclasses returning more than one path from {@link #getAccessPaths(Query)} should read the
+     * features using the {@link AccessPath} found in the {@link QueryPlanner#ACCESS_PATH} hint,
+     * when present.
+     * </p>
      * 
      */
     protected abstract  FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal( Query query ) throws IOException;
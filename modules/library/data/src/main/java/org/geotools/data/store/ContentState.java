@@ -49,6 +49,7 @@ import org.opengis.filter.identity.FeatureId;
  *   <li>feature type ({@link #getFeatureType()}
  *   <li>number of features ({@link #getCount()}
  *   <li>spatial extent ({@link #getBounds()}
+ *   <li>query planner statistics ({@link #getStatistics()}
  * </ul>
  * Other types of state depend on the data format and must be handled by a subclass.
  * <p>
@@ -138,6 +139,11 @@ public class ContentState {
      */
     protected ReferencedEnvelope bounds;
 
+    /**
+     * cached statistics used by the query planner
+     */
+    protected FeatureTypeStatistics statistics;
+
     // EVENT NOTIFICATION SUPPORT
     /**
      * Even used for batch notification; used to collect the bounds and feature ids generated
@@ -181,6 +187,7 @@ public class ContentState {
         featureType = state.featureType;
         count = state.count;
         bounds = state.bounds == null ? null : ReferencedEnvelope.reference(state.bounds);
+        statistics = state.statistics;
         batchFeatureEvent = null;
    }
 
@@ -251,6 +258,20 @@ public class ContentState {
         this.bounds = bounds;
     }
 
+    /**
+     * The cached statistics used by the {@link QueryPlanner}.
+     */
+    public final FeatureTypeStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets the cached statistics used by the {@link QueryPlanner}.
+     */
+    public final void setStatistics(FeatureTypeStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     /**
      * Adds a listener for collection events.
      * 
@@ -434,6 +455,7 @@ public class ContentState {
         featureType = null;
         count = -1;
         bounds = null;
+        statistics = null;
     }
 
     /**
@@ -0,0 +1,343 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.store;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.Feature;
+import org.opengis.feature.FeatureVisitor;
+import org.opengis.feature.Property;
+
+/**
+ * Statistics about the features of a type, used by the {@link QueryPlanner} to estimate the
+ * selectivity of filters: the number of features, their bounds and, optionally, histograms of
+ * the values of some numeric attributes.
+ * <p>
+ * The histograms are built by a {@link Collector} visiting the features, which keeps a bounded
+ * random sample of the values of each attribute. Instances are safe to share between threads.
+ * </p>
+ *
+ * @since 16.0
+ */
+public class FeatureTypeStatistics {
+
+    /**
+     * An equi-depth histogram of the values of a numeric attribute: the values are split in
+     * buckets holding the same number of them, whose boundaries are stored.
+     */
+    public static class Histogram {
+
+        final double[] boundaries;
+
+        final double nullFraction;
+
+        final double distinct;
+
+        final int rows;
+
+        /**
+         * Builds a histogram out of a sample of values
+         *
+         * @param sample The non null values sampled
+         * @param sampledRows The number of features sampled, including the null values
+         * @param rows The total number of features
+         * @param maxBuckets The maximum number of buckets
+         */
+        public Histogram(double[] sample, int sampledRows, int rows, int maxBuckets) {
+            double[] values = sample.clone();
+            Arrays.sort(values);
+            this.rows = rows;
+            this.nullFraction = sampledRows > 0 ? 1 - (double) values.length / sampledRows : 0;
+
+            int buckets = Math.min(maxBuckets, values.length);
+            if (buckets == 0) {
+                boundaries = new double[0];
+                distinct = 0;
+                return;
+            }
+            boundaries = new double[buckets + 1];
+            for (int i = 0; i <= buckets; i++) {
+                boundaries[i] = values[(int) ((long) i * (values.length - 1) / buckets)];
+            }
+
+            // distinct values estimate (Haas and Stokes "Duj1" estimator)
+            int d = 0, f1 = 0;
+            for (int i = 0; i < values.length;) {
+                int j = i + 1;
+                while (j < values.length && values[j] == values[i]) {
+                    j++;
+                }
+                d++;
+                if (j - i == 1) {
+                    f1++;
+                }
+                i = j;
+            }
+            double n = values.length;
+            double total = Math.max(n, (rows - rows * nullFraction));
+            if (n >= total) {
+                distinct = d;
+            } else {
+                distinct = Math.min(total, n * d / (n - f1 + f1 * n / total));
+            }
+        }
+
+        /**
+         * Returns the estimated fraction of features whose value is between the specified
+         * bounds (inclusive)
+         */
+        public double getRangeSelectivity(double min, double max) {
+            if (boundaries.length == 0 || min > max) {
+                return 0;
+            }
+            final int buckets = boundaries.length - 1;
+            double fraction = 0;
+            for (int i = 0; i < buckets; i++) {
+                double lo = boundaries[i];
+                double hi = boundaries[i + 1];
+                if (hi < min || lo > max) {
+                    continue;
+                }
+                if (hi == lo) {
+                    fraction += 1;
+                } else {
+                    // assume the values are uniformly distributed in the bucket
+                    double overlap = Math.min(hi, max) - Math.max(lo, min);
+                    fraction += Math.max(overlap, 0) / (hi - lo);
+                }
+            }
+            double result = (1 - nullFraction) * fraction / buckets;
+            if (min <= boundaries[buckets] && max >= boundaries[0] && distinct > 0) {
+                // do not go below the selectivity of a single value
+                result = Math.max(result, (1 - nullFraction) / distinct);
+            }
+            return Math.min(1, result);
+        }
+
+        /**
+         * Returns the estimated fraction of features whose value is equal to the specified one
+         */
+        public double getEqualSelectivity(double value) {
+            if (boundaries.length == 0 || value < boundaries[0]
+                    || value > boundaries[boundaries.length - 1]) {
+                return 0;
+            }
+            // frequent values fill whole buckets
+            final int buckets = boundaries.length - 1;
+            int full = 0;
+            for (int i = 0; i < buckets; i++) {
+                if (boundaries[i] == value && boundaries[i + 1] == value) {
+                    full++;
+                }
+            }
+            double uniform = distinct > 0 ? 1 / distinct : 1;
+            return (1 - nullFraction) * Math.max(uniform, (double) full / buckets);
+        }
+
+        /**
+         * The estimated fraction of null values
+         */
+        public double getNullFraction() {
+            return nullFraction;
+        }
+
+        /**
+         * The estimated number of distinct values
+         */
+        public double getDistinct() {
+            return distinct;
+        }
+
+        /**
+         * The number of features at the time the histogram was built
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        @Override
+        public String toString() {
+            return "Histogram[buckets=" + Math.max(0, boundaries.length - 1) + ", distinct="
+                    + Math.round(distinct) + ", nulls=" + nullFraction + "]";
+        }
+    }
+
+    /**
+     * Visits the features collecting a random sample of the values of some attributes, which
+     * is then turned into histograms
+     */
+    public static class Collector implements FeatureVisitor {
+
+        final String[] attributes;
+
+        final double[][] samples;
+
+        final int[] sizes;
+
+        final int sampleSize;
+
+        final Random random = new Random(0);
+
+        int rows;
+
+        /**
+         * Builds a new collector
+         *
+         * @param attributes The numeric attributes to be sampled
+         * @param sampleSize The maximum number of features sampled
+         */
+        public Collector(List<String> attributes, int sampleSize) {
+            this.attributes = attributes.toArray(new String[attributes.size()]);
+            this.sampleSize = sampleSize;
+            this.samples = new double[this.attributes.length][sampleSize];
+            this.sizes = new int[this.attributes.length];
+        }
+
+        public void visit(Feature feature) {
+            // reservoir sampling, slot is the position in the sample, or -1 if skipped
+            int slot = rows < sampleSize ? rows : random.nextInt(rows + 1);
+            rows++;
+            if (slot >= sampleSize) {
+                return;
+            }
+            for (int i = 0; i < attributes.length; i++) {
+                Property property = feature.getProperty(attributes[i]);
+                Object value = property != null ? property.getValue() : null;
+                double number = value instanceof Number ? ((Number) value).doubleValue()
+                        : Double.NaN;
+                samples[i][slot] = number;
+                if (slot == sizes[i]) {
+                    sizes[i]++;
+                }
+            }
+        }
+
+        /**
+         * The number of features visited
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * Builds the histograms of the sampled attributes
+         *
+         * @param maxBuckets The maximum number of buckets of each histogram
+         */
+        public Map<String, Histogram> getHistograms(int maxBuckets) {
+            Map<String, Histogram> result = new HashMap<String, Histogram>();
+            for (int i = 0; i < attributes.length; i++) {
+                double[] values = new double[sizes[i]];
+                int count = 0;
+                for (int j = 0; j < sizes[i]; j++) {
+                    if (!Double.isNaN(samples[i][j])) {
+                        values[count++] = samples[i][j];
+                    }
+                }
+                result.put(attributes[i], new Histogram(Arrays.copyOf(values, count), sizes[i],
+                        rows, maxBuckets));
+            }
+            return result;
+        }
+    }
+
+    final int count;
+
+    final ReferencedEnvelope bounds;
+
+    final Map<String, Histogram> histograms;
+
+    final long timestamp;
+
+    /**
+     * Builds statistics without histograms
+     *
+     * @param count The number of features, or -1 if unknown
+     * @param bounds The bounds of the features, or null if unknown
+     */
+    public FeatureTypeStatistics(int count, ReferencedEnvelope bounds) {
+        this(count, bounds, Collections.<String, Histogram> emptyMap());
+    }
+
+    /**
+     * Builds statistics
+     *
+     * @param count The number of features, or -1 if unknown
+     * @param bounds The bounds of the features, or null if unknown
+     * @param histograms The histograms of the numeric attributes, by attribute name
+     */
+    public FeatureTypeStatistics(int count, ReferencedEnvelope bounds,
+            Map<String, Histogram> histograms) {
+        this(count, bounds, histograms, System.currentTimeMillis());
+    }
+
+    FeatureTypeStatistics(int count, ReferencedEnvelope bounds,
+            Map<String, Histogram> histograms, long timestamp) {
+        this.count = count;
+        this.bounds = bounds;
+        this.histograms = Collections.unmodifiableMap(new HashMap<String, Histogram>(
+                histograms));
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * The number of features, or -1 if unknown
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The bounds of the features, or null if unknown
+     */
+    public ReferencedEnvelope getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the histogram of the specified attribute, or null if not available
+     */
+    public Histogram getHistogram(String attribute) {
+        return histograms.get(attribute);
+    }
+
+    /**
+     * The histograms, by attribute name
+     */
+    public Map<String, Histogram> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * The time the feature count and bounds were read, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "FeatureTypeStatistics[count=" + count + ", bounds=" + bounds + ", histograms="
+                + histograms + "]";
+    }
+}
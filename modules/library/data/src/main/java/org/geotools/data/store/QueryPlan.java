@@ -0,0 +1,190 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.geotools.data.Query;
+
+/**
+ * The plan chosen by the {@link QueryPlanner} to run a query: the access path, along with the
+ * alternatives considered and their estimated costs, and the post processing steps
+ * {@link ContentFeatureSource} adds on top of the native reader. Mostly meant for diagnostics,
+ * its {@link #toString()} returns a description similar to the output of a database EXPLAIN
+ * command.
+ *
+ * @since 16.0
+ */
+public class QueryPlan {
+
+    /**
+     * An access path along with its estimates
+     */
+    public static class Candidate {
+        final AccessPath path;
+
+        final double rows;
+
+        final double cost;
+
+        public Candidate(AccessPath path, double rows, double cost) {
+            this.path = path;
+            this.rows = rows;
+            this.cost = cost;
+        }
+
+        public AccessPath getPath() {
+            return path;
+        }
+
+        /**
+         * The estimated number of features read
+         */
+        public double getRows() {
+            return rows;
+        }
+
+        /**
+         * The estimated cost, in units of features read by a full scan
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        @Override
+        public String toString() {
+            return path + " rows=" + Math.round(rows) + " cost=" + Math.round(cost * 100) / 100d;
+        }
+    }
+
+    final Query query;
+
+    final FeatureTypeStatistics statistics;
+
+    final double selectivity;
+
+    final List<Candidate> candidates;
+
+    final Candidate chosen;
+
+    final List<String> postProcessing = new ArrayList<String>();
+
+    public QueryPlan(Query query, FeatureTypeStatistics statistics, double selectivity,
+            List<Candidate> candidates, Candidate chosen) {
+        this.query = query;
+        this.statistics = statistics;
+        this.selectivity = selectivity;
+        this.candidates = Collections.unmodifiableList(new ArrayList<Candidate>(candidates));
+        this.chosen = chosen;
+    }
+
+    /**
+     * The query being planned
+     */
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * The statistics the estimates are based on
+     */
+    public FeatureTypeStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * The estimated fraction of features matching the query filter
+     */
+    public double getSelectivity() {
+        return selectivity;
+    }
+
+    /**
+     * The estimated number of features matching the query filter, or -1 if the feature count is
+     * not known
+     */
+    public double getEstimatedRows() {
+        int count = statistics.getCount();
+        return count < 0 ? -1 : selectivity * count;
+    }
+
+    /**
+     * The access paths considered, in the order the feature source offered them
+     */
+    public List<Candidate> getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * The cheapest candidate
+     */
+    public Candidate getChosen() {
+        return chosen;
+    }
+
+    /**
+     * The access path chosen
+     */
+    public AccessPath getAccessPath() {
+        return chosen.getPath();
+    }
+
+    /**
+     * The steps performed in memory on the features returned by the native reader, such as
+     * filtering, sorting or reprojecting them
+     */
+    public List<String> getPostProcessing() {
+        return postProcessing;
+    }
+
+    /**
+     * Adds a post processing step
+     */
+    public void addPostProcessing(String step) {
+        postProcessing.add(step);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Query plan for ").append(query.getTypeName()).append("\n");
+        sb.append("  filter: ").append(query.getFilter()).append("\n");
+        sb.append("  statistics: count=").append(statistics.getCount());
+        if (statistics.getBounds() != null) {
+            sb.append(", bounds=").append(statistics.getBounds());
+        }
+        if (!statistics.getHistograms().isEmpty()) {
+            sb.append(", histograms=").append(statistics.getHistograms().keySet());
+        }
+        sb.append("\n");
+        sb.append("  selectivity: ").append(selectivity);
+        double rows = getEstimatedRows();
+        if (rows >= 0) {
+            sb.append(" (").append(Math.round(rows)).append(" features)");
+        }
+        sb.append("\n");
+        for (Candidate candidate : candidates) {
+            sb.append(candidate == chosen ? "  * " : "    ").append(candidate).append("\n");
+        }
+        for (String step : postProcessing) {
+            sb.append("  -> ").append(step).append("\n");
+        }
+        return sb.toString();
+    }
+}
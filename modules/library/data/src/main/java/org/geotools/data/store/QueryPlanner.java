@@ -0,0 +1,286 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.data.Query;
+import org.geotools.data.store.FeatureTypeStatistics.Collector;
+import org.geotools.data.store.FeatureTypeStatistics.Histogram;
+import org.geotools.data.store.QueryPlan.Candidate;
+import org.geotools.factory.Hints;
+import org.geotools.filter.FilterAttributeExtractor;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.filter.Filter;
+
+/**
+ * Picks the cheapest {@link AccessPath} among the ones a {@link ContentFeatureSource} offers for
+ * a query.
+ * <p>
+ * The number of features each path reads is estimated by the {@link SelectivityEstimator} out of
+ * the {@link FeatureTypeStatistics} of the feature type, unless the feature source already
+ * provided it. A full scan costs one unit per feature, an index scan a fixed lookup cost plus
+ * {@link #getRandomReadCost()} units per feature, since the features are read out of order.
+ * Subclasses can override {@link #getCost(AccessPath, double, int)} to plug in a different cost
+ * model, and the planner used by a store is set with
+ * {@link ContentDataStore#setQueryPlanner(QueryPlanner)}.
+ * </p>
+ * <p>
+ * The feature count and bounds are read from the feature source and cached in the
+ * {@link ContentState} for {@link #getStatisticsMaxAge()} milliseconds. The histograms are
+ * collected only if enabled, with a full scan of the attributes referenced by the filters, and
+ * cached until the feature count changes significantly.
+ * </p>
+ *
+ * @since 16.0
+ */
+public class QueryPlanner {
+
+    /**
+     * The query hint carrying the access path chosen by the planner to
+     * {@link ContentFeatureSource#getReaderInternal(Query)}
+     */
+    public static final Hints.Key ACCESS_PATH = new Hints.Key(AccessPath.class);
+
+    /**
+     * The number of features assumed when the feature source cannot count them cheaply
+     */
+    public static final int DEFAULT_ROW_COUNT = 1000;
+
+    double randomReadCost = 4;
+
+    double lookupCost = 10;
+
+    boolean histogramsEnabled = false;
+
+    int sampleSize = 10000;
+
+    int maxBuckets = 100;
+
+    double staleThreshold = 0.1;
+
+    long statisticsMaxAge = 10000;
+
+    /**
+     * Plans the query among the access paths offered by the feature source
+     */
+    public QueryPlan plan(ContentFeatureSource source, Query query) throws IOException {
+        return plan(source, query, source.getAccessPaths(query));
+    }
+
+    /**
+     * Plans the query among the specified access paths
+     */
+    public QueryPlan plan(ContentFeatureSource source, Query query, List<AccessPath> paths)
+            throws IOException {
+        if (paths == null || paths.isEmpty()) {
+            paths = Collections.singletonList(AccessPath.fullScan());
+        }
+        FeatureTypeStatistics statistics = getStatistics(source, query);
+        SelectivityEstimator estimator = createEstimator(statistics);
+        int count = statistics.getCount() >= 0 ? statistics.getCount() : DEFAULT_ROW_COUNT;
+
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        Candidate chosen = null;
+        for (AccessPath path : paths) {
+            double rows;
+            if (path.getEstimatedRows() >= 0) {
+                rows = path.getEstimatedRows();
+            } else if (path.getType() == AccessPath.Type.FULL_SCAN) {
+                rows = count;
+            } else {
+                rows = estimator.estimate(path.getFilter()) * count;
+            }
+            Candidate candidate = new Candidate(path, rows, getCost(path, rows, count));
+            candidates.add(candidate);
+            if (chosen == null || candidate.getCost() < chosen.getCost()) {
+                chosen = candidate;
+            }
+        }
+
+        return new QueryPlan(query, statistics, estimator.estimate(query.getFilter()),
+                candidates, chosen);
+    }
+
+    /**
+     * Returns the cost of reading the specified number of features with the access path, in
+     * units of features read by a full scan
+     *
+     * @param path The access path
+     * @param rows The estimated number of features read by the path
+     * @param count The total number of features
+     */
+    protected double getCost(AccessPath path, double rows, int count) {
+        if (path.getType() == AccessPath.Type.FULL_SCAN) {
+            return rows;
+        }
+        return lookupCost + rows * randomReadCost;
+    }
+
+    /**
+     * Creates the estimator used to plan the queries
+     */
+    protected SelectivityEstimator createEstimator(FeatureTypeStatistics statistics) {
+        return new SelectivityEstimator(statistics);
+    }
+
+    /**
+     * Returns the statistics of the feature source, collecting the histograms of the numeric
+     * attributes used by the query filter if enabled
+     */
+    public FeatureTypeStatistics getStatistics(ContentFeatureSource source, Query query)
+            throws IOException {
+        // reading the count and bounds might require opening files or running queries, reuse
+        // them for a while
+        ContentState state = source.getState();
+        FeatureTypeStatistics cached = state.getStatistics();
+        boolean reused = cached != null
+                && System.currentTimeMillis() - cached.getTimestamp() < statisticsMaxAge;
+        int count = reused ? cached.getCount() : source.getCount(Query.ALL);
+        ReferencedEnvelope bounds = reused ? cached.getBounds() : source.getBounds();
+        long timestamp = reused ? cached.getTimestamp() : System.currentTimeMillis();
+
+        // reuse the cached histograms, unless the data changed significantly
+        Map<String, Histogram> histograms = new HashMap<String, Histogram>();
+        if (histogramsEnabled && cached != null) {
+            for (Map.Entry<String, Histogram> entry : cached.getHistograms().entrySet()) {
+                int rows = entry.getValue().getRows();
+                if (count >= 0 && Math.abs(count - rows) <= staleThreshold * rows) {
+                    histograms.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        if (histogramsEnabled) {
+            List<String> missing = getHistogramAttributes(source.getSchema(), query.getFilter());
+            missing.removeAll(histograms.keySet());
+            if (!missing.isEmpty()) {
+                Collector collector = new Collector(missing, sampleSize);
+                Query sampling = new Query(source.getSchema().getTypeName(), Filter.INCLUDE,
+                        missing.toArray(new String[missing.size()]));
+                source.accepts(sampling, collector, null);
+                histograms.putAll(collector.getHistograms(maxBuckets));
+                if (count < 0) {
+                    count = collector.getRows();
+                }
+            }
+        }
+
+        if (reused && histograms.equals(cached.getHistograms())) {
+            return cached;
+        }
+        FeatureTypeStatistics statistics = new FeatureTypeStatistics(count, bounds, histograms,
+                timestamp);
+        state.setStatistics(statistics);
+        return statistics;
+    }
+
+    /**
+     * Returns the numeric attributes referenced by the filter
+     */
+    List<String> getHistogramAttributes(SimpleFeatureType schema, Filter filter) {
+        List<String> result = new ArrayList<String>();
+        if (filter == null) {
+            return result;
+        }
+        FilterAttributeExtractor extractor = new FilterAttributeExtractor(schema);
+        filter.accept(extractor, null);
+        for (String name : extractor.getAttributeNameSet()) {
+            AttributeDescriptor descriptor = schema.getDescriptor(name);
+            if (descriptor != null
+                    && Number.class.isAssignableFrom(descriptor.getType().getBinding())) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The cost of reading a feature out of order, relative to reading it during a full scan
+     */
+    public double getRandomReadCost() {
+        return randomReadCost;
+    }
+
+    public void setRandomReadCost(double randomReadCost) {
+        this.randomReadCost = randomReadCost;
+    }
+
+    /**
+     * The fixed cost of an index lookup, in units of features read by a full scan
+     */
+    public double getLookupCost() {
+        return lookupCost;
+    }
+
+    public void setLookupCost(double lookupCost) {
+        this.lookupCost = lookupCost;
+    }
+
+    /**
+     * Whether histograms of the numeric attributes are collected. Collecting them requires a
+     * full scan, which is then amortized over the following queries.
+     */
+    public boolean isHistogramsEnabled() {
+        return histogramsEnabled;
+    }
+
+    public void setHistogramsEnabled(boolean histogramsEnabled) {
+        this.histogramsEnabled = histogramsEnabled;
+    }
+
+    /**
+     * The maximum number of features sampled to build the histograms
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * The maximum number of buckets of each histogram
+     */
+    public int getMaxBuckets() {
+        return maxBuckets;
+    }
+
+    public void setMaxBuckets(int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * The time, in milliseconds, the feature count and bounds are reused for before being read
+     * again from the feature source
+     */
+    public long getStatisticsMaxAge() {
+        return statisticsMaxAge;
+    }
+
+    public void setStatisticsMaxAge(long statisticsMaxAge) {
+        this.statisticsMaxAge = statisticsMaxAge;
+    }
+}
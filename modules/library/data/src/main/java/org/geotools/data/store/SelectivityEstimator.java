@@ -0,0 +1,244 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.store;
+
+import org.geotools.data.store.FeatureTypeStatistics.Histogram;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.geotools.util.Converters;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.ExcludeFilter;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.IncludeFilter;
+import org.opengis.filter.Not;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.PropertyIsNil;
+import org.opengis.filter.PropertyIsNotEqualTo;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.spatial.Beyond;
+import org.opengis.filter.spatial.BinarySpatialOperator;
+import org.opengis.filter.spatial.Disjoint;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Estimates the fraction of features matching a filter, based on the
+ * {@link FeatureTypeStatistics} of the feature type.
+ * <p>
+ * Spatial filters are estimated comparing the area of their envelope with the area of the
+ * feature type bounds, comparisons against numeric literals use the attribute histogram, when
+ * available. Everything else falls back on fixed guesses, along the lines of the ones used by
+ * relational databases. The conditions are assumed to be independent.
+ * </p>
+ *
+ * @since 16.0
+ */
+public class SelectivityEstimator {
+
+    /**
+     * Selectivity of an equality comparison, when no histogram is available
+     */
+    public static final double DEFAULT_EQUALITY = 0.005;
+
+    /**
+     * Selectivity of a range comparison, when no histogram is available
+     */
+    public static final double DEFAULT_RANGE = 1d / 3;
+
+    /**
+     * Selectivity of a like filter
+     */
+    public static final double DEFAULT_LIKE = 0.05;
+
+    /**
+     * Selectivity of a spatial filter, when the bounds are not known
+     */
+    public static final double DEFAULT_SPATIAL = 0.1;
+
+    /**
+     * Selectivity of any other filter
+     */
+    public static final double DEFAULT = 0.5;
+
+    final FeatureTypeStatistics statistics;
+
+    public SelectivityEstimator(FeatureTypeStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Returns the estimated fraction of features matching the filter, between 0 and 1
+     */
+    public double estimate(Filter filter) {
+        if (filter == null || filter instanceof IncludeFilter) {
+            return 1;
+        } else if (filter instanceof ExcludeFilter) {
+            return 0;
+        } else if (filter instanceof And) {
+            double result = 1;
+            for (Filter child : ((And) filter).getChildren()) {
+                result *= estimate(child);
+            }
+            return result;
+        } else if (filter instanceof Or) {
+            double none = 1;
+            for (Filter child : ((Or) filter).getChildren()) {
+                none *= 1 - estimate(child);
+            }
+            return 1 - none;
+        } else if (filter instanceof Not) {
+            return 1 - estimate(((Not) filter).getFilter());
+        } else if (filter instanceof Id) {
+            int ids = ((Id) filter).getIdentifiers().size();
+            int count = statistics.getCount();
+            return count > 0 ? Math.min(1, (double) ids / count) : DEFAULT_EQUALITY;
+        } else if (filter instanceof BinarySpatialOperator) {
+            return estimateSpatial(filter);
+        } else if (filter instanceof PropertyIsEqualTo) {
+            BinaryComparisonOperator equal = (BinaryComparisonOperator) filter;
+            Histogram histogram = getHistogram(equal.getExpression1(), equal.getExpression2());
+            Double value = getNumber(equal.getExpression1(), equal.getExpression2());
+            if (histogram != null && value != null) {
+                return histogram.getEqualSelectivity(value);
+            }
+            return DEFAULT_EQUALITY;
+        } else if (filter instanceof PropertyIsNotEqualTo) {
+            BinaryComparisonOperator notEqual = (BinaryComparisonOperator) filter;
+            Histogram histogram = getHistogram(notEqual.getExpression1(),
+                    notEqual.getExpression2());
+            Double value = getNumber(notEqual.getExpression1(), notEqual.getExpression2());
+            if (histogram != null && value != null) {
+                return 1 - histogram.getNullFraction() - histogram.getEqualSelectivity(value);
+            }
+            return 1 - DEFAULT_EQUALITY;
+        } else if (filter instanceof PropertyIsLessThan
+                || filter instanceof PropertyIsLessThanOrEqualTo) {
+            BinaryComparisonOperator less = (BinaryComparisonOperator) filter;
+            return estimateRange(less.getExpression1(), less.getExpression2());
+        } else if (filter instanceof PropertyIsGreaterThan
+                || filter instanceof PropertyIsGreaterThanOrEqualTo) {
+            BinaryComparisonOperator greater = (BinaryComparisonOperator) filter;
+            return estimateRange(greater.getExpression2(), greater.getExpression1());
+        } else if (filter instanceof PropertyIsBetween) {
+            PropertyIsBetween between = (PropertyIsBetween) filter;
+            Histogram histogram = getHistogram(between.getExpression(), null);
+            Double lower = getNumber(between.getLowerBoundary(), null);
+            Double upper = getNumber(between.getUpperBoundary(), null);
+            if (histogram != null && lower != null && upper != null) {
+                return histogram.getRangeSelectivity(lower, upper);
+            }
+            return DEFAULT_RANGE * DEFAULT_RANGE;
+        } else if (filter instanceof PropertyIsLike) {
+            return DEFAULT_LIKE;
+        } else if (filter instanceof PropertyIsNull || filter instanceof PropertyIsNil) {
+            Expression expression = filter instanceof PropertyIsNull ? ((PropertyIsNull) filter)
+                    .getExpression() : ((PropertyIsNil) filter).getExpression();
+            Histogram histogram = getHistogram(expression, null);
+            return histogram != null ? histogram.getNullFraction() : DEFAULT_EQUALITY;
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * Estimates a comparison where the lower expression is lower (or equal) than the upper one
+     */
+    private double estimateRange(Expression lower, Expression upper) {
+        Histogram histogram = getHistogram(lower, upper);
+        Double value = getNumber(lower, upper);
+        if (histogram == null || value == null) {
+            return DEFAULT_RANGE;
+        }
+        if (lower instanceof PropertyName) {
+            return histogram.getRangeSelectivity(Double.NEGATIVE_INFINITY, value);
+        } else {
+            return histogram.getRangeSelectivity(value, Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Estimates a spatial filter as the ratio between its envelope area and the bounds area
+     */
+    private double estimateSpatial(Filter filter) {
+        if (filter instanceof Disjoint || filter instanceof Beyond) {
+            return 1 - DEFAULT_SPATIAL;
+        }
+        Envelope bounds = statistics.getBounds();
+        Envelope envelope = (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR,
+                null);
+        if (bounds == null || bounds.isNull() || envelope == null || envelope.isNull()
+                || Double.isInfinite(envelope.getWidth())
+                || Double.isInfinite(envelope.getHeight())) {
+            return DEFAULT_SPATIAL;
+        }
+        Envelope intersection = envelope.intersection(bounds);
+        if (intersection.isNull()) {
+            return 0;
+        }
+        // use the extent along a single axis for degenerate bounds, e.g. points on a line
+        double width = bounds.getWidth();
+        double height = bounds.getHeight();
+        double ratio;
+        if (width > 0 && height > 0) {
+            ratio = (intersection.getWidth() / width) * (intersection.getHeight() / height);
+        } else if (width > 0) {
+            ratio = intersection.getWidth() / width;
+        } else if (height > 0) {
+            ratio = intersection.getHeight() / height;
+        } else {
+            ratio = 1;
+        }
+        // features are not points, some of the ones crossing the envelope border match too
+        return Math.min(1, Math.max(ratio, DEFAULT_EQUALITY));
+    }
+
+    /**
+     * Returns the histogram of the property among the two expressions, if any
+     */
+    private Histogram getHistogram(Expression e1, Expression e2) {
+        if (e1 instanceof PropertyName) {
+            return statistics.getHistogram(((PropertyName) e1).getPropertyName());
+        } else if (e2 instanceof PropertyName) {
+            return statistics.getHistogram(((PropertyName) e2).getPropertyName());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the numeric value of the literal among the two expressions, if any
+     */
+    private Double getNumber(Expression e1, Expression e2) {
+        Expression literal = e1 instanceof Literal ? e1 : e2 instanceof Literal ? e2 : null;
+        if (literal == null) {
+            return null;
+        }
+        Object value = ((Literal) literal).getValue();
+        Double number = value instanceof Number ? ((Number) value).doubleValue() : Converters
+                .convert(value, Double.class);
+        return number == null || number.isNaN() ? null : number;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.memory;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.data.memory.MemoryContent.Record;
+import org.geotools.data.memory.MemoryContent.Snapshot;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class MemoryContentTest {
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
+    GeometryFactory gf = JTSFactoryFinder.getGeometryFactory();
+
+    SimpleFeatureType type;
+
+    MemoryContent content;
+
+    Random random = new Random(42);
+
+    @Before
+    public void setUp() throws Exception {
+        type = DataUtilities.createType("test", "name:String,code:Integer,geom:Point");
+        content = new MemoryContent(type);
+    }
+
+    SimpleFeature feature(int i, int code) {
+        return SimpleFeatureBuilder.build(type, new Object[] { "f" + i, code,
+                gf.createPoint(new Coordinate(random.nextDouble() * 100,
+                        random.nextDouble() * 100)) }, "test." + i);
+    }
+
+    List<SimpleFeature> read(Filter filter, Snapshot snapshot) {
+        List<SimpleFeature> result = new ArrayList<SimpleFeature>();
+        for (Record record : content.candidates(filter)) {
+            SimpleFeature feature = record.visible(snapshot.version);
+            if (feature != null && filter.evaluate(feature)) {
+                result.add(feature);
+            }
+        }
+        return result;
+    }
+
+    List<SimpleFeature> scan(Filter filter) {
+        return scan(content, filter);
+    }
+
+    List<SimpleFeature> scan(MemoryContent content, Filter filter) {
+        List<SimpleFeature> result = new ArrayList<SimpleFeature>();
+        for (SimpleFeature feature : content.asMap().values()) {
+            if (filter.evaluate(feature)) {
+                result.add(feature);
+            }
+        }
+        return result;
+    }
+
+    List<SimpleFeature> query(Filter filter) {
+        Snapshot snapshot = content.open();
+        try {
+            return read(filter, snapshot);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    @Test
+    public void testSnapshotIsolation() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            content.put(feature(i, i));
+        }
+        Snapshot snapshot = content.open();
+        try {
+            content.put(feature(10, 10));
+            content.remove("test.0");
+            content.put(feature(1, 100));
+
+            List<SimpleFeature> seen = read(Filter.INCLUDE, snapshot);
+            assertEquals(10, seen.size());
+            assertEquals("test.0", seen.get(0).getID());
+            assertEquals(1, seen.get(1).getAttribute("code"));
+
+            List<SimpleFeature> current = query(Filter.INCLUDE);
+            assertEquals(10, current.size());
+            assertEquals("test.1", current.get(0).getID());
+            assertEquals(100, current.get(0).getAttribute("code"));
+            assertEquals("test.10", current.get(9).getID());
+            assertEquals(10, content.size);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    @Test
+    public void testPruning() throws Exception {
+        content.put(feature(1, 1));
+        Snapshot snapshot = content.open();
+        content.put(feature(1, 2));
+        content.put(feature(1, 3));
+        content.put(feature(2, 1));
+        content.remove("test.2");
+        Record record = content.byId.get("test.1");
+        // the version seen by the snapshot is retained
+        assertEquals(1, record.visible(snapshot.version).getAttribute("code"));
+        assertNotNull(record.head.previous);
+
+        snapshot.release();
+        content.put(feature(3, 1));
+        assertNull(record.head.previous);
+        assertEquals(3, record.head.feature.getAttribute("code"));
+        assertFalse(content.byId.containsKey("test.2"));
+        assertEquals(2, content.bySequence.size());
+        assertTrue(content.pending.isEmpty());
+    }
+
+    @Test
+    public void testSpatialIndex() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            content.put(feature(i, i % 10));
+        }
+        Filter bbox = ff.bbox("geom", 20, 20, 40, 50, null);
+        assertEquals(scan(bbox), query(bbox));
+        assertTrue(content.candidates(bbox).size() < 2000);
+
+        // move the features around, enough to force a few rebuilds
+        for (int i = 0; i < 3000; i++) {
+            content.put(feature(random.nextInt(2000), 0));
+            if (i % 7 == 0) {
+                content.remove("test." + random.nextInt(2000));
+            }
+        }
+        assertEquals(scan(bbox), query(bbox));
+        Filter and = ff.and(bbox, ff.equals(ff.property("code"), ff.literal(0)));
+        assertEquals(scan(and), query(and));
+    }
+
+    @Test
+    public void testAttributeIndex() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            content.put(feature(i, i % 10));
+        }
+        content.createAttributeIndex("code");
+        Filter equal = ff.equals(ff.property("code"), ff.literal("3"));
+        assertEquals(10, content.candidates(equal).size());
+        assertEquals(scan(equal), query(equal));
+
+        content.put(feature(5, 3));
+        content.put(feature(3, 7));
+        content.put(feature(200, 3));
+        assertEquals(scan(equal), query(equal));
+        assertEquals(11, query(equal).size());
+        // the replaced values are dropped from the index once no snapshot can see them
+        content.put(feature(201, 0));
+        assertEquals(11, content.candidates(equal).size());
+
+        Filter missing = ff.equals(ff.property("code"), ff.literal(12));
+        assertTrue(content.candidates(missing).isEmpty());
+
+        try {
+            content.createAttributeIndex("geom");
+            fail("Geometries cannot be indexed by value");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+    }
+
+    @Test
+    public void testAttributeIndexLenientEquality() throws Exception {
+        SimpleFeatureType lenient = DataUtilities.createType("lenient",
+                "name:String,amount:java.math.BigDecimal,stamp:java.util.Date,code:Integer");
+        content = new MemoryContent(lenient);
+        content.put(SimpleFeatureBuilder.build(lenient, new Object[] { "1.0",
+                new BigDecimal("1.0"), new Timestamp(1000), 1 }, "lenient.1"));
+        content.put(SimpleFeatureBuilder.build(lenient, new Object[] { "1", new BigDecimal("1"),
+                new Date(1000), 2 }, "lenient.2"));
+        content.put(SimpleFeatureBuilder.build(lenient, new Object[] { "a",
+                new BigDecimal("2"), new Date(2000), 3 }, "lenient.3"));
+        content.createAttributeIndex("name");
+        content.createAttributeIndex("amount");
+        content.createAttributeIndex("stamp");
+        content.createAttributeIndex("code");
+
+        // the index never misses values the filter considers equal
+        List<Filter> filters = Arrays.asList(
+                ff.equals(ff.property("name"), ff.literal(1)),
+                ff.equals(ff.property("name"), ff.literal("1")),
+                ff.equals(ff.property("amount"), ff.literal(1)),
+                ff.equals(ff.property("amount"), ff.literal(new BigDecimal("1.00"))),
+                ff.equals(ff.property("stamp"), ff.literal(new Date(1000))),
+                ff.equals(ff.property("code"), ff.literal(1.0)),
+                ff.equals(ff.property("code"), ff.literal(new BigDecimal("2.0"))),
+                ff.equals(ff.property("code"), ff.literal("3.0")),
+                ff.equals(ff.property("code"), ff.literal(1L << 40)));
+        for (Filter filter : filters) {
+            assertEquals(filter.toString(), scan(filter), query(filter));
+        }
+        assertEquals(2, query(filters.get(0)).size());
+        assertEquals(2, query(filters.get(2)).size());
+        assertEquals(2, query(filters.get(4)).size());
+        assertEquals(1, content.candidates(filters.get(5)).size());
+
+        // values of a class other than the binding disable the index
+        assertTrue(content.inexactIndexes.contains("stamp"));
+        assertFalse(content.inexactIndexes.contains("code"));
+    }
+
+    @Test
+    public void testMapView() throws Exception {
+        Map<String, SimpleFeature> map = content.asMap();
+        SimpleFeature f1 = feature(1, 1);
+        map.put(f1.getID(), f1);
+        map.put("test.2", feature(2, 2));
+        assertEquals(2, map.size());
+        assertSame(f1, map.get("test.1"));
+        try {
+            map.put("test.3", feature(4, 4));
+            fail("Keys must match the feature id");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+
+        Iterator<SimpleFeature> it = map.values().iterator();
+        assertSame(f1, it.next());
+        it.remove();
+        assertFalse(map.containsKey("test.1"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testDataStoreQuery() throws Exception {
+        MemoryDataStore store = new MemoryDataStore(type);
+        for (int i = 0; i < 100; i++) {
+            store.addFeature(feature(i, i % 10));
+        }
+        store.createAttributeIndex("test", "code");
+        Filter filter = ff.and(ff.equals(ff.property("code"), ff.literal(4)),
+                ff.bbox("geom", 0, 0, 50, 50, null));
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = store.getFeatureReader(
+                new Query("test", filter), Transaction.AUTO_COMMIT);
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        try {
+            while (reader.hasNext()) {
+                features.add(reader.next());
+            }
+        } finally {
+            reader.close();
+        }
+        MemoryContent stored = store.entry("test").content;
+        assertEquals(features.size(), scan(stored, filter).size());
+        assertTrue(stored.readers.isEmpty());
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.store.FeatureTypeStatistics.Histogram;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class QueryPlannerTest {
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    MemoryDataStore store;
+
+    ContentFeatureSource source;
+
+    @Before
+    public void setUp() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("points", "geom:Point,value:Integer");
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        GeometryFactory gf = new GeometryFactory();
+        store = new MemoryDataStore();
+        store.createSchema(type);
+        // 100 x 100 grid of points, values from 0 to 9999
+        for (int i = 0; i < 10000; i++) {
+            fb.add(gf.createPoint(new Coordinate(i % 100, i / 100)));
+            fb.add(i);
+            store.addFeature(fb.buildFeature("points." + i));
+        }
+        source = (ContentFeatureSource) store.getFeatureSource("points");
+    }
+
+    @Test
+    public void testHistogram() {
+        double[] sample = new double[1000];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = i;
+        }
+        Histogram histogram = new Histogram(sample, 1000, 1000, 10);
+        assertEquals(1000, histogram.getDistinct(), 1e-6);
+        assertEquals(0, histogram.getNullFraction(), 1e-6);
+        assertEquals(0.1, histogram.getRangeSelectivity(0, 99), 0.01);
+        assertEquals(0.5, histogram.getRangeSelectivity(500, Double.POSITIVE_INFINITY), 0.01);
+        assertEquals(0, histogram.getRangeSelectivity(2000, 3000), 1e-6);
+        assertEquals(0.001, histogram.getEqualSelectivity(10), 1e-6);
+        assertEquals(0, histogram.getEqualSelectivity(-1), 1e-6);
+    }
+
+    @Test
+    public void testHistogramSkewed() {
+        // half of the sampled features are null, 90% of the others have the same value
+        double[] sample = new double[500];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = i < 450 ? 7 : i;
+        }
+        Histogram histogram = new Histogram(sample, 1000, 1000, 10);
+        assertEquals(0.5, histogram.getNullFraction(), 1e-6);
+        assertEquals(0.45, histogram.getEqualSelectivity(7), 0.05);
+        assertTrue(histogram.getEqualSelectivity(460) < 0.01);
+    }
+
+    @Test
+    public void testEstimator() throws Exception {
+        ReferencedEnvelope bounds = new ReferencedEnvelope(0, 100, 0, 100, null);
+        SelectivityEstimator estimator = new SelectivityEstimator(new FeatureTypeStatistics(
+                1000, bounds));
+
+        assertEquals(1, estimator.estimate(Filter.INCLUDE), 1e-6);
+        assertEquals(0, estimator.estimate(Filter.EXCLUDE), 1e-6);
+
+        Filter bbox = FF.bbox("geom", 0, 0, 10, 10, null);
+        assertEquals(0.01, estimator.estimate(bbox), 1e-6);
+        Filter outside = FF.bbox("geom", 200, 200, 300, 300, null);
+        assertEquals(0, estimator.estimate(outside), 1e-6);
+
+        Filter equal = FF.equals(FF.property("value"), FF.literal(10));
+        assertEquals(SelectivityEstimator.DEFAULT_EQUALITY, estimator.estimate(equal), 1e-6);
+        assertEquals(0.01 * SelectivityEstimator.DEFAULT_EQUALITY,
+                estimator.estimate(FF.and(bbox, equal)), 1e-9);
+        assertEquals(1 - 0.99 * (1 - SelectivityEstimator.DEFAULT_EQUALITY),
+                estimator.estimate(FF.or(bbox, equal)), 1e-9);
+        assertEquals(0.99, estimator.estimate(FF.not(bbox)), 1e-6);
+
+        Filter ids = FF.id(Collections.singleton(FF.featureId("points.1")));
+        assertEquals(0.001, estimator.estimate(ids), 1e-6);
+    }
+
+    @Test
+    public void testEstimatorHistogram() throws Exception {
+        double[] sample = new double[1000];
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = i;
+        }
+        Histogram histogram = new Histogram(sample, 1000, 1000, 10);
+        SelectivityEstimator estimator = new SelectivityEstimator(new FeatureTypeStatistics(
+                1000, null, Collections.singletonMap("value", histogram)));
+
+        assertEquals(0.1, estimator.estimate(FF.less(FF.property("value"), FF.literal(100))),
+                0.01);
+        assertEquals(0.1, estimator.estimate(FF.greater(FF.literal(100), FF.property("value"))),
+                0.01);
+        assertEquals(0.5, estimator.estimate(FF.greaterOrEqual(FF.property("value"),
+                FF.literal(500))), 0.01);
+        assertEquals(0.2, estimator.estimate(FF.between(FF.property("value"), FF.literal(200),
+                FF.literal(399))), 0.01);
+        assertEquals(0.001, estimator.estimate(FF.equals(FF.property("value"), FF.literal(5))),
+                1e-6);
+        // no histogram for the other attributes
+        assertEquals(SelectivityEstimator.DEFAULT_RANGE,
+                estimator.estimate(FF.less(FF.property("other"), FF.literal(100))), 1e-6);
+    }
+
+    @Test
+    public void testChooseAccessPath() throws Exception {
+        QueryPlanner planner = new QueryPlanner();
+        Filter small = FF.bbox("geom", 0, 0, 5, 5, null);
+        List<AccessPath> paths = Arrays.asList(AccessPath.fullScan(), new AccessPath(
+                AccessPath.Type.SPATIAL_INDEX, "test index", small, -1));
+        QueryPlan plan = planner.plan(source, new Query("points", small), paths);
+        assertEquals(AccessPath.Type.SPATIAL_INDEX, plan.getAccessPath().getType());
+        assertEquals(2, plan.getCandidates().size());
+        assertEquals(10000, plan.getCandidates().get(0).getRows(), 1e-6);
+
+        // reading most of the features out of order is more expensive than a full scan
+        Filter large = FF.bbox("geom", 0, 0, 90, 90, null);
+        paths = Arrays.asList(AccessPath.fullScan(), new AccessPath(
+                AccessPath.Type.SPATIAL_INDEX, "test index", large, -1));
+        plan = planner.plan(source, new Query("points", large), paths);
+        assertEquals(AccessPath.Type.FULL_SCAN, plan.getAccessPath().getType());
+
+        // an exact estimate provided by the feature source wins over the statistics
+        paths = Arrays.asList(AccessPath.fullScan(), new AccessPath(
+                AccessPath.Type.ATTRIBUTE_INDEX, "test index", large, 10));
+        plan = planner.plan(source, new Query("points", large), paths);
+        assertEquals(AccessPath.Type.ATTRIBUTE_INDEX, plan.getAccessPath().getType());
+        assertEquals(10, plan.getChosen().getRows(), 1e-6);
+    }
+
+    @Test
+    public void testExplain() throws Exception {
+        Filter filter = FF.bbox("geom", 0, 0, 49.5, 99.5, null);
+        QueryPlan plan = source.explain(new Query("points", filter));
+        assertEquals(AccessPath.Type.FULL_SCAN, plan.getAccessPath().getType());
+        assertEquals(10000, plan.getStatistics().getCount());
+        assertEquals(0.5, plan.getSelectivity(), 0.01);
+        assertEquals(1, plan.getPostProcessing().size());
+        assertTrue(plan.getPostProcessing().get(0).startsWith("filter"));
+
+        String explain = plan.toString();
+        assertTrue(explain.contains("Query plan for points"));
+        assertTrue(explain.contains("* FULL_SCAN"));
+    }
+
+    @Test
+    public void testStatisticsCached() throws Exception {
+        Query query = new Query("points", FF.bbox("geom", 0, 0, 10, 10, null));
+        FeatureTypeStatistics statistics = source.explain(query).getStatistics();
+        assertEquals(10000, statistics.getCount());
+        assertSame(statistics, source.explain(query).getStatistics());
+
+        // read again once expired
+        store.getQueryPlanner().setStatisticsMaxAge(0);
+        FeatureTypeStatistics refreshed = source.explain(query).getStatistics();
+        assertNotSame(statistics, refreshed);
+        assertEquals(10000, refreshed.getCount());
+    }
+
+    @Test
+    public void testHistogramsCached() throws Exception {
+        QueryPlanner planner = store.getQueryPlanner();
+        planner.setHistogramsEnabled(true);
+        planner.setSampleSize(1000);
+        assertNull(source.getState().getStatistics());
+
+        Filter filter = FF.less(FF.property("value"), FF.literal(1000));
+        QueryPlan plan = source.explain(new Query("points", filter));
+        assertEquals(0.1, plan.getSelectivity(), 0.03);
+        FeatureTypeStatistics statistics = source.getState().getStatistics();
+        assertNotNull(statistics);
+        Histogram histogram = statistics.getHistogram("value");
+        assertNotNull(histogram);
+
+        // reused by the following queries
+        plan = source.explain(new Query("points", FF.greater(FF.property("value"),
+                FF.literal(5000))));
+        assertSame(histogram, plan.getStatistics().getHistogram("value"));
+        assertEquals(0.5, plan.getSelectivity(), 0.05);
+    }
+}
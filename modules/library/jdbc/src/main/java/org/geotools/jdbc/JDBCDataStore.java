@@ -42,6 +42,10 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -74,6 +78,7 @@ import org.geotools.feature.visitor.GroupByVisitor;
 import org.geotools.feature.visitor.LimitingVisitor;
 import org.geotools.filter.FilterCapabilities;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.geometry.jts.TileGrid;
 import org.geotools.jdbc.JoinInfo.JoinPart;
 import org.geotools.referencing.CRS;
 import org.geotools.util.Converters;
@@ -284,6 +289,20 @@ public final class JDBCDataStore extends ContentDataStore
      */
     protected int batchInsertSize = 1;
 
+    /**
+     * The number of threads used to decode geometries while reading. When positive, and the
+     * dialect supports it, readers scroll the result set in a background thread and decode
+     * the rows in parallel. Defaults to 0, meaning all the work is done in the calling thread.
+     */
+    protected int decodingThreads = 0;
+
+    /**
+     * Executors used by the pipelined readers, created lazily
+     */
+    ExecutorService fetchExecutor;
+
+    ExecutorService decodingExecutor;
+
     /**
      * flag controlling whether primary key columns of a table are exposed via the 
      * feature type.
@@ -447,6 +466,78 @@ public final class JDBCDataStore extends ContentDataStore
         this.batchInsertSize = batchInsertSize;
     }
 
+    /**
+     * @return the number of threads used to decode geometries while reading, 0 if the decoding
+     *         happens in the calling thread
+     */
+    public int getDecodingThreads() {
+        return decodingThreads;
+    }
+
+    /**
+     * Sets the number of threads used to decode geometries while reading. When positive, and
+     * the dialect supports raw geometry decoding (see
+     * {@link SQLDialect#isRawGeometryDecodingSupported()}), readers will scroll the result set
+     * in a background thread, and decode the geometries and build the features in parallel,
+     * returning them in the original order.
+     * 
+     * @param decodingThreads
+     */
+    public synchronized void setDecodingThreads(int decodingThreads) {
+        this.decodingThreads = decodingThreads;
+        if (decodingExecutor != null) {
+            decodingExecutor.shutdown();
+            decodingExecutor = null;
+        }
+    }
+
+    /**
+     * Returns true if the readers for this store should use the pipelined mode
+     */
+    boolean isPipelinedReadEnabled() {
+        return decodingThreads > 0 && dialect.isRawGeometryDecodingSupported();
+    }
+
+    /**
+     * The executor scrolling the result sets in pipelined reads, one thread per open reader
+     */
+    synchronized ExecutorService getFetchExecutor() {
+        if (fetchExecutor == null) {
+            fetchExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("fetch"));
+        }
+        return fetchExecutor;
+    }
+
+    /**
+     * The executor decoding geometries in pipelined reads, shared among all readers
+     */
+    synchronized ExecutorService getDecodingExecutor() {
+        if (decodingExecutor == null) {
+            decodingExecutor = Executors.newFixedThreadPool(Math.max(1, decodingThreads),
+                    new DaemonThreadFactory("decoder"));
+        }
+        return decodingExecutor;
+    }
+
+    /**
+     * Builds daemon threads, so that the pipelined readers never prevent the JVM from exiting
+     */
+    static class DaemonThreadFactory implements ThreadFactory {
+        final AtomicInteger count = new AtomicInteger();
+
+        final String prefix;
+
+        DaemonThreadFactory(String role) {
+            this.prefix = "gt-jdbc-" + role + "-";
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
     /**
      * Determines if the datastore creates feature types which include those columns / attributes
      * which compose the primary key.
@@ -1865,6 +1956,48 @@ public final class JDBCDataStore extends ContentDataStore
         }
     }
 
+    /**
+     * Returns the attributes a bulk load of the feature type would write, that is, all of them
+     * but the exposed primary key columns, or null if the table cannot be bulk loaded: the
+     * dialect does not support it, the table is a virtual one, or the primary key values are
+     * not generated by the database.
+     */
+    List<AttributeDescriptor> getBulkLoadAttributes(SimpleFeatureType featureType)
+            throws IOException {
+        if (virtualTables.containsKey(featureType.getTypeName())
+                || !isGenerated(getPrimaryKey(featureType))) {
+            return null;
+        }
+        List<AttributeDescriptor> attributes = new ArrayList<AttributeDescriptor>();
+        for (AttributeDescriptor ad : featureType.getAttributeDescriptors()) {
+            if (!Boolean.TRUE.equals(ad.getUserData().get(JDBC_PRIMARY_KEY_COLUMN))) {
+                attributes.add(ad);
+            }
+        }
+        return dialect.isBulkLoadSupported(featureType, attributes) ? attributes : null;
+    }
+
+    /**
+     * Loads a collection of new features into the database for a particular feature type / table,
+     * using the dialect native bulk operation. The attributes are the ones returned by
+     * {@link #getBulkLoadAttributes(SimpleFeatureType)}.
+     */
+    protected int bulkLoad(SimpleFeatureType featureType, List<AttributeDescriptor> attributes,
+            SimpleFeatureCollection features, Connection cx) throws IOException {
+        SimpleFeatureIterator it = features.features();
+        try {
+            StringBuffer table = new StringBuffer();
+            encodeTableName(featureType.getTypeName(), table, null);
+            LOGGER.log(Level.FINE, "Bulk loading features into {0}", table);
+            return dialect.bulkLoad(featureType, table.toString(), attributes, it, cx);
+        } catch (SQLException e) {
+            String msg = "Error bulk loading features";
+            throw (IOException) new IOException(msg).initCause(e);
+        } finally {
+            it.close();
+        }
+    }
+
     /**
      * Updates an existing feature(s) in the database for a particular feature type / table.
      */
@@ -4663,6 +4796,16 @@ public final class JDBCDataStore extends ContentDataStore
     
     public void dispose() {
         super.dispose();
+        synchronized (this) {
+            if (fetchExecutor != null) {
+                fetchExecutor.shutdownNow();
+                fetchExecutor = null;
+            }
+            if (decodingExecutor != null) {
+                decodingExecutor.shutdownNow();
+                decodingExecutor = null;
+            }
+        }
         if(dataSource != null && dataSource instanceof ManageableDataSource) {
             try {
                 ManageableDataSource mds = (ManageableDataSource) dataSource; 
@@ -4715,6 +4858,20 @@ public final class JDBCDataStore extends ContentDataStore
     	return true;    		
     }
 
+    /**
+     * Returns the tile grid geometries should be clipped and snapped to, or null if the
+     * {@link Hints#GEOMETRY_TILE_GRID} hint was not provided
+     *
+     * @param hints hints passed in, may be null
+     */
+    protected TileGrid getTileGrid(Hints hints) {
+        if (hints == null) {
+            return null;
+        }
+        Object grid = hints.get(Hints.GEOMETRY_TILE_GRID);
+        return grid instanceof TileGrid ? (TileGrid) grid : null;
+    }
+
     /**
      * Encoding a geometry column with respect to hints
      * Supported Hints are provided by {@link SQLDialect#addSupportedHints(Set)}
@@ -4730,6 +4887,12 @@ public final class JDBCDataStore extends ContentDataStore
     protected void encodeGeometryColumn(GeometryDescriptor gatt, String prefix, StringBuffer sql,Hints hints) {
     	
     	int srid = getDescriptorSRID(gatt);
+        TileGrid grid = getTileGrid(hints);
+        if (grid != null) {
+            dialect.encodeGeometryColumnTiled(gatt, prefix, srid, sql, grid);
+            return;
+        }
+
     	if (isGeneralizationRequired(hints, gatt)==true) {
     		Double distance = (Double) hints.get(Hints.GEOMETRY_GENERALIZATION);
     		dialect.encodeGeometryColumnGeneralized(gatt, prefix, srid,sql,distance);
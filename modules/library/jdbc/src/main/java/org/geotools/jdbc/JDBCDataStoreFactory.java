@@ -103,6 +103,11 @@ public abstract class JDBCDataStoreFactory implements DataStoreFactorySpi {
     public static final Param BATCH_INSERT_SIZE = new Param("Batch insert size", Integer.class,
             "Number of records inserted in the same batch (default, 1). For optimal performance, set to 100.", false, 1);
 
+    /** If positive, geometries are decoded in parallel while the result set is being read */
+    public static final Param DECODING_THREADS = new Param("Geometry decoding threads", Integer.class,
+            "Number of threads decoding geometries in parallel while reading (default, 0, decodes in the reading thread). "
+            + "Only used if the database dialect supports it.", false, 0);
+
     /** Maximum amount of time the pool will wait when trying to grab a new connection **/
     public static final Param MAXWAIT = new Param("Connection timeout", Integer.class,
             "number of seconds the connection pool will wait before timing out attempting to get a new connection (default, 20 seconds)", false, 20);
@@ -221,6 +226,11 @@ public abstract class JDBCDataStoreFactory implements DataStoreFactorySpi {
             dataStore.setBatchInsertSize(batchInsertSize);
         }
 
+        Integer decodingThreads = (Integer) DECODING_THREADS.lookUp(params);
+        if (decodingThreads != null && decodingThreads > 0) {
+            dataStore.setDecodingThreads(decodingThreads);
+        }
+
         // namespace
         String namespace = (String) NAMESPACE.lookUp(params);
 
@@ -353,6 +363,7 @@ public abstract class JDBCDataStoreFactory implements DataStoreFactorySpi {
         parameters.put(MINCONN.key, MINCONN);
         parameters.put(FETCHSIZE.key, FETCHSIZE);
         parameters.put(BATCH_INSERT_SIZE.key, BATCH_INSERT_SIZE);
+        parameters.put(DECODING_THREADS.key, DECODING_THREADS);
         parameters.put(MAXWAIT.key, MAXWAIT);
         if(getValidationQuery() != null)
             parameters.put(VALIDATECONN.key, VALIDATECONN);
@@ -45,6 +45,7 @@ import org.geotools.feature.type.Types;
 import org.geotools.filter.identity.FeatureIdImpl;
 import org.geotools.geometry.jts.CurvedGeometryFactory;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.geometry.jts.TileGrid;
 import org.geotools.util.Converters;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.FeatureFactory;
@@ -101,6 +102,11 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
      * hints
      */
     protected Hints hints;
+    /**
+     * the tile grid geometries are clipped and snapped to, if any (see
+     * {@link Hints#GEOMETRY_TILE_GRID})
+     */
+    protected TileGrid tileGrid;
     /**
      * current transaction
      */
@@ -201,6 +207,7 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
         this.featureType = featureType;
         this.tx = featureSource.getTransaction();
         this.hints = hints;
+        this.tileGrid = dataStore.getTileGrid(hints);
         
         //grab a geometry factory... check for a special hint
         geometryFactory = (GeometryFactory) hints.get(Hints.JTS_GEOMETRY_FACTORY);
@@ -246,6 +253,7 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
         this.featureSource = other.featureSource;
         this.tx = other.tx;
         this.hints = other.hints;
+        this.tileGrid = other.tileGrid;
         this.geometryFactory = other.geometryFactory;
         this.builder = other.builder;
         this.st = other.st;
@@ -338,9 +346,15 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
                         
                         //read the geometry
                         try {
-                            value = dataStore.getSQLDialect()
+                            if (tileGrid != null) {
+                                value = dataStore.getSQLDialect().decodeTiledGeometryValue(
+                                        gatt, rs, offset + attributeRsIndex[i], tileGrid,
+                                        geometryFactory, cx);
+                            } else {
+                                value = dataStore.getSQLDialect()
                                              .decodeGeometryValue(gatt, rs, offset+attributeRsIndex[i],
                                     geometryFactory, cx);
+                            }
                         } catch (IOException e) {
                             throw new RuntimeException(e);
                         }
@@ -401,7 +415,7 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
      * and the fact that exposed pk can be only partially selected in the output
      * @return
      */
-    private int[] buildAttributeRsIndex() {
+    int[] buildAttributeRsIndex() {
         LinkedHashSet<String> pkColumns = dataStore.getColumnNames(pkey);
         List<String> pkColumnsList = new ArrayList<String>(pkColumns);
         int[] indexes = new int[featureType.getAttributeCount()];
@@ -647,8 +661,14 @@ public class JDBCFeatureReader implements  FeatureReader<SimpleFeatureType, Simp
                                 AttributeDescriptor att = featureType.getDescriptor(index);
                                 if ( att instanceof GeometryDescriptor ) {
                                     GeometryDescriptor gatt = (GeometryDescriptor) att;
-                                    values[index] = dataStore.getSQLDialect()
-                                        .decodeGeometryValue( gatt, rs, rsindex, dataStore.getGeometryFactory(), st.getConnection() );
+                                    if (tileGrid != null) {
+                                        values[index] = dataStore.getSQLDialect()
+                                            .decodeTiledGeometryValue(gatt, rs, rsindex, tileGrid,
+                                                    dataStore.getGeometryFactory(), st.getConnection());
+                                    } else {
+                                        values[index] = dataStore.getSQLDialect()
+                                            .decodeGeometryValue( gatt, rs, rsindex, dataStore.getGeometryFactory(), st.getConnection() );
+                                    }
                                 }
                                 else {
                                     values[index] = rs.getObject( rsindex );    
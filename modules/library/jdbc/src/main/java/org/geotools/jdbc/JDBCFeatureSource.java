@@ -608,15 +608,24 @@ public class JDBCFeatureSource extends ContentFeatureSource {
 
             if (query.getJoins().isEmpty()) {
                 //regular query
+                boolean pipelined = getDataStore().isPipelinedReadEnabled();
                 if ( dialect instanceof PreparedStatementSQLDialect ) {
                     PreparedStatement ps = getDataStore().selectSQLPS(querySchema, preQuery, cx);
-                    reader = new JDBCFeatureReader( ps, cx, this, querySchema, query.getHints() );
+                    if (pipelined) {
+                        reader = new JDBCPipelinedFeatureReader(ps, cx, this, querySchema, query.getHints());
+                    } else {
+                        reader = new JDBCFeatureReader( ps, cx, this, querySchema, query.getHints() );
+                    }
                 } else {
                     //build up a statement for the content
                     String sql = getDataStore().selectSQL(querySchema, preQuery);
                     getDataStore().getLogger().fine(sql);
         
-                    reader = new JDBCFeatureReader( sql, cx, this, querySchema, query.getHints() );
+                    if (pipelined) {
+                        reader = new JDBCPipelinedFeatureReader(sql, cx, this, querySchema, query.getHints());
+                    } else {
+                        reader = new JDBCFeatureReader( sql, cx, this, querySchema, query.getHints() );
+                    }
                 }
             }
             else {
@@ -22,6 +22,7 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.geotools.data.FeatureEvent;
@@ -33,6 +34,7 @@ import org.geotools.data.QueryCapabilities;
 import org.geotools.data.ResourceInfo;
 import org.geotools.data.Transaction;
 import org.geotools.data.FeatureEvent.Type;
+import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentFeatureStore;
 import org.geotools.data.store.ContentState;
@@ -399,6 +401,52 @@ public final class JDBCFeatureStore extends ContentFeatureStore {
         }
     }
     
+    /**
+     * Loads all the features of the collection into the table, as quickly as the database
+     * allows.
+     * <p>
+     * If the dialect supports it (see
+     * {@link SQLDialect#isBulkLoadSupported(SimpleFeatureType, java.util.List)}) and the primary
+     * key values are generated by the database, the features are streamed to the table with a
+     * single native bulk operation. In this case the feature ids are not reported back, and a
+     * single {@link Type#ADDED} event covering the collection bounds is issued. Otherwise this
+     * method falls back on {@link #addFeatures(org.geotools.feature.FeatureCollection)}, which uses batched inserts.
+     * </p>
+     * <p>
+     * Meant for large loads, such as a full reload of the table contents: attribute values are
+     * matched by name, and primary key values carried by the features are ignored.
+     * </p>
+     *
+     * @param features The features to be loaded
+     * @return The number of features loaded
+     */
+    public int bulkLoad(SimpleFeatureCollection features) throws IOException {
+        SimpleFeatureType featureType = getSchema();
+        List<AttributeDescriptor> attributes = getDataStore().getBulkLoadAttributes(featureType);
+        if (attributes == null) {
+            return addFeatures(features).size();
+        }
+
+        Transaction tx = getState().getTransaction();
+        Connection cx = null;
+        try {
+            cx = getDataStore().getConnection(tx);
+            int count = getDataStore().bulkLoad(featureType, attributes, features, cx);
+
+            ContentState state = getEntry().getState(transaction);
+            if (count > 0 && state.hasListener()) {
+                ReferencedEnvelope bounds = features.getBounds();
+                FeatureEvent event = new FeatureEvent(this, Type.ADDED, bounds, Filter.INCLUDE);
+                state.fireFeatureEvent(event);
+            }
+            return count;
+        } finally {
+            if (tx == null || tx == Transaction.AUTO_COMMIT) {
+                getDataStore().closeSafe(cx);
+            }
+        }
+    }
+
     @Override
     public void removeFeatures(Filter filter) throws IOException {
         Filter[] splitted = delegate.splitFilter(filter);
@@ -0,0 +1,357 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.geotools.factory.Hints;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.TileGrid;
+import org.geotools.util.Converters;
+import org.opengis.feature.FeatureFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * A {@link JDBCFeatureReader} that overlaps result set scrolling and geometry decoding.
+ * <p>
+ * A background thread scrolls the result set, grabbing the raw attribute values (see
+ * {@link SQLDialect#readRawGeometryValue(GeometryDescriptor, java.sql.ResultSet, int, Connection)}
+ * ) in batches, and hands each batch to the store decoding executor, which decodes the
+ * geometries and builds the features. The pending batches are kept in a bounded queue, in
+ * result set order, so the features are returned in the same order as the non pipelined reader,
+ * and memory usage is bounded regardless of the result size.
+ * <p>
+ * Used by {@link JDBCFeatureSource} when {@link JDBCDataStore#getDecodingThreads()} is positive
+ * and the dialect supports raw geometry decoding. Non geometric values are read with
+ * {@link java.sql.ResultSet#getObject(int)} and must not depend on the result set position,
+ * which is the case for the common drivers.
+ */
+class JDBCPipelinedFeatureReader extends JDBCFeatureReader {
+
+    /**
+     * Maximum number of rows handed to a decoding task
+     */
+    static final int MAX_BATCH_SIZE = 128;
+
+    /**
+     * Marks the end of the results
+     */
+    static final FutureTask<List<SimpleFeature>> END = new FutureTask<List<SimpleFeature>>(
+            new Callable<List<SimpleFeature>>() {
+                public List<SimpleFeature> call() throws Exception {
+                    return null;
+                }
+            });
+
+    BlockingQueue<Future<List<SimpleFeature>>> queue;
+
+    Future<?> fetcher;
+
+    volatile boolean stopped;
+
+    boolean finished;
+
+    Iterator<SimpleFeature> current;
+
+    FeatureFactory featureFactory;
+
+    int batchSize;
+
+    public JDBCPipelinedFeatureReader(String sql, Connection cx,
+            JDBCFeatureSource featureSource, SimpleFeatureType featureType, Hints hints)
+            throws SQLException {
+        super(sql, cx, featureSource, featureType, hints);
+        initPipeline();
+    }
+
+    public JDBCPipelinedFeatureReader(PreparedStatement st, Connection cx,
+            JDBCFeatureSource featureSource, SimpleFeatureType featureType, Hints hints)
+            throws SQLException {
+        super(st, cx, featureSource, featureType, hints);
+        initPipeline();
+    }
+
+    private void initPipeline() {
+        FeatureFactory ff = (FeatureFactory) hints.get(Hints.FEATURE_FACTORY);
+        if (ff == null) {
+            ff = dataStore.getFeatureFactory();
+        }
+        this.featureFactory = ff;
+        int fetchSize = dataStore.getFetchSize();
+        this.batchSize = fetchSize > 0 ? Math.min(fetchSize, MAX_BATCH_SIZE) : MAX_BATCH_SIZE;
+        // enough batches to keep all decoders busy, plus one being consumed
+        this.queue = new ArrayBlockingQueue<Future<List<SimpleFeature>>>(
+                Math.max(2, dataStore.getDecodingThreads() * 2));
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        ensureOpen();
+
+        if (current != null && current.hasNext()) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        if (fetcher == null) {
+            fetcher = dataStore.getFetchExecutor().submit(new Fetcher());
+        }
+
+        try {
+            while (true) {
+                Future<List<SimpleFeature>> batch = queue.take();
+                if (batch == END) {
+                    finished = true;
+                    current = null;
+                    return false;
+                }
+                // if no decoder picked up the batch yet, decode it here, no point waiting
+                if (batch instanceof FutureTask) {
+                    ((FutureTask<List<SimpleFeature>>) batch).run();
+                }
+                List<SimpleFeature> features = batch.get();
+                current = features.iterator();
+                if (current.hasNext()) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the next features", e);
+        } catch (ExecutionException e) {
+            finished = true;
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to read features", cause);
+        }
+    }
+
+    @Override
+    public SimpleFeature next() throws IOException, IllegalArgumentException,
+            NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more features in this reader, you should call "
+                    + "hasNext() to check for feature availability");
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        stopPipeline();
+        super.close();
+    }
+
+    /**
+     * Stops the fetcher and waits for it to release the result set, which is not thread safe
+     * and is going to be closed right after
+     */
+    void stopPipeline() {
+        stopped = true;
+        if (fetcher != null) {
+            cancelPending();
+            try {
+                fetcher.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.FINE, "Result set fetcher failed", e.getCause());
+            }
+            cancelPending();
+            fetcher = null;
+        }
+        current = null;
+    }
+
+    private void cancelPending() {
+        List<Future<List<SimpleFeature>>> pending = new ArrayList<Future<List<SimpleFeature>>>();
+        queue.drainTo(pending);
+        for (Future<List<SimpleFeature>> future : pending) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Scrolls the result set, collecting the raw values in batches and handing them over to
+     * the decoders
+     */
+    class Fetcher implements Callable<Void> {
+
+        public Void call() throws Exception {
+            try {
+                Connection cx = st.getConnection();
+                int[] attributeRsIndex = buildAttributeRsIndex();
+                SQLDialect dialect = dataStore.getSQLDialect();
+                int attributeCount = featureType.getAttributeCount();
+                List<Object[]> rows = new ArrayList<Object[]>(batchSize);
+                while (!stopped && rs.next()) {
+                    // the fid first, then the attributes
+                    Object[] row = new Object[attributeCount + 1];
+                    String fid = dataStore.encodeFID(pkey, rs, offset);
+                    row[0] = featureType.getTypeName() + "." + fid;
+                    for (int i = 0; i < attributeCount; i++) {
+                        AttributeDescriptor ad = featureType.getDescriptor(i);
+                        int column = offset + attributeRsIndex[i];
+                        if (ad instanceof GeometryDescriptor) {
+                            row[i + 1] = dialect.readRawGeometryValue((GeometryDescriptor) ad,
+                                    rs, column, cx);
+                        } else {
+                            row[i + 1] = rs.getObject(column);
+                        }
+                    }
+                    rows.add(row);
+                    if (rows.size() == batchSize) {
+                        publish(rows);
+                        rows = new ArrayList<Object[]>(batchSize);
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    publish(rows);
+                }
+            } catch (final Exception e) {
+                FutureTask<List<SimpleFeature>> failure = new FutureTask<List<SimpleFeature>>(
+                        new Callable<List<SimpleFeature>>() {
+                            public List<SimpleFeature> call() throws Exception {
+                                throw e;
+                            }
+                        });
+                failure.run();
+                put(failure);
+            } finally {
+                put(END);
+            }
+            return null;
+        }
+
+        private void publish(List<Object[]> rows) throws InterruptedException {
+            FutureTask<List<SimpleFeature>> task = new FutureTask<List<SimpleFeature>>(
+                    new Decoder(rows));
+            if (put(task)) {
+                try {
+                    dataStore.getDecodingExecutor().execute(task);
+                } catch (RejectedExecutionException e) {
+                    // the store is being disposed, the consumer will run the task by itself
+                    LOGGER.log(Level.FINE, "Decoding executor rejected the task", e);
+                }
+            }
+        }
+
+        /**
+         * Adds the batch to the queue, waiting for space to be available unless the reader is
+         * stopped. Returns true if the batch was added.
+         */
+        private boolean put(Future<List<SimpleFeature>> batch) throws InterruptedException {
+            while (!stopped) {
+                if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Decodes a batch of raw rows into features
+     */
+    class Decoder implements Callable<List<SimpleFeature>> {
+        final List<Object[]> rows;
+
+        // the reader state is grabbed upfront, the reader might be closed in the meantime
+        final SimpleFeatureType featureType = JDBCPipelinedFeatureReader.this.featureType;
+
+        final SQLDialect dialect = dataStore.getSQLDialect();
+
+        final GeometryFactory geometryFactory = JDBCPipelinedFeatureReader.this.geometryFactory;
+
+        final TileGrid tileGrid = JDBCPipelinedFeatureReader.this.tileGrid;
+
+        Decoder(List<Object[]> rows) {
+            this.rows = rows;
+        }
+
+        public List<SimpleFeature> call() throws Exception {
+            if (stopped) {
+                return new ArrayList<SimpleFeature>();
+            }
+            final int attributeCount = featureType.getAttributeCount();
+            final SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType,
+                    featureFactory);
+
+            List<SimpleFeature> features = new ArrayList<SimpleFeature>(rows.size());
+            for (Object[] row : rows) {
+                for (int i = 0; i < attributeCount; i++) {
+                    AttributeDescriptor ad = featureType.getDescriptor(i);
+                    Object value = row[i + 1];
+                    if (ad instanceof GeometryDescriptor) {
+                        GeometryDescriptor gd = (GeometryDescriptor) ad;
+                        Geometry geometry;
+                        if (tileGrid != null) {
+                            geometry = dialect.decodeRawTiledGeometryValue(gd, value, tileGrid,
+                                    geometryFactory);
+                        } else {
+                            geometry = dialect.decodeRawGeometryValue(gd, value,
+                                    geometryFactory);
+                        }
+                        if (geometry != null && geometry.getUserData() == null) {
+                            // if not set, set from descriptor
+                            geometry.setUserData(gd.getCoordinateReferenceSystem());
+                        }
+                        value = geometry;
+                    }
+
+                    // same conversion logic as the non pipelined reader
+                    if (value != null) {
+                        Class<?> binding = ad.getType().getBinding();
+                        Object converted = Converters.convert(value, binding);
+                        if (converted != null && converted != value) {
+                            value = converted;
+                        }
+                    }
+                    builder.add(value);
+                }
+                features.add(builder.buildFeature((String) row[0]));
+            }
+            return features;
+        }
+    }
+
+}
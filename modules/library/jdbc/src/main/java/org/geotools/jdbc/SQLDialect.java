@@ -37,6 +37,7 @@ import java.util.logging.Logger;
 
 import org.geotools.data.Join.Type;
 import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.factory.Hints;
 import org.geotools.feature.visitor.CountVisitor;
 import org.geotools.feature.visitor.MaxVisitor;
@@ -45,6 +46,7 @@ import org.geotools.feature.visitor.SumVisitor;
 import org.geotools.feature.visitor.UniqueVisitor;
 import org.geotools.filter.FilterCapabilities;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.geometry.jts.TileGrid;
 import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.FeatureVisitor;
@@ -822,6 +824,42 @@ public abstract class SQLDialect {
         throw new UnsupportedOperationException("Geometry simplification not supported");
     }
 
+    /**
+     * Encodes a geometry clipped to the tile grid clip envelope, with coordinates snapped to the
+     * grid cells, in a compact form that will be decoded by
+     * {@link #decodeTiledGeometryValue(GeometryDescriptor, ResultSet, int, TileGrid, GeometryFactory, Connection)}.
+     * If not supported, subclasses should not implement.
+     * Only called if {@link Hints#GEOMETRY_TILE_GRID} is supported, see
+     * {@link #addSupportedHints(Set)}
+     */
+    public void encodeGeometryColumnTiled(GeometryDescriptor gatt, String prefix, int srid,
+            StringBuffer sql, TileGrid grid) {
+        throw new UnsupportedOperationException("Geometry tiling not supported");
+    }
+
+    /**
+     * Decodes a geometry encoded by
+     * {@link #encodeGeometryColumnTiled(GeometryDescriptor, String, int, StringBuffer, TileGrid)}
+     * , returning it in native coordinates.
+     */
+    public Geometry decodeTiledGeometryValue(GeometryDescriptor descriptor, ResultSet rs,
+            int column, TileGrid grid, GeometryFactory factory, Connection cx)
+            throws IOException, SQLException {
+        throw new UnsupportedOperationException("Geometry tiling not supported");
+    }
+
+    /**
+     * Same as
+     * {@link #decodeRawGeometryValue(GeometryDescriptor, Object, GeometryFactory)}, but for
+     * values encoded by
+     * {@link #encodeGeometryColumnTiled(GeometryDescriptor, String, int, StringBuffer, TileGrid)}
+     * . Only called if both raw geometry decoding and geometry tiling are supported.
+     */
+    public Geometry decodeRawTiledGeometryValue(GeometryDescriptor descriptor, Object raw,
+            TileGrid grid, GeometryFactory factory) throws IOException {
+        throw new UnsupportedOperationException("Geometry tiling not supported");
+    }
+
     /**
      * Decodes a geometry value from the result of a query.
      * <p>
@@ -867,7 +905,90 @@ public abstract class SQLDialect {
         String columnName = rs.getMetaData().getColumnName( column );
         return decodeGeometryValue(descriptor, rs, columnName, factory, cx);
     }
-    
+
+    /**
+     * Returns true if the dialect can split geometry decoding in two steps, grabbing the raw
+     * value from the result set with
+     * {@link #readRawGeometryValue(GeometryDescriptor, ResultSet, int, Connection)} and turning
+     * it into a geometry later with
+     * {@link #decodeRawGeometryValue(GeometryDescriptor, Object, GeometryFactory)}, possibly in
+     * a different thread. This allows the pipelined feature reader to decode geometries in
+     * parallel while the result set is being scrolled.
+     * <p>
+     * The default implementation returns false, dialects returning true must override both
+     * methods above, and make sure the second one is thread safe.
+     * </p>
+     */
+    public boolean isRawGeometryDecodingSupported() {
+        return false;
+    }
+
+    /**
+     * Reads the raw geometry value from the result set, without decoding it. The value must not
+     * depend on the result set or the connection, as it will be decoded after the result set
+     * has moved forward.
+     * <p>
+     * Only called if {@link #isRawGeometryDecodingSupported()} returns true, the default
+     * implementation throws an {@link UnsupportedOperationException}.
+     * </p>
+     */
+    public Object readRawGeometryValue(GeometryDescriptor descriptor, ResultSet rs, int column,
+            Connection cx) throws IOException, SQLException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Turns a raw geometry value, as returned by
+     * {@link #readRawGeometryValue(GeometryDescriptor, ResultSet, int, Connection)}, into a
+     * geometry. Implementations must handle <code>null</code> values, and must be thread safe.
+     * <p>
+     * Only called if {@link #isRawGeometryDecodingSupported()} returns true, the default
+     * implementation throws an {@link UnsupportedOperationException}.
+     * </p>
+     */
+    public Geometry decodeRawGeometryValue(GeometryDescriptor descriptor, Object raw,
+            GeometryFactory factory) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns true if the dialect can load the specified attributes of the feature type with a
+     * native bulk operation, see
+     * {@link #bulkLoad(SimpleFeatureType, String, List, SimpleFeatureIterator, Connection)}.
+     * <p>
+     * The default implementation returns false, in that case {@link JDBCFeatureStore#bulkLoad}
+     * falls back on the batched insert path.
+     * </p>
+     *
+     * @param featureType The target feature type
+     * @param attributes The attributes that will be loaded, primary key columns excluded
+     */
+    public boolean isBulkLoadSupported(SimpleFeatureType featureType,
+            List<AttributeDescriptor> attributes) {
+        return false;
+    }
+
+    /**
+     * Loads all the features into the table with a native bulk operation (e.g., the database
+     * specific bulk copy protocol). Primary key values are left to the database.
+     * <p>
+     * Only called if {@link #isBulkLoadSupported(SimpleFeatureType, List)} returns true, the
+     * default implementation throws an {@link UnsupportedOperationException}.
+     * </p>
+     *
+     * @param featureType The target feature type
+     * @param table The encoded, schema qualified, table name
+     * @param attributes The attributes to be loaded, in column order
+     * @param features The features to be loaded, values are looked up by attribute name
+     * @param cx The database connection
+     * @return The number of features loaded
+     */
+    public int bulkLoad(SimpleFeatureType featureType, String table,
+            List<AttributeDescriptor> attributes, SimpleFeatureIterator features, Connection cx)
+            throws IOException, SQLException {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Encodes the primary key definition in a CREATE TABLE statement.
      * <p>
@@ -1222,6 +1343,7 @@ public abstract class SQLDialect {
      *  
      * {@link Hints#GEOMETRY_GENERALIZATION}
      * {@link Hints#GEOMETRY_SIMPLIFICATION}
+     * {@link Hints#GEOMETRY_TILE_GRID}
      *  
      * @param hints
      */
@@ -16,6 +16,7 @@
  */
 package org.geotools.jdbc;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.geotools.data.DefaultQuery;
@@ -23,6 +24,8 @@ import org.geotools.data.FeatureReader;
 import org.geotools.data.Query;
 import org.geotools.data.Transaction;
 import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
 import org.opengis.feature.type.PropertyDescriptor;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -68,4 +71,65 @@ public abstract class JDBCFeatureReaderOnlineTest extends JDBCTestSupport {
         reader.close();
     }
 
+    public void testPipelinedRead() throws Exception {
+        if (!dataStore.getSQLDialect().isRawGeometryDecodingSupported()) {
+            return;
+        }
+        Query query = new DefaultQuery(tname("ft1"));
+        query.setSortBy(new SortBy[] { dataStore.getFilterFactory().sort(aname("intProperty"),
+                SortOrder.ASCENDING) });
+        List<SimpleFeature> expected = readAll(query);
+
+        int fetchSize = dataStore.getFetchSize();
+        try {
+            // force one feature per batch, to exercise the pipeline
+            dataStore.setFetchSize(1);
+            dataStore.setDecodingThreads(2);
+            FeatureReader reader = dataStore.getFeatureReader(query, Transaction.AUTO_COMMIT);
+            assertTrue(reader instanceof JDBCPipelinedFeatureReader);
+            reader.close();
+
+            List<SimpleFeature> actual = readAll(query);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                SimpleFeature ef = expected.get(i);
+                SimpleFeature af = actual.get(i);
+                assertEquals(ef.getID(), af.getID());
+                assertEquals(ef.getAttributes().size(), af.getAttributes().size());
+                for (int j = 0; j < ef.getAttributeCount(); j++) {
+                    Object ev = ef.getAttribute(j);
+                    Object av = af.getAttribute(j);
+                    if (ev instanceof Geometry) {
+                        assertTrue(((Geometry) ev).equalsExact((Geometry) av));
+                        assertTrue(((Geometry) av).getUserData() instanceof CoordinateReferenceSystem);
+                    } else {
+                        assertEquals(ev, av);
+                    }
+                }
+            }
+
+            // closing before the end must not hang nor leak
+            reader = dataStore.getFeatureReader(query, Transaction.AUTO_COMMIT);
+            assertTrue(reader.hasNext());
+            reader.next();
+            reader.close();
+        } finally {
+            dataStore.setDecodingThreads(0);
+            dataStore.setFetchSize(fetchSize);
+        }
+    }
+
+    List<SimpleFeature> readAll(Query query) throws Exception {
+        List<SimpleFeature> result = new ArrayList<SimpleFeature>();
+        FeatureReader reader = dataStore.getFeatureReader(query, Transaction.AUTO_COMMIT);
+        try {
+            while (reader.hasNext()) {
+                result.add((SimpleFeature) reader.next());
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
 }
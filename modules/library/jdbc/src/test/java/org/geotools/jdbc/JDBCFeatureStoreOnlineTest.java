@@ -112,6 +112,46 @@ public abstract class JDBCFeatureStoreOnlineTest extends JDBCTestSupport {
         }
     }
     
+    public void testBulkLoad() throws IOException {
+        SimpleFeatureBuilder b = new SimpleFeatureBuilder(featureStore.getSchema());
+        DefaultFeatureCollection collection = new DefaultFeatureCollection(null,
+                featureStore.getSchema());
+
+        FeatureEventWatcher watcher = new FeatureEventWatcher();
+
+        for (int i = 3; i < 6; i++) {
+            b.set(aname("intProperty"), new Integer(i));
+            b.set(aname("doubleProperty"), new Double(i + 0.5));
+            b.set(aname("stringProperty"), "bulk" + i);
+            b.set(aname("geometry"), new GeometryFactory().createPoint(new Coordinate(i, i)));
+            collection.add(b.buildFeature(null));
+        }
+        featureStore.addFeatureListener(watcher);
+        assertEquals(3, featureStore.bulkLoad(collection));
+        assertEquals(watcher.bounds, collection.getBounds());
+
+        assertEquals(6, featureStore.getFeatures().size());
+
+        FilterFactory ff = dataStore.getFilterFactory();
+        for (int i = 3; i < 6; i++) {
+            Filter filter = ff.equals(ff.property(aname("intProperty")), ff.literal(i));
+            SimpleFeatureIterator iterator = featureStore.getFeatures(filter).features();
+            try {
+                assertTrue(iterator.hasNext());
+                SimpleFeature feature = iterator.next();
+                assertEquals(i + 0.5, ((Number) feature.getAttribute(aname("doubleProperty")))
+                        .doubleValue(), 0d);
+                assertEquals("bulk" + i, feature.getAttribute(aname("stringProperty")));
+                Point p = (Point) feature.getDefaultGeometry();
+                assertEquals(i, p.getX(), 0d);
+                assertEquals(i, p.getY(), 0d);
+                assertFalse(iterator.hasNext());
+            } finally {
+                iterator.close();
+            }
+        }
+    }
+
     public void testAddFeaturesUseProvidedFid() throws IOException {
         // check we advertise the ability to reuse feature ids
         assertTrue(featureStore.getQueryCapabilities().isUseProvidedFIDSupported());
@@ -57,6 +57,8 @@ import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.data.collection.SpatialIndexFeatureCollection;
 import org.geotools.data.collection.SpatialIndexFeatureSource;
 import org.geotools.data.collection.TreeSetFeatureCollection;
+import org.geotools.data.simple.BatchingSimpleFeatureReader;
+import org.geotools.data.simple.SimpleFeatureBatchReader;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureLocking;
@@ -77,12 +79,14 @@ import org.geotools.feature.GeometryAttributeImpl;
 import org.geotools.feature.NameImpl;
 import org.geotools.feature.SchemaException;
 import org.geotools.feature.collection.BridgeIterator;
+import org.geotools.feature.simple.SimpleFeatureBatch;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.feature.type.AttributeDescriptorImpl;
 import org.geotools.feature.type.AttributeTypeImpl;
 import org.geotools.feature.type.GeometryDescriptorImpl;
 import org.geotools.feature.type.GeometryTypeImpl;
+import org.geotools.feature.visitor.ParallelFeatureVisitor;
 import org.geotools.filter.FilterAttributeExtractor;
 import org.geotools.filter.visitor.PropertyNameResolvingVisitor;
 import org.geotools.filter.visitor.SimplifyingFilterVisitor;
@@ -1342,6 +1346,22 @@ public class DataUtilities {
         }
     }
 
+    /**
+     * Returns a reader filling columnar {@link SimpleFeatureBatch batches}, using the reader
+     * itself if it can fill them natively, or wrapping it otherwise.
+     * 
+     * @param reader the feature reader, will be closed along with the batch reader
+     * @since 16.0
+     */
+    public static SimpleFeatureBatchReader batchReader(
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader) {
+        if (reader instanceof SimpleFeatureBatchReader) {
+            return (SimpleFeatureBatchReader) reader;
+        } else {
+            return new BatchingSimpleFeatureReader(reader);
+        }
+    }
+
     /**
      * A safe cast to SimpleFeatureSource; that will introduce a wrapper if it has to.
      * <p>
@@ -2868,6 +2888,9 @@ public class DataUtilities {
         if (progress == null) {
             progress = new NullProgressListener();
         }
+        // partitionable calculations are run on several threads while this one reads
+        ParallelFeatureVisitor parallel = ParallelFeatureVisitor.wrap(visitor, null);
+        FeatureVisitor target = parallel != null ? parallel : visitor;
         try {
             float position = 0;
             progress.started();
@@ -2876,7 +2899,7 @@ public class DataUtilities {
                 Feature feature = null;
                 try {
                     feature = iterator.next();
-                    visitor.visit(feature);
+                    target.visit(feature);
                     if (size > 0) {
                         progress.progress(position++ / size);
                     }
@@ -2887,7 +2910,19 @@ public class DataUtilities {
                             + ":" + erp, erp);
                 }
             }
+            if (parallel != null) {
+                try {
+                    parallel.complete();
+                } catch (Exception erp) {
+                    progress.exceptionOccurred(erp);
+                    throw new IOException("Problem with " + collection.getID() + " visiting features"
+                            + ":" + erp, erp);
+                }
+            }
         } finally {
+            if (parallel != null) {
+                parallel.cancel();
+            }
             progress.complete();
             if (iterator != null) {
                 iterator.close();
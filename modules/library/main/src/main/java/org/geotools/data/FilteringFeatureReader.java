@@ -20,8 +20,10 @@ import java.io.IOException;
 import java.util.NoSuchElementException;
 
 import org.geotools.feature.IllegalAttributeException;
+import org.geotools.filter.FilterCompiler;
 import org.geotools.filter.visitor.BindingFilterVisitor;
 import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.FeatureType;
 import org.opengis.filter.Filter;
 
@@ -51,6 +53,11 @@ public class FilteringFeatureReader<T extends FeatureType, F extends Feature> im
     protected final Filter filter;
     protected F next;
 
+    /**
+     * The filter used for the evaluation, compiled against the feature type when possible
+     */
+    private final Filter evaluator;
+
     /**
      * Creates a new instance of AbstractFeatureReader
      * 
@@ -67,6 +74,12 @@ public class FilteringFeatureReader<T extends FeatureType, F extends Feature> im
         this.filter = (Filter) filter
                 .accept(new BindingFilterVisitor(featureReader.getFeatureType()),
                 null);
+        T featureType = featureReader.getFeatureType();
+        if (featureType instanceof SimpleFeatureType) {
+            this.evaluator = FilterCompiler.compile(this.filter, (SimpleFeatureType) featureType);
+        } else {
+            this.evaluator = this.filter;
+        }
         next = null;
     }
 
@@ -130,7 +143,7 @@ public class FilteringFeatureReader<T extends FeatureType, F extends Feature> im
             while (featureReader.hasNext()) {
                 peek = featureReader.next();
 
-                if (filter.evaluate(peek)) {
+                if (evaluator.evaluate(peek)) {
                     next = peek;
                     return true;
                 }                                
@@ -0,0 +1,849 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.collection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.sort.SimpleFeatureIO;
+import org.geotools.data.store.EmptyFeatureCollection;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.collection.BaseSimpleFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.resources.NIOUtilities;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.Filter;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * FeatureCollection used to stage large intermediate results within a bounded amount of memory.
+ * <p>
+ * Features are added to an in memory window, once the estimated size of the window exceeds the
+ * memory budget the window is spilled to a temporary file in a compact binary format, which is
+ * then memory mapped for reading. Features read back from the file are new objects at each
+ * traversal, the returned features are not the ones that were added.
+ * <p>
+ * The envelopes of the spilled features are recorded in a side file. Bounding box sub
+ * collections scan it, or, if the spatial index is enabled, a packed STR tree built from it and
+ * stored on disk, so that only the matching records are read back.
+ * <p>
+ * Usage notes:
+ * <ul>
+ * <li>The collection is not thread safe, features should not be added while it's being
+ * traversed.
+ * <li>The temporary files are only removed by calling {@link #dispose()}, or at JVM exit.
+ * <li>The features are returned in the same order as they were added.
+ * </ul>
+ *
+ * @since 16.0
+ */
+public class SpillingFeatureCollection extends BaseSimpleFeatureCollection {
+
+    static final Logger LOGGER = Logging.getLogger(SpillingFeatureCollection.class);
+
+    /**
+     * Number of children in each node of the STR tree
+     */
+    static final int NODE_CAPACITY = 16;
+
+    /**
+     * Size of a tree node on disk: envelope, reference and child count (plus padding)
+     */
+    static final int NODE_SIZE = 48;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Size of the memory mapped segments of the data file
+     */
+    static final long SEGMENT_SIZE = 1 << 30;
+
+    final long memoryBudget;
+
+    final long segmentSize;
+
+    final boolean spatialIndex;
+
+    final Class<?>[] bindings;
+
+    /**
+     * Features not spilled to disk yet
+     */
+    List<SimpleFeature> window = new ArrayList<SimpleFeature>();
+
+    long windowSize;
+
+    ReferencedEnvelope bounds;
+
+    File dataFile;
+
+    File entriesFile;
+
+    File indexFile;
+
+    RandomAccessFile data;
+
+    DataOutputStream dataOut;
+
+    DataOutputStream entriesOut;
+
+    long dataLength;
+
+    int spilledCount;
+
+    MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    long mappedLength;
+
+    ByteBuffer index;
+
+    int indexedCount;
+
+    boolean disposed;
+
+    /**
+     * Creates a collection with the spatial index enabled and a memory budget of a sixteenth of
+     * the heap
+     */
+    public SpillingFeatureCollection(SimpleFeatureType schema) {
+        this(schema, Runtime.getRuntime().maxMemory() / 16, true);
+    }
+
+    /**
+     * Creates a new collection
+     *
+     * @param schema The feature type
+     * @param memoryBudget The approximate amount of memory, in bytes, used to hold features in
+     *        memory
+     * @param spatialIndex Whether bounding box sub collections should use an on disk STR tree,
+     *        rather than a scan of the feature envelopes
+     */
+    public SpillingFeatureCollection(SimpleFeatureType schema, long memoryBudget,
+            boolean spatialIndex) {
+        this(schema, memoryBudget, spatialIndex, SEGMENT_SIZE);
+    }
+
+    SpillingFeatureCollection(SimpleFeatureType schema, long memoryBudget, boolean spatialIndex,
+            long segmentSize) {
+        super(schema);
+        this.memoryBudget = memoryBudget;
+        this.spatialIndex = spatialIndex;
+        this.segmentSize = segmentSize;
+        List<AttributeDescriptor> descriptors = schema.getAttributeDescriptors();
+        this.bindings = new Class<?>[descriptors.size()];
+        for (int i = 0; i < bindings.length; i++) {
+            bindings[i] = descriptors.get(i).getType().getBinding();
+        }
+    }
+
+    /**
+     * Adds a feature to the collection, spilling the in memory window to disk if the memory
+     * budget is exceeded
+     *
+     * @throws RuntimeException if the features could not be written to disk
+     */
+    public boolean add(SimpleFeature feature) {
+        checkNotDisposed();
+        window.add(feature);
+        windowSize += SimpleFeatureIO.estimateSize(feature);
+        ReferencedEnvelope featureBounds = ReferencedEnvelope.reference(feature.getBounds());
+        if (featureBounds != null && !featureBounds.isNull()) {
+            if (bounds == null) {
+                bounds = new ReferencedEnvelope(schema.getCoordinateReferenceSystem());
+            }
+            bounds.expandToInclude(featureBounds);
+        }
+        if (windowSize > memoryBudget) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write the features to disk", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all the features of the provided collection
+     */
+    public boolean addAll(
+            FeatureCollection<? extends SimpleFeatureType, ? extends SimpleFeature> collection) {
+        FeatureIterator<? extends SimpleFeature> it = collection.features();
+        boolean changed = false;
+        try {
+            while (it.hasNext()) {
+                changed |= add(it.next());
+            }
+        } finally {
+            it.close();
+        }
+        return changed;
+    }
+
+    /**
+     * Writes the in memory window to disk
+     */
+    void spill() throws IOException {
+        if (window.isEmpty()) {
+            return;
+        }
+        if (data == null) {
+            dataFile = File.createTempFile("features", ".data");
+            dataFile.deleteOnExit();
+            entriesFile = File.createTempFile("features", ".env");
+            entriesFile.deleteOnExit();
+            data = new RandomAccessFile(dataFile, "rw");
+            dataOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(data
+                    .getChannel()), BUFFER_SIZE));
+            entriesOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(entriesFile), BUFFER_SIZE));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        for (SimpleFeature feature : window) {
+            bytes.reset();
+            record.writeUTF(feature.getID());
+            for (int i = 0; i < bindings.length; i++) {
+                SimpleFeatureIO.writeAttribute(record, bindings[i], feature.getAttribute(i));
+            }
+            record.flush();
+
+            Envelope envelope = getEnvelope(feature);
+            if (envelope == null) {
+                for (int i = 0; i < 4; i++) {
+                    entriesOut.writeDouble(Double.NaN);
+                }
+            } else {
+                entriesOut.writeDouble(envelope.getMinX());
+                entriesOut.writeDouble(envelope.getMinY());
+                entriesOut.writeDouble(envelope.getMaxX());
+                entriesOut.writeDouble(envelope.getMaxY());
+            }
+            entriesOut.writeLong(dataLength);
+
+            dataOut.writeInt(bytes.size());
+            bytes.writeTo(dataOut);
+            dataLength += 4 + bytes.size();
+        }
+        dataOut.flush();
+        entriesOut.flush();
+        spilledCount += window.size();
+        window = new ArrayList<SimpleFeature>();
+        windowSize = 0;
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Spilled features to " + dataFile + ", " + spilledCount
+                    + " features on disk");
+        }
+    }
+
+    Envelope getEnvelope(SimpleFeature feature) {
+        Object geometry = feature.getDefaultGeometry();
+        if (geometry instanceof Geometry) {
+            Envelope envelope = ((Geometry) geometry).getEnvelopeInternal();
+            if (!envelope.isNull()) {
+                return envelope;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Makes sure the whole data file is memory mapped
+     */
+    void map() throws IOException {
+        if (mappedLength == dataLength) {
+            return;
+        }
+        int count = (int) ((dataLength + segmentSize - 1) / segmentSize);
+        MappedByteBuffer[] mapped = Arrays.copyOf(segments, count);
+        FileChannel channel = data.getChannel();
+        for (int i = 0; i < count; i++) {
+            long start = i * segmentSize;
+            long size = Math.min(segmentSize, dataLength - start);
+            if (mapped[i] == null || mapped[i].capacity() < size) {
+                // the previous partial mapping, if any, might still be in use by an iterator,
+                // leave it to the garbage collector
+                mapped[i] = channel.map(MapMode.READ_ONLY, start, size);
+            }
+        }
+        segments = mapped;
+        mappedLength = dataLength;
+    }
+
+    /**
+     * Reads the record at the specified offset of the data file
+     */
+    byte[] readRecord(long offset) throws IOException {
+        ByteBuffer segment = segments[(int) (offset / segmentSize)];
+        int position = (int) (offset % segmentSize);
+        if (position + 4 <= segment.limit()) {
+            int length = segment.getInt(position);
+            if (position + 4 + length <= segment.limit()) {
+                byte[] bytes = new byte[length];
+                ByteBuffer view = segment.duplicate();
+                view.position(position + 4);
+                view.get(bytes);
+                return bytes;
+            }
+        }
+        // the record spans two segments, fall back on a plain read
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(header, offset);
+        ByteBuffer bytes = ByteBuffer.allocate(header.getInt(0));
+        readFully(bytes, offset + 4);
+        return bytes.array();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        FileChannel channel = data.getChannel();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file in " + dataFile);
+            }
+        }
+    }
+
+    SimpleFeature decode(byte[] record, SimpleFeatureBuilder builder) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        String id = in.readUTF();
+        for (int i = 0; i < bindings.length; i++) {
+            builder.add(SimpleFeatureIO.readAttribute(in, bindings[i]));
+        }
+        return builder.buildFeature(id);
+    }
+
+    @Override
+    public SimpleFeatureIterator features() {
+        checkNotDisposed();
+        try {
+            map();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to map " + dataFile, e);
+        }
+        return new SpillingFeatureIterator(null, spilledCount, window, null);
+    }
+
+    @Override
+    public int size() {
+        return spilledCount + window.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public ReferencedEnvelope getBounds() {
+        if (bounds == null) {
+            return new ReferencedEnvelope(schema.getCoordinateReferenceSystem());
+        }
+        return new ReferencedEnvelope(bounds);
+    }
+
+    /**
+     * Filters with a bounding box only read back the features whose envelope intersects it, the
+     * other filters are evaluated against all the features
+     */
+    @Override
+    public SimpleFeatureCollection subCollection(Filter filter) {
+        if (filter == Filter.INCLUDE) {
+            return this;
+        }
+        if (filter == Filter.EXCLUDE) {
+            return new EmptyFeatureCollection(schema);
+        }
+        if (!hasSingleGeometry()) {
+            return super.subCollection(filter);
+        }
+        Envelope envelope = (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR,
+                new Envelope());
+        if (envelope == null || Double.isInfinite(envelope.getWidth())
+                || Double.isInfinite(envelope.getHeight())) {
+            return super.subCollection(filter);
+        }
+        return new BoundedSubCollection(filter, envelope);
+    }
+
+    /**
+     * Spatial filters are assumed to work on the default geometry, only safe if there is no
+     * other geometry
+     */
+    boolean hasSingleGeometry() {
+        int count = 0;
+        for (AttributeDescriptor descriptor : schema.getAttributeDescriptors()) {
+            if (descriptor instanceof GeometryDescriptor) {
+                count++;
+            }
+        }
+        return count == 1;
+    }
+
+    /**
+     * Collects the offsets of the spilled records whose envelope intersects the specified one,
+     * sorted in file order
+     */
+    long[] query(Envelope envelope) throws IOException {
+        map();
+        LongList offsets = new LongList();
+        if (spilledCount == 0) {
+            return offsets.toArray();
+        }
+        ByteBuffer tree = spatialIndex ? getIndex() : null;
+        if (tree != null) {
+            queryIndex(tree, envelope, offsets);
+        } else {
+            scanEntries(envelope, offsets);
+        }
+        long[] result = offsets.toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    void scanEntries(Envelope envelope, LongList offsets) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+                entriesFile), BUFFER_SIZE));
+        try {
+            for (int i = 0; i < spilledCount; i++) {
+                double minX = in.readDouble();
+                double minY = in.readDouble();
+                double maxX = in.readDouble();
+                double maxY = in.readDouble();
+                long offset = in.readLong();
+                if (intersects(envelope, minX, minY, maxX, maxY)) {
+                    offsets.add(offset);
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    static boolean intersects(Envelope envelope, double minX, double minY, double maxX,
+            double maxY) {
+        // NaN marks features without a geometry, the comparisons below would accept them
+        if (Double.isNaN(minX)) {
+            return false;
+        }
+        return !(minX > envelope.getMaxX() || maxX < envelope.getMinX()
+                || minY > envelope.getMaxY() || maxY < envelope.getMinY());
+    }
+
+    void queryIndex(ByteBuffer tree, Envelope envelope, LongList offsets) {
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int base = stack[--top] * NODE_SIZE;
+            if (!intersects(envelope, tree.getDouble(base), tree.getDouble(base + 8),
+                    tree.getDouble(base + 16), tree.getDouble(base + 24))) {
+                continue;
+            }
+            long reference = tree.getLong(base + 32);
+            int children = tree.getInt(base + 40);
+            if (children == 0) {
+                offsets.add(reference);
+            } else {
+                if (top + children > stack.length) {
+                    stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + children));
+                }
+                for (int i = children - 1; i >= 0; i--) {
+                    stack[top++] = (int) reference + i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the STR tree of the spilled features, building it if missing or out of date. The
+     * tree is stored level by level, root first, each node referencing its first child, or the
+     * record offset for the leaves.
+     *
+     * @return the tree, or null if it could not be built
+     */
+    ByteBuffer getIndex() throws IOException {
+        if (index != null && indexedCount == spilledCount) {
+            return index;
+        }
+        releaseIndex();
+        // the tree has less than 16/15 nodes per feature, and is mapped as a single buffer
+        if ((long) spilledCount * NODE_SIZE * 2 > Integer.MAX_VALUE) {
+            LOGGER.fine("Too many features to build a memory mapped index, will scan instead");
+            return null;
+        }
+
+        // load the non empty envelopes
+        int count = 0;
+        double[] boxes = new double[spilledCount * 4];
+        long[] references = new long[spilledCount];
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+                entriesFile), BUFFER_SIZE));
+        try {
+            for (int i = 0; i < spilledCount; i++) {
+                for (int j = 0; j < 4; j++) {
+                    boxes[count * 4 + j] = in.readDouble();
+                }
+                references[count] = in.readLong();
+                if (!Double.isNaN(boxes[count * 4])) {
+                    count++;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        if (count == 0) {
+            index = emptyIndex();
+            indexedCount = spilledCount;
+            return index;
+        }
+
+        // build the levels bottom up
+        List<double[]> levelBoxes = new ArrayList<double[]>();
+        List<long[]> levelReferences = new ArrayList<long[]>();
+        List<int[]> levelChildren = new ArrayList<int[]>();
+        int[] children = new int[count];
+        while (true) {
+            int[] order = strOrder(boxes, count);
+            double[] sortedBoxes = new double[count * 4];
+            long[] sortedReferences = new long[count];
+            int[] sortedChildren = new int[count];
+            for (int i = 0; i < count; i++) {
+                System.arraycopy(boxes, order[i] * 4, sortedBoxes, i * 4, 4);
+                sortedReferences[i] = references[order[i]];
+                sortedChildren[i] = children[order[i]];
+            }
+            levelBoxes.add(sortedBoxes);
+            levelReferences.add(sortedReferences);
+            levelChildren.add(sortedChildren);
+            if (count == 1) {
+                break;
+            }
+
+            int parents = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            boxes = new double[parents * 4];
+            references = new long[parents];
+            children = new int[parents];
+            for (int p = 0; p < parents; p++) {
+                int first = p * NODE_CAPACITY;
+                int last = Math.min(count, first + NODE_CAPACITY);
+                boxes[p * 4] = Double.POSITIVE_INFINITY;
+                boxes[p * 4 + 1] = Double.POSITIVE_INFINITY;
+                boxes[p * 4 + 2] = Double.NEGATIVE_INFINITY;
+                boxes[p * 4 + 3] = Double.NEGATIVE_INFINITY;
+                for (int c = first; c < last; c++) {
+                    boxes[p * 4] = Math.min(boxes[p * 4], sortedBoxes[c * 4]);
+                    boxes[p * 4 + 1] = Math.min(boxes[p * 4 + 1], sortedBoxes[c * 4 + 1]);
+                    boxes[p * 4 + 2] = Math.max(boxes[p * 4 + 2], sortedBoxes[c * 4 + 2]);
+                    boxes[p * 4 + 3] = Math.max(boxes[p * 4 + 3], sortedBoxes[c * 4 + 3]);
+                }
+                // position in the child level, made absolute when writing
+                references[p] = first;
+                children[p] = last - first;
+            }
+            count = parents;
+        }
+
+        // compute where each level starts, root first
+        int levels = levelBoxes.size();
+        long[] levelStart = new long[levels];
+        long nodes = 0;
+        for (int level = levels - 1; level >= 0; level--) {
+            levelStart[level] = nodes;
+            nodes += levelReferences.get(level).length;
+        }
+
+        if (indexFile == null) {
+            indexFile = File.createTempFile("features", ".str");
+            indexFile.deleteOnExit();
+        }
+        RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+        try {
+            raf.setLength(0);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels
+                    .newOutputStream(raf.getChannel()), BUFFER_SIZE));
+            for (int level = levels - 1; level >= 0; level--) {
+                double[] lb = levelBoxes.get(level);
+                long[] lr = levelReferences.get(level);
+                int[] lc = levelChildren.get(level);
+                for (int i = 0; i < lr.length; i++) {
+                    for (int j = 0; j < 4; j++) {
+                        out.writeDouble(lb[i * 4 + j]);
+                    }
+                    out.writeLong(level == 0 ? lr[i] : levelStart[level - 1] + lr[i]);
+                    out.writeInt(lc[i]);
+                    out.writeInt(0);
+                }
+            }
+            out.flush();
+            index = raf.getChannel().map(MapMode.READ_ONLY, 0, nodes * NODE_SIZE);
+        } finally {
+            raf.close();
+        }
+        indexedCount = spilledCount;
+        return index;
+    }
+
+    private ByteBuffer emptyIndex() {
+        // a single root node that matches nothing
+        ByteBuffer empty = ByteBuffer.allocate(NODE_SIZE);
+        empty.putDouble(0, Double.NaN);
+        return empty;
+    }
+
+    /**
+     * Sorts the boxes in Sort-Tile-Recursive order: sorted by center x in vertical slices,
+     * each slice sorted by center y
+     */
+    static int[] strOrder(final double[] boxes, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        int nodes = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slices = (int) Math.ceil(Math.sqrt(nodes));
+        int sliceSize = slices * NODE_CAPACITY;
+        Arrays.sort(order, new CenterComparator(boxes, 0));
+        Comparator<Integer> byY = new CenterComparator(boxes, 1);
+        for (int start = 0; start < count; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(count, start + sliceSize), byY);
+        }
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    static final class CenterComparator implements Comparator<Integer> {
+        final double[] boxes;
+
+        final int ordinate;
+
+        CenterComparator(double[] boxes, int ordinate) {
+            this.boxes = boxes;
+            this.ordinate = ordinate;
+        }
+
+        public int compare(Integer o1, Integer o2) {
+            return Double.compare(center(o1), center(o2));
+        }
+
+        double center(int i) {
+            return boxes[i * 4 + ordinate] + boxes[i * 4 + 2 + ordinate];
+        }
+    }
+
+    private void releaseIndex() {
+        // queries are run eagerly, nobody else can be using the index
+        if (index instanceof MappedByteBuffer) {
+            NIOUtilities.clean(index, true);
+        }
+        index = null;
+    }
+
+    /**
+     * Releases the spatial index and deletes the temporary files. The collection cannot be used
+     * anymore after this call. The data file mappings are left to the garbage collector, as open
+     * iterators might still be reading them, on some platforms this delays the file removal to
+     * the JVM exit.
+     */
+    public void dispose() {
+        if (disposed) {
+            return;
+        }
+        disposed = true;
+        window = new ArrayList<SimpleFeature>();
+        releaseIndex();
+        segments = new MappedByteBuffer[0];
+        try {
+            if (data != null) {
+                entriesOut.close();
+                data.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close the spill files", e);
+        }
+        for (File file : new File[] { dataFile, entriesFile, indexFile }) {
+            if (file != null && !file.delete()) {
+                LOGGER.fine("Could not delete " + file + ", will be removed on exit");
+            }
+        }
+    }
+
+    private void checkNotDisposed() {
+        if (disposed) {
+            throw new IllegalStateException("The collection has been disposed");
+        }
+    }
+
+    /**
+     * The features matching a bounding box filter
+     */
+    class BoundedSubCollection extends BaseSimpleFeatureCollection {
+
+        final Filter filter;
+
+        final Envelope envelope;
+
+        BoundedSubCollection(Filter filter, Envelope envelope) {
+            super(SpillingFeatureCollection.this.schema);
+            this.filter = filter;
+            this.envelope = envelope;
+        }
+
+        @Override
+        public SimpleFeatureIterator features() {
+            checkNotDisposed();
+            try {
+                return new SpillingFeatureIterator(query(envelope), 0, window, filter);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to query the spilled features", e);
+            }
+        }
+    }
+
+    /**
+     * Reads back the spilled records, either all of them in sequence or the ones at the given
+     * offsets, and then the in memory window
+     */
+    class SpillingFeatureIterator implements SimpleFeatureIterator {
+
+        final long[] offsets;
+
+        final int sequentialCount;
+
+        final List<SimpleFeature> memory;
+
+        final Filter filter;
+
+        final SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+
+        int read;
+
+        long offset;
+
+        int memoryIndex;
+
+        SimpleFeature next;
+
+        SpillingFeatureIterator(long[] offsets, int sequentialCount, List<SimpleFeature> memory,
+                Filter filter) {
+            this.offsets = offsets;
+            this.sequentialCount = sequentialCount;
+            this.memory = memory;
+            this.filter = filter;
+        }
+
+        public boolean hasNext() {
+            while (next == null) {
+                SimpleFeature candidate = readNext();
+                if (candidate == null) {
+                    return false;
+                }
+                if (filter == null || filter.evaluate(candidate)) {
+                    next = candidate;
+                }
+            }
+            return true;
+        }
+
+        private SimpleFeature readNext() {
+            int spilled = offsets != null ? offsets.length : sequentialCount;
+            if (read < spilled) {
+                try {
+                    long position = offsets != null ? offsets[read] : offset;
+                    byte[] record = readRecord(position);
+                    offset = position + 4 + record.length;
+                    read++;
+                    return decode(record, builder);
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to read back features from " + dataFile,
+                            e);
+                }
+            }
+            if (memoryIndex < memory.size()) {
+                return memory.get(memoryIndex++);
+            }
+            return null;
+        }
+
+        public SimpleFeature next() throws NoSuchElementException {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more features");
+            }
+            SimpleFeature result = next;
+            next = null;
+            return result;
+        }
+
+        public void close() {
+            // the mapped buffers are owned by the collection
+        }
+    }
+
+    /**
+     * A growable list of primitive longs
+     */
+    static final class LongList {
+        long[] values = new long[16];
+
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
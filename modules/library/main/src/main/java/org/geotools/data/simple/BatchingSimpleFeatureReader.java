@@ -0,0 +1,55 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.simple;
+
+import java.io.IOException;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.feature.simple.SimpleFeatureBatch;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * A {@link SimpleFeatureBatchReader} copying the features returned by a regular feature reader
+ * into the batches, for stores that cannot fill batches natively.
+ *
+ * @since 16.0
+ */
+public class BatchingSimpleFeatureReader implements SimpleFeatureBatchReader {
+
+    final FeatureReader<SimpleFeatureType, SimpleFeature> delegate;
+
+    public BatchingSimpleFeatureReader(FeatureReader<SimpleFeatureType, SimpleFeature> delegate) {
+        this.delegate = delegate;
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return delegate.getFeatureType();
+    }
+
+    public int read(SimpleFeatureBatch batch) throws IOException {
+        batch.clear();
+        while (!batch.isFull() && delegate.hasNext()) {
+            batch.addFeature(delegate.next());
+        }
+        return batch.size();
+    }
+
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.simple;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.geotools.feature.simple.SimpleFeatureBatch;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * A reader returning simple features in columnar {@link SimpleFeatureBatch batches} instead of
+ * one feature object at a time, for bulk read-only scans.
+ * <p>
+ * Stores able to decode their data straight into the batch columns implement this interface on
+ * their feature readers, use {@link org.geotools.data.DataUtilities#batchReader} to get a batch
+ * reader out of any feature reader.
+ *
+ * @since 16.0
+ */
+public interface SimpleFeatureBatchReader extends Closeable {
+
+    /**
+     * The type of the features read
+     */
+    SimpleFeatureType getFeatureType();
+
+    /**
+     * Clears the batch and fills it with the next features, up to the batch capacity.
+     *
+     * @param batch A batch built for the feature type returned by {@link #getFeatureType()}
+     * @return The number of features read, zero if there are no more features
+     * @throws IOException
+     */
+    int read(SimpleFeatureBatch batch) throws IOException;
+
+    /**
+     * Releases the resources associated to the reader
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,569 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.sort;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.DelegateSimpleFeatureReader;
+import org.geotools.data.simple.SimpleFeatureReader;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+/**
+ * Sorts the contents of a feature reader within a memory budget.
+ * <p>
+ * The features are accumulated in memory until either the memory budget or the maximum number of
+ * features is exceeded, at which point the buffer is split in slices that are sorted in parallel
+ * on a {@link ForkJoinPool} and written as sorted runs, each one in its own temporary file,
+ * through buffered {@link FileChannel}s, optionally compressed. At the end the runs are merged
+ * using a heap, with intermediate merge passes if there are too many runs to be opened at once.
+ * If the contents fit in memory they are sorted in parallel and returned directly, without
+ * touching the disk.
+ * <p>
+ * The sort is stable, features comparing as equal are returned in their original order.
+ */
+class ExternalMergeSorter {
+
+    /**
+     * The maximum number of runs merged at once, past which intermediate merge passes are
+     * performed
+     */
+    static final int DEFAULT_FAN_IN = 64;
+
+    /**
+     * The minimum number of features in a run, smaller buffers are not split across threads
+     */
+    static final int MIN_RUN_FEATURES = 1024;
+
+    /**
+     * Below this size the in memory sort is not split further
+     */
+    static final int SEQUENTIAL_SORT_THRESHOLD = 8192;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    final SimpleFeatureType schema;
+
+    final Comparator<SimpleFeature> comparator;
+
+    final long memoryBudget;
+
+    final int maxFeatures;
+
+    final boolean compress;
+
+    final ForkJoinPool pool;
+
+    int fanIn = DEFAULT_FAN_IN;
+
+    /**
+     * Creates a new sorter
+     *
+     * @param schema The schema of the features to be sorted
+     * @param comparator The sorting comparator
+     * @param memoryBudget The approximate amount of memory, in bytes, used to hold features in
+     *        memory
+     * @param maxFeatures The maximum number of features held in memory, or a negative number to
+     *        rely on the memory budget only
+     * @param compress Whether the runs written on disk are compressed
+     * @param pool The pool sorting and writing the runs
+     */
+    ExternalMergeSorter(SimpleFeatureType schema, Comparator<SimpleFeature> comparator,
+            long memoryBudget, int maxFeatures, boolean compress, ForkJoinPool pool) {
+        this.schema = schema;
+        this.comparator = comparator;
+        this.memoryBudget = memoryBudget;
+        this.maxFeatures = maxFeatures < 0 ? Integer.MAX_VALUE : maxFeatures;
+        this.compress = compress;
+        this.pool = pool;
+    }
+
+    /**
+     * Sorts the contents of the reader, which is closed in the process
+     *
+     * @param reader
+     * @return A reader returning the features in sorted order
+     * @throws IOException
+     */
+    SimpleFeatureReader sort(SimpleFeatureReader reader) throws IOException {
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        List<Run> runs = new ArrayList<Run>();
+        boolean success = false;
+        try {
+            long size = 0;
+            while (reader.hasNext()) {
+                SimpleFeature f = reader.next();
+                features.add(f);
+                size += SimpleFeatureIO.estimateSize(f);
+                if (size > memoryBudget || features.size() > maxFeatures) {
+                    runs.addAll(spill(features));
+                    features.clear();
+                    size = 0;
+                }
+            }
+
+            SimpleFeatureReader result;
+            if (runs.isEmpty()) {
+                // everything fit in memory
+                SimpleFeature[] sorted = features.toArray(new SimpleFeature[features.size()]);
+                parallelSort(sorted);
+                result = new DelegateSimpleFeatureReader(schema, new ListFeatureCollection(schema,
+                        sorted).features());
+            } else {
+                if (!features.isEmpty()) {
+                    runs.addAll(spill(features));
+                    features.clear();
+                }
+                while (runs.size() > fanIn) {
+                    runs = mergePass(runs);
+                }
+                result = new MergingReader(runs);
+            }
+            success = true;
+            return result;
+        } finally {
+            if (!success) {
+                for (Run run : runs) {
+                    run.delete();
+                }
+            }
+            reader.close();
+        }
+    }
+
+    /**
+     * Sorts the features in slices, one per available thread, writing each slice as a run
+     */
+    List<Run> spill(List<SimpleFeature> features) throws IOException {
+        final SimpleFeature[] array = features.toArray(new SimpleFeature[features.size()]);
+        int slices = Math.max(1,
+                Math.min(pool.getParallelism(), array.length / MIN_RUN_FEATURES));
+        int sliceSize = (array.length + slices - 1) / slices;
+        List<ForkJoinTask<Run>> tasks = new ArrayList<ForkJoinTask<Run>>();
+        for (int start = 0; start < array.length; start += sliceSize) {
+            final int from = start;
+            final int to = Math.min(array.length, start + sliceSize);
+            tasks.add(pool.submit(new Callable<Run>() {
+
+                public Run call() throws Exception {
+                    Arrays.sort(array, from, to, comparator);
+                    return writeRun(array, from, to);
+                }
+            }));
+        }
+        return collect(tasks);
+    }
+
+    /**
+     * Merges the runs in groups of {@link #fanIn}, in parallel, preserving their order
+     */
+    List<Run> mergePass(List<Run> runs) throws IOException {
+        List<ForkJoinTask<Run>> tasks = new ArrayList<ForkJoinTask<Run>>();
+        for (int start = 0; start < runs.size(); start += fanIn) {
+            final List<Run> group = new ArrayList<Run>(runs.subList(start,
+                    Math.min(runs.size(), start + fanIn)));
+            tasks.add(pool.submit(new Callable<Run>() {
+
+                public Run call() throws Exception {
+                    MergingReader merger = new MergingReader(group);
+                    try {
+                        return writeRun(merger);
+                    } finally {
+                        merger.close();
+                    }
+                }
+            }));
+        }
+        return collect(tasks);
+    }
+
+    /**
+     * Waits for the tasks to complete, deleting the runs and reporting the first error in case
+     * of failure
+     */
+    private List<Run> collect(List<ForkJoinTask<Run>> tasks) throws IOException {
+        List<Run> result = new ArrayList<Run>();
+        Throwable failure = null;
+        for (ForkJoinTask<Run> task : tasks) {
+            try {
+                result.add(task.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = e;
+                }
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure != null) {
+            for (Run run : result) {
+                run.delete();
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            throw new IOException("Failed to sort the features", failure);
+        }
+        return result;
+    }
+
+    /**
+     * Sorts the array on the pool, with a stable parallel merge sort
+     */
+    void parallelSort(SimpleFeature[] features) {
+        if (features.length <= SEQUENTIAL_SORT_THRESHOLD) {
+            Arrays.sort(features, comparator);
+        } else {
+            pool.invoke(new SortTask(features, new SimpleFeature[features.length], 0,
+                    features.length, comparator));
+        }
+    }
+
+    Run writeRun(SimpleFeature[] features, int from, int to) throws IOException {
+        Run run = new Run(compress);
+        RunWriter writer = run.openWriter(schema);
+        try {
+            for (int i = from; i < to; i++) {
+                writer.write(features[i]);
+            }
+        } catch (IOException e) {
+            writer.close();
+            run.delete();
+            throw e;
+        }
+        writer.close();
+        return run;
+    }
+
+    Run writeRun(SimpleFeatureReader reader) throws IOException {
+        Run run = new Run(compress);
+        RunWriter writer = run.openWriter(schema);
+        try {
+            while (reader.hasNext()) {
+                writer.write(reader.next());
+            }
+        } catch (IOException e) {
+            writer.close();
+            run.delete();
+            throw e;
+        }
+        writer.close();
+        return run;
+    }
+
+    /**
+     * A sorted run stored in a temporary file
+     */
+    static final class Run {
+        final File file;
+
+        final boolean compressed;
+
+        int count;
+
+        Run(boolean compressed) throws IOException {
+            this.file = File.createTempFile("sorted", ".run");
+            this.compressed = compressed;
+        }
+
+        RunWriter openWriter(SimpleFeatureType schema) throws IOException {
+            OutputStream os = Channels.newOutputStream(FileChannel.open(file.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+            if (compressed) {
+                os = new DeflaterOutputStream(os, new Deflater(Deflater.BEST_SPEED), BUFFER_SIZE);
+            }
+            return new RunWriter(this, schema, new DataOutputStream(new BufferedOutputStream(os,
+                    BUFFER_SIZE)));
+        }
+
+        RunReader openReader(SimpleFeatureType schema, int index) throws IOException {
+            InputStream is = Channels.newInputStream(FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ));
+            if (compressed) {
+                is = new InflaterInputStream(is, new Inflater(), BUFFER_SIZE);
+            }
+            return new RunReader(this, schema, index, new DataInputStream(
+                    new BufferedInputStream(is, BUFFER_SIZE)));
+        }
+
+        void delete() {
+            file.delete();
+        }
+    }
+
+    /**
+     * Writes features in a run, each one as its feature id followed by the attribute values
+     */
+    static final class RunWriter {
+        final Run run;
+
+        final DataOutputStream out;
+
+        final Class<?>[] bindings;
+
+        RunWriter(Run run, SimpleFeatureType schema, DataOutputStream out) {
+            this.run = run;
+            this.out = out;
+            this.bindings = getBindings(schema);
+        }
+
+        void write(SimpleFeature feature) throws IOException {
+            out.writeUTF(feature.getID());
+            for (int i = 0; i < bindings.length; i++) {
+                SimpleFeatureIO.writeAttribute(out, bindings[i], feature.getAttribute(i));
+            }
+            run.count++;
+        }
+
+        void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads back the features of a run
+     */
+    static final class RunReader {
+        final Run run;
+
+        final int index;
+
+        final DataInputStream in;
+
+        final Class<?>[] bindings;
+
+        final SimpleFeatureBuilder builder;
+
+        int remaining;
+
+        SimpleFeature current;
+
+        RunReader(Run run, SimpleFeatureType schema, int index, DataInputStream in) {
+            this.run = run;
+            this.index = index;
+            this.in = in;
+            this.bindings = getBindings(schema);
+            this.builder = new SimpleFeatureBuilder(schema);
+            this.remaining = run.count;
+        }
+
+        /**
+         * Moves to the next feature, returns false if the run is over
+         */
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                current = null;
+                return false;
+            }
+            try {
+                String fid = in.readUTF();
+                for (int i = 0; i < bindings.length; i++) {
+                    builder.add(SimpleFeatureIO.readAttribute(in, bindings[i]));
+                }
+                current = builder.buildFeature(fid);
+            } catch (EOFException e) {
+                throw new IOException("Unexpected end of sorted run " + run.file, e);
+            }
+            remaining--;
+            return true;
+        }
+
+        void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                run.delete();
+            }
+        }
+    }
+
+    /**
+     * Merges sorted runs with a heap, breaking ties with the run order to keep the sort stable
+     */
+    final class MergingReader implements SimpleFeatureReader {
+
+        final List<RunReader> readers = new ArrayList<RunReader>();
+
+        final PriorityQueue<RunReader> queue;
+
+        MergingReader(List<Run> runs) throws IOException {
+            this.queue = new PriorityQueue<RunReader>(Math.max(1, runs.size()),
+                    new Comparator<RunReader>() {
+
+                        public int compare(RunReader r1, RunReader r2) {
+                            int result = comparator.compare(r1.current, r2.current);
+                            if (result == 0) {
+                                result = r1.index < r2.index ? -1 : (r1.index == r2.index ? 0
+                                        : 1);
+                            }
+                            return result;
+                        }
+                    });
+            try {
+                for (int i = 0; i < runs.size(); i++) {
+                    RunReader reader = runs.get(i).openReader(schema, i);
+                    readers.add(reader);
+                    if (reader.advance()) {
+                        queue.add(reader);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                // the runs that could not be opened
+                for (Run run : runs) {
+                    run.delete();
+                }
+                throw e;
+            }
+        }
+
+        public SimpleFeatureType getFeatureType() {
+            return schema;
+        }
+
+        public SimpleFeature next() throws IOException, IllegalArgumentException,
+                NoSuchElementException {
+            RunReader reader = queue.poll();
+            if (reader == null) {
+                throw new NoSuchElementException();
+            }
+            SimpleFeature feature = reader.current;
+            if (reader.advance()) {
+                queue.add(reader);
+            }
+            return feature;
+        }
+
+        public boolean hasNext() throws IOException {
+            return !queue.isEmpty();
+        }
+
+        public void close() throws IOException {
+            IOException failure = null;
+            for (RunReader reader : readers) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            readers.clear();
+            queue.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    static Class<?>[] getBindings(SimpleFeatureType schema) {
+        List<AttributeDescriptor> descriptors = schema.getAttributeDescriptors();
+        Class<?>[] bindings = new Class<?>[descriptors.size()];
+        for (int i = 0; i < bindings.length; i++) {
+            bindings[i] = descriptors.get(i).getType().getBinding();
+        }
+        return bindings;
+    }
+
+    /**
+     * A stable merge sort running the two halves in parallel
+     */
+    static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 5450934524870547447L;
+
+        final SimpleFeature[] array;
+
+        final SimpleFeature[] buffer;
+
+        final int from;
+
+        final int to;
+
+        final Comparator<SimpleFeature> comparator;
+
+        SortTask(SimpleFeature[] array, SimpleFeature[] buffer, int from, int to,
+                Comparator<SimpleFeature> comparator) {
+            this.array = array;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_SORT_THRESHOLD) {
+                Arrays.sort(array, from, to, comparator);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(array, buffer, from, mid, comparator), new SortTask(array,
+                    buffer, mid, to, comparator));
+            if (comparator.compare(array[mid - 1], array[mid]) <= 0) {
+                // already in order
+                return;
+            }
+            System.arraycopy(array, from, buffer, from, to - from);
+            int i = from, j = mid, k = from;
+            while (i < mid && j < to) {
+                // take from the left on ties to keep the sort stable
+                if (comparator.compare(buffer[j], buffer[i]) < 0) {
+                    array[k++] = buffer[j++];
+                } else {
+                    array[k++] = buffer[i++];
+                }
+            }
+            while (i < mid) {
+                array[k++] = buffer[i++];
+            }
+            while (j < to) {
+                array[k++] = buffer[j++];
+            }
+        }
+    }
+}
@@ -16,18 +16,14 @@
  */
 package org.geotools.data.sort;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.geotools.data.Query;
-import org.geotools.data.collection.ListFeatureCollection;
-import org.geotools.data.simple.DelegateSimpleFeatureReader;
-import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureReader;
 import org.geotools.factory.Hints;
 import org.opengis.feature.simple.SimpleFeature;
@@ -74,9 +70,17 @@ class MergeSortDumper {
 
     static SimpleFeatureReader getDelegateReader(SimpleFeatureReader reader, Query query)
             throws IOException {
-        int maxFeatures = getMaxFeatures(query);
+        // the feature count threshold is used only if explicitly configured, the memory
+        // budget is used otherwise
+        int maxFeatures = -1;
+        Hints hints = query != null ? query.getHints() : null;
+        if ((hints != null && hints.get(Hints.MAX_MEMORY_SORT) != null)
+                || Hints.getSystemDefault(Hints.MAX_MEMORY_SORT) != null) {
+            maxFeatures = getMaxFeatures(query);
+        }
 
-        return getDelegateReader(reader, query.getSortBy(), maxFeatures);
+        return getDelegateReader(reader, query.getSortBy(), maxFeatures, getMemoryBudget(query),
+                isSpillCompressed(query));
     }
 
     /**
@@ -99,11 +103,67 @@ class MergeSortDumper {
         return maxFeatures;
     }
 
+    /**
+     * Gets the amount of memory, in bytes, that can be used to hold features from the query and
+     * system hints
+     * 
+     * @param query
+     * @return
+     */
+    static long getMemoryBudget(Query query) {
+        Object budget = null;
+        if (query != null && query.getHints() != null) {
+            budget = query.getHints().get(Hints.MAX_MEMORY_SORT_BYTES);
+        }
+        if (budget == null) {
+            budget = Hints.getSystemDefault(Hints.MAX_MEMORY_SORT_BYTES);
+        }
+        if (budget instanceof Number) {
+            return ((Number) budget).longValue();
+        }
+        return Runtime.getRuntime().maxMemory() / 16;
+    }
+
+    /**
+     * Checks from the query and system hints if the runs spilled to disk should be compressed
+     * 
+     * @param query
+     * @return
+     */
+    static boolean isSpillCompressed(Query query) {
+        Object compress = null;
+        if (query != null && query.getHints() != null) {
+            compress = query.getHints().get(Hints.SORT_SPILL_COMPRESSION);
+        }
+        if (compress == null) {
+            compress = Hints.getSystemDefault(Hints.SORT_SPILL_COMPRESSION);
+        }
+        return Boolean.TRUE.equals(compress);
+    }
+
     static SimpleFeatureReader getDelegateReader(SimpleFeatureReader reader, SortBy[] sortBy,
             int maxFeatures) throws IOException {
-        if (maxFeatures < 0) {
+        if (maxFeatures < 0 && Hints.getSystemDefault(Hints.MAX_MEMORY_SORT) != null) {
             maxFeatures = getMaxFeatures(Query.ALL);
         }
+        return getDelegateReader(reader, sortBy, maxFeatures, getMemoryBudget(Query.ALL),
+                isSpillCompressed(Query.ALL));
+    }
+
+    /**
+     * Sorts the reader contents
+     * 
+     * @param reader The reader to be sorted, will be closed
+     * @param sortBy The sorting directives
+     * @param maxFeatures The maximum number of features to keep in memory, or a negative number
+     *        to rely on the memory budget only
+     * @param memoryBudget The amount of memory, in bytes, that can be used to hold features
+     * @param compress Whether the runs spilled to disk are compressed
+     * @return
+     * @throws IOException
+     */
+    static SimpleFeatureReader getDelegateReader(SimpleFeatureReader reader, SortBy[] sortBy,
+            int maxFeatures, long memoryBudget, boolean compress) throws IOException {
         Comparator<SimpleFeature> comparator = getComparator(sortBy);
 
         // easy case, no sorting needed
@@ -119,78 +179,11 @@ class MergeSortDumper {
                             + "sorting properties are not comparable or the attributes are not serializable");
         }
 
-        int count = 0;
-        File file = null;
-        SimpleFeatureIO io = null;
-        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
-        List<FeatureBlockReader> readers = new ArrayList<FeatureBlockReader>();
-        boolean cleanFile = true;
-        try {
-            // read and store into files as necessary
-            while (reader.hasNext()) {
-                SimpleFeature f = reader.next();
-                features.add(f);
-                count++;
-
-                if (count > maxFeatures) {
-                    Collections.sort(features, comparator);
-                    if (io == null) {
-                        file = File.createTempFile("sorted", ".features");
-                        file.delete();
-                        io = new SimpleFeatureIO(file, schema);
-                    }
-                    FeatureBlockReader fbr = storeToFile(io, features);
-                    readers.add(fbr);
-                    count = 0;
-                    features.clear();
-                }
-            }
-
-            // return the appropriate reader
-            if (io == null) {
-                // simple case, we managed to keep everything in memory, sort and return a
-                // reader based on the collection contents
-                Collections.sort(features, comparator);
-
-                SimpleFeatureIterator fi = new ListFeatureCollection(schema, features).features();
-                return new DelegateSimpleFeatureReader(schema, fi);
-            } else {
-                // go merge-sort
-                cleanFile = false;
-                return new MergeSortReader(schema, io, readers, comparator);
-            }
-
-        } finally {
-            if (cleanFile && io != null) {
-                io.close(true);
-                file.delete();
-            }
-
-            reader.close();
-        }
+        ExternalMergeSorter sorter = new ExternalMergeSorter(schema, comparator, memoryBudget,
+                maxFeatures, compress, ForkJoinPool.commonPool());
+        return sorter.sort(reader);
     }
 
-    /**
-     * Writes the feature attributes to a binary file
-     * 
-     * @param features
-     * @return
-     * @throws IOException
-     */
-    static FeatureBlockReader storeToFile(SimpleFeatureIO io, List<SimpleFeature> features)
-            throws IOException {
-        long start = io.getOffset();
-
-        // write each attribute in the random access file
-        for (SimpleFeature sf : features) {
-            io.write(sf);
-        }
-
-        return new FeatureBlockReader(io, start, features.size());
-    }
-
-
-
     /**
      * Builds a comparator out of the sortBy list
      * 
@@ -18,6 +18,8 @@ package org.geotools.data.sort;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -78,9 +80,21 @@ public class SimpleFeatureIO {
     }
 
     void writeAttribute(AttributeDescriptor ad, Object value) throws IOException {
+        writeAttribute(raf, ad.getType().getBinding(), value);
+    }
+
+    /**
+     * Writes an attribute value of the given binding to the output
+     * 
+     * @param out
+     * @param binding
+     * @param value
+     * @throws IOException
+     */
+    public static void writeAttribute(DataOutput out, Class<?> binding, Object value) throws IOException {
         if (value == null) {
             // null marker
-            raf.writeBoolean(true);
+            out.writeBoolean(true);
         } else {
             // not null, write the contents. This one requires some explanation. We are not
             // writing any type metadata in the stream for the types we can optimize (primitives,
@@ -89,33 +103,32 @@ public class SimpleFeatureIO {
             // actually the one we can optimize for, and not some subclass. Thus, we are authorized
             // to use identity comparison instead of isAssignableFrom or equality, when we read back
             // it must be as if we did not serialize stuff at all
-            raf.writeBoolean(false);
-            Class<?> binding = ad.getType().getBinding();
+            out.writeBoolean(false);
             if (binding == Boolean.class) {
-                raf.writeBoolean((Boolean) value);
+                out.writeBoolean((Boolean) value);
             } else if (binding == Byte.class || binding == byte.class) {
-                raf.writeByte((Byte) value);
+                out.writeByte((Byte) value);
             } else if (binding == Short.class || binding == short.class) {
-                raf.writeShort((Short) value);
+                out.writeShort((Short) value);
             } else if (binding == Integer.class || binding == int.class) {
-                raf.writeInt((Integer) value);
+                out.writeInt((Integer) value);
             } else if (binding == Long.class || binding == long.class) {
-                raf.writeLong((Long) value);
+                out.writeLong((Long) value);
             } else if (binding == Float.class || binding == float.class) {
-                raf.writeFloat((Float) value);
+                out.writeFloat((Float) value);
             } else if (binding == Double.class || binding == double.class) {
-                raf.writeDouble((Double) value);
+                out.writeDouble((Double) value);
             } else if (binding == String.class) {
-                raf.writeUTF((String) value);
+                out.writeUTF((String) value);
             } else if (binding == java.sql.Date.class || binding == java.sql.Time.class
                     || binding == java.sql.Timestamp.class || binding == java.util.Date.class) {
-                raf.writeLong(((Date) value).getTime());
+                out.writeLong(((Date) value).getTime());
             } else if (Geometry.class.isAssignableFrom(binding)) {
                 WKBWriter writer = new WKBWriter();
                 byte[] buffer = writer.write((Geometry) value);
                 int length = buffer.length;
-                raf.writeInt(length);
-                raf.write(buffer);
+                out.writeInt(length);
+                out.write(buffer);
             } else {
                 // can't optimize, in this case we use an ObjectOutputStream to write out
                 // full metadata
@@ -124,8 +137,8 @@ public class SimpleFeatureIO {
                 oos.writeObject(value);
                 oos.flush();
                 byte[] bytes = bos.toByteArray();
-                raf.writeInt(bytes.length);
-                raf.write(bytes);
+                out.writeInt(bytes.length);
+                out.write(bytes);
             }
         }
     }
@@ -157,51 +170,62 @@ public class SimpleFeatureIO {
      * @throws IOException
      */
     Object readAttribute(AttributeDescriptor ad) throws IOException {
-        // See the comments in {@link MergeSortDumper#writeAttribute(RandomAccessFile,
-        // AttributeDescriptor, Object)} to get an insight on why the method is built like this
-        boolean isNull = raf.readBoolean();
+        return readAttribute(raf, ad.getType().getBinding());
+    }
+
+    /**
+     * Reads an attribute value of the given binding from the input
+     * 
+     * @param in
+     * @param binding
+     * @return
+     * @throws IOException
+     */
+    public static Object readAttribute(DataInput in, Class<?> binding) throws IOException {
+        // See the comments in {@link #writeAttribute(DataOutput, Class, Object)} to get an
+        // insight on why the method is built like this
+        boolean isNull = in.readBoolean();
         if (isNull) {
             return null;
         } else {
-            Class<?> binding = ad.getType().getBinding();
             if (binding == Boolean.class) {
-                return raf.readBoolean();
+                return in.readBoolean();
             } else if (binding == Byte.class || binding == byte.class) {
-                return raf.readByte();
+                return in.readByte();
             } else if (binding == Short.class || binding == short.class) {
-                return raf.readShort();
+                return in.readShort();
             } else if (binding == Integer.class || binding == int.class) {
-                return raf.readInt();
+                return in.readInt();
             } else if (binding == Long.class || binding == long.class) {
-                return raf.readLong();
+                return in.readLong();
             } else if (binding == Float.class || binding == float.class) {
-                return raf.readFloat();
+                return in.readFloat();
             } else if (binding == Double.class || binding == double.class) {
-                return raf.readDouble();
+                return in.readDouble();
             } else if (binding == String.class) {
-                return raf.readUTF();
+                return in.readUTF();
             } else if (binding == java.sql.Date.class) {
-                return new java.sql.Date(raf.readLong());
+                return new java.sql.Date(in.readLong());
             } else if (binding == java.sql.Time.class) {
-                return new java.sql.Time(raf.readLong());
+                return new java.sql.Time(in.readLong());
             } else if (binding == java.sql.Timestamp.class) {
-                return new java.sql.Timestamp(raf.readLong());
+                return new java.sql.Timestamp(in.readLong());
             } else if (binding == java.util.Date.class) {
-                return new java.util.Date(raf.readLong());
+                return new java.util.Date(in.readLong());
             } else if (Geometry.class.isAssignableFrom(binding)) {
                 WKBReader reader = new WKBReader();
-                int length = raf.readInt();
+                int length = in.readInt();
                 byte[] buffer = new byte[length];
-                raf.read(buffer);
+                in.readFully(buffer);
                 try {
                     return reader.read(buffer);
                 } catch (ParseException e) {
                     throw new IOException("Failed to parse the geometry WKB", e);
                 }
             } else {
-                int length = raf.readInt();
+                int length = in.readInt();
                 byte[] buffer = new byte[length];
-                raf.read(buffer);
+                in.readFully(buffer);
                 ByteArrayInputStream bis = new ByteArrayInputStream(buffer);
                 ObjectInputStream ois = new ObjectInputStream(bis);
                 try {
@@ -213,6 +237,33 @@ public class SimpleFeatureIO {
         }
     }
 
+    /**
+     * Roughly estimates the memory used by a feature, used to keep the features held in memory
+     * within a budget
+     * 
+     * @param feature
+     * @return The estimated size in bytes
+     */
+    public static long estimateSize(SimpleFeature feature) {
+        // feature object, attribute array, feature id
+        long size = 64 + 40 + 2 * feature.getID().length();
+        int count = feature.getAttributeCount();
+        for (int i = 0; i < count; i++) {
+            Object value = feature.getAttribute(i);
+            if (value == null) {
+                size += 8;
+            } else if (value instanceof String) {
+                size += 48 + 2 * ((String) value).length();
+            } else if (value instanceof Geometry) {
+                // coordinate objects plus the geometry structure
+                size += 80 + 40 * ((Geometry) value).getNumPoints();
+            } else {
+                size += 24;
+            }
+        }
+        return size;
+    }
+
     /**
      * Moves the IO to the specified offset in the file
      * 
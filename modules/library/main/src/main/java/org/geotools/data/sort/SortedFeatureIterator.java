@@ -55,7 +55,7 @@ public class SortedFeatureIterator implements SimpleFeatureIterator {
      * @param schema The iterator schema
      * @param sortBy The sorting directives
      * @param maxFeatures The maximum number of features to keep in memory, or a negative number to
-     *        use the system default
+     *        use the system default, or the memory budget if not set
      * @throws IOException
      */
     public SortedFeatureIterator(SimpleFeatureIterator iterator, SimpleFeatureType schema,
@@ -30,7 +30,8 @@ import org.opengis.filter.sort.SortBy;
 /**
  * FeatureReader used to sort contents.
  * <p>
- * The implementation makes use of {@link MergeSortDumper).
+ * The implementation makes use of {@link MergeSortDumper), contents that do not fit in memory
+ * are sorted in runs, in parallel, spilled to disk and merged back.
  * 
  * @source $URL$
  */
@@ -65,7 +66,9 @@ public class SortedFeatureReader implements SimpleFeatureReader {
      * 
      * @param reader The reader to be sorted
      * @param query The query holding the SortBy directives, and the eventual max features in memory
-     *        hint {@link Hints#MAX_MEMORY_SORT}
+     *        hint {@link Hints#MAX_MEMORY_SORT}, memory budget hint
+     *        {@link Hints#MAX_MEMORY_SORT_BYTES} and compression hint
+     *        {@link Hints#SORT_SPILL_COMPRESSION}
      */
     public SortedFeatureReader(SimpleFeatureReader reader, Query query) throws IOException {
         this.delegate = MergeSortDumper.getDelegateReader(reader, query);
@@ -76,7 +79,8 @@ public class SortedFeatureReader implements SimpleFeatureReader {
      * 
      * @param reader The reader to be sorted
      * @param sortBy The sorting directives
-     * @param maxFeatures The maximum number of features to keep in memory
+     * @param maxFeatures The maximum number of features to keep in memory, or a negative number to
+     *        use the memory budget instead
      * @throws IOException
      */
     public SortedFeatureReader(SimpleFeatureReader reader, SortBy[] sortBy, int maxFeatures)
@@ -19,7 +19,9 @@ package org.geotools.data.store;
 import java.util.NoSuchElementException;
 
 import org.geotools.feature.FeatureIterator;
+import org.geotools.filter.FilterCompiler;
 import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.filter.Filter;
 
 /**
@@ -44,6 +46,10 @@ public class FilteringFeatureIterator<F extends Feature> implements FeatureItera
      * Next feature
      */
     protected F next;
+    /**
+     * The filter used for the evaluation, compiled against the type of the first simple feature
+     */
+    private Filter evaluator;
     
     public FilteringFeatureIterator( FeatureIterator<F> delegate, Filter filter ) {
         this.delegate = delegate;
@@ -57,7 +63,11 @@ public class FilteringFeatureIterator<F extends Feature> implements FeatureItera
         
         while( delegate.hasNext() ) {
             F peek = (F) delegate.next();
-            if ( filter.evaluate( peek ) ) {
+            if ( evaluator == null ) {
+                evaluator = peek instanceof SimpleFeature ? FilterCompiler.compile(filter,
+                        ((SimpleFeature) peek).getFeatureType()) : filter;
+            }
+            if ( evaluator.evaluate( peek ) ) {
                 next = peek;
                 break;
             }
@@ -80,6 +90,7 @@ public class FilteringFeatureIterator<F extends Feature> implements FeatureItera
         delegate = null;
         next = null;
         filter = null;
+        evaluator = null;
     }
 
 
@@ -11,7 +11,8 @@ import org.opengis.filter.sort.SortBy;
 /**
  * A wrapper that will sort a feature collection using a size sensitive algorithm, in main memory
  * for small collections, using secondary memory otherwise. The threshold is defined by the
- * {@link Hints#MAX_MEMORY_SORT} feature count
+ * {@link Hints#MAX_MEMORY_SORT} feature count if set, by the {@link Hints#MAX_MEMORY_SORT_BYTES}
+ * memory budget otherwise
  * 
  * @author Andrea Aime - GeoSolutions
  * 
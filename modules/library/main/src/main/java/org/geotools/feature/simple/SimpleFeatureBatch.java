@@ -0,0 +1,1022 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.simple;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * A batch of simple features sharing the same feature type, stored by column, meant for bulk
+ * read-only scans over large amounts of features.
+ * <p>
+ * Each attribute is kept in its own column: integral and floating point attributes in primitive
+ * arrays, geometries as packed coordinate buffers (x and y ordinates, plus z when present)
+ * along with their structure and envelope, and all other attributes as plain object arrays.
+ * Feature ids in the common "typeName.number" form are stored as primitive longs. Values that
+ * cannot be packed without losing information (a value whose class is not the attribute binding,
+ * a geometry with user data or of a non standard JTS class, and the like) are kept as is.
+ * <p>
+ * The rows can be accessed either column by column, using the typed accessors such as
+ * {@link #getDouble(int, int)} and {@link #getEnvelope(int, int, Envelope)}, which do not
+ * allocate memory, or as {@link SimpleFeature} objects using {@link #getFeature(int)}. The
+ * features returned are read-only views on the batch, their attribute values are boxed and their
+ * geometries rebuilt only when requested. The views share the batch contents, so they are valid
+ * only until the batch is {@link #clear() cleared} and refilled.
+ * <p>
+ * Example of usage: <CODE><PRE>
+ * SimpleFeatureBatch batch = new SimpleFeatureBatch(reader.getFeatureType(), 1024);
+ * int column = batch.getColumn("population");
+ * while (reader.read(batch) &gt; 0) {
+ *   for (int r = 0; r &lt; batch.size(); r++) {
+ *     if (!batch.isNull(r, column)) {
+ *        total += batch.getDouble(r, column);
+ *     }
+ *   }
+ * }
+ * </PRE></CODE>
+ *
+ * @see org.geotools.data.simple.SimpleFeatureBatchReader
+ * @since 16.0
+ */
+public class SimpleFeatureBatch {
+
+    /**
+     * Storage for the values of one attribute
+     */
+    abstract static class Column {
+
+        final AttributeDescriptor descriptor;
+
+        final Class<?> binding;
+
+        /**
+         * The rows whose value is null, or not packed but stored in {@link #objects}
+         */
+        final BitSet unpacked = new BitSet();
+
+        /**
+         * The values that could not be packed, lazily allocated
+         */
+        Object[] objects;
+
+        Column(AttributeDescriptor descriptor) {
+            this.descriptor = descriptor;
+            this.binding = descriptor.getType().getBinding();
+        }
+
+        void set(int row, Object value) {
+            if (value != null && pack(row, value)) {
+                unpacked.clear(row);
+                if (objects != null) {
+                    objects[row] = null;
+                }
+            } else {
+                unpacked.set(row);
+                if (value != null && objects == null) {
+                    objects = new Object[capacity()];
+                }
+                if (objects != null) {
+                    objects[row] = value;
+                }
+            }
+        }
+
+        Object get(int row) {
+            if (unpacked.get(row)) {
+                return objects == null ? null : objects[row];
+            }
+            return unpack(row);
+        }
+
+        boolean isNull(int row) {
+            return unpacked.get(row) && (objects == null || objects[row] == null);
+        }
+
+        boolean isPacked(int row) {
+            return !unpacked.get(row);
+        }
+
+        void clear() {
+            unpacked.clear();
+            if (objects != null) {
+                Arrays.fill(objects, null);
+            }
+        }
+
+        /**
+         * Packs the value, returns false if the value cannot be packed without losing
+         * information
+         */
+        abstract boolean pack(int row, Object value);
+
+        abstract Object unpack(int row);
+
+        abstract int capacity();
+    }
+
+    /**
+     * Stores everything as is
+     */
+    static final class ObjectColumn extends Column {
+        final int capacity;
+
+        ObjectColumn(AttributeDescriptor descriptor, int capacity) {
+            super(descriptor);
+            this.capacity = capacity;
+        }
+
+        boolean pack(int row, Object value) {
+            return false;
+        }
+
+        Object unpack(int row) {
+            throw new IllegalStateException("Object columns do not pack values");
+        }
+
+        int capacity() {
+            return capacity;
+        }
+    }
+
+    /**
+     * Stores bytes, shorts and integers in an int array
+     */
+    static final class IntColumn extends Column {
+        final int[] values;
+
+        IntColumn(AttributeDescriptor descriptor, int capacity) {
+            super(descriptor);
+            this.values = new int[capacity];
+        }
+
+        boolean pack(int row, Object value) {
+            if (value.getClass() != binding) {
+                return false;
+            }
+            values[row] = ((Number) value).intValue();
+            return true;
+        }
+
+        Object unpack(int row) {
+            int value = values[row];
+            if (binding == Short.class) {
+                return Short.valueOf((short) value);
+            } else if (binding == Byte.class) {
+                return Byte.valueOf((byte) value);
+            }
+            return Integer.valueOf(value);
+        }
+
+        boolean fits(long value) {
+            if (binding == Short.class) {
+                return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+            } else if (binding == Byte.class) {
+                return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE;
+            }
+            return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+        }
+
+        int capacity() {
+            return values.length;
+        }
+    }
+
+    /**
+     * Stores longs in a long array
+     */
+    static final class LongColumn extends Column {
+        final long[] values;
+
+        LongColumn(AttributeDescriptor descriptor, int capacity) {
+            super(descriptor);
+            this.values = new long[capacity];
+        }
+
+        boolean pack(int row, Object value) {
+            if (value.getClass() != Long.class) {
+                return false;
+            }
+            values[row] = (Long) value;
+            return true;
+        }
+
+        Object unpack(int row) {
+            return Long.valueOf(values[row]);
+        }
+
+        int capacity() {
+            return values.length;
+        }
+    }
+
+    /**
+     * Stores floats and doubles in a double array
+     */
+    static final class DoubleColumn extends Column {
+        final double[] values;
+
+        DoubleColumn(AttributeDescriptor descriptor, int capacity) {
+            super(descriptor);
+            this.values = new double[capacity];
+        }
+
+        boolean pack(int row, Object value) {
+            if (value.getClass() != binding) {
+                return false;
+            }
+            values[row] = ((Number) value).doubleValue();
+            return true;
+        }
+
+        Object unpack(int row) {
+            if (binding == Float.class) {
+                return Float.valueOf((float) values[row]);
+            }
+            return Double.valueOf(values[row]);
+        }
+
+        int capacity() {
+            return values.length;
+        }
+    }
+
+    /**
+     * Stores geometries as packed coordinates. The structure of each geometry is encoded in an
+     * int array as a type code followed by the number of components, recursively, where the
+     * leaves are coordinate counts.
+     */
+    static final class GeometryColumn extends Column {
+        static final int POINT = 1;
+
+        static final int LINESTRING = 2;
+
+        static final int LINEARRING = 3;
+
+        static final int POLYGON = 4;
+
+        static final int MULTIPOINT = 5;
+
+        static final int MULTILINESTRING = 6;
+
+        static final int MULTIPOLYGON = 7;
+
+        static final int COLLECTION = 8;
+
+        /**
+         * The factory of the packed geometries, geometries built by other factories are not
+         * packed
+         */
+        GeometryFactory factory;
+
+        int[] structure = new int[64];
+
+        int structureSize;
+
+        double[] xy = new double[256];
+
+        /**
+         * The z ordinates, allocated only when the first non NaN z is found
+         */
+        double[] z;
+
+        int coordinates;
+
+        final int[] structureStart;
+
+        final int[] coordinateStart;
+
+        /**
+         * The geometry envelopes, as minx, miny, maxx, maxy for each row
+         */
+        final double[] envelopes;
+
+        GeometryColumn(AttributeDescriptor descriptor, int capacity) {
+            super(descriptor);
+            this.structureStart = new int[capacity];
+            this.coordinateStart = new int[capacity];
+            this.envelopes = new double[capacity * 4];
+        }
+
+        boolean pack(int row, Object value) {
+            if (!(value instanceof Geometry)) {
+                return false;
+            }
+            Geometry geometry = (Geometry) value;
+            if (factory == null) {
+                factory = geometry.getFactory();
+            }
+            int structureMark = structureSize;
+            int coordinateMark = coordinates;
+            if (!encode(geometry)) {
+                // roll back, the geometry will be stored as is
+                structureSize = structureMark;
+                coordinates = coordinateMark;
+                return false;
+            }
+            structureStart[row] = structureMark;
+            coordinateStart[row] = coordinateMark;
+            Envelope envelope = geometry.getEnvelopeInternal();
+            if (envelope.isNull()) {
+                Arrays.fill(envelopes, row * 4, row * 4 + 4, Double.NaN);
+            } else {
+                envelopes[row * 4] = envelope.getMinX();
+                envelopes[row * 4 + 1] = envelope.getMinY();
+                envelopes[row * 4 + 2] = envelope.getMaxX();
+                envelopes[row * 4 + 3] = envelope.getMaxY();
+            }
+            return true;
+        }
+
+        private boolean encode(Geometry geometry) {
+            if (geometry.getUserData() != null || geometry.getFactory() != factory
+                    || geometry.getSRID() != factory.getSRID()) {
+                return false;
+            }
+            Class<?> type = geometry.getClass();
+            if (type == Point.class) {
+                addStructure(POINT);
+                if (!addCoordinates(((Point) geometry).getCoordinateSequence())) {
+                    return false;
+                }
+            } else if (type == LineString.class) {
+                addStructure(LINESTRING);
+                if (!addCoordinates(((LineString) geometry).getCoordinateSequence())) {
+                    return false;
+                }
+            } else if (type == LinearRing.class) {
+                addStructure(LINEARRING);
+                if (!addCoordinates(((LinearRing) geometry).getCoordinateSequence())) {
+                    return false;
+                }
+            } else if (type == Polygon.class) {
+                Polygon polygon = (Polygon) geometry;
+                addStructure(POLYGON);
+                addStructure(polygon.getNumInteriorRing() + 1);
+                if (!encodeRing(polygon.getExteriorRing())) {
+                    return false;
+                }
+                for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                    if (!encodeRing(polygon.getInteriorRingN(i))) {
+                        return false;
+                    }
+                }
+            } else if (type == MultiPoint.class || type == MultiLineString.class
+                    || type == MultiPolygon.class || type == GeometryCollection.class) {
+                Class<?> componentType = null;
+                if (type == MultiPoint.class) {
+                    addStructure(MULTIPOINT);
+                    componentType = Point.class;
+                } else if (type == MultiLineString.class) {
+                    addStructure(MULTILINESTRING);
+                    componentType = LineString.class;
+                } else if (type == MultiPolygon.class) {
+                    addStructure(MULTIPOLYGON);
+                    componentType = Polygon.class;
+                } else {
+                    addStructure(COLLECTION);
+                }
+                addStructure(geometry.getNumGeometries());
+                for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                    Geometry component = geometry.getGeometryN(i);
+                    if ((componentType != null && component.getClass() != componentType)
+                            || !encode(component)) {
+                        return false;
+                    }
+                }
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        private boolean encodeRing(LineString ring) {
+            if (ring.getClass() != LinearRing.class || ring.getUserData() != null
+                    || ring.getFactory() != factory) {
+                return false;
+            }
+            return addCoordinates(ring.getCoordinateSequence());
+        }
+
+        private void addStructure(int value) {
+            if (structureSize == structure.length) {
+                structure = Arrays.copyOf(structure, structure.length * 2);
+            }
+            structure[structureSize++] = value;
+        }
+
+        private boolean addCoordinates(CoordinateSequence cs) {
+            // measures are not packed
+            if (cs.getDimension() > 3) {
+                return false;
+            }
+            final int size = cs.size();
+            addStructure(size);
+            if ((coordinates + size) * 2 > xy.length) {
+                int length = Math.max(xy.length * 2, (coordinates + size) * 2);
+                xy = Arrays.copyOf(xy, length);
+                if (z != null) {
+                    z = growZ(z, length / 2);
+                }
+            }
+            final boolean hasZ = cs.getDimension() > 2;
+            for (int i = 0; i < size; i++) {
+                xy[coordinates * 2] = cs.getOrdinate(i, CoordinateSequence.X);
+                xy[coordinates * 2 + 1] = cs.getOrdinate(i, CoordinateSequence.Y);
+                if (hasZ) {
+                    double ordinate = cs.getOrdinate(i, CoordinateSequence.Z);
+                    if (z == null && !Double.isNaN(ordinate)) {
+                        z = growZ(new double[0], xy.length / 2);
+                    }
+                    if (z != null) {
+                        z[coordinates] = ordinate;
+                    }
+                } else if (z != null) {
+                    z[coordinates] = Double.NaN;
+                }
+                coordinates++;
+            }
+            return true;
+        }
+
+        private static double[] growZ(double[] z, int length) {
+            int previous = z.length;
+            double[] result = Arrays.copyOf(z, length);
+            Arrays.fill(result, previous, length, Double.NaN);
+            return result;
+        }
+
+        Object unpack(int row) {
+            // the cursor is local, so that several threads can read the batch at the same time
+            int[] cursor = new int[] { structureStart[row], coordinateStart[row] };
+            return decode(cursor);
+        }
+
+        /**
+         * Rebuilds a geometry, the cursor holds the current structure and coordinate positions
+         */
+        private Geometry decode(int[] cursor) {
+            int type = structure[cursor[0]++];
+            switch (type) {
+            case POINT:
+                return factory.createPoint(decodeCoordinates(cursor));
+            case LINESTRING:
+                return factory.createLineString(decodeCoordinates(cursor));
+            case LINEARRING:
+                return factory.createLinearRing(decodeCoordinates(cursor));
+            case POLYGON: {
+                int rings = structure[cursor[0]++];
+                LinearRing shell = factory.createLinearRing(decodeCoordinates(cursor));
+                LinearRing[] holes = new LinearRing[rings - 1];
+                for (int i = 0; i < holes.length; i++) {
+                    holes[i] = factory.createLinearRing(decodeCoordinates(cursor));
+                }
+                return factory.createPolygon(shell, holes);
+            }
+            case MULTIPOINT: {
+                Point[] points = new Point[structure[cursor[0]++]];
+                for (int i = 0; i < points.length; i++) {
+                    points[i] = (Point) decode(cursor);
+                }
+                return factory.createMultiPoint(points);
+            }
+            case MULTILINESTRING: {
+                LineString[] lines = new LineString[structure[cursor[0]++]];
+                for (int i = 0; i < lines.length; i++) {
+                    lines[i] = (LineString) decode(cursor);
+                }
+                return factory.createMultiLineString(lines);
+            }
+            case MULTIPOLYGON: {
+                Polygon[] polygons = new Polygon[structure[cursor[0]++]];
+                for (int i = 0; i < polygons.length; i++) {
+                    polygons[i] = (Polygon) decode(cursor);
+                }
+                return factory.createMultiPolygon(polygons);
+            }
+            case COLLECTION: {
+                Geometry[] geometries = new Geometry[structure[cursor[0]++]];
+                for (int i = 0; i < geometries.length; i++) {
+                    geometries[i] = decode(cursor);
+                }
+                return factory.createGeometryCollection(geometries);
+            }
+            default:
+                throw new IllegalStateException("Unknown geometry type code " + type);
+            }
+        }
+
+        private CoordinateSequence decodeCoordinates(int[] cursor) {
+            final int size = structure[cursor[0]++];
+            CoordinateSequence cs = factory.getCoordinateSequenceFactory().create(size,
+                    z != null ? 3 : 2);
+            int position = cursor[1];
+            for (int i = 0; i < size; i++, position++) {
+                cs.setOrdinate(i, CoordinateSequence.X, xy[position * 2]);
+                cs.setOrdinate(i, CoordinateSequence.Y, xy[position * 2 + 1]);
+                if (z != null && cs.getDimension() > 2) {
+                    cs.setOrdinate(i, CoordinateSequence.Z, z[position]);
+                }
+            }
+            cursor[1] = position;
+            return cs;
+        }
+
+        /**
+         * Copies the envelope of the geometry in the target, returns false if the geometry is
+         * null or empty
+         */
+        boolean getEnvelope(int row, Envelope target) {
+            if (isPacked(row)) {
+                double minX = envelopes[row * 4];
+                if (Double.isNaN(minX)) {
+                    return false;
+                }
+                target.init(minX, envelopes[row * 4 + 2], envelopes[row * 4 + 1],
+                        envelopes[row * 4 + 3]);
+                return true;
+            }
+            Object value = get(row);
+            if (value instanceof Geometry && !((Geometry) value).isEmpty()) {
+                target.init(((Geometry) value).getEnvelopeInternal());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        void clear() {
+            super.clear();
+            structureSize = 0;
+            coordinates = 0;
+        }
+
+        int capacity() {
+            return structureStart.length;
+        }
+    }
+
+    final SimpleFeatureType featureType;
+
+    final Map<String, Integer> index;
+
+    final Column[] columns;
+
+    final int capacity;
+
+    int size;
+
+    /**
+     * The prefix of the feature ids stored as numbers
+     */
+    final String idPrefix;
+
+    /**
+     * The feature id numbers, or -1 if the feature id is stored in {@link #ids}
+     */
+    final long[] idNumbers;
+
+    /**
+     * The feature ids that are not in the typeName.number form, lazily allocated
+     */
+    String[] ids;
+
+    /**
+     * The feature user data, lazily allocated
+     */
+    Map<Object, Object>[] userData;
+
+    /**
+     * Creates a new batch
+     *
+     * @param featureType The type of the features in the batch
+     * @param capacity The maximum number of features the batch can hold
+     */
+    public SimpleFeatureBatch(SimpleFeatureType featureType, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The batch capacity must be positive");
+        }
+        this.featureType = featureType;
+        this.index = SimpleFeatureImpl.index(featureType);
+        this.capacity = capacity;
+        this.idPrefix = featureType.getTypeName() + ".";
+        this.idNumbers = new long[capacity];
+        List<AttributeDescriptor> descriptors = featureType.getAttributeDescriptors();
+        this.columns = new Column[descriptors.size()];
+        for (int i = 0; i < columns.length; i++) {
+            AttributeDescriptor descriptor = descriptors.get(i);
+            Class<?> binding = descriptor.getType().getBinding();
+            if (descriptor instanceof GeometryDescriptor) {
+                columns[i] = new GeometryColumn(descriptor, capacity);
+            } else if (binding == Integer.class || binding == Short.class
+                    || binding == Byte.class) {
+                columns[i] = new IntColumn(descriptor, capacity);
+            } else if (binding == Long.class) {
+                columns[i] = new LongColumn(descriptor, capacity);
+            } else if (binding == Double.class || binding == Float.class) {
+                columns[i] = new DoubleColumn(descriptor, capacity);
+            } else {
+                columns[i] = new ObjectColumn(descriptor, capacity);
+            }
+        }
+    }
+
+    /**
+     * The type of the features in the batch
+     */
+    public SimpleFeatureType getFeatureType() {
+        return featureType;
+    }
+
+    /**
+     * The number of features in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The maximum number of features this batch can hold
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns true if the batch cannot hold any more features
+     */
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Removes all the features from the batch, so that it can be filled again. The feature views
+     * obtained from the batch are not valid anymore after this call.
+     */
+    public void clear() {
+        for (Column column : columns) {
+            column.clear();
+        }
+        if (ids != null) {
+            Arrays.fill(ids, null);
+        }
+        if (userData != null) {
+            Arrays.fill(userData, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * Returns the position of the column holding the specified attribute, or -1 if the feature
+     * type does not have such attribute
+     */
+    public int getColumn(String name) {
+        Integer column = index.get(name);
+        return column == null ? -1 : column;
+    }
+
+    /**
+     * Adds a new row, with all the values set to null
+     *
+     * @param id The feature id
+     * @return the new row
+     * @throws IllegalStateException if the batch is full
+     */
+    public int addRow(String id) {
+        int row = newRow();
+        long number = parseIdNumber(id);
+        idNumbers[row] = number;
+        if (number < 0) {
+            if (ids == null) {
+                ids = new String[capacity];
+            }
+            ids[row] = id;
+        }
+        return row;
+    }
+
+    /**
+     * Adds a new row, with all the values set to null, and a feature id made of the feature type
+     * name and the specified number, e.g., "roads.12"
+     *
+     * @param idNumber The feature id number, must be positive or zero
+     * @return the new row
+     * @throws IllegalStateException if the batch is full
+     */
+    public int addRow(long idNumber) {
+        if (idNumber < 0) {
+            throw new IllegalArgumentException("Feature id numbers cannot be negative");
+        }
+        int row = newRow();
+        idNumbers[row] = idNumber;
+        return row;
+    }
+
+    /**
+     * Adds a new row holding a copy of the feature id, values and user data of the feature
+     *
+     * @return the new row
+     * @throws IllegalStateException if the batch is full
+     */
+    public int addFeature(SimpleFeature feature) {
+        int row = addRow(feature.getID());
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].set(row, feature.getAttribute(i));
+        }
+        Map<Object, Object> featureUserData = feature.getUserData();
+        if (featureUserData != null && !featureUserData.isEmpty()) {
+            getUserData(row).putAll(featureUserData);
+        }
+        return row;
+    }
+
+    /**
+     * Removes the last row, e.g., because the feature was found not to be of interest after
+     * filling it.
+     */
+    public void removeLastRow() {
+        if (size == 0) {
+            throw new IllegalStateException("The batch is empty");
+        }
+        size--;
+        for (Column column : columns) {
+            column.set(size, null);
+        }
+        if (ids != null) {
+            ids[size] = null;
+        }
+        if (userData != null) {
+            userData[size] = null;
+        }
+    }
+
+    private int newRow() {
+        if (size == capacity) {
+            throw new IllegalStateException("The batch is full");
+        }
+        int row = size++;
+        for (Column column : columns) {
+            column.set(row, null);
+        }
+        return row;
+    }
+
+    private long parseIdNumber(String id) {
+        if (id == null || !id.startsWith(idPrefix)) {
+            return -1;
+        }
+        int start = idPrefix.length();
+        int length = id.length() - start;
+        // the number must convert back to the very same string
+        if (length == 0 || length > 18 || (id.charAt(start) == '0' && length > 1)) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = start; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Sets the value of an attribute. The value is stored as is, without conversions to the
+     * attribute binding.
+     */
+    public void setValue(int row, int column, Object value) {
+        checkRow(row);
+        columns[column].set(row, value);
+    }
+
+    /**
+     * Sets the value of a numeric attribute from a primitive double, converting it to the
+     * attribute binding
+     *
+     * @throws IllegalArgumentException if the value cannot be represented in the attribute
+     *         binding
+     */
+    public void setDouble(int row, int column, double value) {
+        checkRow(row);
+        Column target = columns[column];
+        if (target instanceof DoubleColumn) {
+            DoubleColumn dc = (DoubleColumn) target;
+            dc.values[row] = dc.binding == Float.class ? (float) value : value;
+            markPacked(dc, row);
+        } else if ((target instanceof IntColumn || target instanceof LongColumn)
+                && value == Math.rint(value) && !Double.isInfinite(value)) {
+            setLong(row, column, (long) value);
+        } else if (target instanceof IntColumn || target instanceof LongColumn) {
+            throw new IllegalArgumentException("Value " + value + " is not integral");
+        } else {
+            target.set(row, Double.valueOf(value));
+        }
+    }
+
+    /**
+     * Sets the value of a numeric attribute from a primitive long, converting it to the
+     * attribute binding
+     *
+     * @throws IllegalArgumentException if the value does not fit the attribute binding
+     */
+    public void setLong(int row, int column, long value) {
+        checkRow(row);
+        Column target = columns[column];
+        if (target instanceof IntColumn) {
+            IntColumn ic = (IntColumn) target;
+            if (!ic.fits(value)) {
+                throw new IllegalArgumentException("Value " + value + " does not fit in a "
+                        + ic.binding.getSimpleName());
+            }
+            ic.values[row] = (int) value;
+            markPacked(ic, row);
+        } else if (target instanceof LongColumn) {
+            ((LongColumn) target).values[row] = value;
+            markPacked(target, row);
+        } else if (target instanceof DoubleColumn) {
+            setDouble(row, column, value);
+        } else {
+            target.set(row, Long.valueOf(value));
+        }
+    }
+
+    private void markPacked(Column column, int row) {
+        column.unpacked.clear(row);
+        if (column.objects != null) {
+            column.objects[row] = null;
+        }
+    }
+
+    /**
+     * Returns the feature id of the row
+     */
+    public String getID(int row) {
+        checkRow(row);
+        long number = idNumbers[row];
+        if (number < 0) {
+            return ids[row];
+        }
+        return idPrefix + number;
+    }
+
+    /**
+     * Returns the value of the attribute, boxing or rebuilding it if it has been packed
+     */
+    public Object getValue(int row, int column) {
+        checkRow(row);
+        return columns[column].get(row);
+    }
+
+    /**
+     * Returns true if the value of the attribute is null
+     */
+    public boolean isNull(int row, int column) {
+        checkRow(row);
+        return columns[column].isNull(row);
+    }
+
+    /**
+     * Returns the value of a numeric attribute as a primitive double, without allocating memory
+     * for packed values, or {@link Double#NaN} if the value is null
+     *
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    public double getDouble(int row, int column) {
+        checkRow(row);
+        Column source = columns[column];
+        if (source.isPacked(row)) {
+            if (source instanceof DoubleColumn) {
+                return ((DoubleColumn) source).values[row];
+            } else if (source instanceof IntColumn) {
+                return ((IntColumn) source).values[row];
+            } else if (source instanceof LongColumn) {
+                return ((LongColumn) source).values[row];
+            }
+        }
+        Object value = source.get(row);
+        if (value == null) {
+            return Double.NaN;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        throw new IllegalArgumentException("Value " + value + " is not a number");
+    }
+
+    /**
+     * Returns the value of a numeric attribute as a primitive long, without allocating memory
+     * for packed integral values. The result is zero for null values, use
+     * {@link #isNull(int, int)} to tell them apart.
+     *
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    public long getLong(int row, int column) {
+        checkRow(row);
+        Column source = columns[column];
+        if (source.isPacked(row)) {
+            if (source instanceof IntColumn) {
+                return ((IntColumn) source).values[row];
+            } else if (source instanceof LongColumn) {
+                return ((LongColumn) source).values[row];
+            } else if (source instanceof DoubleColumn) {
+                return (long) ((DoubleColumn) source).values[row];
+            }
+        }
+        Object value = source.get(row);
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        throw new IllegalArgumentException("Value " + value + " is not a number");
+    }
+
+    /**
+     * Returns the geometry, rebuilding it from the packed coordinates if necessary. Each call
+     * returns a new geometry object for packed geometries.
+     */
+    public Geometry getGeometry(int row, int column) {
+        return (Geometry) getValue(row, column);
+    }
+
+    /**
+     * Copies the envelope of a geometry attribute into the target envelope, without rebuilding
+     * packed geometries
+     *
+     * @return false if the geometry is null or empty, in this case the target is not modified
+     * @throws IllegalArgumentException if the column is not a geometry one
+     */
+    public boolean getEnvelope(int row, int column, Envelope target) {
+        checkRow(row);
+        Column source = columns[column];
+        if (!(source instanceof GeometryColumn)) {
+            throw new IllegalArgumentException("Column " + column + " is not a geometry column");
+        }
+        return ((GeometryColumn) source).getEnvelope(row, target);
+    }
+
+    /**
+     * Returns a read-only feature view on the specified row. The view is valid until the batch
+     * is cleared.
+     */
+    public SimpleFeature getFeature(int row) {
+        checkRow(row);
+        return new SimpleFeatureBatchView(this, row);
+    }
+
+    /**
+     * Returns the user data of the feature in the specified row
+     */
+    @SuppressWarnings("unchecked")
+    Map<Object, Object> getUserData(int row) {
+        if (userData == null) {
+            userData = new Map[capacity];
+        }
+        if (userData[row] == null) {
+            userData[row] = new HashMap<Object, Object>();
+        }
+        return userData[row];
+    }
+
+    void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " is not in the batch, size is "
+                    + size);
+        }
+    }
+}
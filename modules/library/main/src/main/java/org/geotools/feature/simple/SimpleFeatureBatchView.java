@@ -0,0 +1,302 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.simple;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.feature.AttributeImpl;
+import org.geotools.feature.GeometryAttributeImpl;
+import org.geotools.feature.type.AttributeDescriptorImpl;
+import org.geotools.feature.type.Types;
+import org.geotools.filter.identity.FeatureIdImpl;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.geometry.jts.coordinatesequence.CoordinateSequences;
+import org.opengis.feature.GeometryAttribute;
+import org.opengis.feature.Property;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.feature.type.Name;
+import org.opengis.filter.identity.FeatureId;
+import org.opengis.geometry.BoundingBox;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * A read-only {@link SimpleFeature} view on a row of a {@link SimpleFeatureBatch}. Values are
+ * read from the batch on each access, the view itself only holds the batch and the row number.
+ */
+class SimpleFeatureBatchView implements SimpleFeature {
+
+    final SimpleFeatureBatch batch;
+
+    final int row;
+
+    SimpleFeatureBatchView(SimpleFeatureBatch batch, int row) {
+        this.batch = batch;
+        this.row = row;
+    }
+
+    public FeatureId getIdentifier() {
+        return new FeatureIdImpl(getID());
+    }
+
+    public String getID() {
+        return batch.getID(row);
+    }
+
+    public SimpleFeatureType getType() {
+        return batch.featureType;
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return batch.featureType;
+    }
+
+    public List<Object> getAttributes() {
+        List<Object> values = new ArrayList<Object>(batch.columns.length);
+        for (int i = 0; i < batch.columns.length; i++) {
+            values.add(batch.getValue(row, i));
+        }
+        return values;
+    }
+
+    public Object getAttribute(int index) throws IndexOutOfBoundsException {
+        return batch.getValue(row, index);
+    }
+
+    public Object getAttribute(String name) {
+        Integer idx = batch.index.get(name);
+        if (idx != null) {
+            return getAttribute(idx);
+        } else {
+            return null;
+        }
+    }
+
+    public Object getAttribute(Name name) {
+        return getAttribute(name.getLocalPart());
+    }
+
+    public int getAttributeCount() {
+        return batch.columns.length;
+    }
+
+    public Object getDefaultGeometry() {
+        // same lookup as SimpleFeatureImpl
+        Integer idx = batch.index.get(null);
+        Object defaultGeometry = idx != null ? getAttribute(idx) : null;
+        if (defaultGeometry == null) {
+            GeometryDescriptor geometryDescriptor = batch.featureType.getGeometryDescriptor();
+            if (geometryDescriptor != null) {
+                defaultGeometry = getAttribute(geometryDescriptor.getLocalName());
+            }
+        }
+        return defaultGeometry;
+    }
+
+    public void setAttribute(String name, Object value) {
+        throw readOnly();
+    }
+
+    public void setAttribute(Name name, Object value) {
+        throw readOnly();
+    }
+
+    public void setAttribute(int index, Object value) throws IndexOutOfBoundsException {
+        throw readOnly();
+    }
+
+    public void setAttributes(List<Object> values) {
+        throw readOnly();
+    }
+
+    public void setAttributes(Object[] values) {
+        throw readOnly();
+    }
+
+    public void setDefaultGeometry(Object geometry) {
+        throw readOnly();
+    }
+
+    /**
+     * Computes the bounds from the envelopes stored in the batch, without rebuilding the
+     * geometries
+     */
+    public BoundingBox getBounds() {
+        ReferencedEnvelope bounds = new ReferencedEnvelope(batch.featureType
+                .getCoordinateReferenceSystem());
+        Envelope envelope = new Envelope();
+        for (int i = 0; i < batch.columns.length; i++) {
+            if (batch.columns[i] instanceof SimpleFeatureBatch.GeometryColumn
+                    && batch.getEnvelope(row, i, envelope)) {
+                bounds.expandToInclude(envelope);
+            }
+        }
+        return bounds;
+    }
+
+    public GeometryAttribute getDefaultGeometryProperty() {
+        GeometryDescriptor geometryDescriptor = batch.featureType.getGeometryDescriptor();
+        if (geometryDescriptor == null) {
+            return null;
+        }
+        return new GeometryAttributeImpl(getDefaultGeometry(), geometryDescriptor, null);
+    }
+
+    public void setDefaultGeometryProperty(GeometryAttribute geometryAttribute) {
+        throw readOnly();
+    }
+
+    public Collection<Property> getProperties() {
+        return new AbstractList<Property>() {
+            public Property get(int index) {
+                return getProperty(index);
+            }
+
+            public int size() {
+                return batch.columns.length;
+            }
+        };
+    }
+
+    public Collection<Property> getProperties(Name name) {
+        return getProperties(name.getLocalPart());
+    }
+
+    public Collection<Property> getProperties(String name) {
+        Integer idx = batch.index.get(name);
+        if (idx == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(getProperty(idx));
+    }
+
+    public Property getProperty(Name name) {
+        return getProperty(name.getLocalPart());
+    }
+
+    public Property getProperty(String name) {
+        Integer idx = batch.index.get(name);
+        return idx == null ? null : getProperty(idx);
+    }
+
+    /**
+     * Returns a detached, read only copy of the attribute
+     */
+    Property getProperty(int index) {
+        AttributeDescriptor descriptor = batch.featureType.getDescriptor(index);
+        Object value = getAttribute(index);
+        if (descriptor instanceof GeometryDescriptor) {
+            return new GeometryAttributeImpl(value, (GeometryDescriptor) descriptor, null);
+        }
+        return new AttributeImpl(value, descriptor, null);
+    }
+
+    public Collection<? extends Property> getValue() {
+        return getProperties();
+    }
+
+    public void setValue(Collection<Property> values) {
+        throw readOnly();
+    }
+
+    public void setValue(Object newValue) {
+        throw readOnly();
+    }
+
+    public AttributeDescriptor getDescriptor() {
+        return new AttributeDescriptorImpl(batch.featureType, batch.featureType.getName(), 0,
+                Integer.MAX_VALUE, true, null);
+    }
+
+    public Name getName() {
+        return batch.featureType.getName();
+    }
+
+    public boolean isNillable() {
+        return true;
+    }
+
+    public Map<Object, Object> getUserData() {
+        return batch.getUserData(row);
+    }
+
+    public void validate() {
+        for (int i = 0; i < batch.columns.length; i++) {
+            Types.validate(batch.featureType.getDescriptor(i), getAttribute(i));
+        }
+    }
+
+    private UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Features backed by a batch are read only");
+    }
+
+    public int hashCode() {
+        return getID().hashCode() * batch.featureType.hashCode();
+    }
+
+    /**
+     * Same semantics as {@link SimpleFeatureImpl#equals(Object)}, but works against any simple
+     * feature implementation
+     */
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof SimpleFeature)) {
+            return false;
+        }
+        SimpleFeature other = (SimpleFeature) obj;
+        if (!getIdentifier().equals(other.getIdentifier())
+                || !batch.featureType.equals(other.getFeatureType())) {
+            return false;
+        }
+        for (int i = 0; i < batch.columns.length; i++) {
+            Object value = getAttribute(i);
+            Object otherValue = other.getAttribute(i);
+            if (value == null) {
+                if (otherValue != null) {
+                    return false;
+                }
+            } else if (value instanceof Geometry) {
+                if (!(otherValue instanceof Geometry)
+                        || !CoordinateSequences.equalsND((Geometry) value, (Geometry) otherValue)) {
+                    return false;
+                }
+            } else if (!value.equals(otherValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String toString() {
+        StringBuffer sb = new StringBuffer("SimpleFeatureBatchView:");
+        sb.append(getType().getName().getLocalPart());
+        sb.append("=");
+        sb.append(getValue());
+        return sb.toString();
+    }
+}
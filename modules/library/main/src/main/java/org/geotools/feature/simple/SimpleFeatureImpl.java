@@ -155,7 +155,7 @@ public class SimpleFeatureImpl implements SimpleFeature {
      * @return mapping between attribute name to attribute index
      */
     @SuppressWarnings("unchecked")
-    private static Map<String,Integer> index(SimpleFeatureType featureType) {
+    static Map<String,Integer> index(SimpleFeatureType featureType) {
         // in the most common case reuse the map cached in the feature type
         if(featureType instanceof SimpleFeatureTypeImpl) {
             return ((SimpleFeatureTypeImpl) featureType).index;
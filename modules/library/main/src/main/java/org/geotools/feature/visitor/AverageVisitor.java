@@ -38,7 +38,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class AverageVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class AverageVisitor implements PartitionableFeatureCalc, FeatureAttributeVisitor {
     private Expression expr;
 
     /**
@@ -172,6 +172,26 @@ public class AverageVisitor implements FeatureCalc, FeatureAttributeVisitor {
         return new AverageResult(strategy, isOptimized);
     }
 
+    public PartitionableFeatureCalc split() {
+        if (getClass() != AverageVisitor.class || isOptimized) {
+            // subclasses might accumulate differently, and optimized results cannot be merged
+            return null;
+        }
+        return new AverageVisitor(expr);
+    }
+
+    public void combine(PartitionableFeatureCalc partial) {
+        AverageStrategy partialStrategy = ((AverageVisitor) partial).strategy;
+        if (partialStrategy == null) {
+            return;
+        }
+        if (strategy == null) {
+            strategy = partialStrategy;
+        } else {
+            strategy.merge(partialStrategy);
+        }
+    }
+
     public void setValue(Object newAverage) {
         reset();
 
@@ -204,6 +224,11 @@ public class AverageVisitor implements FeatureCalc, FeatureAttributeVisitor {
         public int getCount();
 
         public void set(int count, Object sum);
+
+        /**
+         * Adds the sum and count of another strategy to this one
+         */
+        public void merge(AverageStrategy other);
     }
 
     /**
@@ -234,6 +259,11 @@ public class AverageVisitor implements FeatureCalc, FeatureAttributeVisitor {
             number = ((Number) sum).doubleValue();
             count = newCount;
         }
+
+        public void merge(AverageStrategy other) {
+            number += ((Number) other.getSum()).doubleValue();
+            count += other.getCount();
+        }
     }
 
     /**
@@ -264,6 +294,11 @@ public class AverageVisitor implements FeatureCalc, FeatureAttributeVisitor {
             number = ((Number) sum).floatValue();
             count = newCount;
         }
+
+        public void merge(AverageStrategy other) {
+            number += ((Number) other.getSum()).floatValue();
+            count += other.getCount();
+        }
     }
 
     /**
@@ -294,6 +329,11 @@ public class AverageVisitor implements FeatureCalc, FeatureAttributeVisitor {
             number = ((Number) sum).longValue();
             count = newCount;
         }
+
+        public void merge(AverageStrategy other) {
+            number += ((Number) other.getSum()).longValue();
+            count += other.getCount();
+        }
     }
 
     /**
@@ -324,6 +364,11 @@ public class AverageVisitor implements FeatureCalc, FeatureAttributeVisitor {
             number = ((Number) sum).intValue();
             count = newCount;
         }
+
+        public void merge(AverageStrategy other) {
+            number += ((Number) other.getSum()).intValue();
+            count += other.getCount();
+        }
     }
 
     /**
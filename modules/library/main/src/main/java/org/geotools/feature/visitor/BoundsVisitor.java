@@ -31,7 +31,7 @@ import com.vividsolutions.jts.geom.Envelope;
  *
  * @source $URL$
  */
-public class BoundsVisitor implements FeatureCalc {
+public class BoundsVisitor implements PartitionableFeatureCalc {
     ReferencedEnvelope bounds = new ReferencedEnvelope();    
         
     public void visit(org.opengis.feature.Feature feature) {
@@ -46,6 +46,21 @@ public class BoundsVisitor implements FeatureCalc {
         this.bounds = new ReferencedEnvelope();
     }
 
+    public PartitionableFeatureCalc split() {
+        if (getClass() != BoundsVisitor.class) {
+            // subclasses might accumulate differently
+            return null;
+        }
+        return new BoundsVisitor();
+    }
+
+    public void combine(PartitionableFeatureCalc partial) {
+        ReferencedEnvelope other = ((BoundsVisitor) partial).bounds;
+        if (!other.isNull()) {
+            bounds.include(other);
+        }
+    }
+
     public CalcResult getResult() {
     	if(bounds == null || bounds.isEmpty()) {
     		return CalcResult.NULL_RESULT;
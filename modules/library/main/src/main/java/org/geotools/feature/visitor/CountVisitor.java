@@ -31,7 +31,7 @@ import org.opengis.feature.simple.SimpleFeature;
  *
  * @source $URL$
  */
-public class CountVisitor implements FeatureCalc {
+public class CountVisitor implements PartitionableFeatureCalc {
     Integer count = null;
 
     public void init(SimpleFeatureCollection collection) {
@@ -63,6 +63,21 @@ public class CountVisitor implements FeatureCalc {
         this.count = null;
     }
 
+    public PartitionableFeatureCalc split() {
+        if (getClass() != CountVisitor.class) {
+            // subclasses might accumulate differently
+            return null;
+        }
+        return new CountVisitor();
+    }
+
+    public void combine(PartitionableFeatureCalc partial) {
+        Integer partialCount = ((CountVisitor) partial).count;
+        if (partialCount != null) {
+            count = count == null ? partialCount : count + partialCount;
+        }
+    }
+
     public CalcResult getResult() {
     	if(count == null) {
     		return CalcResult.NULL_RESULT;
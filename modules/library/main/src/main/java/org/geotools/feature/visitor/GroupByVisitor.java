@@ -18,6 +18,7 @@ package org.geotools.feature.visitor;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,7 +39,7 @@ import com.vividsolutions.jts.geom.Point;
 /**
  * Group features by one or several attributes and applies an aggregator visitor to each group.
  */
-public class GroupByVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class GroupByVisitor implements PartitionableFeatureCalc, FeatureAttributeVisitor {
 
     private final Aggregate aggregate;
     private final Expression expression;
@@ -94,6 +95,29 @@ public class GroupByVisitor implements FeatureCalc, FeatureAttributeVisitor {
         inMemoryGroupBy.index((SimpleFeature) feature);
     }
 
+    @Override
+    public PartitionableFeatureCalc split() {
+        if (getClass() != GroupByVisitor.class) {
+            // subclasses might accumulate differently
+            return null;
+        }
+        return new GroupByVisitor(aggregate, expression, groupByAttributes, progressListener);
+    }
+
+    @Override
+    public void combine(PartitionableFeatureCalc partial) {
+        // the partial visitor only indexed features, the aggregation happens on getResult()
+        ((GroupByVisitor) partial).inMemoryGroupBy.groupByIndexes.forEach((key, features) -> {
+            DefaultFeatureCollection existing = inMemoryGroupBy.groupByIndexes.get(key);
+            if (existing == null) {
+                inMemoryGroupBy.groupByIndexes.put(key, features);
+            } else {
+                Collection<SimpleFeature> added = features;
+                existing.addAll(added);
+            }
+        });
+    }
+
     public Expression getExpression() {
         return expression;
     }
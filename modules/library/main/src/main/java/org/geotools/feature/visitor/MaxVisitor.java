@@ -37,7 +37,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class MaxVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class MaxVisitor implements PartitionableFeatureCalc, FeatureAttributeVisitor {
     private Expression expr;
     Comparable maxvalue;
     Comparable curvalue;
@@ -149,6 +149,25 @@ public class MaxVisitor implements FeatureCalc, FeatureAttributeVisitor {
         this.countNull = 0;
     }
 
+    public PartitionableFeatureCalc split() {
+        if (getClass() != MaxVisitor.class) {
+            // subclasses might accumulate differently
+            return null;
+        }
+        return new MaxVisitor(expr);
+    }
+
+    public void combine(PartitionableFeatureCalc partial) {
+        MaxVisitor other = (MaxVisitor) partial;
+        // on ties keep the current value, it was found first
+        if (other.visited && (!visited || other.maxvalue.compareTo(maxvalue) > 0)) {
+            maxvalue = other.maxvalue;
+            visited = true;
+        }
+        countNull += other.countNull;
+        countNaN += other.countNaN;
+    }
+
     public Expression getExpression() {
         return expr;
     }
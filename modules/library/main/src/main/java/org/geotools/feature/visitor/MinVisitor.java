@@ -37,7 +37,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class MinVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class MinVisitor implements PartitionableFeatureCalc, FeatureAttributeVisitor {
     private Expression expr;
     Comparable minvalue;
     Comparable curvalue;
@@ -130,6 +130,23 @@ public class MinVisitor implements FeatureCalc, FeatureAttributeVisitor {
         return new MinResult(minvalue);
     }
 
+    public PartitionableFeatureCalc split() {
+        if (getClass() != MinVisitor.class) {
+            // subclasses might accumulate differently
+            return null;
+        }
+        return new MinVisitor(expr);
+    }
+
+    public void combine(PartitionableFeatureCalc partial) {
+        MinVisitor other = (MinVisitor) partial;
+        // on ties keep the current value, it was found first
+        if (other.visited && (!visited || other.minvalue.compareTo(minvalue) < 0)) {
+            minvalue = other.minvalue;
+            visited = true;
+        }
+    }
+
     public Expression getExpression() {
         return expr;
     }
@@ -0,0 +1,236 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.geotools.factory.Hints;
+import org.opengis.feature.Feature;
+import org.opengis.feature.FeatureVisitor;
+
+/**
+ * Runs a {@link PartitionableFeatureCalc} over the features it visits using several threads.
+ * <p>
+ * The features are gathered in batches, each batch is visited by a partial visitor on the
+ * {@link ForkJoinPool#commonPool() common pool}, while the calling thread keeps on reading the
+ * next features. The partial visitors are combined back into the target visitor on the calling
+ * thread, in the same order as the batches, so the target visitor never needs to be thread safe.
+ * The number of batches in flight is bounded, which also bounds the number of features held in
+ * memory, as well as the number of threads used by the visit: it is set by the
+ * {@link Hints#FEATURE_VISITOR_PARALLELISM} hint, that also enables the parallel visits.
+ * <p>
+ * Feature collections that cannot compute a calculation natively use this class when manually
+ * walking their features:
+ * <pre><code>
+ * ParallelFeatureVisitor parallel = ParallelFeatureVisitor.wrap(visitor, hints);
+ * FeatureVisitor target = parallel != null ? parallel : visitor;
+ * try {
+ *     while (iterator.hasNext()) {
+ *         target.visit(iterator.next());
+ *     }
+ *     if (parallel != null) {
+ *         parallel.complete();
+ *     }
+ * } finally {
+ *     if (parallel != null) {
+ *         parallel.cancel();
+ *     }
+ * }
+ * </code></pre>
+ * The visited features are handed over to other threads, so this approach is only safe when
+ * the feature iterator returns a distinct feature object at each step.
+ *
+ * @see Hints#FEATURE_VISITOR_PARALLELISM
+ * @since 16.0
+ */
+public final class ParallelFeatureVisitor implements FeatureVisitor {
+
+    /**
+     * The number of features visited by each partial visitor, collections smaller than this are
+     * visited sequentially
+     */
+    static final int BATCH_SIZE = 4096;
+
+    /**
+     * Visits a batch of features with a partial visitor
+     */
+    static final class BatchTask extends RecursiveTask<PartitionableFeatureCalc> {
+        private static final long serialVersionUID = 6411939578102213453L;
+
+        final PartitionableFeatureCalc partial;
+
+        final List<Feature> features;
+
+        BatchTask(PartitionableFeatureCalc partial, List<Feature> features) {
+            this.partial = partial;
+            this.features = features;
+        }
+
+        @Override
+        protected PartitionableFeatureCalc compute() {
+            for (Feature feature : features) {
+                partial.visit(feature);
+            }
+            return partial;
+        }
+    }
+
+    private final PartitionableFeatureCalc visitor;
+
+    private final ForkJoinPool pool;
+
+    private final int batchSize;
+
+    private final int maxPending;
+
+    private final ArrayDeque<BatchTask> pending = new ArrayDeque<BatchTask>();
+
+    private List<Feature> batch;
+
+    private boolean submitted;
+
+    ParallelFeatureVisitor(PartitionableFeatureCalc visitor, ForkJoinPool pool, int parallelism,
+            int batchSize) {
+        this.visitor = visitor;
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.maxPending = parallelism;
+        this.batch = new ArrayList<Feature>(batchSize);
+    }
+
+    /**
+     * Wraps the visitor for a parallel visit, if possible.
+     *
+     * @param visitor the visitor to be run
+     * @param hints the hints, used to look up the {@link Hints#FEATURE_VISITOR_PARALLELISM},
+     *        may be null
+     * @return the parallel visitor, or null if the visitor cannot be partitioned or parallel
+     *         visits are not enabled
+     */
+    public static ParallelFeatureVisitor wrap(FeatureVisitor visitor, Hints hints) {
+        if (!(visitor instanceof PartitionableFeatureCalc)) {
+            return null;
+        }
+        int parallelism = getParallelism(hints);
+        // avoid blocking pool workers on nested visits (e.g., group by aggregates)
+        if (parallelism <= 1 || ForkJoinTask.inForkJoinPool()) {
+            return null;
+        }
+        PartitionableFeatureCalc calc = (PartitionableFeatureCalc) visitor;
+        if (calc.split() == null) {
+            return null;
+        }
+        return new ParallelFeatureVisitor(calc, ForkJoinPool.commonPool(), parallelism,
+                BATCH_SIZE);
+    }
+
+    /**
+     * Gets the parallelism from the hints and system hints, defaults to 1 (parallel visits
+     * disabled)
+     */
+    static int getParallelism(Hints hints) {
+        Object parallelism = null;
+        if (hints != null) {
+            parallelism = hints.get(Hints.FEATURE_VISITOR_PARALLELISM);
+        }
+        if (parallelism == null) {
+            parallelism = Hints.getSystemDefault(Hints.FEATURE_VISITOR_PARALLELISM);
+        }
+        if (parallelism instanceof Number) {
+            return ((Number) parallelism).intValue();
+        }
+        return 1;
+    }
+
+    public void visit(Feature feature) {
+        batch.add(feature);
+        if (batch.size() >= batchSize) {
+            submit();
+        }
+    }
+
+    /**
+     * Visits the remaining features and combines all the partial results into the target
+     * visitor. Must be called once all the features have been visited.
+     *
+     * @throws RuntimeException if visiting a feature failed in one of the partitions
+     */
+    public void complete() {
+        if (!submitted) {
+            // too few features to be worth splitting them
+            for (Feature feature : batch) {
+                visitor.visit(feature);
+            }
+        } else {
+            if (!batch.isEmpty()) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                combineOldest();
+            }
+        }
+        batch = new ArrayList<Feature>(batchSize);
+        submitted = false;
+    }
+
+    /**
+     * Cancels the batches not combined yet, if any. To be called once the visit is over, in a
+     * finally block, so that the batches are not left running when reading the features fails.
+     */
+    public void cancel() {
+        for (BatchTask task : pending) {
+            task.cancel(false);
+        }
+        pending.clear();
+        batch = new ArrayList<Feature>(batchSize);
+        submitted = false;
+    }
+
+    /**
+     * Returns the visitor being run
+     */
+    public PartitionableFeatureCalc getVisitor() {
+        return visitor;
+    }
+
+    private void submit() {
+        if (pending.size() >= maxPending) {
+            combineOldest();
+        }
+        BatchTask task = new BatchTask(visitor.split(), batch);
+        pool.execute(task);
+        pending.add(task);
+        batch = new ArrayList<Feature>(batchSize);
+        submitted = true;
+    }
+
+    private void combineOldest() {
+        BatchTask task = pending.poll();
+        try {
+            visitor.combine(task.join());
+        } catch (RuntimeException | Error e) {
+            // no point in completing the other batches
+            cancel();
+            throw e;
+        }
+    }
+}
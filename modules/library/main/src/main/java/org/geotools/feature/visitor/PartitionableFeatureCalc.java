@@ -0,0 +1,52 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+/**
+ * A {@link FeatureCalc} whose calculation can be split over partitions of the visited features.
+ * <p>
+ * Each partition is visited by its own partial visitor, obtained by calling {@link #split()}, and
+ * the partial states are then folded back into the original visitor with
+ * {@link #combine(PartitionableFeatureCalc)}, in the same order as the partitions. A partial
+ * visitor is only ever used by one thread at a time, the caller is responsible for the
+ * synchronization between the thread that visited a partition and the one combining it.
+ * <p>
+ * Combining the partitions in order must give the same result as visiting all the features
+ * with the original visitor, minus floating point rounding differences.
+ *
+ * @see ParallelFeatureVisitor
+ * @since 16.0
+ */
+public interface PartitionableFeatureCalc extends FeatureCalc {
+
+    /**
+     * Creates a new, empty visitor performing the same calculation as this one, to be used on a
+     * partition of the features.
+     *
+     * @return the partial visitor, or null if the calculation cannot be partitioned in the
+     *         current configuration of this visitor
+     */
+    PartitionableFeatureCalc split();
+
+    /**
+     * Adds the state of a partial visitor, obtained from {@link #split()}, to the state of this
+     * visitor.
+     *
+     * @param partial the partial visitor, it should not be used anymore after this call
+     */
+    void combine(PartitionableFeatureCalc partial);
+}
@@ -35,7 +35,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class QuantileListVisitor implements FeatureCalc {
+public class QuantileListVisitor implements PartitionableFeatureCalc {
 	private Expression expr;
 	private int count = 0;
 	private int bins;
@@ -116,6 +116,22 @@ public class QuantileListVisitor implements FeatureCalc {
 		items.add(value);
 	}
 	
+    public PartitionableFeatureCalc split() {
+        if (getClass() != QuantileListVisitor.class) {
+            // subclasses might accumulate differently
+            return null;
+        }
+        return new QuantileListVisitor(expr, bins);
+    }
+
+    public void combine(PartitionableFeatureCalc partial) {
+        QuantileListVisitor other = (QuantileListVisitor) partial;
+        items.addAll(other.items);
+        count += other.count;
+        countNull += other.countNull;
+        countNaN += other.countNaN;
+    }
+
 	public void reset(int bins) {
 		this.bins = bins;
 		this.count = 0;
@@ -45,7 +45,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class StandardDeviationVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class StandardDeviationVisitor implements PartitionableFeatureCalc, FeatureAttributeVisitor {
     public static class Result extends AbstractCalcResult {
         final Double deviation;
         public Result(){
@@ -132,6 +132,39 @@ public class StandardDeviationVisitor implements FeatureCalc, FeatureAttributeVi
 		m2 = m2 + delta * (x - mean);  // This expression uses the new value of mean
 	}
 	
+    public PartitionableFeatureCalc split() {
+        if (getClass() != StandardDeviationVisitor.class) {
+            // subclasses might accumulate differently
+            return null;
+        }
+        return new StandardDeviationVisitor(expr);
+    }
+
+    /**
+     * Merges the partial mean and sum of squared differences using the parallel variance
+     * algorithm described here:
+     * http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Parallel_algorithm
+     */
+    public void combine(PartitionableFeatureCalc partial) {
+        StandardDeviationVisitor other = (StandardDeviationVisitor) partial;
+        countNull += other.countNull;
+        countNaN += other.countNaN;
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            return;
+        }
+        int total = count + other.count;
+        double delta = other.mean - mean;
+        mean = mean + delta * other.count / total;
+        m2 = m2 + other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+    }
+
 	public void reset() {
 		this.count = 0;
 	    this.countNull = 0;
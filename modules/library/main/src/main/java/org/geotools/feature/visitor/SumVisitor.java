@@ -42,7 +42,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class SumVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class SumVisitor implements PartitionableFeatureCalc, FeatureAttributeVisitor {
     private Expression expr;
     SumStrategy strategy;
 
@@ -135,6 +135,27 @@ public class SumVisitor implements FeatureCalc, FeatureAttributeVisitor {
         return new SumResult(strategy);
     }
 
+    public PartitionableFeatureCalc split() {
+        if (getClass() != SumVisitor.class) {
+            // subclasses might accumulate differently
+            return null;
+        }
+        return new SumVisitor(expr);
+    }
+
+    public void combine(PartitionableFeatureCalc partial) {
+        SumStrategy partialStrategy = ((SumVisitor) partial).strategy;
+        if (partialStrategy == null) {
+            return;
+        }
+        if (strategy == null) {
+            // the partial strategy was created from the first value, as it would have been here
+            strategy = partialStrategy;
+        } else {
+            strategy.add(partialStrategy.getResult());
+        }
+    }
+
     interface SumStrategy {
         public void add(Object value);
 
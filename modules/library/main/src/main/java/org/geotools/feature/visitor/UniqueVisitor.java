@@ -45,7 +45,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class UniqueVisitor implements FeatureCalc, FeatureAttributeVisitor, LimitingVisitor {
+public class UniqueVisitor implements PartitionableFeatureCalc, FeatureAttributeVisitor, LimitingVisitor {
     private Expression expr;
     Set set = new HashSet();
     Set skipped = new HashSet();
@@ -165,6 +165,22 @@ public class UniqueVisitor implements FeatureCalc, FeatureAttributeVisitor, Limi
 
 
 
+    public PartitionableFeatureCalc split() {
+        if (getClass() != UniqueVisitor.class || startIndex != 0
+                || maxFeatures != Integer.MAX_VALUE) {
+            // subclasses might accumulate differently, and paging depends on the visit order
+            return null;
+        }
+        UniqueVisitor partial = new UniqueVisitor(expr);
+        partial.setPreserveOrder(preserveOrder);
+        return partial;
+    }
+
+    public void combine(PartitionableFeatureCalc partial) {
+        // partials are combined in visit order, so order preserving sets stay in order
+        set.addAll(((UniqueVisitor) partial).set);
+    }
+
     public void reset() {
         /**
          * Reset the unique and current minimum for the features in the
@@ -0,0 +1,671 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.filter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.geotools.factory.Hints;
+import org.geotools.util.ConverterFactory;
+import org.geotools.util.Converters;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.ExcludeFilter;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterVisitor;
+import org.opengis.filter.IncludeFilter;
+import org.opengis.filter.Not;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+
+/**
+ * Compiles a filter against a {@link SimpleFeatureType} into a tree of evaluators specialized for
+ * features of that type.
+ * <p>
+ * The property names are resolved to attribute indexes once, the literals are converted to the
+ * attribute binding up front, and the comparisons against numeric attributes are performed on
+ * primitive values, instead of looking up property accessors, converting and wrapping values for
+ * each evaluated feature.
+ * <p>
+ * The compiled filter evaluates exactly like the original one: the parts of the filter that
+ * cannot be specialized (spatial filters, functions, ...) are evaluated by the original filter
+ * nodes, and so are the features whose type or attribute values do not match the ones the filter
+ * was compiled for. The compiled filter is thread safe, and visitors are handed the original
+ * filter.
+ *
+ * @since 16.0
+ */
+public final class FilterCompiler {
+
+    static final Set<Class<?>> SUPPORTED_BINDINGS = new HashSet<Class<?>>(Arrays.asList(
+            String.class, Byte.class, Short.class, Integer.class, Long.class, Float.class,
+            Double.class));
+
+    static final Hints SAFE_CONVERSION = new Hints(ConverterFactory.SAFE_CONVERSION, Boolean.TRUE);
+
+    private FilterCompiler() {
+    }
+
+    /**
+     * Compiles the filter for the specified feature type. Returns the filter itself if none of
+     * its parts can be specialized.
+     *
+     * @param filter The filter to be compiled
+     * @param featureType The type of the features that will be evaluated
+     * @return A filter evaluating like the original one, faster on features of the given type
+     */
+    public static Filter compile(Filter filter, SimpleFeatureType featureType) {
+        if (filter == null || featureType == null || filter instanceof CompiledFilter
+                || filter instanceof IncludeFilter || filter instanceof ExcludeFilter) {
+            return filter;
+        }
+        Node root = new FilterCompiler.Builder(featureType).build(filter);
+        if (root instanceof Fallback) {
+            return filter;
+        }
+        return new CompiledFilter(filter, featureType, root);
+    }
+
+    /**
+     * A filter compiled by {@link FilterCompiler}
+     */
+    static final class CompiledFilter implements Filter {
+
+        final Filter original;
+
+        final SimpleFeatureType featureType;
+
+        final Node root;
+
+        /**
+         * The last feature type found equal, but not identical, to the compiled one
+         */
+        volatile SimpleFeatureType compatibleType;
+
+        CompiledFilter(Filter original, SimpleFeatureType featureType, Node root) {
+            this.original = original;
+            this.featureType = featureType;
+            this.root = root;
+        }
+
+        public boolean evaluate(Object object) {
+            if (object instanceof SimpleFeature) {
+                SimpleFeature feature = (SimpleFeature) object;
+                if (isCompatible(feature.getFeatureType())) {
+                    return root.evaluate(feature);
+                }
+            }
+            return original.evaluate(object);
+        }
+
+        private boolean isCompatible(SimpleFeatureType type) {
+            if (type == featureType || type == compatibleType) {
+                return true;
+            }
+            // the attribute indexes are the same, the features can be evaluated by index
+            if (featureType.equals(type)) {
+                compatibleType = type;
+                return true;
+            }
+            return false;
+        }
+
+        public Object accept(FilterVisitor visitor, Object extraData) {
+            return original.accept(visitor, extraData);
+        }
+
+        Filter getOriginal() {
+            return original;
+        }
+
+        @Override
+        public String toString() {
+            return original.toString();
+        }
+    }
+
+    /**
+     * Turns the filter nodes into evaluators
+     */
+    static final class Builder {
+        final SimpleFeatureType featureType;
+
+        Builder(SimpleFeatureType featureType) {
+            this.featureType = featureType;
+        }
+
+        Node build(Filter filter) {
+            if (filter instanceof IncludeFilter) {
+                return Constant.TRUE;
+            } else if (filter instanceof ExcludeFilter) {
+                return Constant.FALSE;
+            } else if (filter instanceof And) {
+                Node[] children = build(((And) filter).getChildren());
+                return children == null ? new Fallback(filter) : new AndNode(children);
+            } else if (filter instanceof Or) {
+                Node[] children = build(((Or) filter).getChildren());
+                return children == null ? new Fallback(filter) : new OrNode(children);
+            } else if (filter instanceof Not) {
+                Node child = build(((Not) filter).getFilter());
+                return child instanceof Fallback ? new Fallback(filter) : new NotNode(child);
+            } else if (filter instanceof PropertyIsNull && filter.getClass() == IsNullImpl.class) {
+                int index = getIndex(((PropertyIsNull) filter).getExpression());
+                return index < 0 ? new Fallback(filter) : new IsNullNode(index);
+            } else if (filter.getClass() == IsEqualsToImpl.class) {
+                return buildEquals((IsEqualsToImpl) filter, filter, false);
+            } else if (filter.getClass() == IsNotEqualToImpl.class) {
+                // evaluated by negating the equality test, on a value that is not a collection
+                return buildEquals(((IsNotEqualToImpl) filter).delegate, filter, true);
+            } else if (filter.getClass() == IsGreaterThanImpl.class) {
+                return buildOrder((BinaryComparisonOperator) filter, OrderNode.GREATER);
+            } else if (filter.getClass() == IsGreaterThanOrEqualToImpl.class) {
+                return buildOrder((BinaryComparisonOperator) filter, OrderNode.GREATER_EQUAL);
+            } else if (filter.getClass() == IsLessThenImpl.class) {
+                return buildOrder((BinaryComparisonOperator) filter, OrderNode.LESS);
+            } else if (filter.getClass() == IsLessThenOrEqualToImpl.class) {
+                return buildOrder((BinaryComparisonOperator) filter, OrderNode.LESS_EQUAL);
+            } else if (filter.getClass() == LikeFilterImpl.class) {
+                return buildLike((LikeFilterImpl) filter);
+            }
+            return new Fallback(filter);
+        }
+
+        /**
+         * Builds a like filter on a string attribute
+         */
+        private Node buildLike(LikeFilterImpl filter) {
+            int index = getIndex(filter.getExpression());
+            if (index < 0 || filter.getLiteral() == null || getBinding(index) != String.class) {
+                return new Fallback(filter);
+            }
+            return new LikeNode(filter, index, filter.getMatcher());
+        }
+
+        /**
+         * Builds the children of a logic filter, returns null if none of them can be specialized
+         */
+        private Node[] build(List<Filter> filters) {
+            Node[] nodes = new Node[filters.size()];
+            boolean specialized = false;
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = build(filters.get(i));
+                specialized |= !(nodes[i] instanceof Fallback);
+            }
+            return specialized ? nodes : null;
+        }
+
+        private Node buildEquals(IsEqualsToImpl equals, Filter filter, boolean negate) {
+            Expression e1 = equals.getExpression1();
+            Expression e2 = equals.getExpression2();
+            int index = getIndex(e1);
+            Expression literal = e2;
+            if (index < 0) {
+                index = getIndex(e2);
+                literal = e1;
+            }
+            if (index < 0 || !(literal instanceof Literal)) {
+                return new Fallback(filter);
+            }
+            Object value = ((Literal) literal).getValue();
+            if (value == null || !SUPPORTED_BINDINGS.contains(value.getClass())) {
+                return new Fallback(filter);
+            }
+            Class<?> binding = getBinding(index);
+            if (binding == null) {
+                return new Fallback(filter);
+            }
+            return new EqualsNode(filter, index, binding, value, equals.isMatchingCase(), negate);
+        }
+
+        private Node buildOrder(BinaryComparisonOperator filter, int operator) {
+            Expression e1 = filter.getExpression1();
+            Expression e2 = filter.getExpression2();
+            boolean literalFirst = false;
+            int index = getIndex(e1);
+            Expression literal = e2;
+            if (index < 0) {
+                index = getIndex(e2);
+                literal = e1;
+                literalFirst = true;
+            }
+            if (index < 0 || !(literal instanceof Literal)) {
+                return new Fallback(filter);
+            }
+            Class<?> binding = getBinding(index);
+            Object value = ((Literal) literal).getValue();
+            if (binding == null || value == null) {
+                return new Fallback(filter);
+            }
+            if (value.getClass() != binding) {
+                if (literalFirst) {
+                    // the comparison would try to convert the attribute value first
+                    return new Fallback(filter);
+                }
+                // same conversion the comparison would perform on each evaluation
+                value = Converters.convert(value, binding, SAFE_CONVERSION);
+                if (value == null || value.getClass() != binding) {
+                    return new Fallback(filter);
+                }
+            }
+            if (binding == String.class) {
+                return new StringOrderNode(filter, index, (String) value, literalFirst, operator);
+            } else {
+                return new NumberOrderNode(filter, index, binding, ((Number) value).doubleValue(),
+                        literalFirst, operator);
+            }
+        }
+
+        /**
+         * Returns the index of the attribute referenced by a plain property name, or -1
+         */
+        int getIndex(Expression expression) {
+            if (!(expression instanceof PropertyName)) {
+                return -1;
+            }
+            String name = ((PropertyName) expression).getPropertyName();
+            if (name == null || name.length() == 0 || name.indexOf(':') >= 0
+                    || name.indexOf('/') >= 0 || name.indexOf('[') >= 0 || name.startsWith("@")) {
+                return -1;
+            }
+            return featureType.indexOf(name);
+        }
+
+        /**
+         * Returns the attribute binding if it is supported by the specialized comparisons, null
+         * otherwise
+         */
+        Class<?> getBinding(int index) {
+            AttributeDescriptor descriptor = featureType.getDescriptor(index);
+            Class<?> binding = descriptor.getType().getBinding();
+            return SUPPORTED_BINDINGS.contains(binding) ? binding : null;
+        }
+    }
+
+    /**
+     * A specialized evaluator
+     */
+    static abstract class Node {
+        abstract boolean evaluate(SimpleFeature feature);
+    }
+
+    /**
+     * Evaluates the original filter node
+     */
+    static final class Fallback extends Node {
+        final Filter filter;
+
+        Fallback(Filter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            return filter.evaluate(feature);
+        }
+    }
+
+    static final class Constant extends Node {
+        static final Constant TRUE = new Constant(true);
+
+        static final Constant FALSE = new Constant(false);
+
+        final boolean value;
+
+        private Constant(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            return value;
+        }
+    }
+
+    static final class AndNode extends Node {
+        final Node[] children;
+
+        AndNode(Node[] children) {
+            this.children = children;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            for (int i = 0; i < children.length; i++) {
+                if (!children[i].evaluate(feature)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static final class OrNode extends Node {
+        final Node[] children;
+
+        OrNode(Node[] children) {
+            this.children = children;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i].evaluate(feature)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class NotNode extends Node {
+        final Node child;
+
+        NotNode(Node child) {
+            this.child = child;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            return !child.evaluate(feature);
+        }
+    }
+
+    static final class IsNullNode extends Node {
+        final int index;
+
+        IsNullNode(int index) {
+            this.index = index;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            return feature.getAttribute(index) == null;
+        }
+    }
+
+    /**
+     * Equality between an attribute and a literal, following the {@link IsEqualsToImpl} rules
+     */
+    static final class EqualsNode extends Node {
+        final Filter filter;
+
+        final int index;
+
+        final Class<?> binding;
+
+        final Object literal;
+
+        /** The literal converted to the attribute binding, as the original filter would do */
+        final Object converted;
+
+        final boolean matchCase;
+
+        final boolean negate;
+
+        /** Whether the literal is a number, or a string that can be parsed as a number */
+        final boolean literalNumeric;
+
+        final boolean literalParseable;
+
+        final double literalDouble;
+
+        final long literalLong;
+
+        final boolean literalIntegral;
+
+        EqualsNode(Filter filter, int index, Class<?> binding, Object literal, boolean matchCase,
+                boolean negate) {
+            this.filter = filter;
+            this.index = index;
+            this.binding = binding;
+            this.literal = literal;
+            this.converted = Converters.convert(literal, binding);
+            this.matchCase = matchCase;
+            this.negate = negate;
+            this.literalNumeric = literal instanceof Number;
+            Number number = null;
+            if (literalNumeric) {
+                number = (Number) literal;
+            } else {
+                try {
+                    number = parseToNumber((String) literal);
+                } catch (NumberFormatException e) {
+                    // not a number
+                }
+            }
+            this.literalParseable = number != null;
+            if (number != null) {
+                this.literalDouble = number.doubleValue();
+                this.literalLong = number.longValue();
+                this.literalIntegral = literalDouble == (double) literalLong;
+            } else {
+                this.literalDouble = Double.NaN;
+                this.literalLong = 0;
+                this.literalIntegral = false;
+            }
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            Object value = feature.getAttribute(index);
+            if (value == null) {
+                return negate;
+            }
+            if (value.getClass() != binding) {
+                return filter.evaluate(feature);
+            }
+            return negate ^ matches(value);
+        }
+
+        private boolean matches(Object value) {
+            if (value.equals(literal) || (converted != null && value.equals(converted))) {
+                return true;
+            }
+            boolean valueNumeric = value instanceof Number;
+            if (valueNumeric || literalNumeric) {
+                // numeric comparison, at least one side is a number and the other a string
+                if (!literalParseable) {
+                    return false;
+                }
+                Number number;
+                if (valueNumeric) {
+                    number = (Number) value;
+                } else {
+                    try {
+                        number = parseToNumber((String) value);
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+                double fp = number.doubleValue();
+                long lg = number.longValue();
+                if (fp == (double) lg && literalIntegral) {
+                    return lg == literalLong;
+                } else {
+                    return (fp == literalDouble)
+                            || (Double.isNaN(fp) && Double.isNaN(literalDouble));
+                }
+            } else if (!matchCase) {
+                return ((String) value).equalsIgnoreCase((String) literal);
+            }
+            return false;
+        }
+
+        private static Number parseToNumber(final String value) throws NumberFormatException {
+            try {
+                return Long.valueOf(value);
+            } catch (NumberFormatException e) {
+                return Double.valueOf(value);
+            }
+        }
+    }
+
+    /**
+     * Base class for the ordering comparisons between an attribute and a literal
+     */
+    static abstract class OrderNode extends Node {
+        static final int GREATER = 0;
+
+        static final int GREATER_EQUAL = 1;
+
+        static final int LESS = 2;
+
+        static final int LESS_EQUAL = 3;
+
+        final Filter filter;
+
+        final int index;
+
+        final boolean literalFirst;
+
+        final int operator;
+
+        OrderNode(Filter filter, int index, boolean literalFirst, int operator) {
+            this.filter = filter;
+            this.index = index;
+            this.literalFirst = literalFirst;
+            this.operator = operator;
+        }
+
+        final boolean test(int comparison) {
+            switch (operator) {
+            case GREATER:
+                return comparison > 0;
+            case GREATER_EQUAL:
+                return comparison >= 0;
+            case LESS:
+                return comparison < 0;
+            default:
+                return comparison <= 0;
+            }
+        }
+    }
+
+    /**
+     * Ordering comparison on a numeric attribute, performed on doubles like
+     * {@link CompareFilterImpl#compare(Comparable, Comparable)}
+     */
+    static final class NumberOrderNode extends OrderNode {
+        final Class<?> binding;
+
+        final double literal;
+
+        NumberOrderNode(Filter filter, int index, Class<?> binding, double literal,
+                boolean literalFirst, int operator) {
+            super(filter, index, literalFirst, operator);
+            this.binding = binding;
+            this.literal = literal;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            Object value = feature.getAttribute(index);
+            if (value == null) {
+                return false;
+            }
+            if (value.getClass() != binding) {
+                return filter.evaluate(feature);
+            }
+            double v = ((Number) value).doubleValue();
+            double left = literalFirst ? literal : v;
+            double right = literalFirst ? v : literal;
+            return test(left > right ? 1 : (left == right ? 0 : -1));
+        }
+    }
+
+    /**
+     * Ordering comparison on a string attribute, numeric if both sides can be parsed as numbers,
+     * lexicographic otherwise, like {@link CompareFilterImpl#compare(Comparable, Comparable)}
+     */
+    static final class StringOrderNode extends OrderNode {
+        final String literal;
+
+        final Double literalNumber;
+
+        StringOrderNode(Filter filter, int index, String literal, boolean literalFirst,
+                int operator) {
+            super(filter, index, literalFirst, operator);
+            this.literal = literal;
+            Double number = null;
+            try {
+                number = Double.parseDouble(literal);
+            } catch (NumberFormatException e) {
+                // compared as strings
+            }
+            this.literalNumber = number;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            Object value = feature.getAttribute(index);
+            if (value == null) {
+                return false;
+            }
+            if (value.getClass() != String.class) {
+                return filter.evaluate(feature);
+            }
+            String s = (String) value;
+            if (literalNumber != null) {
+                try {
+                    double v = Double.parseDouble(s);
+                    return test(literalFirst ? literalNumber.compareTo(v) : Double.valueOf(v)
+                            .compareTo(literalNumber));
+                } catch (NumberFormatException e) {
+                    // compared as strings
+                }
+            }
+            return test(literalFirst ? literal.compareTo(s) : s.compareTo(literal));
+        }
+    }
+
+    /**
+     * Like filter on a string attribute, matching the attribute value without converting it
+     */
+    static final class LikeNode extends Node {
+        final Filter filter;
+
+        final int index;
+
+        final LikeMatcher matcher;
+
+        LikeNode(Filter filter, int index, LikeMatcher matcher) {
+            this.filter = filter;
+            this.index = index;
+            this.matcher = matcher;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            Object value = feature.getAttribute(index);
+            if (value == null) {
+                return false;
+            }
+            if (value.getClass() != String.class) {
+                return filter.evaluate(feature);
+            }
+            return matcher.matches((String) value);
+        }
+    }
+}
@@ -18,8 +18,6 @@ package org.geotools.filter;
 
 
 import java.util.Collection;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.opengis.filter.FilterVisitor;
 import org.opengis.filter.PropertyIsLike;
@@ -52,8 +50,8 @@ public class LikeFilterImpl extends AbstractFilter implements PropertyIsLike {
     /** The escape sequence for the REGEXP pattern. */
     private String escape = "\\";
 
-    /** the pattern compiled into a java regex */
-    private Pattern compPattern = null;
+    /** the pattern compiled into a matcher, lazily built */
+    private LikeMatcher matcher = null;
 
     /** Used to indicate if case should be ignored or not */
     boolean matchingCase;
@@ -164,22 +162,22 @@ public class LikeFilterImpl extends AbstractFilter implements PropertyIsLike {
     
     public void setWildCard(String wildCard) {
         this.wildcardMulti = wildCard;
-        compPattern = null;
+        matcher = null;
     }
     
     public void setSingleChar(String singleChar) {
         this.wildcardSingle = singleChar;
-        compPattern = null;
+        matcher = null;
     }
     
     public void setEscape(String escape) {
         this.escape = escape;
-        compPattern = null;
+        matcher = null;
     }
 
     public void setMatchCase(boolean matchingCase){
         this.matchingCase = matchingCase;
-        compPattern = null;
+        matcher = null;
     }
     
     public boolean isMatchingCase() {
@@ -192,15 +190,19 @@ public class LikeFilterImpl extends AbstractFilter implements PropertyIsLike {
 
     public void setMatchingCase(boolean matchingCase) {
             this.matchingCase = matchingCase;
+            matcher = null;
     }
     
-    private Matcher getMatcher(String string) {
-        if (compPattern == null) {
-            String pattern = new LikeToRegexConverter(this).getPattern();
-            compPattern = isMatchingCase() ? Pattern.compile(pattern)
-                    : Pattern.compile(pattern, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    /**
+     * Returns the matcher for the current pattern, compiling it if needed
+     */
+    LikeMatcher getMatcher() {
+        LikeMatcher result = matcher;
+        if (result == null) {
+            result = matcher = LikeMatcher.compile(pattern, wildcardMulti, wildcardSingle,
+                    escape, matchingCase);
         }
-        return compPattern.matcher(string);
+        return result;
     }
 
     /**
@@ -346,7 +348,7 @@ public class LikeFilterImpl extends AbstractFilter implements PropertyIsLike {
      */
     public void setLiteral(String literal) {
         this.pattern = literal;
-        compPattern = null;
+        matcher = null;
     }
     
     /**
@@ -382,11 +384,11 @@ public class LikeFilterImpl extends AbstractFilter implements PropertyIsLike {
             
             //NC - support multiple values            
             if (value instanceof Collection) {
+                LikeMatcher matcher = getMatcher();
                 int count = 0;
                 
                 for (Object element : (Collection<Object>) value){
-                    Matcher matcher = getMatcher(element.toString());
-                    boolean temp = matcher.matches();
+                    boolean temp = matcher.matches(element.toString());
                     if (temp) {
                         count++;
                     }
@@ -404,8 +406,7 @@ public class LikeFilterImpl extends AbstractFilter implements PropertyIsLike {
                     default: return false;
                 }
             } else {
-                Matcher matcher = getMatcher(value.toString());
-                return matcher.matches();
+                return getMatcher().matches(value.toString());
             }
     }
     
@@ -0,0 +1,236 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opengis.filter.PropertyIsLike;
+
+/**
+ * Matches strings against a {@link PropertyIsLike} pattern without going through regular
+ * expressions.
+ * <p>
+ * The pattern is compiled into a list of segments separated by the multi char wildcards, each
+ * segment being a fixed length sequence of literal chars and single char wildcards. Since the
+ * segments have a fixed length, matching never needs to backtrack: the first segment must match
+ * at the start of the value, the last one at its end, and each one in between is matched at its
+ * leftmost position after the previous one. Prefix, suffix and contains patterns are thus
+ * evaluated with a single scan of the value. Case insensitive matching compares the chars one by
+ * one, without building upper or lower case copies of the value.
+ * </p>
+ * <p>
+ * The single char wildcard matches exactly one char, the multi char wildcard any sequence of
+ * chars, line terminators included. An escape at the end of the pattern is taken literally.
+ * Instances are immutable and thread safe.
+ * </p>
+ *
+ * @since 16.0
+ */
+public final class LikeMatcher {
+
+    /**
+     * The literal chars of each segment
+     */
+    final char[][] segments;
+
+    /**
+     * For each segment, the positions holding a single char wildcard
+     */
+    final boolean[][] singles;
+
+    /**
+     * Upper and lower case versions of the segments, null when matching case
+     */
+    final char[][] upper;
+
+    final char[][] lower;
+
+    /**
+     * The minimum length of a matching value
+     */
+    final int minLength;
+
+    final String pattern;
+
+    private LikeMatcher(String pattern, List<StringBuilder> segments,
+            List<List<Boolean>> singles, boolean matchCase) {
+        this.pattern = pattern;
+        int n = segments.size();
+        this.segments = new char[n][];
+        this.singles = new boolean[n][];
+        this.upper = matchCase ? null : new char[n][];
+        this.lower = matchCase ? null : new char[n][];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            StringBuilder sb = segments.get(i);
+            char[] chars = new char[sb.length()];
+            sb.getChars(0, chars.length, chars, 0);
+            this.segments[i] = chars;
+            this.singles[i] = new boolean[chars.length];
+            for (int j = 0; j < chars.length; j++) {
+                this.singles[i][j] = singles.get(i).get(j);
+            }
+            if (!matchCase) {
+                upper[i] = new char[chars.length];
+                lower[i] = new char[chars.length];
+                for (int j = 0; j < chars.length; j++) {
+                    upper[i][j] = Character.toUpperCase(chars[j]);
+                    lower[i][j] = Character.toLowerCase(chars[j]);
+                }
+            }
+            length += chars.length;
+        }
+        this.minLength = length;
+    }
+
+    /**
+     * Compiles the pattern of a like filter
+     */
+    public static LikeMatcher compile(PropertyIsLike like) {
+        return compile(like.getLiteral(), like.getWildCard(), like.getSingleChar(),
+                like.getEscape(), like.isMatchingCase());
+    }
+
+    /**
+     * Compiles a like pattern
+     *
+     * @param pattern The pattern
+     * @param wildcardMulti The string matching any sequence of chars
+     * @param wildcardSingle The string matching a single char
+     * @param escape The string making the following wildcard, or char, a literal
+     * @param matchCase Whether the match is case sensitive
+     */
+    public static LikeMatcher compile(String pattern, String wildcardMulti,
+            String wildcardSingle, String escape, boolean matchCase) {
+        List<StringBuilder> segments = new ArrayList<StringBuilder>();
+        List<List<Boolean>> singles = new ArrayList<List<Boolean>>();
+        StringBuilder segment = new StringBuilder();
+        List<Boolean> segmentSingles = new ArrayList<Boolean>();
+        segments.add(segment);
+        singles.add(segmentSingles);
+
+        boolean hasMulti = wildcardMulti != null && wildcardMulti.length() > 0;
+        boolean hasSingle = wildcardSingle != null && wildcardSingle.length() > 0;
+        boolean hasEscape = escape != null && escape.length() > 0;
+        int i = 0;
+        while (i < pattern.length()) {
+            if (hasEscape && pattern.startsWith(escape, i)
+                    && i + escape.length() < pattern.length()) {
+                // the escaped wildcard, or char, is a literal
+                i += escape.length();
+                String literal;
+                if (hasMulti && pattern.startsWith(wildcardMulti, i)) {
+                    literal = wildcardMulti;
+                } else if (hasSingle && pattern.startsWith(wildcardSingle, i)) {
+                    literal = wildcardSingle;
+                } else {
+                    literal = pattern.substring(i, i + 1);
+                }
+                for (int j = 0; j < literal.length(); j++) {
+                    segment.append(literal.charAt(j));
+                    segmentSingles.add(Boolean.FALSE);
+                }
+                i += literal.length();
+            } else if (hasMulti && pattern.startsWith(wildcardMulti, i)) {
+                segment = new StringBuilder();
+                segmentSingles = new ArrayList<Boolean>();
+                segments.add(segment);
+                singles.add(segmentSingles);
+                i += wildcardMulti.length();
+            } else if (hasSingle && pattern.startsWith(wildcardSingle, i)) {
+                segment.append('?');
+                segmentSingles.add(Boolean.TRUE);
+                i += wildcardSingle.length();
+            } else {
+                segment.append(pattern.charAt(i));
+                segmentSingles.add(Boolean.FALSE);
+                i++;
+            }
+        }
+        return new LikeMatcher(pattern, segments, singles, matchCase);
+    }
+
+    /**
+     * Returns the literal chars preceding the first wildcard of the pattern, which every matching
+     * value starts with (ignoring case, if the matcher is case insensitive)
+     */
+    public String getPrefix() {
+        final char[] first = segments[0];
+        int length = 0;
+        while (length < first.length && !singles[0][length]) {
+            length++;
+        }
+        return new String(first, 0, length);
+    }
+
+    /**
+     * Returns true if the value matches the pattern
+     */
+    public boolean matches(CharSequence value) {
+        final int length = value.length();
+        if (length < minLength) {
+            return false;
+        }
+        final int last = segments.length - 1;
+        if (last == 0) {
+            // no multi char wildcard, exact match
+            return length == segments[0].length && matchesAt(0, value, 0);
+        }
+        // prefix and suffix
+        final int suffixStart = length - segments[last].length;
+        if (!matchesAt(0, value, 0) || !matchesAt(last, value, suffixStart)) {
+            return false;
+        }
+        // leftmost match for each segment in between
+        int position = segments[0].length;
+        for (int s = 1; s < last; s++) {
+            final int segmentLength = segments[s].length;
+            final int limit = suffixStart - segmentLength;
+            while (position <= limit && !matchesAt(s, value, position)) {
+                position++;
+            }
+            if (position > limit) {
+                return false;
+            }
+            position += segmentLength;
+        }
+        return true;
+    }
+
+    private boolean matchesAt(int segment, CharSequence value, int position) {
+        final char[] chars = segments[segment];
+        final boolean[] single = singles[segment];
+        for (int i = 0; i < chars.length; i++) {
+            if (single[i]) {
+                continue;
+            }
+            final char c = value.charAt(position + i);
+            if (c != chars[i]
+                    && (upper == null || (Character.toUpperCase(c) != upper[segment][i] && Character
+                            .toLowerCase(c) != lower[segment][i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "LikeMatcher[" + pattern + "]";
+    }
+}
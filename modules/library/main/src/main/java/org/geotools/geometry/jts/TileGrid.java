@@ -0,0 +1,150 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.geometry.jts;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * A regular grid of cells laid over a tile, in the same fashion as a vector tile extent. Used
+ * along with {@link org.geotools.factory.Hints#GEOMETRY_TILE_GRID} to ask a data store for
+ * geometries clipped to the tile (plus a buffer) and whose coordinates are snapped to the cell
+ * corners.
+ * <p>
+ * The tile bounds are expressed in the native coordinate reference system of the data being
+ * queried, grid coordinates have their origin in the lower left corner of the tile.
+ */
+public final class TileGrid {
+
+    final Envelope bounds;
+
+    final int width;
+
+    final int height;
+
+    final int buffer;
+
+    /**
+     * Builds a new tile grid
+     *
+     * @param bounds The tile bounds, in the native coordinate reference system
+     * @param width The number of cells along the horizontal axis
+     * @param height The number of cells along the vertical axis
+     * @param buffer The number of cells the clipping area extends beyond the tile bounds on
+     *        each side
+     */
+    public TileGrid(Envelope bounds, int width, int height, int buffer) {
+        if (bounds == null || bounds.isNull() || bounds.getWidth() <= 0
+                || bounds.getHeight() <= 0) {
+            throw new IllegalArgumentException("The tile bounds must be a non empty envelope");
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("The grid size must be positive, got " + width
+                    + "x" + height);
+        }
+        if (buffer < 0) {
+            throw new IllegalArgumentException("The buffer cannot be negative");
+        }
+        this.bounds = new Envelope(bounds);
+        this.width = width;
+        this.height = height;
+        this.buffer = buffer;
+    }
+
+    /**
+     * The tile bounds, in the native coordinate reference system
+     */
+    public Envelope getBounds() {
+        return new Envelope(bounds);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * The width of a cell, in native units
+     */
+    public double getResolutionX() {
+        return bounds.getWidth() / width;
+    }
+
+    /**
+     * The height of a cell, in native units
+     */
+    public double getResolutionY() {
+        return bounds.getHeight() / height;
+    }
+
+    /**
+     * The area geometries get clipped to: the tile bounds expanded by the buffer
+     */
+    public Envelope getClipEnvelope() {
+        Envelope clip = new Envelope(bounds);
+        clip.expandBy(buffer * getResolutionX(), buffer * getResolutionY());
+        return clip;
+    }
+
+    /**
+     * Turns a grid ordinate into a native one
+     */
+    public double toNativeX(double gridX) {
+        return bounds.getMinX() + gridX * getResolutionX();
+    }
+
+    /**
+     * Turns a grid ordinate into a native one
+     */
+    public double toNativeY(double gridY) {
+        return bounds.getMinY() + gridY * getResolutionY();
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = bounds.hashCode();
+        result = prime * result + width;
+        result = prime * result + height;
+        result = prime * result + buffer;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TileGrid)) {
+            return false;
+        }
+        TileGrid other = (TileGrid) obj;
+        return width == other.width && height == other.height && buffer == other.buffer
+                && bounds.equals(other.bounds);
+    }
+
+    @Override
+    public String toString() {
+        return "TileGrid[" + bounds + ", " + width + "x" + height + ", buffer " + buffer + "]";
+    }
+}
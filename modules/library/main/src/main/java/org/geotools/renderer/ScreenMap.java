@@ -16,6 +16,12 @@
  */
 package org.geotools.renderer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 
@@ -23,6 +29,7 @@ import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.LinearRing;
@@ -46,6 +53,14 @@ import com.vividsolutions.jts.geom.Polygon;
  * 
  * When checkAndSet returns false the geometry sits in a pixel that has been already populated
  * and can be skipped.
+ * <p>
+ * Polygons larger than a pixel can be handled with {@link #checkAndSetFootprint(Geometry)},
+ * which is enabled by {@link #setFootprintOverdraw(int)}: in this case the screenmap also keeps
+ * track of how many features fully covered each pixel, and a polygon is skipped when all the
+ * pixels it touches have already been covered by enough features. This is meant for dense
+ * layers of polygons filled with an opaque color and drawn at small scales.
+ * <p>
+ * The screenmap is thread safe, the pixels are updated atomically.
  * 
  * @author jeichar
  * @author Andrea Aime - OpenGeo
@@ -54,9 +69,19 @@ import com.vividsolutions.jts.geom.Polygon;
  * @source $URL$
  */
 public class ScreenMap {
-    double[] point = new double[2];
+    /**
+     * The maximum number of pixels in a footprint checked by {@link #checkAndSetFootprint}
+     */
+    static final int MAX_FOOTPRINT_AREA = 4096;
 
-    int[] pixels;
+    AtomicLongArray pixels;
+
+    /**
+     * Number of features that hit each pixel, allocated only when footprint overdraw is enabled
+     */
+    volatile AtomicIntegerArray hits;
+
+    int footprintOverdraw;
 
     int width;
 
@@ -78,13 +103,14 @@ public class ScreenMap {
         this.minx = x;
         this.miny = y;
 
-        int arraySize = ((width * height) / 32) + 1;
-        pixels = new int[arraySize];
+        int arraySize = (int) (((long) width * height + 63) / 64) + 1;
+        pixels = new AtomicLongArray(arraySize);
         this.mt = mt;
     }
     
     public ScreenMap(ScreenMap original, int expandBy) {
         this(original.minx - expandBy, original.miny - expandBy, original.width + expandBy * 2, original.height + expandBy * 2);
+        setFootprintOverdraw(original.footprintOverdraw);
     }
 
     public ScreenMap(int x, int y, int width, int height) {
@@ -95,11 +121,28 @@ public class ScreenMap {
         this.mt = mt;
     }
 
+    /**
+     * Enables skipping polygons larger than a pixel in {@link #checkAndSetFootprint(Geometry)}
+     * once all the pixels they touch have been covered at least {@code overdraw} times.
+     * Use zero to disable (the default)
+     */
+    public void setFootprintOverdraw(int overdraw) {
+        this.footprintOverdraw = overdraw;
+        if (overdraw > 0 && hits == null) {
+            hits = new AtomicIntegerArray(width * height);
+        }
+    }
+
+    public int getFootprintOverdraw() {
+        return footprintOverdraw;
+    }
+
     public boolean checkAndSet(Envelope envelope) throws TransformException {
         if (!canSimplify(envelope)) {
             return false;
         }
 
+        double[] point = new double[2];
         point[0] = (envelope.getMinX() + envelope.getMaxX()) / 2;
         point[1] = (envelope.getMinY() + envelope.getMaxY()) / 2;
         mt.transform(point, 0, point, 0, 1);
@@ -128,20 +171,273 @@ public class ScreenMap {
         if ((x - minx) < 0 || (x - minx) > width - 1 || (y - miny) < 0 || (y - miny) > height - 1)
             return false;
         int bit = bit(x - minx, y - miny);
-        int index = bit / 32;
-        int offset = bit % 32;
-        int mask = 1 << offset;
+        int index = bit >>> 6;
+        long mask = 1L << (bit & 63);
 
-        try {
-            if ((pixels[index] & mask) != 0) {
+        while (true) {
+            long word = pixels.get(index);
+            if ((word & mask) != 0) {
                 return true;
-            } else {
-                pixels[index] = pixels[index] | mask;
+            } else if (pixels.compareAndSet(index, word, word | mask)) {
+                // the simplified shape fills the pixel, count it as covered
+                AtomicIntegerArray hits = this.hits;
+                if (hits != null) {
+                    hits.incrementAndGet(bit);
+                }
                 return false;
             }
-        } catch (Exception e) {
+        }
+    }
+
+    /**
+     * Checks if the polygonal geometry can be skipped because all the pixels it would paint
+     * have already been fully covered by at least {@link #getFootprintOverdraw()} features. If
+     * not, the hit count of the pixels lying fully inside the geometry is incremented, as those
+     * are the only ones the feature is sure to paint over.
+     * <p>
+     * The geometry is rasterized in screen space, a pixel is painted when the geometry touches
+     * it, and fully covered when it lies completely inside the geometry. The one bit map is not
+     * modified.
+     * <p>
+     * Returns false if footprint overdraw is disabled, the geometry is not polygonal, or its
+     * footprint is partially outside of the screenmap or too large to be checked.
+     */
+    public boolean checkAndSetFootprint(Geometry geometry) throws TransformException {
+        AtomicIntegerArray hits = this.hits;
+        if (footprintOverdraw <= 0 || hits == null || mt == null || geometry.isEmpty()) {
+            return false;
+        }
+        List<double[]> rings = new ArrayList<double[]>();
+        if (!collectRings(geometry, rings)) {
+            return false;
+        }
+
+        // the screen footprint, relative to the map origin
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (double[] ring : rings) {
+            mt.transform(ring, 0, ring, 0, ring.length / 2);
+            for (int i = 0; i < ring.length; i += 2) {
+                ring[i] -= minx;
+                ring[i + 1] -= miny;
+                minX = Math.min(minX, ring[i]);
+                maxX = Math.max(maxX, ring[i]);
+                minY = Math.min(minY, ring[i + 1]);
+                maxY = Math.max(maxY, ring[i + 1]);
+            }
+        }
+        if (!(minX >= 0 && minY >= 0 && maxX < width && maxY < height)
+                || (maxX - minX + 1) * (maxY - minY + 1) > MAX_FOOTPRINT_AREA) {
+            return false;
+        }
+        int x0 = (int) Math.floor(minX);
+        int y0 = (int) Math.floor(minY);
+        int w = (int) Math.floor(maxX) - x0 + 1;
+        int h = (int) Math.floor(maxY) - y0 + 1;
+
+        byte[] raster = rasterize(rings, x0, y0, w, h);
+        boolean covered = true;
+        for (int i = 0; i < raster.length && covered; i++) {
+            if (raster[i] != OUTSIDE) {
+                covered = hits.get(bit(x0 + i % w, y0 + i / w)) >= footprintOverdraw;
+            }
+        }
+        if (covered) {
             return true;
         }
+
+        for (int i = 0; i < raster.length; i++) {
+            if (raster[i] == INSIDE) {
+                hits.incrementAndGet(bit(x0 + i % w, y0 + i / w));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects the rings of a polygonal geometry as x/y ordinate arrays, returns false if the
+     * geometry contains non polygonal components
+     */
+    private static boolean collectRings(Geometry geometry, List<double[]> rings) {
+        if (geometry instanceof Polygon) {
+            Polygon polygon = (Polygon) geometry;
+            rings.add(getOrdinates(polygon.getExteriorRing()));
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                rings.add(getOrdinates(polygon.getInteriorRingN(i)));
+            }
+            return true;
+        } else if (geometry instanceof GeometryCollection) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                if (!collectRings(geometry.getGeometryN(i), rings)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static double[] getOrdinates(LineString ring) {
+        CoordinateSequence cs = ring.getCoordinateSequence();
+        double[] ordinates = new double[cs.size() * 2];
+        for (int i = 0; i < cs.size(); i++) {
+            ordinates[i * 2] = cs.getX(i);
+            ordinates[i * 2 + 1] = cs.getY(i);
+        }
+        return ordinates;
+    }
+
+    static final byte OUTSIDE = 0;
+
+    static final byte BOUNDARY = 1;
+
+    static final byte INSIDE = 2;
+
+    /**
+     * Rasterizes the closed rings, using the even-odd rule, over the w*h pixels starting at
+     * x0,y0. Pixels crossed by an edge are marked as {@link #BOUNDARY}, the others are either
+     * {@link #INSIDE} or {@link #OUTSIDE} depending on their center
+     */
+    static byte[] rasterize(List<double[]> rings, int x0, int y0, int w, int h) {
+        byte[] raster = new byte[w * h];
+
+        // mark the pixels crossed by the edges, row by row
+        for (double[] ring : rings) {
+            for (int i = 0; i + 3 < ring.length; i += 2) {
+                double ax = ring[i] - x0, ay = ring[i + 1] - y0;
+                double bx = ring[i + 2] - x0, by = ring[i + 3] - y0;
+                double top = Math.min(ay, by), bottom = Math.max(ay, by);
+                int lastRow = Math.min((int) Math.floor(bottom), h - 1);
+                for (int row = (int) Math.floor(top); row <= lastRow; row++) {
+                    double sx, ex;
+                    if (ay == by) {
+                        sx = ax;
+                        ex = bx;
+                    } else {
+                        double t0 = (Math.max(row, top) - ay) / (by - ay);
+                        double t1 = (Math.min(row + 1, bottom) - ay) / (by - ay);
+                        sx = ax + t0 * (bx - ax);
+                        ex = ax + t1 * (bx - ax);
+                    }
+                    int first = Math.max((int) Math.floor(Math.min(sx, ex)), 0);
+                    int last = Math.min((int) Math.floor(Math.max(sx, ex)), w - 1);
+                    for (int col = first; col <= last; col++) {
+                        raster[row * w + col] = BOUNDARY;
+                    }
+                }
+            }
+        }
+
+        // fill the pixels whose center is inside, scanning along the row centers
+        double[] crossings = new double[16];
+        for (int row = 0; row < h; row++) {
+            double y = row + 0.5;
+            int count = 0;
+            for (double[] ring : rings) {
+                for (int i = 0; i + 3 < ring.length; i += 2) {
+                    double ay = ring[i + 1] - y0, by = ring[i + 3] - y0;
+                    if ((ay <= y) != (by <= y)) {
+                        double ax = ring[i] - x0, bx = ring[i + 2] - x0;
+                        if (count == crossings.length) {
+                            crossings = Arrays.copyOf(crossings, count * 2);
+                        }
+                        crossings[count++] = ax + (y - ay) * (bx - ax) / (by - ay);
+                    }
+                }
+            }
+            Arrays.sort(crossings, 0, count);
+            for (int i = 0; i + 1 < count; i += 2) {
+                int first = Math.max((int) Math.ceil(crossings[i] - 0.5), 0);
+                int last = Math.min((int) Math.floor(crossings[i + 1] - 0.5), w - 1);
+                for (int col = first; col <= last; col++) {
+                    if (raster[row * w + col] == OUTSIDE) {
+                        raster[row * w + col] = INSIDE;
+                    }
+                }
+            }
+        }
+        return raster;
+    }
+
+    /**
+     * Returns true if all the pixels in the specified area (bounds included) are set. Pixels
+     * outside of the screenmap are considered not set
+     */
+    public boolean isAreaSet(int x0, int y0, int x1, int y1) {
+        x0 -= minx;
+        x1 -= minx;
+        y0 -= miny;
+        y1 -= miny;
+        if (x0 > x1 || y0 > y1 || x0 < 0 || y0 < 0 || x1 > width - 1 || y1 > height - 1) {
+            return false;
+        }
+        return isAreaSetInternal(x0, y0, x1, y1);
+    }
+
+    /**
+     * Sets all the pixels in the specified area (bounds included), ignoring the ones outside
+     * of the screenmap
+     */
+    public void setArea(int x0, int y0, int x1, int y1) {
+        x0 = Math.max(x0 - minx, 0);
+        x1 = Math.min(x1 - minx, width - 1);
+        y0 = Math.max(y0 - miny, 0);
+        y1 = Math.min(y1 - miny, height - 1);
+        if (x0 <= x1 && y0 <= y1) {
+            setAreaInternal(x0, y0, x1, y1);
+        }
+    }
+
+    /**
+     * Checks the area bits a word at a time, the coordinates are relative to the map origin
+     */
+    private boolean isAreaSetInternal(int x0, int y0, int x1, int y1) {
+        for (int y = y0; y <= y1; y++) {
+            int startBit = bit(x0, y);
+            int endBit = bit(x1, y);
+            int first = startBit >>> 6;
+            int last = endBit >>> 6;
+            for (int i = first; i <= last; i++) {
+                long mask = rowMask(i, first, last, startBit, endBit);
+                if ((pixels.get(i) & mask) != mask) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the area bits a word at a time, the coordinates are relative to the map origin
+     */
+    private void setAreaInternal(int x0, int y0, int x1, int y1) {
+        for (int y = y0; y <= y1; y++) {
+            int startBit = bit(x0, y);
+            int endBit = bit(x1, y);
+            int first = startBit >>> 6;
+            int last = endBit >>> 6;
+            for (int i = first; i <= last; i++) {
+                long mask = rowMask(i, first, last, startBit, endBit);
+                long word;
+                do {
+                    word = pixels.get(i);
+                } while ((word & mask) != mask && !pixels.compareAndSet(i, word, word | mask));
+            }
+        }
+    }
+
+    /**
+     * The mask of the bits in word {@code index} that fall between startBit and endBit
+     */
+    private static long rowMask(int index, int first, int last, int startBit, int endBit) {
+        long mask = -1L;
+        if (index == first) {
+            mask &= -1L << (startBit & 63);
+        }
+        if (index == last) {
+            mask &= -1L >>> (63 - (endBit & 63));
+        }
+        return mask;
     }
 
     public boolean get(Envelope envelope) throws TransformException {
@@ -149,6 +445,7 @@ public class ScreenMap {
             return false;
         }
 
+        double[] point = new double[2];
         point[0] = (envelope.getMinX() + envelope.getMaxX()) / 2;
         point[1] = (envelope.getMinY() + envelope.getMaxY()) / 2;
         mt.transform(point, 0, point, 0, 1);
@@ -167,16 +464,19 @@ public class ScreenMap {
         if ((x - minx) < 0 || (x - minx) > width - 1 || (y - miny) < 0 || (y - miny) > height - 1)
             return false;
         int bit = bit(x - minx, y - miny);
-        int index = bit / 32;
-        int offset = bit % 32;
-        int mask = 1 << offset;
-
-        try {
-            return ((pixels[index] & mask) != 0) ? true : false;
-        } catch (Exception e) {
+        return (pixels.get(bit >>> 6) & (1L << (bit & 63))) != 0;
+    }
 
-            return true;
-        }
+    /**
+     * Returns the number of features that fully covered the pixel at location x,y, or zero if
+     * the pixel is out of bounds or hits are not being tracked
+     */
+    public int getHits(int x, int y) {
+        AtomicIntegerArray hits = this.hits;
+        if (hits == null || (x - minx) < 0 || (x - minx) > width - 1 || (y - miny) < 0
+                || (y - miny) > height - 1)
+            return 0;
+        return hits.get(bit(x - minx, y - miny));
     }
 
     private int bit(int x, int y) {
@@ -257,20 +557,15 @@ public class ScreenMap {
         if ((x - minx) < 0 || (x - minx) > width - 1 || (y - miny) < 0 || (y - miny) > height - 1)
             return;
         int bit = bit(x - minx, y - miny);
-        int index = bit / 32;
-        int offset = bit % 32;
-        int mask = 1;
-        mask = mask << offset;
+        int index = bit >>> 6;
+        long mask = 1L << (bit & 63);
 
-        if (value) {
-            pixels[index] = pixels[index] | mask;
-        } else {
-            int tmp = pixels[index];
-            tmp = ~tmp;
-            tmp = (tmp | mask);
-            tmp = ~tmp;
-            pixels[index] = tmp;
-        }
+        long word;
+        long updated;
+        do {
+            word = pixels.get(index);
+            updated = value ? (word | mask) : (word & ~mask);
+        } while (word != updated && !pixels.compareAndSet(index, word, updated));
     }
 
 }
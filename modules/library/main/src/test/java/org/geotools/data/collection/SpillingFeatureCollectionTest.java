@@ -0,0 +1,256 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.collection;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class SpillingFeatureCollectionTest {
+
+    static final int FEATURES = 5000;
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
+    SimpleFeatureType type;
+
+    List<SimpleFeature> features;
+
+    List<SpillingFeatureCollection> collections = new ArrayList<SpillingFeatureCollection>();
+
+    @Before
+    public void setUp() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("test");
+        tb.add("i", Integer.class);
+        tb.add("s", String.class);
+        tb.add("geom", Geometry.class, DefaultGeographicCRS.WGS84);
+        type = tb.buildFeatureType();
+
+        GeometryFactory gf = JTSFactoryFinder.getGeometryFactory();
+        Random random = new Random(42);
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        features = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < FEATURES; i++) {
+            double x = random.nextDouble() * 360 - 180;
+            double y = random.nextDouble() * 180 - 90;
+            Geometry geometry;
+            if (i % 100 == 0) {
+                geometry = null;
+            } else if (i % 2 == 0) {
+                geometry = gf.createPoint(new Coordinate(x, y));
+            } else {
+                geometry = gf.createLineString(new Coordinate[] { new Coordinate(x, y),
+                        new Coordinate(x + random.nextDouble(), y + random.nextDouble()) });
+            }
+            fb.add(i);
+            fb.add("feature " + i);
+            fb.add(geometry);
+            features.add(fb.buildFeature("test." + i));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (SpillingFeatureCollection collection : collections) {
+            collection.dispose();
+        }
+    }
+
+    SpillingFeatureCollection build(long memoryBudget, boolean spatialIndex, long segmentSize) {
+        SpillingFeatureCollection collection = new SpillingFeatureCollection(type, memoryBudget,
+                spatialIndex, segmentSize);
+        collections.add(collection);
+        for (SimpleFeature feature : features) {
+            collection.add(feature);
+        }
+        return collection;
+    }
+
+    @Test
+    public void testInMemory() {
+        SpillingFeatureCollection collection = build(Long.MAX_VALUE, true,
+                SpillingFeatureCollection.SEGMENT_SIZE);
+        assertNull(collection.dataFile);
+        assertEquals(features, toList(collection));
+        assertEquals(FEATURES, collection.size());
+    }
+
+    @Test
+    public void testSpilled() {
+        SpillingFeatureCollection collection = build(50000, true,
+                SpillingFeatureCollection.SEGMENT_SIZE);
+        assertNotNull(collection.dataFile);
+        assertTrue(collection.spilledCount > 0);
+        assertTrue(collection.window.size() < FEATURES);
+        assertEquals(FEATURES, collection.size());
+        assertFeatures(features, toList(collection));
+        // traversals can be repeated
+        assertFeatures(features, toList(collection));
+    }
+
+    @Test
+    public void testRecordsAcrossSegments() {
+        // small segments, many records will straddle two of them
+        SpillingFeatureCollection collection = build(50000, true, 1000);
+        assertTrue(collection.dataLength > 1000);
+        assertFeatures(features, toList(collection));
+    }
+
+    @Test
+    public void testBounds() {
+        SpillingFeatureCollection collection = build(50000, true,
+                SpillingFeatureCollection.SEGMENT_SIZE);
+        ListFeatureCollection reference = new ListFeatureCollection(type, features);
+        assertEquals(reference.getBounds(), collection.getBounds());
+        assertEquals(DefaultGeographicCRS.WGS84, collection.getBounds()
+                .getCoordinateReferenceSystem());
+    }
+
+    @Test
+    public void testBBOXSubCollection() {
+        for (boolean spatialIndex : new boolean[] { true, false }) {
+            SpillingFeatureCollection collection = build(50000, spatialIndex,
+                    SpillingFeatureCollection.SEGMENT_SIZE);
+            for (ReferencedEnvelope envelope : new ReferencedEnvelope[] {
+                    new ReferencedEnvelope(-10, 10, -10, 10, DefaultGeographicCRS.WGS84),
+                    new ReferencedEnvelope(100, 180, 0, 90, DefaultGeographicCRS.WGS84),
+                    new ReferencedEnvelope(500, 600, 500, 600, DefaultGeographicCRS.WGS84) }) {
+                Filter filter = ff.bbox(ff.property("geom"), envelope);
+                assertFeatures(filter(filter), toList(collection.subCollection(filter)));
+
+                // combined with an attribute filter
+                Filter and = ff.and(filter, ff.greater(ff.property("i"), ff.literal(2500)));
+                assertFeatures(filter(and), toList(collection.subCollection(and)));
+            }
+            if (spatialIndex) {
+                assertNotNull(collection.index);
+                assertEquals(collection.spilledCount, collection.indexedCount);
+            } else {
+                assertNull(collection.index);
+            }
+        }
+    }
+
+    @Test
+    public void testIndexRebuilt() {
+        SpillingFeatureCollection collection = new SpillingFeatureCollection(type, 50000, true);
+        collections.add(collection);
+        Filter filter = ff.bbox(ff.property("geom"), new ReferencedEnvelope(-90, 90, -45, 45,
+                DefaultGeographicCRS.WGS84));
+        List<SimpleFeature> added = new ArrayList<SimpleFeature>();
+        for (SimpleFeature feature : features) {
+            collection.add(feature);
+            added.add(feature);
+            if (added.size() % 1000 == 0) {
+                // queries in between additions see all the features added so far
+                List<SimpleFeature> expected = new ArrayList<SimpleFeature>();
+                for (SimpleFeature f : added) {
+                    if (filter.evaluate(f)) {
+                        expected.add(f);
+                    }
+                }
+                assertFeatures(expected, toList(collection.subCollection(filter)));
+            }
+        }
+    }
+
+    @Test
+    public void testAttributeSubCollection() {
+        SpillingFeatureCollection collection = build(50000, true,
+                SpillingFeatureCollection.SEGMENT_SIZE);
+        Filter filter = ff.less(ff.property("i"), ff.literal(100));
+        assertFeatures(filter(filter), toList(collection.subCollection(filter)));
+        assertSame(collection, collection.subCollection(Filter.INCLUDE));
+        assertEquals(0, collection.subCollection(Filter.EXCLUDE).size());
+    }
+
+    @Test
+    public void testDispose() {
+        SpillingFeatureCollection collection = build(50000, true,
+                SpillingFeatureCollection.SEGMENT_SIZE);
+        Filter filter = ff.bbox(ff.property("geom"), new ReferencedEnvelope(-10, 10, -10, 10,
+                DefaultGeographicCRS.WGS84));
+        toList(collection.subCollection(filter));
+        File dataFile = collection.dataFile;
+        File indexFile = collection.indexFile;
+        assertTrue(dataFile.exists());
+        assertTrue(indexFile.exists());
+        collection.dispose();
+        assertFalse(indexFile.exists());
+        try {
+            collection.features();
+            fail("Disposed collections cannot be used");
+        } catch (IllegalStateException e) {
+            // fine
+        }
+    }
+
+    List<SimpleFeature> filter(Filter filter) {
+        List<SimpleFeature> result = new ArrayList<SimpleFeature>();
+        for (SimpleFeature feature : features) {
+            if (filter.evaluate(feature)) {
+                result.add(feature);
+            }
+        }
+        return result;
+    }
+
+    List<SimpleFeature> toList(SimpleFeatureCollection collection) {
+        List<SimpleFeature> result = new ArrayList<SimpleFeature>();
+        SimpleFeatureIterator it = collection.features();
+        try {
+            while (it.hasNext()) {
+                result.add(it.next());
+            }
+        } finally {
+            it.close();
+        }
+        return result;
+    }
+
+    void assertFeatures(List<SimpleFeature> expected, List<SimpleFeature> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getID(), actual.get(i).getID());
+            assertEquals(expected.get(i).getAttributes(), actual.get(i).getAttributes());
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package org.geotools.data.sort;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
 
+import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.data.simple.DelegateSimpleFeatureReader;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureReader;
@@ -238,6 +243,134 @@ public class SortedReaderTest {
         }
     }
 
+    @Test
+    public void testMemoryBudgetSpill() throws IOException {
+        // a tiny budget, forcing lots of runs on disk
+        SimpleFeatureReader sr = MergeSortDumper.getDelegateReader(fr, peopleAsc, -1, 10000,
+                false);
+        try {
+            assertTrue(sr instanceof ExternalMergeSorter.MergingReader);
+            assertSortedAndComplete(sr);
+        } finally {
+            sr.close();
+        }
+    }
+
+    @Test
+    public void testCompressedSpill() throws IOException {
+        SimpleFeatureReader sr = MergeSortDumper.getDelegateReader(fr, peopleDesc, 7,
+                Long.MAX_VALUE, true);
+        try {
+            int prev = Integer.MAX_VALUE;
+            int count = 0;
+            while (sr.hasNext()) {
+                SimpleFeature f = sr.next();
+                int curr = (Integer) f.getAttribute("PERSONS");
+                assertTrue(curr <= prev);
+                prev = curr;
+                count++;
+            }
+            assertEquals(fc.size(), count);
+        } finally {
+            sr.close();
+        }
+    }
+
+    @Test
+    public void testMergePasses() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            ExternalMergeSorter sorter = new ExternalMergeSorter(schema,
+                    MergeSortDumper.getComparator(peopleAsc), Long.MAX_VALUE, 3, false, pool);
+            // runs of 4 features, requiring several intermediate merge passes
+            sorter.fanIn = 4;
+            SimpleFeatureReader sr = sorter.sort(fr);
+            try {
+                assertSortedAndComplete(sr);
+            } finally {
+                sr.close();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testStable() throws IOException {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("stable");
+        tb.add("key", Integer.class);
+        tb.add("seq", Integer.class);
+        SimpleFeatureType type = tb.buildFeatureType();
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < 20000; i++) {
+            features.add(SimpleFeatureBuilder.build(type, new Object[] { (i * 7) % 10, i },
+                    "stable." + i));
+        }
+        SortBy[] keyAsc = new SortBy[] { ff.sort("key", SortOrder.ASCENDING) };
+
+        // in memory, parallel sort, and on disk, with several runs
+        for (int maxFeatures : new int[] { -1, 3000 }) {
+            SimpleFeatureReader reader = new DelegateSimpleFeatureReader(type,
+                    new ListFeatureCollection(type, features).features());
+            SimpleFeatureReader sr = MergeSortDumper.getDelegateReader(reader, keyAsc,
+                    maxFeatures, Long.MAX_VALUE, false);
+            try {
+                int prevKey = -1;
+                int prevSeq = -1;
+                int count = 0;
+                while (sr.hasNext()) {
+                    SimpleFeature f = sr.next();
+                    int key = (Integer) f.getAttribute("key");
+                    int seq = (Integer) f.getAttribute("seq");
+                    assertTrue(key >= prevKey);
+                    if (key == prevKey) {
+                        assertTrue(seq > prevSeq);
+                    }
+                    prevKey = key;
+                    prevSeq = seq;
+                    count++;
+                }
+                assertEquals(features.size(), count);
+            } finally {
+                sr.close();
+            }
+        }
+    }
+
+    /**
+     * Checks the features are sorted on PERSONS and are read back with all their attributes
+     */
+    private void assertSortedAndComplete(SimpleFeatureReader sr) throws IOException {
+        int prev = Integer.MIN_VALUE;
+        int count = 0;
+        while (sr.hasNext()) {
+            SimpleFeature f = sr.next();
+            int curr = (Integer) f.getAttribute("PERSONS");
+            assertTrue(curr >= prev);
+            prev = curr;
+            SimpleFeature original = findById(f.getID());
+            assertEquals(original.getAttributes(), f.getAttributes());
+            count++;
+        }
+        assertEquals(fc.size(), count);
+    }
+
+    private SimpleFeature findById(String id) {
+        SimpleFeatureIterator it = fc.features();
+        try {
+            while (it.hasNext()) {
+                SimpleFeature f = it.next();
+                if (f.getID().equals(id)) {
+                    return f;
+                }
+            }
+        } finally {
+            it.close();
+        }
+        return null;
+    }
+
     private void assertSortedOnPeopleAsc(SimpleFeatureReader fr) throws IllegalArgumentException,
             NoSuchElementException, IOException {
         double prev = -1;
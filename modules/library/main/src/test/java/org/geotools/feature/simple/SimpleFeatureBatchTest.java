@@ -0,0 +1,258 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.simple;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureBatchReader;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.geometry.jts.WKTReader2;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+public class SimpleFeatureBatchTest {
+
+    SimpleFeatureType type;
+
+    WKTReader2 wkt = new WKTReader2();
+
+    @Before
+    public void setUp() throws Exception {
+        type = DataUtilities.createType("test",
+                "i:Integer,l:Long,d:Double,f:Float,s:String,geom:Geometry");
+    }
+
+    SimpleFeature feature(String id, Object... values) {
+        return SimpleFeatureBuilder.build(type, values, id);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        features.add(feature("test.1", 1, 10l, 1.5, 2.5f, "one", wkt.read("POINT(1 2)")));
+        features.add(feature("test.2", null, null, null, null, null, null));
+        features.add(feature("abc", Integer.MIN_VALUE, Long.MAX_VALUE, Double.NaN, 0f, "",
+                wkt.read("LINESTRING(0 0, 10 10, 20 0)")));
+        features.add(feature("test.03", 3, 3l, 3d, 3f, "three",
+                wkt.read("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (1 1, 2 1, 2 2, 1 1))")));
+        features.add(feature("test.4", 4, 4l, 4d, 4f, "four",
+                wkt.read("MULTIPOLYGON(((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))")));
+        features.add(feature("test.5", 5, 5l, 5d, 5f, "five",
+                wkt.read("GEOMETRYCOLLECTION(POINT(1 1), LINESTRING(0 0, 1 1))")));
+        features.add(feature("test.6", 6, 6l, 6d, 6f, "six",
+                wkt.read("LINESTRING(0 0 1, 10 10 2)")));
+        features.add(feature("test.7", 7, 7l, 7d, 7f, "seven", wkt.read("MULTIPOINT(1 1, 2 2)")));
+        features.add(feature("test.8", 8, 8l, 8d, 8f, "eight", wkt.read("POINT EMPTY")));
+
+        SimpleFeatureBatch batch = new SimpleFeatureBatch(type, features.size());
+        for (SimpleFeature feature : features) {
+            batch.addFeature(feature);
+        }
+        assertTrue(batch.isFull());
+        assertEquals(features.size(), batch.size());
+
+        for (int i = 0; i < features.size(); i++) {
+            SimpleFeature expected = features.get(i);
+            SimpleFeature actual = batch.getFeature(i);
+            assertEquals(expected.getID(), actual.getID());
+            for (int j = 0; j < type.getAttributeCount(); j++) {
+                Object value = expected.getAttribute(j);
+                if (value instanceof Geometry) {
+                    assertTrue(((Geometry) value).equalsExact(batch.getGeometry(i, j)));
+                } else {
+                    assertEquals(value, batch.getValue(i, j));
+                }
+            }
+        }
+
+        // third dimension is preserved
+        Geometry line3d = batch.getGeometry(6, 5);
+        assertEquals(2, line3d.getCoordinates()[1].z, 0d);
+        // ids that cannot be rebuilt from the number are kept as is
+        assertEquals("test.03", batch.getID(3));
+        assertEquals("abc", batch.getID(2));
+    }
+
+    @Test
+    public void testPrimitiveAccess() throws Exception {
+        SimpleFeatureBatch batch = new SimpleFeatureBatch(type, 4);
+        int row = batch.addRow(12);
+        assertEquals("test.12", batch.getID(row));
+        assertTrue(batch.isNull(row, 0));
+        assertTrue(Double.isNaN(batch.getDouble(row, 2)));
+        assertEquals(0, batch.getLong(row, 1));
+
+        batch.setDouble(row, 0, 12);
+        batch.setLong(row, 1, 1l << 40);
+        batch.setDouble(row, 2, 0.1);
+        batch.setDouble(row, 3, 0.1);
+        assertEquals(Integer.valueOf(12), batch.getValue(row, 0));
+        assertEquals(Long.valueOf(1l << 40), batch.getValue(row, 1));
+        assertEquals(Double.valueOf(0.1), batch.getValue(row, 2));
+        assertEquals(Float.valueOf(0.1f), batch.getValue(row, 3));
+        assertEquals(12, batch.getLong(row, 0));
+        assertEquals(0.1, batch.getDouble(row, 2), 0d);
+
+        try {
+            batch.setLong(row, 0, 1l << 40);
+            fail("Value does not fit in an integer");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+        try {
+            batch.setDouble(row, 1, 0.5);
+            fail("Value is not integral");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+        try {
+            batch.getDouble(row, 4);
+            fail("Strings are not numbers");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+        try {
+            batch.getValue(1, 0);
+            fail("Row is not in the batch");
+        } catch (IndexOutOfBoundsException e) {
+            // fine
+        }
+    }
+
+    @Test
+    public void testUnpackableValues() throws Exception {
+        SimpleFeatureBatch batch = new SimpleFeatureBatch(type, 2);
+        int row = batch.addRow(1);
+        // stored as is, without conversions
+        batch.setValue(row, 0, "notAnInteger");
+        Geometry point = wkt.read("POINT(1 2)");
+        point.setUserData("custom");
+        batch.setValue(row, 5, point);
+        assertEquals("notAnInteger", batch.getValue(row, 0));
+        Geometry geometry = batch.getGeometry(row, 5);
+        assertSame(point, geometry);
+
+        // a packable value replaces the unpacked one
+        batch.setLong(row, 0, 5);
+        assertEquals(Integer.valueOf(5), batch.getValue(row, 0));
+    }
+
+    @Test
+    public void testBounds() throws Exception {
+        SimpleFeatureBatch batch = new SimpleFeatureBatch(type, 2);
+        batch.addFeature(feature("test.1", 1, 1l, 1d, 1f, "one",
+                wkt.read("LINESTRING(0 0, 10 5, 20 -5)")));
+        batch.addFeature(feature("test.2", 2, 2l, 2d, 2f, "two", null));
+
+        Envelope envelope = new Envelope();
+        assertTrue(batch.getEnvelope(0, 5, envelope));
+        assertEquals(new Envelope(0, 20, -5, 5), envelope);
+        assertFalse(batch.getEnvelope(1, 5, envelope));
+        assertEquals(new Envelope(0, 20, -5, 5), envelope);
+        try {
+            batch.getEnvelope(0, 0, envelope);
+            fail("Not a geometry column");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+
+        assertEquals(new ReferencedEnvelope(0, 20, -5, 5, null),
+                ReferencedEnvelope.reference(batch.getFeature(0).getBounds()));
+        assertTrue(batch.getFeature(1).getBounds().isEmpty());
+    }
+
+    @Test
+    public void testRemoveAndClear() throws Exception {
+        SimpleFeatureBatch batch = new SimpleFeatureBatch(type, 2);
+        batch.addFeature(feature("test.1", 1, 1l, 1d, 1f, "one", wkt.read("POINT(1 1)")));
+        SimpleFeature second = feature("other", 2, 2l, 2d, 2f, "two", wkt.read("POINT(2 2)"));
+        second.getUserData().put("key", "value");
+        batch.addFeature(second);
+        assertEquals("value", batch.getFeature(1).getUserData().get("key"));
+        try {
+            batch.addRow(3);
+            fail("The batch is full");
+        } catch (IllegalStateException e) {
+            // fine
+        }
+
+        batch.removeLastRow();
+        assertEquals(1, batch.size());
+        int row = batch.addRow(2);
+        assertEquals("test.2", batch.getID(row));
+        assertTrue(batch.isNull(row, 0));
+        assertNull(batch.getGeometry(row, 5));
+        assertTrue(batch.getFeature(row).getUserData().isEmpty());
+
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertEquals(2, batch.getCapacity());
+    }
+
+    @Test
+    public void testReadOnlyView() throws Exception {
+        SimpleFeature feature = feature("test.1", 1, 1l, 1d, 1f, "one", wkt.read("POINT(1 1)"));
+        SimpleFeatureBatch batch = new SimpleFeatureBatch(type, 1);
+        batch.addFeature(feature);
+        SimpleFeature view = batch.getFeature(0);
+        assertEquals(view, feature);
+        assertEquals(feature, view);
+        assertEquals("one", view.getAttribute("s"));
+        assertEquals(wkt.read("POINT(1 1)"), view.getDefaultGeometry());
+        assertEquals(6, view.getProperties().size());
+        try {
+            view.setAttribute("s", "two");
+            fail("The view is read only");
+        } catch (UnsupportedOperationException e) {
+            // fine
+        }
+    }
+
+    @Test
+    public void testBatchReader() throws Exception {
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < 10; i++) {
+            features.add(feature("test." + i, i, (long) i, i / 2d, (float) i, "v" + i,
+                    wkt.read("POINT(" + i + " " + i + ")")));
+        }
+        SimpleFeatureBatchReader reader = DataUtilities.batchReader(DataUtilities
+                .reader(features));
+        try {
+            SimpleFeatureBatch batch = new SimpleFeatureBatch(reader.getFeatureType(), 4);
+            int count = 0;
+            int read;
+            while ((read = reader.read(batch)) > 0) {
+                assertEquals(batch.size(), read);
+                for (int i = 0; i < read; i++) {
+                    assertEquals(batch.getFeature(i), features.get(count++));
+                }
+            }
+            assertEquals(features.size(), count);
+        } finally {
+            reader.close();
+        }
+    }
+}
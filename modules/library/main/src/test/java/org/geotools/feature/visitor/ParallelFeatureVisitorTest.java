@@ -0,0 +1,280 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.factory.Hints;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.Expression;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+public class ParallelFeatureVisitorTest {
+
+    static final int FEATURES = 20000;
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
+    SimpleFeatureType type;
+
+    List<SimpleFeature> features;
+
+    ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("test");
+        tb.add("i", Integer.class);
+        tb.add("d", Double.class);
+        tb.add("s", String.class);
+        tb.add("geom", Point.class);
+        type = tb.buildFeatureType();
+
+        GeometryFactory gf = JTSFactoryFinder.getGeometryFactory();
+        Random random = new Random(42);
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        features = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < FEATURES; i++) {
+            fb.add(i % 97 == 0 ? null : random.nextInt(1000) - 500);
+            fb.add(i % 101 == 0 ? Double.NaN : random.nextGaussian() * 100);
+            fb.add("v" + random.nextInt(50));
+            fb.add(gf.createPoint(new Coordinate(random.nextDouble() * 360 - 180,
+                    random.nextDouble() * 180 - 90)));
+            features.add(fb.buildFeature("test." + i));
+        }
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testSum() {
+        SumVisitor sequential = visitSequential(new SumVisitor(ff.property("i")));
+        SumVisitor parallel = visitParallel(new SumVisitor(ff.property("i")));
+        assertEquals(sequential.getSum(), parallel.getSum());
+
+        sequential = visitSequential(new SumVisitor(ff.property("d")));
+        parallel = visitParallel(new SumVisitor(ff.property("d")));
+        assertEquals(((Number) sequential.getSum()).doubleValue(),
+                ((Number) parallel.getSum()).doubleValue(), 1e-6);
+    }
+
+    @Test
+    public void testAverage() {
+        AverageVisitor sequential = visitSequential(new AverageVisitor(ff.property("i")));
+        AverageVisitor parallel = visitParallel(new AverageVisitor(ff.property("i")));
+        assertEquals(sequential.getAverage(), parallel.getAverage());
+    }
+
+    @Test
+    public void testMinMax() {
+        for (String name : new String[] { "i", "d", "s" }) {
+            MinVisitor minSequential = visitSequential(new MinVisitor(ff.property(name)));
+            MinVisitor minParallel = visitParallel(new MinVisitor(ff.property(name)));
+            assertEquals(minSequential.getMin(), minParallel.getMin());
+
+            MaxVisitor maxSequential = visitSequential(new MaxVisitor(ff.property(name)));
+            MaxVisitor maxParallel = visitParallel(new MaxVisitor(ff.property(name)));
+            assertEquals(maxSequential.getMax(), maxParallel.getMax());
+            assertEquals(maxSequential.getNullCount(), maxParallel.getNullCount());
+            assertEquals(maxSequential.getNaNCount(), maxParallel.getNaNCount());
+        }
+    }
+
+    @Test
+    public void testCount() {
+        CountVisitor parallel = visitParallel(new CountVisitor());
+        assertEquals(FEATURES, parallel.getCount());
+    }
+
+    @Test
+    public void testUnique() {
+        UniqueVisitor sequential = visitSequential(new UniqueVisitor(ff.property("s")));
+        UniqueVisitor parallel = visitParallel(new UniqueVisitor(ff.property("s")));
+        assertEquals(sequential.getUnique(), parallel.getUnique());
+
+        // the order of first appearance is preserved
+        UniqueVisitor ordered = new UniqueVisitor(ff.property("s"));
+        ordered.setPreserveOrder(true);
+        sequential = visitSequential(ordered);
+        ordered = new UniqueVisitor(ff.property("s"));
+        ordered.setPreserveOrder(true);
+        parallel = visitParallel(ordered);
+        assertEquals(new ArrayList<Object>(sequential.getUnique()),
+                new ArrayList<Object>(parallel.getUnique()));
+    }
+
+    @Test
+    public void testStandardDeviation() {
+        StandardDeviationVisitor sequential = visitSequential(new StandardDeviationVisitor(
+                ff.property("d")));
+        StandardDeviationVisitor parallel = visitParallel(new StandardDeviationVisitor(
+                ff.property("d")));
+        assertEquals(sequential.getMean(), parallel.getMean(), 1e-9);
+        assertEquals(sequential.getResult().toDouble(), parallel.getResult().toDouble(), 1e-9);
+        assertEquals(sequential.getNaNCount(), parallel.getNaNCount());
+        assertEquals(sequential.getNullCount(), parallel.getNullCount());
+    }
+
+    @Test
+    public void testQuantileList() {
+        QuantileListVisitor sequential = visitSequential(new QuantileListVisitor(
+                ff.property("i"), 5));
+        QuantileListVisitor parallel = visitParallel(new QuantileListVisitor(ff.property("i"), 5));
+        assertArrayEquals((Object[]) sequential.getResult().getValue(), (Object[]) parallel
+                .getResult().getValue());
+        assertEquals(sequential.getNullCount(), parallel.getNullCount());
+    }
+
+    @Test
+    public void testGroupBy() {
+        List<Expression> groupBy = Arrays.<Expression> asList(ff.property("s"));
+        GroupByVisitor sequential = visitSequential(new GroupByVisitor(Aggregate.SUM,
+                ff.property("i"), groupBy, null));
+        GroupByVisitor parallel = visitParallel(new GroupByVisitor(Aggregate.SUM,
+                ff.property("i"), groupBy, null));
+        assertEquals(sequential.getResult().toMap(), parallel.getResult().toMap());
+    }
+
+    @Test
+    public void testBounds() {
+        BoundsVisitor sequential = visitSequential(new BoundsVisitor());
+        BoundsVisitor parallel = visitParallel(new BoundsVisitor());
+        assertEquals(sequential.getBounds(), parallel.getBounds());
+    }
+
+    @Test
+    public void testCollectionVisit() throws IOException {
+        ListFeatureCollection collection = new ListFeatureCollection(type, features);
+        SumVisitor sum = new SumVisitor(ff.property("i"));
+        DataUtilities.visit(collection, sum, null);
+        assertEquals(visitSequential(new SumVisitor(ff.property("i"))).getSum(), sum.getSum());
+
+        CountVisitor count = new CountVisitor();
+        collection.accepts(count, null);
+        assertEquals(FEATURES, count.getCount());
+    }
+
+    @Test
+    public void testNotPartitionable() {
+        // disabled by default and by hint
+        assertNull(ParallelFeatureVisitor.wrap(new CountVisitor(), null));
+        Hints hints = new Hints(Hints.FEATURE_VISITOR_PARALLELISM, 1);
+        assertNull(ParallelFeatureVisitor.wrap(new CountVisitor(), hints));
+
+        hints = new Hints(Hints.FEATURE_VISITOR_PARALLELISM, 4);
+        // subclasses
+        assertNull(ParallelFeatureVisitor.wrap(new CountVisitor() {
+        }, hints));
+        // paging
+        UniqueVisitor unique = new UniqueVisitor(ff.property("s"));
+        unique.setMaxFeatures(10);
+        assertNull(ParallelFeatureVisitor.wrap(unique, hints));
+
+        assertNotNull(ParallelFeatureVisitor.wrap(new CountVisitor(), hints));
+    }
+
+    @Test
+    public void testCancel() {
+        // a visit interrupted by a reading failure leaves no batch behind
+        CountVisitor count = new CountVisitor();
+        ParallelFeatureVisitor parallel = new ParallelFeatureVisitor(count, pool, 4, 100);
+        for (SimpleFeature feature : features.subList(0, 1000)) {
+            parallel.visit(feature);
+        }
+        parallel.cancel();
+        int combined = count.getCount();
+        assertTrue(combined < 1000);
+        // the cancelled batches are not combined by a later visit
+        for (SimpleFeature feature : features.subList(0, 10)) {
+            parallel.visit(feature);
+        }
+        parallel.complete();
+        assertEquals(combined + 10, count.getCount());
+    }
+
+    @Test
+    public void testSmallCollection() {
+        // less than a batch, visited on the calling thread
+        CountVisitor count = new CountVisitor();
+        ParallelFeatureVisitor parallel = new ParallelFeatureVisitor(count, pool, 4,
+                ParallelFeatureVisitor.BATCH_SIZE);
+        for (SimpleFeature feature : features.subList(0, 10)) {
+            parallel.visit(feature);
+        }
+        parallel.complete();
+        assertEquals(10, count.getCount());
+    }
+
+    @Test
+    public void testFailure() {
+        // strings cannot be summed
+        ParallelFeatureVisitor parallel = new ParallelFeatureVisitor(new SumVisitor(
+                ff.property("s")), pool, 4, 100);
+        try {
+            for (SimpleFeature feature : features) {
+                parallel.visit(feature);
+            }
+            parallel.complete();
+            fail("Partition failure should have been reported");
+        } catch (RuntimeException e) {
+            // fine
+        }
+    }
+
+    <T extends FeatureCalc> T visitSequential(T visitor) {
+        for (SimpleFeature feature : features) {
+            visitor.visit(feature);
+        }
+        return visitor;
+    }
+
+    <T extends PartitionableFeatureCalc> T visitParallel(T visitor) {
+        // small batches to get many partitions and exercise the pending tasks limit
+        ParallelFeatureVisitor parallel = new ParallelFeatureVisitor(visitor, pool, 4, 100);
+        for (SimpleFeature feature : features) {
+            parallel.visit(feature);
+        }
+        parallel.complete();
+        return visitor;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.filter;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.filter.visitor.DuplicatingFilterVisitor;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+
+import com.vividsolutions.jts.geom.Point;
+
+public class FilterCompilerTest {
+
+    static final String[] ATTRIBUTES = { "s", "i", "d", "l" };
+
+    static final Object[] LITERALS = { 10, 10.5, -0.0, Double.NaN, 10L, (short) 3, "10",
+            "10.0", "abc", "ABC", "", 1e300 };
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
+    SimpleFeatureType type;
+
+    List<SimpleFeature> features;
+
+    @Before
+    public void setUp() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("test");
+        tb.add("s", String.class);
+        tb.add("i", Integer.class);
+        tb.add("d", Double.class);
+        tb.add("l", Long.class);
+        tb.add("geom", Point.class);
+        type = tb.buildFeatureType();
+
+        Object[][] rows = { { "10", 10, 10.0, 10L }, { "abc", 3, 10.5, 3L },
+                { "ABC", -1, -0.0, Long.MAX_VALUE }, { "10.5", 0, 0.0, 0L },
+                { "", Integer.MIN_VALUE, Double.NaN, -10L }, { null, null, null, null },
+                { "1e300", 11, 1e300, 11L }, { "b", 10, Double.NEGATIVE_INFINITY, 10L } };
+        features = new ArrayList<SimpleFeature>();
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        for (int i = 0; i < rows.length; i++) {
+            fb.addAll(rows[i]);
+            features.add(fb.buildFeature("test." + i));
+        }
+    }
+
+    @Test
+    public void testComparisons() {
+        for (String attribute : ATTRIBUTES) {
+            for (Object value : LITERALS) {
+                Expression p = ff.property(attribute);
+                Literal l = ff.literal(value);
+                assertSameResults(ff.equals(p, l));
+                assertSameResults(ff.equals(l, p));
+                assertSameResults(ff.equal(p, l, false));
+                assertSameResults(ff.notEqual(p, l));
+                assertSameResults(ff.notEqual(l, p, false));
+                assertSameResults(ff.greater(p, l));
+                assertSameResults(ff.greater(l, p));
+                assertSameResults(ff.greaterOrEqual(p, l));
+                assertSameResults(ff.greaterOrEqual(l, p));
+                assertSameResults(ff.less(p, l));
+                assertSameResults(ff.less(l, p));
+                assertSameResults(ff.lessOrEqual(p, l));
+                assertSameResults(ff.lessOrEqual(l, p));
+            }
+        }
+    }
+
+    @Test
+    public void testLogic() {
+        Filter f1 = ff.greater(ff.property("i"), ff.literal(2));
+        Filter f2 = ff.equals(ff.property("s"), ff.literal("abc"));
+        Filter f3 = ff.isNull(ff.property("d"));
+        Filter bbox = ff.bbox("geom", 0, 0, 10, 10, null);
+
+        assertSameResults(ff.and(f1, f2));
+        assertSameResults(ff.or(f1, f2));
+        assertSameResults(ff.not(f1));
+        assertSameResults(f3);
+        assertSameResults(ff.or(ff.and(f1, ff.not(f3)), f2));
+        assertSameResults(ff.and(Filter.INCLUDE, f1));
+        assertSameResults(ff.or(Filter.EXCLUDE, f1));
+        assertSameResults(ff.and(bbox, f1));
+    }
+
+    @Test
+    public void testCompiled() {
+        Filter filter = ff.greater(ff.property("i"), ff.literal(2));
+        assertTrue(FilterCompiler.compile(filter, type) instanceof FilterCompiler.CompiledFilter);
+
+        // nothing to specialize, the filter is returned as is
+        Filter unknown = ff.greater(ff.property("missing"), ff.literal(2));
+        assertSame(unknown, FilterCompiler.compile(unknown, type));
+        Filter bbox = ff.bbox("geom", 0, 0, 10, 10, null);
+        assertSame(bbox, FilterCompiler.compile(bbox, type));
+        assertSame(Filter.INCLUDE, FilterCompiler.compile(Filter.INCLUDE, type));
+    }
+
+    @Test
+    public void testVisitorSeesOriginal() {
+        Filter filter = ff.and(ff.greater(ff.property("i"), ff.literal(2)),
+                ff.equals(ff.property("s"), ff.literal("abc")));
+        Filter compiled = FilterCompiler.compile(filter, type);
+        Filter copy = (Filter) compiled.accept(new DuplicatingFilterVisitor(), null);
+        assertEquals(filter, copy);
+    }
+
+    @Test
+    public void testOtherFeatureType() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("other");
+        tb.add("x", Integer.class);
+        tb.add("i", Integer.class);
+        SimpleFeatureType other = tb.buildFeatureType();
+        SimpleFeature feature = SimpleFeatureBuilder.build(other, new Object[] { 1, 5 }, "o.1");
+
+        Filter filter = ff.greater(ff.property("i"), ff.literal(2));
+        Filter compiled = FilterCompiler.compile(filter, type);
+        // the attribute index differs, the original filter must be used
+        assertTrue(compiled.evaluate(feature));
+        assertFalse(compiled.evaluate(SimpleFeatureBuilder.build(other, new Object[] { 5, 1 },
+                "o.2")));
+        assertFalse(compiled.evaluate(null));
+    }
+
+    @Test
+    public void testEqualFeatureType() {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.init(type);
+        SimpleFeatureType copy = tb.buildFeatureType();
+        assertNotSame(type, copy);
+
+        Filter filter = ff.less(ff.property("d"), ff.literal(5));
+        Filter compiled = FilterCompiler.compile(filter, type);
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(copy);
+        for (SimpleFeature f : features) {
+            fb.init(f);
+            SimpleFeature feature = fb.buildFeature(f.getID());
+            assertEquals(filter.evaluate(feature), compiled.evaluate(feature));
+        }
+    }
+
+    void assertSameResults(Filter filter) {
+        Filter compiled = FilterCompiler.compile(filter, type);
+        for (SimpleFeature feature : features) {
+            assertEquals(filter + " on " + feature.getAttributes(), filter.evaluate(feature),
+                    compiled.evaluate(feature));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.filter;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.geotools.factory.CommonFactoryFinder;
+import org.junit.Test;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.PropertyIsLike;
+
+public class LikeMatcherTest {
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
+    LikeMatcher sql(String pattern) {
+        return LikeMatcher.compile(pattern, "%", "_", "\\", true);
+    }
+
+    @Test
+    public void testPrefixSuffixContains() {
+        LikeMatcher prefix = sql("abc%");
+        assertTrue(prefix.matches("abc"));
+        assertTrue(prefix.matches("abcdef"));
+        assertFalse(prefix.matches("xabc"));
+        assertFalse(prefix.matches("ab"));
+
+        LikeMatcher suffix = sql("%abc");
+        assertTrue(suffix.matches("abc"));
+        assertTrue(suffix.matches("xyzabc"));
+        assertFalse(suffix.matches("abcx"));
+
+        LikeMatcher contains = sql("%abc%");
+        assertTrue(contains.matches("abc"));
+        assertTrue(contains.matches("xxabcxx"));
+        assertFalse(contains.matches("xxabxcx"));
+
+        LikeMatcher all = sql("%");
+        assertTrue(all.matches(""));
+        assertTrue(all.matches("anything\nat all"));
+    }
+
+    @Test
+    public void testGeneralPatterns() {
+        LikeMatcher exact = sql("abc");
+        assertTrue(exact.matches("abc"));
+        assertFalse(exact.matches("abcd"));
+        assertFalse(exact.matches("ab"));
+
+        LikeMatcher general = sql("a%b_c%d");
+        assertTrue(general.matches("abxcd"));
+        assertTrue(general.matches("a123bxc456d"));
+        assertTrue(general.matches("abbbxcd"));
+        assertFalse(general.matches("abcd"));
+        assertFalse(general.matches("a123bxc456"));
+
+        // segments must not overlap the suffix
+        LikeMatcher overlap = sql("%aba%aba");
+        assertTrue(overlap.matches("abaaba"));
+        assertFalse(overlap.matches("ababa"));
+
+        assertTrue(sql("").matches(""));
+        assertFalse(sql("").matches("a"));
+        assertTrue(sql("___").matches("xyz"));
+        assertFalse(sql("___").matches("xy"));
+    }
+
+    @Test
+    public void testEscape() {
+        LikeMatcher escaped = sql("100\\%");
+        assertTrue(escaped.matches("100%"));
+        assertFalse(escaped.matches("1000"));
+        assertTrue(sql("a\\_b").matches("a_b"));
+        assertFalse(sql("a\\_b").matches("axb"));
+        assertTrue(sql("a\\\\b").matches("a\\b"));
+        // an escape in front of a plain char is just dropped
+        assertTrue(sql("a\\bc").matches("abc"));
+    }
+
+    @Test
+    public void testMultiCharWildcards() {
+        LikeMatcher matcher = LikeMatcher.compile("ab**cd?", "**", "?", "!!", true);
+        assertTrue(matcher.matches("abXXcdY"));
+        assertTrue(matcher.matches("ab*cdY"));
+        assertFalse(matcher.matches("abcdYZ"));
+        assertTrue(LikeMatcher.compile("a!!**", "**", "?", "!!", true).matches("a**"));
+        assertFalse(LikeMatcher.compile("a!!**", "**", "?", "!!", true).matches("abc"));
+    }
+
+    @Test
+    public void testPrefix() {
+        assertEquals("abc", sql("abc%").getPrefix());
+        assertEquals("ab", sql("ab_c%").getPrefix());
+        assertEquals("a%b", sql("a\\%b%c").getPrefix());
+        assertEquals("", sql("%abc").getPrefix());
+        assertEquals("abc", sql("abc").getPrefix());
+    }
+
+    @Test
+    public void testCaseInsensitive() {
+        LikeMatcher matcher = LikeMatcher.compile("Barañá%", "%", "_", "\\", false);
+        assertTrue(matcher.matches("BARAÑÁ"));
+        assertTrue(matcher.matches("barañá and more"));
+        assertFalse(matcher.matches("baranaa"));
+        assertFalse(sql("Barañá%").matches("BARAÑÁ"));
+    }
+
+    @Test
+    public void testFilterSettings() {
+        PropertyIsLike like = ff.like(ff.property("s"), "te*t.", "*", ".", "!", false);
+        LikeMatcher matcher = LikeMatcher.compile(like);
+        assertTrue(matcher.matches("TEST1"));
+        assertTrue(matcher.matches("text2"));
+        assertFalse(matcher.matches("test"));
+    }
+
+    /**
+     * Checks the matcher against the regular expression built by {@link LikeToRegexConverter}
+     */
+    @Test
+    public void testSameAsRegex() {
+        Random random = new Random(1);
+        String alphabet = "abAB*.\\";
+        for (int i = 0; i < 2000; i++) {
+            String pattern = randomString(random, alphabet, 6);
+            boolean matchCase = random.nextBoolean();
+            PropertyIsLike like = ff.like(ff.property("s"), pattern, "*", ".", "\\", matchCase);
+            Pattern regex;
+            try {
+                String converted = new LikeToRegexConverter(like).getPattern();
+                regex = matchCase ? Pattern.compile(converted) : Pattern.compile(converted,
+                        Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            } catch (StringIndexOutOfBoundsException e) {
+                // trailing escape, not supported by the converter
+                continue;
+            }
+            LikeMatcher matcher = LikeMatcher.compile(like);
+            for (int j = 0; j < 20; j++) {
+                String value = randomString(random, alphabet, 8);
+                assertEquals(pattern + " on " + value, regex.matcher(value).matches(),
+                        matcher.matches(value));
+            }
+        }
+    }
+
+    String randomString(Random random, String alphabet, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -16,8 +16,15 @@
  */
 package org.geotools.renderer;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import junit.framework.TestCase;
 
+import org.geotools.referencing.operation.transform.IdentityTransform;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKTReader;
+
 /**
  * 
  * 
@@ -157,4 +164,106 @@ public class ScreenMapTest extends TestCase {
         assertTrue(map.checkAndSet(0, 0));
         assertTrue(map.get(0, 0));
     }
+    public void testAreaAcrossWords() throws Exception {
+        // an odd width makes rows start in the middle of the words
+        ScreenMap map = new ScreenMap(10, 20, 101, 50);
+        assertFalse(map.isAreaSet(15, 25, 90, 30));
+        map.setArea(15, 25, 90, 30);
+        assertTrue(map.isAreaSet(15, 25, 90, 30));
+        assertTrue(map.isAreaSet(50, 27, 52, 28));
+        assertFalse(map.isAreaSet(14, 25, 90, 30));
+        assertFalse(map.isAreaSet(15, 25, 91, 30));
+        assertFalse(map.isAreaSet(15, 24, 90, 30));
+        // pixel level checks agree with the area ones
+        for (int x = 10; x < 111; x++) {
+            for (int y = 20; y < 70; y++) {
+                boolean inside = x >= 15 && x <= 90 && y >= 25 && y <= 30;
+                assertEquals("x=" + x + " y=" + y, inside, map.get(x, y));
+            }
+        }
+        // areas sticking out of the map are never set
+        map.setArea(0, 0, 200, 200);
+        assertTrue(map.isAreaSet(10, 20, 110, 69));
+        assertFalse(map.isAreaSet(9, 20, 110, 69));
+    }
+
+    public void testFootprintOverdraw() throws Exception {
+        ScreenMap map = new ScreenMap(0, 0, 100, 100, IdentityTransform.create(2));
+        map.setSpans(1, 1);
+        WKTReader reader = new WKTReader();
+        Geometry small = reader
+                .read("POLYGON((10.5 10.5, 13.5 10.5, 13.5 12.5, 10.5 12.5, 10.5 10.5))");
+        Geometry large = reader.read("POLYGON((5 5, 20 5, 20 20, 5 20, 5 5))");
+        // disabled by default
+        assertFalse(map.checkAndSetFootprint(small));
+        assertFalse(map.checkAndSetFootprint(small));
+
+        map.setFootprintOverdraw(2);
+        assertFalse(map.checkAndSetFootprint(small));
+        // only the pixels fully inside are counted
+        assertEquals(1, map.getHits(11, 11));
+        assertEquals(1, map.getHits(12, 11));
+        assertEquals(0, map.getHits(10, 10));
+        assertEquals(0, map.getHits(13, 12));
+        // the one bit map is left alone
+        assertFalse(map.get(11, 11));
+        // the partially covered pixels are never covered by the polygon itself
+        assertFalse(map.checkAndSetFootprint(small));
+        assertFalse(map.checkAndSetFootprint(small));
+        assertEquals(3, map.getHits(11, 11));
+
+        // once a larger polygon has covered the area twice, it can be skipped
+        assertFalse(map.checkAndSetFootprint(large));
+        assertFalse(map.checkAndSetFootprint(large));
+        assertEquals(2, map.getHits(10, 10));
+        assertTrue(map.checkAndSetFootprint(small));
+        // the hits are not counted for skipped polygons
+        assertEquals(5, map.getHits(11, 11));
+        // a polygon sticking out of the covered area is painted
+        assertFalse(map.checkAndSetFootprint(reader
+                .read("POLYGON((10.5 10.5, 20.5 10.5, 20.5 12.5, 10.5 12.5, 10.5 10.5))")));
+        assertEquals(0, map.getHits(30, 30));
+        // lines are not handled
+        assertFalse(map.checkAndSetFootprint(reader.read("LINESTRING(10 10, 12 12)")));
+    }
+
+    public void testFootprintHoles() throws Exception {
+        ScreenMap map = new ScreenMap(0, 0, 100, 100, IdentityTransform.create(2));
+        map.setSpans(1, 1);
+        map.setFootprintOverdraw(1);
+        WKTReader reader = new WKTReader();
+        assertFalse(map.checkAndSetFootprint(reader
+                .read("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 8 2, 8 8, 2 8, 2 2))")));
+        assertEquals(1, map.getHits(1, 1));
+        assertEquals(1, map.getHits(1, 5));
+        // the hole pixels are not covered
+        assertEquals(0, map.getHits(5, 5));
+        assertFalse(map.checkAndSetFootprint(reader
+                .read("POLYGON((4 4, 6 4, 6 6, 4 6, 4 4))")));
+    }
+
+    public void testConcurrentCheckAndSet() throws Exception {
+        final ScreenMap map = new ScreenMap(0, 0, 64, 64);
+        final AtomicInteger free = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int x = 0; x < 64; x++) {
+                        for (int y = 0; y < 64; y++) {
+                            if (!map.checkAndSet(x, y)) {
+                                free.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // each pixel has been found free exactly once
+        assertEquals(64 * 64, free.get());
+    }
 }
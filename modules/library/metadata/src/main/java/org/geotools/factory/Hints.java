@@ -608,7 +608,38 @@ public class Hints extends RenderingHints {
      * @since 2.7.3
      */
     public static final Key MAX_MEMORY_SORT = new Key(Integer.class);
-    
+
+    /**
+     * Key to control the amount of memory, in bytes, that the fallback merge-sort can use to
+     * hold features before spilling sorted runs to disk. Used when {@link #MAX_MEMORY_SORT} is
+     * not set, defaults to a sixteenth of the maximum heap size.
+     *
+     * @since 16.0
+     */
+    public static final Key MAX_MEMORY_SORT_BYTES = new Key(Long.class);
+
+    /**
+     * Key to control whether the sorted runs spilled to disk by the fallback merge-sort are
+     * compressed, trading CPU time for disk space and I/O bandwidth. Defaults to false.
+     *
+     * @since 16.0
+     */
+    public static final Key SORT_SPILL_COMPRESSION = new Key(Boolean.class);
+
+    /**
+     * Key to enable parallel runs of partitionable feature calculations (sum, average, min, max,
+     * unique and the like) over the features of a collection that cannot compute them natively,
+     * and to control the maximum number of batches of features visited concurrently. The
+     * batches are visited on the {@linkplain java.util.concurrent.ForkJoinPool#commonPool()
+     * common fork/join pool}, whose size further bounds the number of threads used. Defaults to
+     * 1, that is, parallel visits are disabled: the partial results are combined in a
+     * different order than a sequential visit would accumulate them, so the results of
+     * calculations mixing integer and floating point values can slightly differ.
+     *
+     * @since 16.0
+     */
+    public static final Key FEATURE_VISITOR_PARALLELISM = new Key(Integer.class);
+
     /**
      * Asks a datastore having a vector pyramid (pre-generalized geometries)
      * to return the geometry version whose points have been generalized
@@ -632,7 +663,19 @@ public class Hints extends RenderingHints {
 
      */
     public static final Key GEOMETRY_SIMPLIFICATION = new Key(Double.class);
-    
+
+    /**
+     * Asks a datastore to return geometries clipped to a tile and snapped to a regular grid laid
+     * over it (much like vector tile encoding does), computed on the server side so that a
+     * compact representation of the geometries can be transferred. The value is a
+     * {@code org.geotools.geometry.jts.TileGrid}, whose bounds are expressed in the native
+     * coordinate reference system of the data. The returned geometries are expressed in native
+     * coordinates, but are not guaranteed to be topologically valid.
+     *
+     * @since 16.0
+     */
+    public static final Key GEOMETRY_TILE_GRID = new Key("org.geotools.geometry.jts.TileGrid");
+
     /**
      * The rendering aid used to avoid painting tiny features over and over in the same pixel
      */
@@ -846,11 +889,14 @@ public class Hints extends RenderingHints {
      *   <li>{@code "none"} for disabling the cache.</li>
      *   <li>{@code "soft"} for holding the value throuhg(@linkplain java.lang.ref.SoftReference 
      *       soft references}.
+     *   <li>{@code "concurrent"} for holding up to {@link #CACHE_LIMIT} values through strong
+     *       references, and the least recently used ones past that through soft references.
+     *       Reads are lock free, meant for highly concurrent access (since 16.0).</li>
      * </ul>
      *
      * @since 2.5
      */
-    public static final OptionKey CACHE_POLICY = new OptionKey("weak", "all", "fixed","none","default","soft");
+    public static final OptionKey CACHE_POLICY = new OptionKey("weak", "all", "fixed","none","default","soft","concurrent");
 
     /**
      * The recommended maximum number of referencing objects to hold in a
@@ -0,0 +1,288 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.util;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link ObjectCache} designed for highly concurrent access:
+ * <ul>
+ * <li>Reads are lock free, they never block even if another thread is writing the same key</li>
+ * <li>Write locks are held per key in a concurrent map, so writers of different keys never
+ * contend on a shared monitor</li>
+ * <li>At most {@code limit} values are held by strong references. Past that, the least recently
+ * used values are demoted to {@linkplain SoftReference soft references}, so that they are still
+ * available until the garbage collector needs the memory, and promoted back to strong references
+ * when accessed again</li>
+ * </ul>
+ * Recency is tracked in coarse epochs (an epoch ends at each demotion pass) so that reading a
+ * hot entry does not write to memory shared among threads.
+ *
+ * @since 16.0
+ */
+final class ConcurrentObjectCache implements ObjectCache {
+
+    /**
+     * A cached value, held strongly until demoted
+     */
+    static final class Entry extends SoftReference<Object> {
+
+        private volatile Object strong;
+
+        /**
+         * The demotion epoch in which this entry was last accessed
+         */
+        volatile int accessed;
+
+        Entry(Object value, int epoch) {
+            super(value);
+            this.strong = value;
+            this.accessed = epoch;
+        }
+
+        Object getValue() {
+            Object value = strong;
+            return value != null ? value : get();
+        }
+
+        boolean isStrong() {
+            return strong != null;
+        }
+
+        /**
+         * Holds the value strongly again, returns true if the entry was not strong before the call
+         */
+        synchronized boolean promote(Object value) {
+            if (strong != null) {
+                return false;
+            }
+            strong = value;
+            return true;
+        }
+
+        /**
+         * Drops the strong reference, returns true if the entry was strong before the call
+         */
+        synchronized boolean demote() {
+            boolean wasStrong = strong != null;
+            strong = null;
+            return wasStrong;
+        }
+    }
+
+    private final ConcurrentHashMap<Object, Entry> entries;
+
+    private final ConcurrentHashMap<Object, ReentrantLock> locks = new ConcurrentHashMap<Object, ReentrantLock>();
+
+    /**
+     * The maximum number of values held by strong references, or a non positive value for no
+     * limit
+     */
+    private final int limit;
+
+    /**
+     * The current number of values held by strong references (approximate, recomputed on each
+     * demotion pass)
+     */
+    private final AtomicInteger strongCount = new AtomicInteger();
+
+    private final ReentrantLock demotionLock = new ReentrantLock();
+
+    private volatile int epoch;
+
+    /**
+     * Creates a new cache with the default limit
+     */
+    public ConcurrentObjectCache() {
+        this(50);
+    }
+
+    /**
+     * Creates a new cache holding at most {@code limit} values by strong references
+     *
+     * @param limit The strong references limit, use zero or a negative number for no limit
+     */
+    public ConcurrentObjectCache(final int limit) {
+        this.limit = limit;
+        this.entries = new ConcurrentHashMap<Object, Entry>(limit > 0 ? limit * 2 : 16);
+    }
+
+    public void clear() {
+        entries.clear();
+        strongCount.set(0);
+    }
+
+    public Object get(final Object key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Object value = entry.getValue();
+        if (value == null) {
+            // the garbage collector reclaimed a demoted value
+            entries.remove(key, entry);
+            return null;
+        }
+        // avoid writing shared memory unless needed
+        int current = epoch;
+        if (entry.accessed != current) {
+            entry.accessed = current;
+        }
+        if (!entry.isStrong() && entry.promote(value)) {
+            // a demoted value that is being used again
+            if (limit > 0 && strongCount.incrementAndGet() > limit) {
+                demote();
+            }
+        }
+        return value;
+    }
+
+    public Object peek(final Object key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.getValue();
+    }
+
+    public void put(final Object key, final Object object) {
+        if (object == null) {
+            remove(key);
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(object, epoch));
+        strongCount.incrementAndGet();
+        if (previous != null && previous.demote()) {
+            strongCount.decrementAndGet();
+        }
+        if (limit > 0 && strongCount.get() > limit) {
+            demote();
+        }
+    }
+
+    public void remove(final Object key) {
+        Entry previous = entries.remove(key);
+        if (previous != null && previous.demote()) {
+            strongCount.decrementAndGet();
+        }
+    }
+
+    public Set<Object> getKeys() {
+        return new HashSet<Object>(entries.keySet());
+    }
+
+    public void writeLock(final Object key) {
+        while (true) {
+            ReentrantLock lock = locks.get(key);
+            if (lock == null) {
+                ReentrantLock created = new ReentrantLock();
+                lock = locks.putIfAbsent(key, created);
+                if (lock == null) {
+                    lock = created;
+                }
+            }
+            lock.lock();
+            // the lock might have been released and discarded while we were waiting for it
+            if (locks.get(key) == lock) {
+                return;
+            }
+            lock.unlock();
+        }
+    }
+
+    public void writeUnLock(final Object key) {
+        ReentrantLock lock = locks.get(key);
+        if (lock == null || !lock.isHeldByCurrentThread()) {
+            throw new IllegalMonitorStateException("Cannot unlock prior to locking");
+        }
+        if (lock.getHoldCount() == 1 && !lock.hasQueuedThreads()) {
+            // nobody else is interested in this key, avoid accumulating locks. A thread that
+            // grabbed the lock in the meantime will notice and retry
+            locks.remove(key, lock);
+        }
+        lock.unlock();
+    }
+
+    /**
+     * Demotes the least recently used values to soft references, down to three quarters of the
+     * limit, so that the demotion cost is amortized over several insertions. Only one thread
+     * performs the demotion pass, the others keep on going without waiting.
+     */
+    private void demote() {
+        if (!demotionLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Entry> strong = new ArrayList<Entry>();
+            for (Entry entry : entries.values()) {
+                if (entry.isStrong()) {
+                    strong.add(entry);
+                }
+            }
+            int target = limit - limit / 4;
+            int excess = strong.size() - Math.max(target, 1);
+            if (excess > 0) {
+                // sort on a snapshot of the access epochs, packed along with the entry index,
+                // as the epochs can change while sorting
+                long[] order = new long[strong.size()];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = ((long) strong.get(i).accessed << 32) | i;
+                }
+                Arrays.sort(order);
+                int demoted = 0;
+                for (int i = 0; i < excess; i++) {
+                    if (strong.get((int) order[i]).demote()) {
+                        demoted++;
+                    }
+                }
+                strongCount.set(strong.size() - demoted);
+            } else {
+                strongCount.set(strong.size());
+            }
+            epoch++;
+        } finally {
+            demotionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns true if the value associated to the key is held by a strong reference, for testing
+     * purposes
+     */
+    boolean isStronglyHeld(Object key) {
+        Entry entry = entries.get(key);
+        return entry != null && entry.isStrong();
+    }
+
+    /**
+     * The number of values currently held by strong references, for testing purposes
+     */
+    int getStrongCount() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.isStrong()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -31,7 +31,7 @@ import org.opengis.util.GenericName;
  * <p>
  * This class provides the following services:
  * <ul>
- *   <li>Access to an implementation of "weak", "all" and "none" implementations of {@link ObjectCache}.</li>
+ *   <li>Access to an implementation of "weak", "all", "none" and "concurrent" implementations of {@link ObjectCache}.</li>
  *   <li>The ability to turn a "code" into a good "key" for use with an ObjectCache.</li>
  *   <li>A Pair data object (think of C STRUCT) for use as a key when storing a value against two objects.</li>
  * </ul>
@@ -187,7 +187,7 @@ public final class ObjectCaches {
     /**
      * Utility method used to produce an ObjectCache.
      *
-     * @param policy One of "weak", "all", "none", "soft"
+     * @param policy One of "weak", "all", "none", "soft", "fixed", "concurrent"
      * @param size Used to indicate requested size, exact use depends on policy
      * @return A new ObjectCache
      * @see Hints.BUFFER_POLICY
@@ -203,6 +203,8 @@ public final class ObjectCaches {
             return new FixedSizeObjectCache(size);
         } else if ("soft".equals(policy)){
         	return new SoftObjectCache(size);
+        } else if ("concurrent".equalsIgnoreCase(policy)) {
+            return new ConcurrentObjectCache(size);
         } else {
             return new DefaultObjectCache(size);
         }
@@ -0,0 +1,134 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ConcurrentObjectCacheTest {
+
+    private Integer key1 = 1;
+
+    private Integer key2 = 2;
+
+    private String value1 = new String("value 1");
+
+    private String value2 = new String("value 2");
+
+    @Test
+    public void testSimple() {
+        ObjectCache cache = new ConcurrentObjectCache();
+        assertNull(cache.get(key1));
+
+        cache.writeLock(key1);
+        cache.put(key1, value1);
+        cache.writeUnLock(key1);
+        assertEquals(value1, cache.get(key1));
+        assertEquals(value1, cache.peek(key1));
+        assertNull(cache.get(key2));
+
+        assertEquals(1, cache.getKeys().size());
+        assertEquals(key1, cache.getKeys().iterator().next());
+
+        cache.remove(key1);
+        assertNull(cache.get(key1));
+        assertEquals(0, cache.getKeys().size());
+    }
+
+    @Test
+    public void testCreateFromPolicy() {
+        assertTrue(ObjectCaches.create("concurrent", 10) instanceof ConcurrentObjectCache);
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void testUnlockWithoutLock() {
+        new ConcurrentObjectCache().writeUnLock(key1);
+    }
+
+    @Test
+    public void testReentrantLock() {
+        ObjectCache cache = new ConcurrentObjectCache();
+        cache.writeLock(key1);
+        cache.writeLock(key1);
+        cache.put(key1, value1);
+        cache.writeUnLock(key1);
+        cache.writeUnLock(key1);
+        assertEquals(value1, cache.get(key1));
+    }
+
+    @Test
+    public void testWriterBlocks() throws Exception {
+        final ObjectCache cache = new ConcurrentObjectCache();
+        cache.writeLock(key1);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<Object> seen = new AtomicReference<Object>();
+        Thread writer = new Thread() {
+            public void run() {
+                started.countDown();
+                cache.writeLock(key1);
+                try {
+                    seen.set(cache.peek(key1));
+                } finally {
+                    cache.writeUnLock(key1);
+                }
+            }
+        };
+        writer.start();
+        started.await();
+        Thread.sleep(50);
+        // reads do not block on writers
+        assertNull(cache.get(key1));
+        // writers of other keys do not block either
+        cache.writeLock(key2);
+        cache.put(key2, value2);
+        cache.writeUnLock(key2);
+
+        cache.put(key1, value1);
+        assertNull(seen.get());
+        cache.writeUnLock(key1);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(value1, seen.get());
+    }
+
+    @Test
+    public void testDemotion() {
+        ConcurrentObjectCache cache = new ConcurrentObjectCache(4);
+        for (int i = 0; i < 5; i++) {
+            cache.put(i, "value " + i);
+        }
+        // past the limit, some values got demoted
+        assertTrue(cache.getStrongCount() <= 4);
+        // use the first value in the new epoch, it's now the most recently used
+        assertEquals("value 0", cache.get(0));
+        assertTrue(cache.isStronglyHeld(0));
+        cache.put(5, "value 5");
+        cache.put(6, "value 6");
+        assertTrue(cache.getStrongCount() <= 4);
+        assertTrue(cache.isStronglyHeld(0));
+        // demoted values are still reachable, the garbage collector has no reason to clear them
+        assertEquals(7, cache.getKeys().size());
+        for (int i = 0; i < 7; i++) {
+            assertEquals("value " + i, cache.peek(i));
+        }
+    }
+}
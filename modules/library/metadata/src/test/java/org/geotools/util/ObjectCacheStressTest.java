@@ -0,0 +1,106 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.util;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Compares the throughput of the {@link ObjectCache} implementations under heavy concurrent
+ * load, using the same access pattern as the authority factories: a read, and on a miss a locked
+ * peek and put. Runs only when extensive tests are enabled (-Dorg.geotools.test.extensive=true)
+ */
+public class ObjectCacheStressTest {
+
+    static final int THREADS = 64;
+
+    static final int OPERATIONS = 200000;
+
+    static final int KEYS = 5000;
+
+    static final int LIMIT = 1000;
+
+    static final boolean SHOW_OUTPUT = false;
+
+    @Test
+    public void testPolicies() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("org.geotools.test.extensive"));
+        for (String policy : new String[] { "all", "soft", "concurrent" }) {
+            ObjectCache cache = ObjectCaches.create(policy, LIMIT);
+            // warm up, then measure
+            run(cache);
+            cache.clear();
+            long elapsed = run(cache);
+            if (SHOW_OUTPUT) {
+                double throughput = (double) THREADS * OPERATIONS / elapsed * 1000000000d;
+                System.out.println(policy + ": " + (elapsed / 1000000) + "ms, "
+                        + Math.round(throughput) + " ops/s");
+            }
+        }
+    }
+
+    private long run(final ObjectCache cache) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            long start = System.nanoTime();
+            for (int t = 0; t < THREADS; t++) {
+                final long seed = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        Random random = new Random(seed);
+                        for (int i = 0; i < OPERATIONS; i++) {
+                            // skewed distribution, few keys are very popular
+                            Integer key = (int) (KEYS * Math.pow(random.nextDouble(), 3));
+                            Object value = cache.get(key);
+                            if (value == null) {
+                                cache.writeLock(key);
+                                try {
+                                    value = cache.peek(key);
+                                    if (value == null) {
+                                        value = "value " + key;
+                                        cache.put(key, value);
+                                    }
+                                } finally {
+                                    cache.writeUnLock(key);
+                                }
+                            }
+                            assertEquals("value " + key, value);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
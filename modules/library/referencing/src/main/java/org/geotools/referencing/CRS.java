@@ -196,12 +196,17 @@ public final class CRS {
     /**
      * A factory for default (non-lenient) operations.
      */
-    private static CoordinateOperationFactory strictFactory;
+    private static volatile CoordinateOperationFactory strictFactory;
 
     /**
      * A factory for default lenient operations.
      */
-    private static CoordinateOperationFactory lenientFactory;
+    private static volatile CoordinateOperationFactory lenientFactory;
+
+    /**
+     * The transforms found by {@link #findMathTransform}, cleared when the configuration changes.
+     */
+    private static final MathTransformCache TRANSFORM_CACHE = new MathTransformCache();
 
     /**
      * Registers a listener automatically invoked when the system-wide configuration changed.
@@ -215,6 +220,7 @@ public final class CRS {
                     strictFactory  = null;
                     lenientFactory = null;
                 }
+                TRANSFORM_CACHE.clear();
             }
         });
     }
@@ -302,18 +308,23 @@ public final class CRS {
      *
      * @since 2.4
      */
-    public static synchronized CoordinateOperationFactory getCoordinateOperationFactory(final boolean lenient) {
+    public static CoordinateOperationFactory getCoordinateOperationFactory(final boolean lenient) {
         CoordinateOperationFactory factory = (lenient) ? lenientFactory : strictFactory;
         if (factory == null) {
-            final Hints hints = GeoTools.getDefaultHints();
-            if (lenient) {
-                hints.put(Hints.LENIENT_DATUM_SHIFT, Boolean.TRUE);
-            }
-            factory = ReferencingFactoryFinder.getCoordinateOperationFactory(hints);
-            if (lenient) {
-                lenientFactory = factory;
-            } else {
-                strictFactory = factory;
+            synchronized (CRS.class) {
+                factory = (lenient) ? lenientFactory : strictFactory;
+                if (factory == null) {
+                    final Hints hints = GeoTools.getDefaultHints();
+                    if (lenient) {
+                        hints.put(Hints.LENIENT_DATUM_SHIFT, Boolean.TRUE);
+                    }
+                    factory = ReferencingFactoryFinder.getCoordinateOperationFactory(hints);
+                    if (lenient) {
+                        lenientFactory = factory;
+                    } else {
+                        strictFactory = factory;
+                    }
+                }
             }
         }
         return factory;
@@ -1181,6 +1192,8 @@ search:             if (DefaultCoordinateSystemAxis.isCompassDirection(axis.getD
      * then this method will not throw a "<cite>Bursa-Wolf parameters required</cite>"
      * exception during datum shifts if the Bursa-Wolf paramaters are not specified.
      * Instead it will assume a no datum shift.
+     * <p>
+     * The transforms are cached, see {@link #getMathTransformCache()}.
      *
      * @param  sourceCRS The source CRS.
      * @param  targetCRS The target CRS.
@@ -1197,12 +1210,31 @@ search:             if (DefaultCoordinateSystemAxis.isCompassDirection(axis.getD
                                                   boolean lenient)
             throws FactoryException
     {
+        MathTransform transform = TRANSFORM_CACHE.get(sourceCRS, targetCRS, lenient);
+        if (transform != null) {
+            return transform;
+        }
         if (equalsIgnoreMetadata(sourceCRS, targetCRS)) {
             // Slight optimization in order to avoid the overhead of loading the full referencing engine.
-            return IdentityTransform.create(sourceCRS.getCoordinateSystem().getDimension());
+            transform = IdentityTransform.create(sourceCRS.getCoordinateSystem().getDimension());
+        } else {
+            CoordinateOperationFactory operationFactory = getCoordinateOperationFactory(lenient);
+            transform = operationFactory.createOperation(sourceCRS, targetCRS).getMathTransform();
         }
-        CoordinateOperationFactory operationFactory = getCoordinateOperationFactory(lenient);
-        return operationFactory.createOperation(sourceCRS, targetCRS).getMathTransform();
+        TRANSFORM_CACHE.put(sourceCRS, targetCRS, lenient, transform);
+        return transform;
+    }
+
+    /**
+     * Returns the cache used by {@link #findMathTransform(CoordinateReferenceSystem,
+     * CoordinateReferenceSystem, boolean) findMathTransform}, mostly to inspect its hit and miss
+     * counts. The cache is cleared on {@link #reset(String)} and whenever the system-wide
+     * configuration changes.
+     *
+     * @since 16.0
+     */
+    public static MathTransformCache getMathTransformCache() {
+        return TRANSFORM_CACHE;
     }
 
     /**
@@ -1846,6 +1878,7 @@ search:             if (DefaultCoordinateSystemAxis.isCompassDirection(axis.getD
         xyFactory = null;
         strictFactory = null;
         lenientFactory = null;
+        TRANSFORM_CACHE.clear();
     }
     
     /**
@@ -0,0 +1,305 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opengis.referencing.ReferenceIdentifier;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+
+/**
+ * Caches the math transforms returned by
+ * {@link CRS#findMathTransform(CoordinateReferenceSystem, CoordinateReferenceSystem, boolean)}.
+ * <p>
+ * Lookups are lock free and performed first by CRS identity, which is the common case since
+ * authority factories cache the CRS objects they create, and then by the CRS authority codes,
+ * in which case the CRS are compared ignoring metadata before reusing the transform. The CRS are
+ * referenced weakly, so the cache does not keep alive CRS objects that are no longer in use.
+ *
+ * @since 16.0
+ * @see CRS#getMathTransformCache()
+ */
+public final class MathTransformCache {
+
+    /**
+     * The maximum number of entries, past which the cache is cleared to avoid unbounded growth
+     * when lots of different CRS are in use (e.g., parsed from WKT on each request)
+     */
+    static final int MAX_SIZE = 1024;
+
+    private final ConcurrentHashMap<Key, MathTransform> byIdentity = new ConcurrentHashMap<Key, MathTransform>();
+
+    private final ConcurrentHashMap<String, Entry> byCode = new ConcurrentHashMap<String, Entry>();
+
+    private final ReferenceQueue<CoordinateReferenceSystem> queue = new ReferenceQueue<CoordinateReferenceSystem>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    MathTransformCache() {
+    }
+
+    /**
+     * Returns the cached transform, or null if not found
+     */
+    MathTransform get(CoordinateReferenceSystem source, CoordinateReferenceSystem target,
+            boolean lenient) {
+        if (source == null || target == null) {
+            return null;
+        }
+        MathTransform mt = byIdentity.get(new LookupKey(source, target, lenient));
+        if (mt == null) {
+            String code = toCodeKey(source, target, lenient);
+            if (code != null) {
+                Entry entry = byCode.get(code);
+                if (entry != null) {
+                    CoordinateReferenceSystem cachedSource = entry.source.get();
+                    CoordinateReferenceSystem cachedTarget = entry.target.get();
+                    if (cachedSource != null && cachedTarget != null
+                            && CRS.equalsIgnoreMetadata(source, cachedSource)
+                            && CRS.equalsIgnoreMetadata(target, cachedTarget)) {
+                        mt = entry.transform;
+                        // next time this exact pair will be found by identity
+                        putIdentity(source, target, lenient, mt);
+                    }
+                }
+            }
+        }
+        if (mt == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return mt;
+    }
+
+    void put(CoordinateReferenceSystem source, CoordinateReferenceSystem target,
+            boolean lenient, MathTransform transform) {
+        if (source == null || target == null || transform == null) {
+            return;
+        }
+        putIdentity(source, target, lenient, transform);
+        String code = toCodeKey(source, target, lenient);
+        if (code != null) {
+            byCode.put(code, new Entry(source, target, transform));
+        }
+    }
+
+    private void putIdentity(CoordinateReferenceSystem source, CoordinateReferenceSystem target,
+            boolean lenient, MathTransform transform) {
+        expungeStaleEntries();
+        if (byIdentity.size() >= MAX_SIZE) {
+            byIdentity.clear();
+            byCode.clear();
+        }
+        byIdentity.put(new StoredKey(source, target, lenient, queue), transform);
+    }
+
+    /**
+     * Removes the entries whose CRS have been garbage collected
+     */
+    private void expungeStaleEntries() {
+        Reference<? extends CoordinateReferenceSystem> ref;
+        while ((ref = queue.poll()) != null) {
+            byIdentity.remove(((KeyReference) ref).key);
+        }
+    }
+
+    /**
+     * Builds a key out of the first identifier of the two CRS, or returns null if either one
+     * has no identifiers
+     */
+    private static String toCodeKey(CoordinateReferenceSystem source,
+            CoordinateReferenceSystem target, boolean lenient) {
+        String sourceCode = getCode(source);
+        if (sourceCode == null) {
+            return null;
+        }
+        String targetCode = getCode(target);
+        if (targetCode == null) {
+            return null;
+        }
+        return sourceCode + "|" + targetCode + "|" + lenient;
+    }
+
+    private static String getCode(CoordinateReferenceSystem crs) {
+        Set<ReferenceIdentifier> identifiers = crs.getIdentifiers();
+        if (identifiers == null || identifiers.isEmpty()) {
+            return null;
+        }
+        return identifiers.iterator().next().toString();
+    }
+
+    /**
+     * The number of lookups that found a cached transform
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * The number of lookups that did not find a cached transform
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * The number of CRS pairs currently cached
+     */
+    public int size() {
+        expungeStaleEntries();
+        return byIdentity.size();
+    }
+
+    /**
+     * Removes all the cached transforms and resets the statistics
+     */
+    public void clear() {
+        byIdentity.clear();
+        byCode.clear();
+        hits.set(0);
+        misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "MathTransformCache[size=" + size() + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+
+    /**
+     * Base class for the identity keys, allows to perform lookups without creating weak
+     * references
+     */
+    static abstract class Key {
+        final int hash;
+
+        final boolean lenient;
+
+        Key(CoordinateReferenceSystem source, CoordinateReferenceSystem target, boolean lenient) {
+            this.hash = 37 * System.identityHashCode(source) + System.identityHashCode(target)
+                    + (lenient ? 1 : 0);
+            this.lenient = lenient;
+        }
+
+        abstract CoordinateReferenceSystem getSource();
+
+        abstract CoordinateReferenceSystem getTarget();
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (hash != other.hash || lenient != other.lenient) {
+                return false;
+            }
+            CoordinateReferenceSystem source = getSource();
+            CoordinateReferenceSystem target = getTarget();
+            // cleared references never match
+            return source != null && target != null && source == other.getSource()
+                    && target == other.getTarget();
+        }
+    }
+
+    static final class LookupKey extends Key {
+        final CoordinateReferenceSystem source;
+
+        final CoordinateReferenceSystem target;
+
+        LookupKey(CoordinateReferenceSystem source, CoordinateReferenceSystem target,
+                boolean lenient) {
+            super(source, target, lenient);
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        CoordinateReferenceSystem getSource() {
+            return source;
+        }
+
+        @Override
+        CoordinateReferenceSystem getTarget() {
+            return target;
+        }
+    }
+
+    static final class StoredKey extends Key {
+        final KeyReference source;
+
+        final KeyReference target;
+
+        StoredKey(CoordinateReferenceSystem source, CoordinateReferenceSystem target,
+                boolean lenient, ReferenceQueue<CoordinateReferenceSystem> queue) {
+            super(source, target, lenient);
+            this.source = new KeyReference(source, queue, this);
+            this.target = new KeyReference(target, queue, this);
+        }
+
+        @Override
+        CoordinateReferenceSystem getSource() {
+            return source.get();
+        }
+
+        @Override
+        CoordinateReferenceSystem getTarget() {
+            return target.get();
+        }
+    }
+
+    static final class KeyReference extends WeakReference<CoordinateReferenceSystem> {
+        final StoredKey key;
+
+        KeyReference(CoordinateReferenceSystem referent,
+                ReferenceQueue<CoordinateReferenceSystem> queue, StoredKey key) {
+            super(referent, queue);
+            this.key = key;
+        }
+    }
+
+    static final class Entry {
+        final WeakReference<CoordinateReferenceSystem> source;
+
+        final WeakReference<CoordinateReferenceSystem> target;
+
+        final MathTransform transform;
+
+        Entry(CoordinateReferenceSystem source, CoordinateReferenceSystem target,
+                MathTransform transform) {
+            this.source = new WeakReference<CoordinateReferenceSystem>(source);
+            this.target = new WeakReference<CoordinateReferenceSystem>(target);
+            this.transform = transform;
+        }
+    }
+}
@@ -365,4 +365,37 @@ public final class CrsTest {
         assertEquals(15.96, transformed.getMaximum(0), 0.01);
         assertEquals(41.61, transformed.getMaximum(1), 0.01);
     }
+
+    @Test
+    public void testFindMathTransformCache() throws Exception {
+        CoordinateReferenceSystem mercator = CRS.parseWKT(
+                "PROJCS[\"Mercator\", GEOGCS[\"WGS84\", DATUM[\"WGS84\", "
+                + "SPHEROID[\"WGS84\", 6378137.0, 298.257223563]], PRIMEM[\"Greenwich\", 0.0], "
+                + "UNIT[\"degree\",0.017453292519943295]], PROJECTION[\"Mercator_1SP\"], "
+                + "PARAMETER[\"central_meridian\", 0.0], PARAMETER[\"scale_factor\", 1.0], "
+                + "PARAMETER[\"false_easting\", 0.0], PARAMETER[\"false_northing\", 0.0], "
+                + "UNIT[\"m\", 1.0]]");
+        MathTransformCache cache = CRS.getMathTransformCache();
+        cache.clear();
+
+        MathTransform mt = CRS.findMathTransform(DefaultGeographicCRS.WGS84, mercator, true);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertSame(mt, CRS.findMathTransform(DefaultGeographicCRS.WGS84, mercator, true));
+        assertEquals(1, cache.getHitCount());
+
+        // lenient and strict transforms are cached separately
+        CRS.findMathTransform(DefaultGeographicCRS.WGS84, mercator, false);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+
+        // an equal but different object is not found by identity
+        CoordinateReferenceSystem copy = CRS.parseWKT(mercator.toWKT());
+        CRS.findMathTransform(DefaultGeographicCRS.WGS84, copy, true);
+        assertEquals(3, cache.getMissCount());
+
+        CRS.reset("warnings");
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
 }
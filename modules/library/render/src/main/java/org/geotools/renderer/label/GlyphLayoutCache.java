@@ -0,0 +1,254 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.label;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geotools.renderer.label.LineInfo.LineComponent;
+import org.geotools.util.LRULinkedHashMap;
+
+/**
+ * A cache of laid out labels, that is, of the glyph vectors and text layouts a label text is
+ * split into, keyed by the text, the fonts, the font render context and the auto wrap length.
+ * Street names, place names and house numbers repeat a lot, across features and across maps, and
+ * shaping them is expensive.
+ * <p>
+ * The cache holds at most the specified number of layouts, evicting the least recently used
+ * ones, and holds them via soft references, so that they can be reclaimed when memory is low.
+ * The cache is thread safe, the layouts it returns are private copies sharing the immutable
+ * glyph vectors and text layouts.
+ * <p>
+ * By default the labels are laid out using a JVM wide cache holding up to 10000 layouts, the size
+ * can be changed via the {@code org.geotools.labelcache.glyphLayoutCacheSize} system property (use
+ * 0 to disable caching).
+ *
+ * @since 16.0
+ */
+public final class GlyphLayoutCache {
+
+    static final int DEFAULT_MAX_ENTRIES = Integer.getInteger(
+            "org.geotools.labelcache.glyphLayoutCacheSize", 10000);
+
+    private static final GlyphLayoutCache DEFAULT = new GlyphLayoutCache(DEFAULT_MAX_ENTRIES);
+
+    /**
+     * Returns the JVM wide cache used by default when laying out labels
+     *
+     * @return
+     */
+    public static GlyphLayoutCache getDefault() {
+        return DEFAULT;
+    }
+
+    private final int maxEntries;
+
+    private final Map<Key, SoftReference<List<LineInfo>>> layouts;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Builds a new cache
+     *
+     * @param maxEntries the max number of layouts held, 0 or less disables caching
+     */
+    public GlyphLayoutCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.layouts = LRULinkedHashMap.createForRecentAccess(Math.max(maxEntries, 1));
+    }
+
+    /**
+     * Returns the max number of layouts held in the cache
+     *
+     * @return
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the number of layouts currently held in the cache (some of them might have been
+     * reclaimed by the garbage collector in the meantime)
+     *
+     * @return
+     */
+    public int size() {
+        synchronized (layouts) {
+            return layouts.size();
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found a layout in the cache
+     *
+     * @return
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that did not find a layout in the cache
+     *
+     * @return
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the ratio of the lookups that found a layout in the cache, or 0 if no lookup has
+     * been performed yet
+     *
+     * @return
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : ((double) h) / total;
+    }
+
+    /**
+     * Removes all the layouts and resets the statistics
+     */
+    public void clear() {
+        synchronized (layouts) {
+            layouts.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Returns a copy of the layout cached for the key, or null if not found
+     *
+     * @param key
+     * @return
+     */
+    List<LineInfo> get(Key key) {
+        if (maxEntries <= 0) {
+            return null;
+        }
+        List<LineInfo> lines = null;
+        synchronized (layouts) {
+            SoftReference<List<LineInfo>> reference = layouts.get(key);
+            if (reference != null) {
+                lines = reference.get();
+                if (lines == null) {
+                    layouts.remove(key);
+                }
+            }
+        }
+        if (lines == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copy(lines);
+    }
+
+    /**
+     * Caches a copy of the layout for the key
+     *
+     * @param key
+     * @param lines
+     */
+    void put(Key key, List<LineInfo> lines) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        List<LineInfo> copy = copy(lines);
+        // the glyph vectors compute some of their state lazily, do it before they get shared
+        // among threads
+        for (LineInfo line : copy) {
+            for (LineComponent component : line.getComponents()) {
+                GlyphVector gv = component.getGlyphVector();
+                gv.getLogicalBounds();
+                gv.getGlyphPosition(gv.getNumGlyphs());
+                component.getVisualBounds();
+            }
+        }
+        synchronized (layouts) {
+            layouts.put(key, new SoftReference<List<LineInfo>>(copy));
+        }
+    }
+
+    private List<LineInfo> copy(List<LineInfo> lines) {
+        List<LineInfo> result = new ArrayList<LineInfo>(lines.size());
+        for (LineInfo line : lines) {
+            result.add(line.copy());
+        }
+        return result;
+    }
+
+    /**
+     * The layout cache key
+     */
+    static final class Key {
+
+        final String text;
+
+        final Font[] fonts;
+
+        final FontRenderContext frc;
+
+        final int autoWrap;
+
+        final int hashCode;
+
+        Key(String text, Font[] fonts, FontRenderContext frc, int autoWrap) {
+            this.text = text;
+            this.fonts = fonts.clone();
+            this.frc = frc;
+            this.autoWrap = autoWrap;
+            int result = text.hashCode();
+            result = 31 * result + Arrays.hashCode(fonts);
+            result = 31 * result + frc.hashCode();
+            result = 31 * result + autoWrap;
+            this.hashCode = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && autoWrap == other.autoWrap
+                    && text.equals(other.text) && frc.equals(other.frc)
+                    && Arrays.equals(fonts, other.fonts);
+        }
+    }
+
+}
@@ -26,6 +26,7 @@ import java.awt.RenderingHints;
 import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -33,9 +34,14 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -142,6 +148,12 @@ public final class LabelCacheImpl implements LabelCache {
     static final double[] MID_ANCHOR_CANDIDATES = new double[] {0.5,0.5, 0,0.5, 1,0.5};
     static final double[] LEFT_ANCHOR_CANDIDATES = new double[] {1,0.5, 1,0, 1,1};
 
+    /** The number of labels prepared by each task submitted to the placement thread pool */
+    static final int PREPARE_BATCH_SIZE = 64;
+
+    /** The max number of batches prepared ahead of the placement pass */
+    static final int MAX_PENDING_BATCHES = 32;
+
     protected LabelRenderingMode labelRenderingMode = LabelRenderingMode.STRING;
 
     protected SLDStyleFactory styleFactory = new SLDStyleFactory();
@@ -162,6 +174,9 @@ public final class LabelCacheImpl implements LabelCache {
     
     private VendorOptionParser voParser = new VendorOptionParser();
 
+    /** The thread pool used to prepare the labels in parallel, if any */
+    private ExecutorService placementThreadPool;
+
     public void enableLayer(String layerId) {
         needsOrdering = true;
         enabledLayers.add(layerId);
@@ -178,6 +193,23 @@ public final class LabelCacheImpl implements LabelCache {
         this.labelRenderingMode = mode;
     }
 
+    public ExecutorService getPlacementThreadPool() {
+        return placementThreadPool;
+    }
+
+    /**
+     * Sets the thread pool used to lay out the labels and compute their candidate locations in
+     * parallel, ahead of the placement pass resolving the conflicts among them. The placement
+     * pass still runs in the painting thread, in priority order, so the labels painted are the
+     * same as when everything is done serially. The pool is not shut down by the label cache.
+     * When null, the default, the labels are prepared in the painting thread.
+     * 
+     * @param placementThreadPool
+     */
+    public void setPlacementThreadPool(ExecutorService placementThreadPool) {
+        this.placementThreadPool = placementThreadPool;
+    }
+
     public void stop() {
         stop = true;
         activeLayers.clear();
@@ -458,52 +490,71 @@ public final class LabelCacheImpl implements LabelCache {
             items = getActiveLabels();
         }
         LabelPainter painter = new LabelPainter(graphics, labelRenderingMode);
-        for (LabelCacheItem labelItem : items) {
-            if (stop)
-                return;
+        LabelPreparer preparer = null;
+        if (placementThreadPool != null && items.size() > 1) {
+            preparer = new LabelPreparer(items, graphics, displayArea);
+        }
+        try {
+            for (LabelCacheItem labelItem : items) {
+                if (stop)
+                    return;
             
-            painter.setLabel(labelItem);
-            try {
-                // LabelCacheItem labelItem = (LabelCacheItem)
-                // labelCache.get(labelIter.next());
-
-                // DJB: simplified this. Just send off to the point,line,or
-                // polygon routine
-                // NOTE: labelItem.getGeometry() returns the FIRST geometry, so
-                // we're assuming that lines & points arent mixed
-                // If they are, then the FIRST geometry determines how its
-                // rendered (which is probably bad since it should be in
-                // area,line,point order
-                // TOD: as in NOTE above
-
-                /*
-                 * Just use identity for tempTransform because display area is
-                 * 0,0,width,height and oldTransform may have a different
-                 * origin. OldTransform will be used later for drawing. -rg & je
-                 */
-                AffineTransform tempTransform = new AffineTransform();
-
-                Geometry geom = labelItem.getGeometry();
-                if ((geom instanceof Point) || (geom instanceof MultiPoint))
-                    paintPointLabel(painter, tempTransform, displayArea, glyphs);
-                else if (((geom instanceof LineString) && !(geom instanceof LinearRing))
-                        || (geom instanceof MultiLineString)){
-                     if(!DISABLE_LETTER_LEVEL_CONFLICT)
-                         painted = paintLineLabelsWithLetterConflict(painter, tempTransform, displayArea, glyphs);
-                     else
-                         painted = paintLineLabels(painter, tempTransform, displayArea, glyphs);
-                     if (!painted){
-                         nonPaintedLineLabels++;
-                     } else paintedLineLabels++;
+                // use the layout and candidates prepared in parallel, if available, 
+                // otherwise compute them here
+                PreparedLabel prepared = preparer != null ? preparer.next() : null;
+                boolean prepare = prepared == null || prepared.failure != null;
+                if (prepare) {
+                    painter.setLabel(labelItem);
+                } else {
+                    painter.setLabel(labelItem, prepared.lines, prepared.labelBounds);
                 }
-                else if (geom instanceof Polygon || geom instanceof MultiPolygon
-                        || geom instanceof LinearRing)
-                    paintPolygonLabel(painter, tempTransform, displayArea, glyphs);
-            } catch (Exception e) {
-                System.out.println("Issues painting " + labelItem.getLabel());
-                // the decimation can cause problems - we try to minimize it
-                // do nothing
-                e.printStackTrace();
+                try {
+                    if (prepare) {
+                        prepared = new PreparedLabel(labelItem);
+                        prepareCandidates(prepared, painter, displayArea);
+                    }
+                    // LabelCacheItem labelItem = (LabelCacheItem)
+                    // labelCache.get(labelIter.next());
+
+                    // DJB: simplified this. Just send off to the point,line,or
+                    // polygon routine
+                    // NOTE: labelItem.getGeometry() returns the FIRST geometry, so
+                    // we're assuming that lines & points arent mixed
+                    // If they are, then the FIRST geometry determines how its
+                    // rendered (which is probably bad since it should be in
+                    // area,line,point order
+                    // TOD: as in NOTE above
+
+                    /*
+                     * Just use identity for tempTransform because display area is
+                     * 0,0,width,height and oldTransform may have a different
+                     * origin. OldTransform will be used later for drawing. -rg & je
+                     */
+                    AffineTransform tempTransform = new AffineTransform();
+
+                    if (prepared.kind == PreparedLabel.Kind.POINT)
+                        paintPointLabel(painter, prepared, tempTransform, displayArea, glyphs);
+                    else if (prepared.kind == PreparedLabel.Kind.LINE){
+                         if(!DISABLE_LETTER_LEVEL_CONFLICT)
+                             painted = paintLineLabelsWithLetterConflict(painter, prepared, tempTransform, displayArea, glyphs);
+                         else
+                             painted = paintLineLabels(painter, prepared, tempTransform, displayArea, glyphs);
+                         if (!painted){
+                             nonPaintedLineLabels++;
+                         } else paintedLineLabels++;
+                    }
+                    else if (prepared.kind == PreparedLabel.Kind.POLYGON)
+                        paintPolygonLabel(painter, prepared, tempTransform, displayArea, glyphs);
+                } catch (Exception e) {
+                    System.out.println("Issues painting " + labelItem.getLabel());
+                    // the decimation can cause problems - we try to minimize it
+                    // do nothing
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            if (preparer != null) {
+                preparer.cancel();
             }
         }
         //Output for line labels
@@ -513,6 +564,173 @@ public final class LabelCacheImpl implements LabelCache {
     }
 
 
+    /**
+     * Computes the candidate locations of a label that has already been laid out by the
+     * painter, that is, everything that does not depend on the labels placed before it. This
+     * method only reads the cache state set up before the placement pass (clipper, factories),
+     * so it can be called from multiple threads, as long as each uses its own painter.
+     * 
+     * @param prepared
+     * @param painter a painter with the label laid out
+     * @param displayArea
+     */
+    void prepareCandidates(PreparedLabel prepared, LabelPainter painter, Rectangle displayArea) {
+        LabelCacheItem labelItem = prepared.item;
+        // NOTE: labelItem.getGeometry() returns the FIRST geometry, so
+        // we're assuming that lines & points arent mixed
+        Geometry geom = labelItem.getGeometry();
+        if ((geom instanceof Point) || (geom instanceof MultiPoint)) {
+            prepared.kind = PreparedLabel.Kind.POINT;
+            // get the point onto the shape has to be painted
+            prepared.point = getPointSetRepresentativeLocation(labelItem.getGeoms(),
+                    displayArea, labelItem.isPartialsEnabled());
+        } else if (((geom instanceof LineString) && !(geom instanceof LinearRing))
+                || (geom instanceof MultiLineString)) {
+            prepared.kind = PreparedLabel.Kind.LINE;
+            List<LineString> lines = getLineSetRepresentativeLocation(labelItem.getGeoms(),
+                    displayArea, labelItem.removeGroupOverlaps(), labelItem.isPartialsEnabled());
+            if (lines == null || lines.size() == 0)
+                return;
+
+            // if we just want to label the longest line, remove the others
+            if (!labelItem.labelAllGroup() && lines.size() > 1) {
+                lines = Collections.singletonList(lines.get(0));
+            }
+
+            // if we are following lines, use a simplified version of the line,
+            // we don't want very small segments to influence the character
+            // orientation
+            final double step;
+            if (!DISABLE_LETTER_LEVEL_CONFLICT) {
+                // ... use at least a 8 pixel step (curved processing is quite expensive), no
+                // matter what the label length is
+                step = painter.getLineHeight() > 8 ? painter.getLineHeight() : 8;
+            } else {
+                // ... use at least a 2 pixel step, no matter what the label length is
+                step = painter.getAscent() > 2 ? painter.getAscent() : 2;
+            }
+            List<LineStringCursor> cursors = new ArrayList<LineStringCursor>(lines.size());
+            for (LineString line : lines) {
+                if (labelItem.isFollowLineEnabled())
+                    line = decimateLineString(line, step);
+                cursors.add(new LineStringCursor(line));
+            }
+            prepared.cursors = cursors;
+        } else if (geom instanceof Polygon || geom instanceof MultiPolygon
+                || geom instanceof LinearRing) {
+            prepared.kind = PreparedLabel.Kind.POLYGON;
+            Polygon polygon = getPolySetRepresentativeLocation(labelItem.getGeoms(), displayArea,
+                    labelItem.isPartialsEnabled());
+            if (polygon != null) {
+                prepared.polygon = PreparedGeometryFactory.prepare(polygon);
+                prepared.centroid = getPolygonLabelLocation(polygon, prepared.polygon);
+            }
+        }
+    }
+
+    /**
+     * Prepares the labels in batches on the placement thread pool, keeping a bounded number of
+     * batches ahead of the placement pass, and hands them back in the original order
+     */
+    private class LabelPreparer {
+
+        final List<LabelCacheItem> items;
+
+        final RenderingHints hints;
+
+        final AffineTransform transform;
+
+        final Rectangle displayArea;
+
+        final LinkedList<Future<List<PreparedLabel>>> pending = new LinkedList<Future<List<PreparedLabel>>>();
+
+        int submitted;
+
+        Iterator<PreparedLabel> current = Collections.<PreparedLabel> emptyList().iterator();
+
+        LabelPreparer(List<LabelCacheItem> items, Graphics2D graphics, Rectangle displayArea) {
+            this.items = items;
+            // the layout depends on the font render context, which is derived from these
+            this.hints = graphics.getRenderingHints();
+            this.transform = graphics.getTransform();
+            this.displayArea = displayArea;
+        }
+
+        /**
+         * Returns the next label, waiting for it to be prepared if needs be
+         */
+        PreparedLabel next() {
+            while (!current.hasNext()) {
+                submit();
+                try {
+                    current = pending.removeFirst().get().iterator();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for labels to be prepared", e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Failed to prepare labels", e.getCause());
+                }
+            }
+            return current.next();
+        }
+
+        /**
+         * Submits new batches until the max number of pending ones is reached
+         */
+        void submit() {
+            while (pending.size() < MAX_PENDING_BATCHES && submitted < items.size()) {
+                int end = Math.min(submitted + PREPARE_BATCH_SIZE, items.size());
+                final List<LabelCacheItem> batch = items.subList(submitted, end);
+                submitted = end;
+                pending.add(placementThreadPool.submit(new Callable<List<PreparedLabel>>() {
+
+                    public List<PreparedLabel> call() throws Exception {
+                        return prepare(batch);
+                    }
+                }));
+            }
+        }
+
+        List<PreparedLabel> prepare(List<LabelCacheItem> batch) {
+            // each task lays out the labels on its own graphics, the splitter modifies its state
+            BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = image.createGraphics();
+            try {
+                graphics.setRenderingHints(hints);
+                graphics.setTransform(transform);
+                LabelPainter painter = new LabelPainter(graphics, labelRenderingMode);
+                List<PreparedLabel> result = new ArrayList<PreparedLabel>(batch.size());
+                for (LabelCacheItem item : batch) {
+                    PreparedLabel prepared = new PreparedLabel(item);
+                    result.add(prepared);
+                    if (stop) {
+                        // the painting thread will not get here anyways
+                        continue;
+                    }
+                    try {
+                        painter.layout(item);
+                        prepared.lines = painter.lines;
+                        prepared.labelBounds = painter.labelBounds;
+                        prepareCandidates(prepared, painter, displayArea);
+                    } catch (Exception e) {
+                        // will be prepared again, and the failure reported, by the painting thread
+                        prepared.failure = e;
+                    }
+                }
+                return result;
+            } finally {
+                graphics.dispose();
+            }
+        }
+
+        void cancel() {
+            for (Future<List<PreparedLabel>> future : pending) {
+                future.cancel(false);
+            }
+            pending.clear();
+        }
+    }
+
     private Envelope toEnvelope(Rectangle2D bounds) {
         return new Envelope(bounds.getMinX(), bounds.getMaxX(), bounds.getMinY(), bounds.getMaxY());
     }
@@ -594,21 +812,15 @@ public final class LabelCacheImpl implements LabelCache {
     //Modified version of paintLineLabels
     //We compute the Bounding box for each letters instead of the whole label
     //then we check each letters for collisions
-    private boolean paintLineLabelsWithLetterConflict(LabelPainter painter, AffineTransform originalTransform,
-            Rectangle displayArea, LabelIndex paintedBounds) throws Exception {
+    private boolean paintLineLabelsWithLetterConflict(LabelPainter painter, PreparedLabel prepared,
+            AffineTransform originalTransform, Rectangle displayArea, LabelIndex paintedBounds)
+            throws Exception {
         final LabelCacheItem labelItem = painter.getLabel();
-        List<LineString> lines = getLineSetRepresentativeLocation(
-                labelItem.getGeoms(), displayArea, labelItem.removeGroupOverlaps(),
-                labelItem.isPartialsEnabled());
-
-        if (lines == null || lines.size() == 0)
+        // the candidate lines, already reduced to the longest one if we don't label all the group
+        List<LineStringCursor> cursors = prepared.cursors;
+        if (cursors == null || cursors.size() == 0)
             return false;
 
-        // if we just want to label the longest line, remove the others
-        if (!labelItem.labelAllGroup() && lines.size() > 1) {
-            lines = Collections.singletonList(lines.get(0));
-        }
-
         // pre compute some labelling params
         final Rectangle2D textBounds = painter.getFullLabelBounds();
         // ... use at least a 8 pixel step (curved processing is quite expensive), no matter what the label length is
@@ -628,12 +840,9 @@ public final class LabelCacheImpl implements LabelCache {
         double maxAngleDelta = labelItem.getMaxAngleDelta();
 
         int labelCount = 0;
-        for (LineString line : lines) {
-            // if we are following lines, use a simplified version of the line,
-            // we don't want very small segments to influence the character
-            // orientation
-            if (labelItem.isFollowLineEnabled())
-                line = decimateLineString(line, step);
+        for (LineStringCursor lineCursor : cursors) {
+            // when following lines this is a simplified version of the line, see prepareLabel
+            LineString line = lineCursor.getLineString();
 
             // max distance between candidate label points, if any
             final double lineStringLength = line.getLength();
@@ -672,7 +881,7 @@ public final class LabelCacheImpl implements LabelCache {
             // Ok, now we try to paint each of the labels in each position, and
             // we take into
             // account that we might have to displace the labels
-            LineStringCursor cursor = new LineStringCursor(line);
+            LineStringCursor cursor = lineCursor;
             AffineTransform tx = new AffineTransform();
             for (int i = 0; i < labelPositions.length; i++) {
                 cursor.moveTo(labelPositions[i]);
@@ -812,21 +1021,15 @@ public final class LabelCacheImpl implements LabelCache {
     }
 
 
-    private boolean paintLineLabels(LabelPainter painter, AffineTransform originalTransform,
-            Rectangle displayArea, LabelIndex paintedBounds) throws Exception {
+    private boolean paintLineLabels(LabelPainter painter, PreparedLabel prepared,
+            AffineTransform originalTransform, Rectangle displayArea, LabelIndex paintedBounds)
+            throws Exception {
         final LabelCacheItem labelItem = painter.getLabel();
-        List<LineString> lines = getLineSetRepresentativeLocation(
-                labelItem.getGeoms(), displayArea, labelItem.removeGroupOverlaps(),
-                labelItem.isPartialsEnabled());
-
-        if (lines == null || lines.size() == 0)
+        // the candidate lines, already reduced to the longest one if we don't label all the group
+        List<LineStringCursor> cursors = prepared.cursors;
+        if (cursors == null || cursors.size() == 0)
             return false;
 
-        // if we just want to label the longest line, remove the others
-        if (!labelItem.labelAllGroup() && lines.size() > 1) {
-            lines = Collections.singletonList(lines.get(0));
-        }
-
         // pre compute some labelling params
         final Rectangle2D textBounds = painter.getFullLabelBounds();
         // ... use at least a 2 pixel step, no matter what the label length is
@@ -846,12 +1049,9 @@ public final class LabelCacheImpl implements LabelCache {
         double maxAngleDelta = labelItem.getMaxAngleDelta();
 
         int labelCount = 0;
-        for (LineString line : lines) {
-            // if we are following lines, use a simplified version of the line,
-            // we don't want very small segments to influence the character
-            // orientation
-            if (labelItem.isFollowLineEnabled())
-                line = decimateLineString(line, step);
+        for (LineStringCursor lineCursor : cursors) {
+            // when following lines this is a simplified version of the line, see prepareLabel
+            LineString line = lineCursor.getLineString();
 
             // max distance between candidate label points, if any
             final double lineStringLength = line.getLength();
@@ -890,7 +1090,7 @@ public final class LabelCacheImpl implements LabelCache {
             // Ok, now we try to paint each of the labels in each position, and
             // we take into
             // account that we might have to displace the labels
-            LineStringCursor cursor = new LineStringCursor(line);
+            LineStringCursor cursor = lineCursor;
             AffineTransform tx = new AffineTransform();
             for (int i = 0; i < labelPositions.length; i++) {
                 cursor.moveTo(labelPositions[i]);
@@ -1119,12 +1319,12 @@ public final class LabelCacheImpl implements LabelCache {
      * a search for a better position is tried on concentric circles around the label
      * up until the radius of the circle becomes bigger than the max displacement
      */
-    private boolean paintPointLabel(LabelPainter painter, AffineTransform tempTransform,
-            Rectangle displayArea, LabelIndex glyphs) throws Exception {
+    private boolean paintPointLabel(LabelPainter painter, PreparedLabel prepared,
+            AffineTransform tempTransform, Rectangle displayArea, LabelIndex glyphs)
+            throws Exception {
         LabelCacheItem labelItem = painter.getLabel();
-        // get the point onto the shape has to be painted
-        Point point = getPointSetRepresentativeLocation(labelItem.getGeoms(),
-                displayArea, labelItem.isPartialsEnabled());
+        // the point onto the shape has to be painted
+        Point point = prepared.point;
         if (point == null)
             return false;
 
@@ -1251,19 +1451,15 @@ public final class LabelCacheImpl implements LabelCache {
     }
 
     /**
-     * returns the representative geometry (for further processing)
+     * Returns the point the label of a polygon should be centered on, that is, its centroid
+     * or, if the centroid falls outside of the polygon, the middle of the longest horizontal
+     * run inside the polygon at the centroid height. Returns null if no such point could be
+     * found.
      * 
-     * TODO: handle lineplacement for a polygon (perhaps we're supposed to grab
-     * the outside line and label it, but spec is unclear)
+     * @param geom
+     * @param pg the prepared version of geom
      */
-    private boolean paintPolygonLabel(LabelPainter painter, AffineTransform tempTransform,
-            Rectangle displayArea, LabelIndex glyphs) throws Exception {
-        LabelCacheItem labelItem = painter.getLabel();
-        Polygon geom = getPolySetRepresentativeLocation(labelItem.getGeoms(), displayArea, labelItem.isPartialsEnabled());
-        if (geom == null) {
-            return false;
-        }
-        
+    private Point getPolygonLabelLocation(Polygon geom, PreparedGeometry pg) {
         Point centroid;
         try {
             centroid = geom.getCentroid();
@@ -1276,13 +1472,12 @@ public final class LabelCacheImpl implements LabelCache {
                 try {
                     centroid = geom.getFactory().createPoint(geom.getCoordinate());
                 } catch (Exception eee) {
-                    return false; // we're hooped
+                    return null; // we're hooped
                 }
             }
         }
         
         // check we're inside, if not, use a different approach
-        PreparedGeometry pg = PreparedGeometryFactory.prepare(geom);
         if(!pg.contains(centroid)) {
             // resort to sampling, computing the intersection is slow and
             // due invalid geometries can easily break with an exception
@@ -1317,9 +1512,29 @@ public final class LabelCacheImpl implements LabelCache {
                 pp.geometryChanged();
                 centroid = pp;
             } else {
-                return false;
+                return null;
             }
         }
+        return centroid;
+    }
+
+
+
+    /**
+     * returns the representative geometry (for further processing)
+     * 
+     * TODO: handle lineplacement for a polygon (perhaps we're supposed to grab
+     * the outside line and label it, but spec is unclear)
+     */
+    private boolean paintPolygonLabel(LabelPainter painter, PreparedLabel prepared,
+            AffineTransform tempTransform, Rectangle displayArea, LabelIndex glyphs)
+            throws Exception {
+        LabelCacheItem labelItem = painter.getLabel();
+        PreparedGeometry pg = prepared.polygon;
+        Point centroid = prepared.centroid;
+        if (pg == null || centroid == null) {
+            return false;
+        }
 
         // compute the transformation used to position the label
         TextStyle2DExt textStyle = new TextStyle2DExt(labelItem);
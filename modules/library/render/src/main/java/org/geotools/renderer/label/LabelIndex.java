@@ -17,15 +17,23 @@
 package org.geotools.renderer.label;
 
 import java.awt.geom.Rectangle2D;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.vividsolutions.jts.geom.Envelope;
-import com.vividsolutions.jts.index.quadtree.Quadtree;
 
 /**
  * Stores label items and helps in finding the interferering ones, either by
  * pure overlap or within a certain distance from the specified bounds
+ * <p>
+ * The items are stored in a sparse uniform grid of square cells, which suits the
+ * label bounds, all of similar size and spread over the screen, better than a
+ * tree: lookups and insertions only touch the few cells covered by the bounds.
+ * Items covering too many cells (e.g., reserved areas) are kept in a separate list
+ * that is always scanned, and searches covering too many cells scan all the items
+ * instead.
  * 
  * @author Andrea Aime
  * 
@@ -36,7 +44,31 @@ import com.vividsolutions.jts.index.quadtree.Quadtree;
  */
 public class LabelIndex {
 
-    Quadtree index = new Quadtree();
+    /**
+     * The size of the grid cells, in pixels
+     */
+    static final double CELL_SIZE = 64;
+
+    /**
+     * The max number of cells an item or a search can cover before being handled
+     * as a large one
+     */
+    static final int MAX_CELLS = 64;
+
+    /**
+     * The grid cells, keyed by their packed column and row
+     */
+    Map<Long, List<InterferenceItem>> cells = new HashMap<Long, List<InterferenceItem>>();
+
+    /**
+     * The items covering too many cells to be stored in the grid
+     */
+    List<InterferenceItem> largeItems = new ArrayList<InterferenceItem>();
+
+    /**
+     * All the items, in insertion order
+     */
+    List<InterferenceItem> items = new ArrayList<InterferenceItem>();
 
     /**
      * Returns true if there is any label in the index within the specified
@@ -47,18 +79,35 @@ public class LabelIndex {
      * @param distance
      * @return
      */
-    @SuppressWarnings("unchecked")
     public boolean labelsWithinDistance(Rectangle2D bounds, double distance) {
         if (distance < 0)
             return false;
 
         Envelope e = toEnvelope(bounds);
         e.expandBy(distance);
-        List<InterferenceItem> results = index.query(e);
-        if (results.size() == 0)
-            return false;
-        for (Iterator<InterferenceItem> it = results.iterator(); it.hasNext();) {
-            InterferenceItem item = it.next();
+        if (intersects(largeItems, e)) {
+            return true;
+        }
+        if (isLarge(e)) {
+            return intersects(items, e);
+        }
+        int minCol = cell(e.getMinX());
+        int maxCol = cell(e.getMaxX());
+        int minRow = cell(e.getMinY());
+        int maxRow = cell(e.getMaxY());
+        for (int col = minCol; col <= maxCol; col++) {
+            for (int row = minRow; row <= maxRow; row++) {
+                List<InterferenceItem> cellItems = cells.get(key(col, row));
+                if (cellItems != null && intersects(cellItems, e)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean intersects(List<InterferenceItem> candidates, Envelope e) {
+        for (InterferenceItem item : candidates) {
             if (item.env.intersects(e)) {
                 return true;
             }
@@ -74,7 +123,57 @@ public class LabelIndex {
      */
     public void addLabel(LabelCacheItem item, Rectangle2D bounds) {
         Envelope e = toEnvelope(bounds);
-        index.insert(e, new InterferenceItem(e, item));
+        insert(new InterferenceItem(e, item));
+    }
+
+    /**
+     * Adds the item into all the grid cells it covers, or into the large items list
+     * 
+     * @param item
+     */
+    private void insert(InterferenceItem item) {
+        items.add(item);
+        Envelope e = item.env;
+        if (isLarge(e)) {
+            largeItems.add(item);
+            return;
+        }
+        int minCol = cell(e.getMinX());
+        int maxCol = cell(e.getMaxX());
+        int minRow = cell(e.getMinY());
+        int maxRow = cell(e.getMaxY());
+        for (int col = minCol; col <= maxCol; col++) {
+            for (int row = minRow; row <= maxRow; row++) {
+                Long key = key(col, row);
+                List<InterferenceItem> cellItems = cells.get(key);
+                if (cellItems == null) {
+                    cellItems = new ArrayList<InterferenceItem>(4);
+                    cells.put(key, cellItems);
+                }
+                cellItems.add(item);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the envelope covers too many cells to be handled via the grid (this
+     * includes envelopes with non finite coordinates)
+     * 
+     * @param e
+     * @return
+     */
+    private boolean isLarge(Envelope e) {
+        double cols = Math.floor(e.getMaxX() / CELL_SIZE) - Math.floor(e.getMinX() / CELL_SIZE) + 1;
+        double rows = Math.floor(e.getMaxY() / CELL_SIZE) - Math.floor(e.getMinY() / CELL_SIZE) + 1;
+        return !(cols * rows <= MAX_CELLS);
+    }
+
+    private int cell(double ordinate) {
+        return (int) Math.floor(ordinate / CELL_SIZE);
+    }
+
+    private Long key(int col, int row) {
+        return Long.valueOf(((long) col << 32) | (row & 0xFFFFFFFFL));
     }
 
     /**
@@ -88,7 +187,7 @@ public class LabelIndex {
     }
 
     /**
-     * Simple structure stored into the quadtree (keeping the item around helps
+     * Simple structure stored into the grid (keeping the item around helps
      * in debugging)
      * 
      * @author Andrea Aime
@@ -117,7 +216,7 @@ public class LabelIndex {
             Envelope env = toEnvelope(area);
             
             InterferenceItem item = new InterferenceItem(env,null);            
-            index.insert( env, item );
+            insert( item );
         }
     }
 }
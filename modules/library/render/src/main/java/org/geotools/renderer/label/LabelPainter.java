@@ -119,6 +119,16 @@ public class LabelPainter {
         this.labelRenderingMode = labelRenderingMode;
     }
 
+    /**
+     * Sets the cache of laid out labels used by this painter, by default the JVM wide
+     * {@link GlyphLayoutCache#getDefault()} one. Use null to disable caching.
+     * 
+     * @param layoutCache
+     */
+    public void setLayoutCache(GlyphLayoutCache layoutCache) {
+        splitter.layoutCache = layoutCache;
+    }
+
     /**
      * Sets the current label. The label will be laid out according to the label
      * item settings (curved lines, auto wrapping, curved line usage) and the
@@ -127,9 +137,36 @@ public class LabelPainter {
      * @param labelItem
      */
     public void setLabel(LabelCacheItem labelItem) {
+        labelItem.getTextStyle().setLabel(labelItem.getLabel());
+        layout(labelItem);
+    }
+
+    /**
+     * Sets the current label, reusing the layout computed by another painter via
+     * {@link #layout(LabelCacheItem)}
+     * 
+     * @param labelItem
+     * @param lines
+     * @param labelBounds
+     */
+    void setLabel(LabelCacheItem labelItem, List<LineInfo> lines, Rectangle2D labelBounds) {
+        labelItem.getTextStyle().setLabel(labelItem.getLabel());
+        this.labelItem = labelItem;
+        this.lines = lines;
+        this.labelBounds = labelBounds;
+    }
+
+    /**
+     * Lays out the label like {@link #setLabel(LabelCacheItem)} does, but without touching
+     * the text style, which might be shared with other labels. This allows to lay out
+     * labels in a background thread, using a painter and a graphics private to that
+     * thread.
+     * 
+     * @param labelItem
+     */
+    void layout(LabelCacheItem labelItem) {
         this.labelItem = labelItem;
         TextStyle2D textStyle = labelItem.getTextStyle();
-        textStyle.setLabel(labelItem.getLabel());
 
         // reset previous caches
         labelBounds = null;
@@ -49,10 +49,35 @@ class LabelSplitter {
 
     private static final String NOT_EMPTY_STRING = " ";
 
+    /**
+     * The cache of laid out labels, if any
+     */
+    GlyphLayoutCache layoutCache = GlyphLayoutCache.getDefault();
+
     public List<LineInfo> layout(LabelCacheItem labelItem, Graphics2D graphics) {
         String text = labelItem.getLabel();
         Font[] fonts = labelItem.getTextStyle().getFonts();
 
+        // the layout depends only on the text, fonts, render context and wrapping
+        GlyphLayoutCache.Key key = null;
+        if (layoutCache != null && layoutCache.getMaxEntries() > 0) {
+            key = new GlyphLayoutCache.Key(text, fonts, graphics.getFontRenderContext(),
+                    labelItem.getAutoWrap());
+            List<LineInfo> cached = layoutCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        List<LineInfo> lines = layout(text, fonts, labelItem, graphics);
+        if (key != null) {
+            layoutCache.put(key, lines);
+        }
+        return lines;
+    }
+
+    private List<LineInfo> layout(String text, Font[] fonts, LabelCacheItem labelItem,
+            Graphics2D graphics) {
         // split the label into lines
         int textLength = text.length();
         boolean singleFont = fonts.length == 1
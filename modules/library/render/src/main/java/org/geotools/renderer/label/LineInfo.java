@@ -86,6 +86,18 @@ class LineInfo {
             return layout;
         }
 
+        /**
+         * Returns a copy of this component, sharing the glyph vector and the text layout
+         */
+        LineComponent copy() {
+            LineComponent copy = new LineComponent(text, gv, layout);
+            copy.x = x;
+            if (visualBounds != null) {
+                copy.visualBounds = (Rectangle2D) visualBounds.clone();
+            }
+            return copy;
+        }
+
 
     }
 
@@ -111,6 +123,18 @@ class LineInfo {
         components.add(component);
     }
 
+    /**
+     * Returns a copy of this line, with copies of its components
+     */
+    LineInfo copy() {
+        LineInfo copy = new LineInfo();
+        for (LineComponent component : components) {
+            copy.add(component.copy());
+        }
+        copy.y = y;
+        return copy;
+    }
+
     double getWidth() {
         double width = 0;
         for (LineComponent lineComponent : components) {
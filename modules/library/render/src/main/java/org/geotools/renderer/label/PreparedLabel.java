@@ -0,0 +1,85 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.label;
+
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+
+/**
+ * The part of the label placement that does not depend on the other labels: the label
+ * layout and the candidate locations computed out of the label geometries. Computing it
+ * does not touch the label index, so it can be done for many labels in parallel, leaving
+ * only the conflict resolution to the serial, priority ordered, placement pass.
+ */
+class PreparedLabel {
+
+    /**
+     * The kind of placement used for the label, driven by the type of the first geometry
+     */
+    enum Kind {
+        POINT, LINE, POLYGON, NONE
+    }
+
+    final LabelCacheItem item;
+
+    Kind kind = Kind.NONE;
+
+    /**
+     * The lines the label has been split into
+     */
+    List<LineInfo> lines;
+
+    /**
+     * The label bounds, as painted in straight form
+     */
+    Rectangle2D labelBounds;
+
+    /**
+     * The location of a point label
+     */
+    Point point;
+
+    /**
+     * The cursors over the (eventually decimated) lines of a line label, longest first
+     */
+    List<LineStringCursor> cursors;
+
+    /**
+     * The representative polygon of a polygon label
+     */
+    PreparedGeometry polygon;
+
+    /**
+     * The point, inside the polygon, the label is centered on
+     */
+    Point centroid;
+
+    /**
+     * Set if the preparation failed, in which case it should be performed again during
+     * the placement pass
+     */
+    Exception failure;
+
+    PreparedLabel(LabelCacheItem item) {
+        this.item = item;
+    }
+
+}
@@ -20,10 +20,13 @@ import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.util.List;
 
+import org.geotools.filter.FilterCompiler;
 import org.geotools.map.Layer;
 import org.geotools.renderer.ScreenMap;
 import org.geotools.renderer.crs.ProjectionHandler;
 import org.geotools.styling.Rule;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
 import org.opengis.filter.expression.Expression;
 import org.opengis.filter.sort.SortBy;
 
@@ -96,6 +99,12 @@ final class LiteFeatureTypeStyle {
      */
     int metaBuffer;
 
+    /**
+     * The filters of the rules in {@link #ruleList}, compiled against the type of the rendered
+     * features, or null if the filters have not been compiled
+     */
+    Filter[] compiledFilters;
+
     /**
      * use this for only the 1st FTS. We don't actually create an image for it -- we just use the
      * graphics. WATCH OUT FOR THIS. NOTE: image=null in this case
@@ -114,4 +123,18 @@ final class LiteFeatureTypeStyle {
         this.transformation = transformation;
     }
 
+    /**
+     * Compiles the rule filters against the type of the features that are going to be rendered,
+     * to speed up their evaluation. To be called once the rules are not going to be modified
+     * anymore.
+     */
+    void compileFilters(SimpleFeatureType schema) {
+        Filter[] filters = new Filter[ruleList.length];
+        for (int i = 0; i < ruleList.length; i++) {
+            Filter filter = ruleList[i].getFilter();
+            filters[i] = filter == null ? null : FilterCompiler.compile(filter, schema);
+        }
+        this.compiledFilters = filters;
+    }
+
 }
@@ -0,0 +1,356 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.swing.Icon;
+
+import org.geotools.renderer.style.IconStyle2D;
+import org.geotools.renderer.style.MarkStyle2D;
+import org.geotools.renderer.style.Style2D;
+
+/**
+ * Caches pre-rasterized versions of the marks and icons painted at points, so that painting a
+ * point becomes an image copy instead of a shape fill and draw.
+ * <p>
+ * The sprites are associated to the style object, and built only once the same style object has
+ * been painted a few times: the styles of static symbolizers are shared by all the features
+ * painted with them, while the ones depending on feature attributes are built anew for each
+ * feature, and thus never get sprites. A few variants of each sprite are rasterized, offset by
+ * fractions of a pixel, so that the painted points do not snap to the pixel grid.
+ * <p>
+ * Only styles painted with plain colors and source over composites, onto a graphics whose
+ * transformation is an integer translation, are turned into sprites, the painter falls back on
+ * vector painting otherwise.
+ */
+final class PointSpriteCache {
+
+    /**
+     * The number of sub-pixel offsets, along each axis, the sprites are rasterized at
+     */
+    static final int SUBPIXEL_STEPS = 4;
+
+    /**
+     * The max width and height of a sprite, larger points are painted as vectors
+     */
+    static final int MAX_SPRITE_SIZE = 128;
+
+    /**
+     * The number of times a style has to be painted before the sprites are built
+     */
+    static final int MIN_PAINTS = 2;
+
+    /**
+     * Room left around the points, for antialiasing and the sub-pixel offset
+     */
+    static final int PADDING = 2;
+
+    private final Map<Style2D, Sprites> sprites = new WeakHashMap<Style2D, Sprites>();
+
+    /**
+     * The number of times the styles without sprites have been painted so far. The styles of
+     * per feature symbolizers are painted once, so the sprites are not built for them.
+     */
+    private final Map<Style2D, Integer> paints = new WeakHashMap<Style2D, Integer>();
+
+    /**
+     * Returns the sprites for the specified mark or icon style, or null if the style should be
+     * painted as a vector
+     *
+     * @param style
+     * @param graphics
+     * @return
+     */
+    Sprites getSprites(Style2D style, Graphics2D graphics) {
+        if (!(style instanceof MarkStyle2D || style instanceof IconStyle2D)
+                || !isPixelAligned(graphics.getTransform())) {
+            return null;
+        }
+        synchronized (sprites) {
+            Sprites result = sprites.get(style);
+            if (result == null) {
+                Integer count = paints.get(style);
+                int painted = count == null ? 1 : count + 1;
+                if (painted < MIN_PAINTS) {
+                    paints.put(style, painted);
+                    return null;
+                }
+                paints.remove(style);
+                result = createSprites(style, graphics);
+                sprites.put(style, result);
+            } else if (!result.matches(graphics)) {
+                result = createSprites(style, graphics);
+                sprites.put(style, result);
+            }
+            return result.enabled ? result : null;
+        }
+    }
+
+    /**
+     * Returns the number of styles the sprites have been built for
+     */
+    int size() {
+        synchronized (sprites) {
+            return sprites.size();
+        }
+    }
+
+    private Sprites createSprites(Style2D style, Graphics2D graphics) {
+        if (style instanceof MarkStyle2D) {
+            return new MarkSprites((MarkStyle2D) style, graphics);
+        } else {
+            return new IconSprites((IconStyle2D) style, graphics);
+        }
+    }
+
+    static boolean isPixelAligned(AffineTransform tx) {
+        int type = tx.getType();
+        if (type == AffineTransform.TYPE_IDENTITY) {
+            return true;
+        } else if (type == AffineTransform.TYPE_TRANSLATION) {
+            return tx.getTranslateX() == Math.rint(tx.getTranslateX())
+                    && tx.getTranslateY() == Math.rint(tx.getTranslateY());
+        }
+        return false;
+    }
+
+    static boolean isSourceOver(Composite composite) {
+        return composite == null || (composite instanceof AlphaComposite
+                && ((AlphaComposite) composite).getRule() == AlphaComposite.SRC_OVER);
+    }
+
+    static boolean isPlainColor(Paint paint) {
+        return paint == null || paint instanceof Color;
+    }
+
+    /**
+     * The rasterized variants of a point style
+     */
+    abstract static class Sprites {
+
+        final Object antialiasing;
+
+        final Object strokeControl;
+
+        final Object rendering;
+
+        final BufferedImage[] variants = new BufferedImage[SUBPIXEL_STEPS * SUBPIXEL_STEPS];
+
+        boolean enabled;
+
+        int originX;
+
+        int originY;
+
+        int width;
+
+        int height;
+
+        Sprites(Graphics2D graphics) {
+            this.antialiasing = graphics.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+            this.strokeControl = graphics.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL);
+            this.rendering = graphics.getRenderingHint(RenderingHints.KEY_RENDERING);
+        }
+
+        /**
+         * Returns true if the sprites have been rasterized with the same hints the graphics
+         * would use to paint the point
+         */
+        boolean matches(Graphics2D graphics) {
+            return equals(antialiasing, graphics.getRenderingHint(RenderingHints.KEY_ANTIALIASING))
+                    && equals(strokeControl,
+                            graphics.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL))
+                    && equals(rendering, graphics.getRenderingHint(RenderingHints.KEY_RENDERING));
+        }
+
+        private boolean equals(Object o1, Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+
+        /**
+         * Sets up the sprite size and origin so that the specified bounds, relative to the point,
+         * fit in it. Returns false if the sprite would be too large.
+         */
+        boolean setBounds(Rectangle2D bounds) {
+            if (bounds == null || bounds.isEmpty()) {
+                return false;
+            }
+            double minX = Math.floor(bounds.getMinX());
+            double minY = Math.floor(bounds.getMinY());
+            double w = Math.ceil(bounds.getMaxX()) - minX + 2 * PADDING + 1;
+            double h = Math.ceil(bounds.getMaxY()) - minY + 2 * PADDING + 1;
+            if (!(w <= MAX_SPRITE_SIZE && h <= MAX_SPRITE_SIZE)) {
+                return false;
+            }
+            originX = PADDING - (int) minX;
+            originY = PADDING - (int) minY;
+            width = (int) w;
+            height = (int) h;
+            return true;
+        }
+
+        /**
+         * Paints the point at the specified location
+         *
+         * @param graphics
+         * @param x
+         * @param y
+         */
+        void paint(Graphics2D graphics, float x, float y) {
+            if (Float.isNaN(x) || Float.isNaN(y) || Float.isInfinite(x) || Float.isInfinite(y)) {
+                return;
+            }
+            int ix = (int) Math.floor(x);
+            int iy = (int) Math.floor(y);
+            int qx = (int) Math.round((x - ix) * SUBPIXEL_STEPS);
+            int qy = (int) Math.round((y - iy) * SUBPIXEL_STEPS);
+            if (qx == SUBPIXEL_STEPS) {
+                ix++;
+                qx = 0;
+            }
+            if (qy == SUBPIXEL_STEPS) {
+                iy++;
+                qy = 0;
+            }
+            BufferedImage sprite = getVariant(qx, qy);
+            graphics.drawImage(sprite, ix - originX, iy - originY, null);
+        }
+
+        private synchronized BufferedImage getVariant(int qx, int qy) {
+            int idx = qy * SUBPIXEL_STEPS + qx;
+            BufferedImage sprite = variants[idx];
+            if (sprite == null) {
+                sprite = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+                Graphics2D g = sprite.createGraphics();
+                try {
+                    if (antialiasing != null) {
+                        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+                    }
+                    if (strokeControl != null) {
+                        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, strokeControl);
+                    }
+                    if (rendering != null) {
+                        g.setRenderingHint(RenderingHints.KEY_RENDERING, rendering);
+                    }
+                    render(g, originX + ((double) qx) / SUBPIXEL_STEPS, originY + ((double) qy)
+                            / SUBPIXEL_STEPS);
+                } finally {
+                    g.dispose();
+                }
+                variants[idx] = sprite;
+            }
+            return sprite;
+        }
+
+        /**
+         * Renders the point at the specified location of the sprite
+         */
+        abstract void render(Graphics2D graphics, double x, double y);
+    }
+
+    /**
+     * Sprites of a well known, or TTF, mark
+     */
+    static final class MarkSprites extends Sprites {
+
+        final MarkStyle2D mark;
+
+        MarkSprites(MarkStyle2D mark, Graphics2D graphics) {
+            super(graphics);
+            this.mark = mark;
+            this.enabled = isPlainColor(mark.getFill()) && isPlainColor(mark.getContour())
+                    && isSourceOver(mark.getFillComposite())
+                    && isSourceOver(mark.getContourComposite()) && setBounds(getBounds());
+        }
+
+        private Rectangle2D getBounds() {
+            Shape shape = mark.getTransformedShape(0, 0);
+            if (shape == null) {
+                return null;
+            }
+            Rectangle2D bounds = shape.getBounds2D();
+            if (mark.getContour() != null && mark.getStroke() != null) {
+                bounds.add(mark.getStroke().createStrokedShape(shape).getBounds2D());
+            }
+            return bounds;
+        }
+
+        @Override
+        void render(Graphics2D graphics, double x, double y) {
+            Shape shape = mark.getTransformedShape((float) x, (float) y);
+            if (mark.getFill() != null) {
+                graphics.setPaint(mark.getFill());
+                if (mark.getFillComposite() != null) {
+                    graphics.setComposite(mark.getFillComposite());
+                }
+                graphics.fill(shape);
+            }
+            if (mark.getContour() != null) {
+                graphics.setPaint(mark.getContour());
+                graphics.setStroke(mark.getStroke());
+                graphics.setComposite(mark.getContourComposite() != null ? mark
+                        .getContourComposite() : AlphaComposite.SrcOver);
+                graphics.draw(shape);
+            }
+        }
+    }
+
+    /**
+     * Sprites of an icon (e.g., a SVG external graphic), for the non rotated case
+     */
+    static final class IconSprites extends Sprites {
+
+        final IconStyle2D style;
+
+        IconSprites(IconStyle2D style, Graphics2D graphics) {
+            super(graphics);
+            this.style = style;
+            Icon icon = style.getIcon();
+            this.enabled = style.getRotation() == 0 && isSourceOver(style.getComposite())
+                    && icon.getIconWidth() > 0 && icon.getIconHeight() > 0
+                    && setBounds(new Rectangle2D.Double(getIconX(), getIconY(),
+                            icon.getIconWidth(), icon.getIconHeight()));
+        }
+
+        private double getIconX() {
+            return -(style.getIcon().getIconWidth() * style.getAnchorPointX());
+        }
+
+        private double getIconY() {
+            return style.getIcon().getIconHeight() * (style.getAnchorPointY() - 1);
+        }
+
+        @Override
+        void render(Graphics2D graphics, double x, double y) {
+            graphics.translate(x + getIconX(), y + getIconY());
+            style.getIcon().paintIcon(null, graphics, 0, 0);
+        }
+    }
+
+}
@@ -19,6 +19,7 @@ package org.geotools.renderer.lite;
 import static java.lang.Math.abs;
 
 import java.awt.AlphaComposite;
+import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
@@ -37,12 +38,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -83,6 +86,7 @@ import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
 import org.geotools.geometry.jts.LiteShape2;
 import org.geotools.geometry.jts.OffsetCurveBuilder;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.geometry.jts.TileGrid;
 import org.geotools.map.DirectLayer;
 import org.geotools.map.Layer;
 import org.geotools.map.MapContent;
@@ -131,6 +135,7 @@ import org.opengis.feature.type.PropertyDescriptor;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory2;
 import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
 import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.parameter.GeneralParameterValue;
@@ -142,6 +147,8 @@ import org.opengis.referencing.datum.PixelInCell;
 import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.MathTransform2D;
 import org.opengis.referencing.operation.TransformException;
+import org.opengis.style.Displacement;
+import org.opengis.style.Fill;
 import org.opengis.style.LineSymbolizer;
 import org.opengis.style.PolygonSymbolizer;
 
@@ -371,6 +378,45 @@ public class StreamingRenderer implements GTRenderer {
     public static final String SCALE_COMPUTATION_METHOD_KEY = "scaleComputationMethod";
     public static final String BYLAYER_INTERPOLATION = "byLayerInterpolation";
 
+    /**
+     * Integer hint enabling the tile parallel rendering mode. The paint area is split into
+     * the specified number of horizontal stripes, each one is painted by a separate worker in its
+     * own back buffer, and the back buffers are then composited back on the target graphics.
+     * Labels are collected by all the workers and placed at the end of the rendering by the
+     * renderer label cache, so that conflict resolution works just like in the serial case.
+     * <p>The mode is active only if the value is greater than one and a thread pool has been
+     * provided via {@link #setTilesThreadPool(ExecutorService)}. Maps using
+     * {@link DirectLayer} or FeatureTypeStyle compositing are always rendered serially, as it's
+     * the case when transforms concatenation is enabled.</p>
+     * <p>Since each tile is rasterized in memory this mode is meant for raster outputs, vector
+     * outputs (SVG, PDF) should keep on using the serial mode</p>
+     */
+    public static final String PARALLEL_TILES_KEY = "parallelTiles";
+
+    /**
+     * Integer hint enabling the skipping of polygons larger than a pixel in dense layers. When
+     * the screenmap optimization is active (opaque styles, generalization enabled) and the
+     * feature type style only fills polygons with opaque colors, a polygon is not painted if all
+     * the pixels it touches have already been fully covered by at least the specified number of
+     * polygons in the same feature type style. Labels are never skipped.
+     * <p>This is meant for layers of many small polygons rendered at small scales, where the
+     * same pixels get painted over and over. Disabled by default (zero).</p>
+     */
+    public static final String SCREENMAP_FOOTPRINT_OVERDRAW_KEY = "screenMapFootprintOverdraw";
+
+    /**
+     * Boolean hint allowing the renderer to ask data stores supporting
+     * {@link Hints#GEOMETRY_TILE_GRID} to clip the geometries to the rendering area and snap
+     * them to a grid whose cells are as big as the generalization distance, with the clipping and
+     * snapping performed on the server side. This greatly reduces the amount of data transferred
+     * and decoded when rendering small areas out of large geometries.
+     * <p>The hint is used only when the data is in the same CRS as the map, there are no
+     * rendering transformations and map wrapping is disabled. Labels are computed on the clipped
+     * geometries, so the labels of geometries crossing the map boundary are placed differently
+     * than in the default mode, and might not line up across tiles.</p>
+     */
+    public static final String DATASTORE_TILE_CLIPPING_KEY = "datastoreTileClipping";
+
     /**
      * "vectorRenderingEnabled"      - Boolean  yes/no (see default vectorRenderingEnabledDEFAULT)
      * "declaredScaleDenominator"    - Double   the value of the scale denominator to use by the renderer.  
@@ -405,6 +451,16 @@ public class StreamingRenderer implements GTRenderer {
 
     private PainterThread painterThread;
 
+    /**
+     * The thread pool used to render the tiles in tile parallel mode
+     */
+    private ExecutorService tilesThreadPool;
+
+    /**
+     * The renderers painting the tiles, when running in tile parallel mode
+     */
+    private List<StreamingRenderer> tileRenderers;
+
     /**
      * Creates a new instance of LiteRenderer without a context. Use it only to
      * gain access to utility methods of this class or if you want to render
@@ -422,6 +478,15 @@ public class StreamingRenderer implements GTRenderer {
         this.threadPool = threadPool;
     }
 
+    /**
+     * Sets the thread pool used to paint the tiles when the {@link #PARALLEL_TILES_KEY} hint
+     * is set. The pool is not shut down by the renderer.
+     * @param tilesThreadPool
+     */
+    public void setTilesThreadPool(ExecutorService tilesThreadPool) {
+        this.tilesThreadPool = tilesThreadPool;
+    }
+
     /**
      * Sets the flag which controls behaviour for applying affine transformation
      * to the graphics object.
@@ -509,6 +574,16 @@ public class StreamingRenderer implements GTRenderer {
      */
     public void stopRendering() {
         renderingStopRequested = true;
+        List<StreamingRenderer> renderers = tileRenderers;
+        if (renderers != null) {
+            for (StreamingRenderer renderer : renderers) {
+                if (renderer.requests != null) {
+                    renderer.stopRendering();
+                }
+            }
+            labelCache.stop();
+            return;
+        }
         // un-block the queue in case it was filled with requests and the main
         // thread got blocked on it
         requests.clear();
@@ -701,6 +776,11 @@ public class StreamingRenderer implements GTRenderer {
             if (worldToScreen == null)
                 return;
         }
+
+        if (isTileParallelRenderingEnabled()) {
+            paintTiles(graphics, paintArea, mapArea, worldToScreen);
+            return;
+        }
         
         // ////////////////////////////////////////////////////////////////////
         // 
@@ -890,6 +970,181 @@ public class StreamingRenderer implements GTRenderer {
         
     }
 
+    /**
+     * Returns true if the tile parallel rendering mode has been requested, and the current map
+     * content can be rendered in tiles
+     */
+    private boolean isTileParallelRenderingEnabled() {
+        if (tilesThreadPool == null || getParallelTiles() <= 1 || concatTransforms
+                || mapContent == null) {
+            return false;
+        }
+        for (Layer layer : mapContent.layers()) {
+            if (layer instanceof DirectLayer) {
+                return false;
+            }
+            if (layer.getStyle() != null) {
+                for (FeatureTypeStyle fts : layer.getStyle().featureTypeStyles()) {
+                    Map<String, String> options = fts.getOptions();
+                    if (options.containsKey(FeatureTypeStyle.COMPOSITE)
+                            || options.containsKey(FeatureTypeStyle.COMPOSITE_BASE)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the screenmap footprint overdraw threshold, zero if disabled
+     */
+    private int getScreenMapFootprintOverdraw() {
+        if (rendererHints == null) {
+            return 0;
+        }
+        Object result = rendererHints.get(SCREENMAP_FOOTPRINT_OVERDRAW_KEY);
+        if (result instanceof Number) {
+            return ((Number) result).intValue();
+        } else if (result != null) {
+            return Integer.parseInt(result.toString());
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the number of tiles to be used in tile parallel rendering mode
+     */
+    private int getParallelTiles() {
+        if (rendererHints == null) {
+            return 1;
+        }
+        Object result = rendererHints.get(PARALLEL_TILES_KEY);
+        if (result instanceof Number) {
+            return ((Number) result).intValue();
+        } else if (result != null) {
+            return Integer.parseInt(result.toString());
+        }
+        return 1;
+    }
+
+    /**
+     * Paints the map in tile parallel mode. The paint area is split in horizontal stripes, each
+     * one painted by a separate {@link StreamingRenderer} in its own back buffer. The stripes
+     * all share the same world to screen transform and scale denominator, the labels are recorded
+     * by each stripe renderer and then placed by this renderer label cache once all the stripes
+     * have been painted.
+     */
+    private void paintTiles(final Graphics2D graphics, Rectangle paintArea,
+            ReferencedEnvelope mapArea, final AffineTransform worldToScreen) {
+        renderingStopRequested = false;
+        final double scale = computeScale(mapArea, paintArea, worldToScreen, rendererHints);
+        final CoordinateReferenceSystem crs = mapArea.getCoordinateReferenceSystem();
+        final RenderingHints tileJava2dHints = new RenderingHints(null);
+        tileJava2dHints.add(graphics.getRenderingHints());
+        if (java2dHints != null) {
+            tileJava2dHints.add(java2dHints);
+        }
+
+        int tiles = Math.min(getParallelTiles(), paintArea.height);
+        int tileHeight = (int) Math.ceil(paintArea.height / (double) tiles);
+        List<Rectangle> tileAreas = new ArrayList<Rectangle>();
+        for (int y = paintArea.y; y < paintArea.y + paintArea.height; y += tileHeight) {
+            int height = Math.min(tileHeight, paintArea.y + paintArea.height - y);
+            tileAreas.add(new Rectangle(paintArea.x, y, paintArea.width, height));
+        }
+
+        // setup the tile renderers
+        final List<StreamingRenderer> renderers = new ArrayList<StreamingRenderer>();
+        final List<TileLabelCache> tileLabelCaches = new ArrayList<TileLabelCache>();
+        for (int i = 0; i < tileAreas.size(); i++) {
+            TileLabelCache tileLabelCache = new TileLabelCache();
+            Map<Object, Object> tileHints = new HashMap<Object, Object>(rendererHints);
+            tileHints.remove(PARALLEL_TILES_KEY);
+            tileHints.put(LABEL_CACHE_KEY, tileLabelCache);
+            tileHints.put(DECLARED_SCALE_DENOM_KEY, scale);
+
+            StreamingRenderer renderer = new StreamingRenderer();
+            renderer.setMapContent(mapContent);
+            renderer.setRendererHints(tileHints);
+            renderer.setJava2DHints(tileJava2dHints);
+            renderer.setGeneralizationDistance(generalizationDistance);
+            renderer.setInteractive(interactive);
+            renderer.painter = new StyledShapePainter(tileLabelCache);
+            renderer.addRenderListener(new RenderListener() {
+
+                public void featureRenderer(SimpleFeature feature) {
+                    fireFeatureRenderedEvent(feature);
+                }
+
+                public void errorOccurred(Exception e) {
+                    fireErrorEvent(e);
+                }
+            });
+            renderers.add(renderer);
+            tileLabelCaches.add(tileLabelCache);
+        }
+        tileRenderers = renderers;
+
+        try {
+            // paint all the tiles in parallel
+            List<Future<BufferedImage>> futures = new ArrayList<Future<BufferedImage>>();
+            for (int i = 0; i < tileAreas.size(); i++) {
+                final StreamingRenderer renderer = renderers.get(i);
+                final Rectangle tileArea = tileAreas.get(i);
+                futures.add(tilesThreadPool.submit(new Callable<BufferedImage>() {
+
+                    public BufferedImage call() throws Exception {
+                        if (renderingStopRequested) {
+                            return null;
+                        }
+                        BufferedImage image = new BufferedImage(tileArea.width,
+                                tileArea.height, BufferedImage.TYPE_INT_ARGB_PRE);
+                        Graphics2D tileGraphics = image.createGraphics();
+                        try {
+                            tileGraphics.setRenderingHints(tileJava2dHints);
+                            tileGraphics.translate(-tileArea.x, -tileArea.y);
+                            Envelope tileEnvelope = RendererUtilities.createMapEnvelope(
+                                    tileArea, worldToScreen);
+                            renderer.paint(tileGraphics, tileArea,
+                                    new ReferencedEnvelope(tileEnvelope, crs), worldToScreen);
+                        } finally {
+                            tileGraphics.dispose();
+                        }
+                        return image;
+                    }
+                }));
+            }
+
+            // composite the tiles back, in order
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    BufferedImage image = futures.get(i).get();
+                    if (image != null && !renderingStopRequested) {
+                        Rectangle tileArea = tileAreas.get(i);
+                        graphics.drawImage(image, tileArea.x, tileArea.y, null);
+                    }
+                } catch (Exception e) {
+                    fireErrorEvent(e);
+                }
+            }
+        } finally {
+            tileRenderers = null;
+        }
+
+        if (!renderingStopRequested) {
+            labelCache.start();
+            if (labelCache instanceof LabelCacheImpl) {
+                ((LabelCacheImpl) labelCache).setLabelRenderingMode(LabelRenderingMode
+                        .valueOf(getTextRenderingMethod()));
+            }
+            TileLabelCache.replay(tileLabelCaches, labelCache, graphics, paintArea);
+            labelCache.end(graphics, paintArea);
+        } else {
+            labelCache.clear();
+        }
+    }
+
     /**
      * Builds the blocking queue used to bridge between the data loading thread and
      * the painting one
@@ -1127,7 +1382,13 @@ public class StreamingRenderer implements GTRenderer {
                     }
                 } else {
                     // ... if possible we let the datastore do the generalization
-                    if(fsHints.contains(Hints.GEOMETRY_SIMPLIFICATION)) {
+                    TileGrid grid = getTileGrid(fsHints, crs2D, mapCRS, envelope, distance);
+                    if(grid != null) {
+                        // clipping and grid snapping already drop all the details we'd
+                        // generalize away
+                        hints.put(Hints.GEOMETRY_TILE_GRID, grid);
+                        disableInMemoryGeneralization(styleList);
+                    } else if(fsHints.contains(Hints.GEOMETRY_SIMPLIFICATION)) {
                         // good, we don't need to perform in memory generalization, the datastore
                         // does it all for us
                         hints.put(Hints.GEOMETRY_SIMPLIFICATION, distance);
@@ -1158,6 +1419,39 @@ public class StreamingRenderer implements GTRenderer {
         return query;
     }
 
+    /**
+     * Builds the tile grid used to have the datastore clip and snap the geometries, or returns
+     * null if datastore tile clipping cannot be used
+     */
+    private TileGrid getTileGrid(Set<RenderingHints.Key> fsHints, CoordinateReferenceSystem crs,
+            CoordinateReferenceSystem mapCRS, Envelope area, double distance) {
+        if (!isDatastoreTileClippingEnabled() || !fsHints.contains(Hints.GEOMETRY_TILE_GRID)
+                || isMapWrappingEnabled() || distance <= 0 || Double.isInfinite(distance)
+                || area == null || area.isNull() || !CRS.equalsIgnoreMetadata(crs, mapCRS)) {
+            return null;
+        }
+        int width = (int) Math.ceil(area.getWidth() / distance);
+        int height = (int) Math.ceil(area.getHeight() / distance);
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        // keep the clipping edges a couple of pixels away from the visible area, so that their
+        // strokes do not show up
+        int buffer = (int) Math.ceil(2 / generalizationDistance);
+        return new TileGrid(area, width, height, buffer);
+    }
+
+    private boolean isDatastoreTileClippingEnabled() {
+        if (rendererHints == null) {
+            return false;
+        }
+        Object result = rendererHints.get(DATASTORE_TILE_CLIPPING_KEY);
+        if (result == null) {
+            return false;
+        }
+        return result instanceof Boolean ? (Boolean) result : Boolean.valueOf(result.toString());
+    }
+
     private void setMetaBuffer(List<LiteFeatureTypeStyle> styleList, int metaBuffer) {
         for (LiteFeatureTypeStyle fts : styleList) {
             fts.metaBuffer = metaBuffer;
@@ -1749,6 +2043,9 @@ public class StreamingRenderer implements GTRenderer {
                     lfts.screenMap = new ScreenMap(screenSize.x - renderingBuffer, screenSize.y
                             - renderingBuffer, screenSize.width + renderingBuffer * 2,
                             screenSize.height + renderingBuffer * 2);
+                    if (footprintSkippingEnabled(lfts)) {
+                        lfts.screenMap.setFootprintOverdraw(getScreenMapFootprintOverdraw());
+                    }
                 }
                                                    
                 result.add(lfts);
@@ -1792,6 +2089,76 @@ public class StreamingRenderer implements GTRenderer {
     }
 
 
+    /**
+     * Returns true if the features can be skipped once the pixels they would paint have been
+     * covered by other features, that is, if the style only fills polygons with an opaque
+     * color. Text symbolizers are allowed, the labels are never skipped
+     */
+    boolean footprintSkippingEnabled(LiteFeatureTypeStyle lfts) {
+        boolean fills = false;
+        for (Rule[] rules : new Rule[][] { lfts.ruleList, lfts.elseRules }) {
+            for (Rule r : rules) {
+                for (Symbolizer s : r.symbolizers()) {
+                    if (s instanceof TextSymbolizer) {
+                        continue;
+                    } else if (!(s instanceof PolygonSymbolizer)
+                            || !isOpaqueFill((PolygonSymbolizer) s)) {
+                        return false;
+                    }
+                    fills = true;
+                }
+            }
+        }
+        return fills;
+    }
+
+    /**
+     * Returns true if the symbolizer fills the polygon, and nothing else, with an opaque color
+     */
+    private boolean isOpaqueFill(PolygonSymbolizer ps) {
+        Fill fill = ps.getFill();
+        if (fill == null || fill.getGraphicFill() != null || ps.getStroke() != null
+                || !isZero(ps.getPerpendicularOffset())) {
+            return false;
+        }
+        Displacement displacement = ps.getDisplacement();
+        if (displacement != null
+                && (!isZero(displacement.getDisplacementX()) || !isZero(displacement
+                        .getDisplacementY()))) {
+            return false;
+        }
+        if (fill.getOpacity() != null) {
+            if (!(fill.getOpacity() instanceof Literal)) {
+                return false;
+            }
+            Double opacity = fill.getOpacity().evaluate(null, Double.class);
+            if (opacity == null || opacity < 1) {
+                return false;
+            }
+        }
+        if (fill.getColor() != null) {
+            if (!(fill.getColor() instanceof Literal)) {
+                return false;
+            }
+            Color color = fill.getColor().evaluate(null, Color.class);
+            if (color == null || color.getAlpha() < 255) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isZero(Expression expression) {
+        if (expression == null) {
+            return true;
+        }
+        if (!(expression instanceof Literal)) {
+            return false;
+        }
+        Double value = expression.evaluate(null, Double.class);
+        return value != null && value == 0;
+    }
+
     private boolean isFeatureTypeStyleActive(FeatureType ftype, FeatureTypeStyle fts) {
         // TODO: find a complex feature equivalent for this check
         return fts.featureTypeNames().isEmpty() || ((ftype.getName().getLocalPart() != null)
@@ -1912,6 +2279,13 @@ public class StreamingRenderer implements GTRenderer {
             if(features == null) {
                 continue;
             }
+            if (features.getSchema() instanceof SimpleFeatureType) {
+                // the rule filters are evaluated on each feature, specialize them for the type
+                SimpleFeatureType featureType = (SimpleFeatureType) features.getSchema();
+                for (LiteFeatureTypeStyle style : uniform) {
+                    style.compileFilters(featureType);
+                }
+            }
 
             // finally, perform rendering
             if (isOptimizedFTSRenderingEnabled() && lfts.size() > 1) {
@@ -2428,6 +2802,7 @@ public class StreamingRenderer implements GTRenderer {
             boolean doElse = true;
             Rule[] elseRuleList = fts.elseRules;
             Rule[] ruleList = fts.ruleList;
+            Filter[] compiledFilters = fts.compiledFilters;
             Rule r;
             Filter filter;
             Graphics2D graphics = fts.graphics;
@@ -2435,7 +2810,7 @@ public class StreamingRenderer implements GTRenderer {
             final int length = ruleList.length;
             for (int t = 0; t < length; t++) {
                 r = ruleList[t];
-                filter = r.getFilter();
+                filter = compiledFilters != null ? compiledFilters[t] : r.getFilter();
 
                 if (filter == null || filter.evaluate(rf.feature)) {
                     doElse = false;
@@ -3000,13 +3375,19 @@ public class StreamingRenderer implements GTRenderer {
                         && !(g instanceof Point)
                         && getGeometryIndex(g) == -1) {
                     Envelope env = g.getEnvelopeInternal();
-                    if(screenMap.canSimplify(env))
+                    if(screenMap.canSimplify(env)) {
                         if (screenMap.checkAndSet(env)) {
                             return null;
                         } else {
                             g = screenMap.getSimplifiedShape(env.getMinX(), env.getMinY(), 
                                     env.getMaxX(), env.getMaxY(), g.getFactory(), g.getClass());
                         }
+                    } else if (!(symbolizer instanceof TextSymbolizer)
+                            && screenMap.checkAndSetFootprint(g)) {
+                        // the pixels have already been covered by enough features, labels
+                        // are not skipped
+                        return null;
+                    }
                 }
     
                 SymbolizerAssociation sa = (SymbolizerAssociation) symbolizerAssociationHT
@@ -89,12 +89,24 @@ public final class StyledShapePainter {
      */
     public static boolean OPTIMIZE_VECTOR_HATCH_FILLS = Boolean.parseBoolean(System.getProperty("org.geotools.renderer.lite.optimizeVectorHatchFills", "true"));
 
+    /**
+     * Whether marks and icons painted over and over with the same style should be rasterized once
+     * and then copied at each point, instead of being painted as vectors (off by default, the
+     * sprites are positioned with a quarter of pixel accuracy)
+     */
+    public static boolean POINT_SPRITES = Boolean.parseBoolean(System.getProperty("org.geotools.renderer.lite.pointSprites", "false"));
+
     /**
      * the label cache, used to populate the label cache with reserved areas for labeling 
      * obstacles
      */
     LabelCache labelCache;
 
+    /**
+     * The pre-rasterized marks and icons
+     */
+    PointSpriteCache spriteCache = new PointSpriteCache();
+
     public StyledShapePainter() {
         // nothing do do, just needs to exist
     }
@@ -154,12 +166,23 @@ public final class StyledShapePainter {
                 float[] coords = new float[2];
                 PathIterator citer = getPathIterator(shape);
                 AffineTransform at = new AffineTransform(temp);
+                PointSpriteCache.Sprites sprites = POINT_SPRITES ? spriteCache.getSprites(
+                        icoStyle, graphics) : null;
                 while (!(citer.isDone())) {
                     if (citer.currentSegment(coords) != PathIterator.SEG_MOVETO) {
-                        at.setTransform(temp);
-
                         double x = coords[0] + dx;
                         double y = coords[1] + dy;
+                        if (sprites != null) {
+                            sprites.paint(graphics, (float) x, (float) y);
+                            if (isLabelObstacle) {
+                                labelCache.put(new Rectangle2D.Double(x, y, icon.getIconWidth(),
+                                        icon.getIconHeight()));
+                            }
+                            citer.next();
+                            continue;
+                        }
+                        at.setTransform(temp);
+
                         at.translate(x, y);
                         at.rotate(icoStyle.getRotation());
                         at.translate(-(icon.getIconWidth() * icoStyle.getAnchorPointX()),
@@ -186,9 +209,23 @@ public final class StyledShapePainter {
             float[] coords = new float[2];
             MarkStyle2D ms2d = (MarkStyle2D) style;
 
+            PointSpriteCache.Sprites sprites = POINT_SPRITES ? spriteCache.getSprites(ms2d,
+                    graphics) : null;
+            if (sprites != null) {
+                graphics.setComposite(AlphaComposite.SrcOver);
+            }
             Shape transformedShape ;
             while (!(citer.isDone())) {
                 if (citer.currentSegment(coords) != PathIterator.SEG_MOVETO) {
+                    if (sprites != null) {
+                        sprites.paint(graphics, coords[0], coords[1]);
+                        if (isLabelObstacle) {
+                            transformedShape = ms2d.getTransformedShape(coords[0], coords[1]);
+                            labelCache.put(transformedShape.getBounds2D());
+                        }
+                        citer.next();
+                        continue;
+                    }
                     transformedShape = ms2d.getTransformedShape(coords[0], coords[1]);
                     if (transformedShape != null) {
                         if (ms2d.getFill() != null) {
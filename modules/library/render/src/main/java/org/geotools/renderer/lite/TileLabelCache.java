@@ -0,0 +1,199 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.geotools.geometry.jts.LiteShape2;
+import org.geotools.styling.TextSymbolizer;
+import org.geotools.util.NumberRange;
+import org.opengis.feature.Feature;
+import org.opengis.filter.expression.Expression;
+
+/**
+ * A {@link LabelCache} that does not place anything, but just records the labels and the label
+ * obstacles generated while painting a single tile in tile parallel rendering mode. Once all
+ * the tiles are painted the recorded labels are replayed, in layer and tile order, into the
+ * label cache of the main renderer, which will then perform conflict resolution as usual.
+ * <p>
+ * Features crossing tile boundaries are returned by more than one tile, the replay removes
+ * the duplicates based on layer, symbolizer and feature identifier, or label text and
+ * geometry for features without an identifier.
+ */
+class TileLabelCache implements LabelCache {
+
+    static class LabelRequest {
+        String layerId;
+
+        TextSymbolizer symbolizer;
+
+        Feature feature;
+
+        LiteShape2 shape;
+
+        NumberRange<Double> scaleRange;
+
+        LabelRequest(String layerId, TextSymbolizer symbolizer, Feature feature,
+                LiteShape2 shape, NumberRange<Double> scaleRange) {
+            this.layerId = layerId;
+            this.symbolizer = symbolizer;
+            this.feature = feature;
+            this.shape = shape;
+            this.scaleRange = scaleRange;
+        }
+
+        /**
+         * Returns a key identifying the label across tiles. Features without an identifier are
+         * identified by their label text and screen geometry, which are the same in all the
+         * tiles since they share the world to screen transform.
+         */
+        List<Object> getKey() {
+            List<Object> key = new ArrayList<Object>(4);
+            key.add(layerId);
+            key.add(symbolizer);
+            if (feature.getIdentifier() != null && feature.getIdentifier().getID() != null) {
+                key.add(feature.getIdentifier().getID());
+            } else {
+                Expression label = symbolizer.getLabel();
+                key.add(label != null ? label.evaluate(feature, String.class) : null);
+                // JTS geometries compare exactly, and hash on their envelope
+                key.add(shape.getGeometry());
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Labels by layer, layers are sorted by their numeric identifier, which is the painting
+     * order used by the {@link StreamingRenderer}
+     */
+    private final Map<Integer, List<LabelRequest>> labels = new TreeMap<Integer, List<LabelRequest>>();
+
+    private final List<Rectangle2D> obstacles = new ArrayList<Rectangle2D>();
+
+    public synchronized void put(String layerId, TextSymbolizer symbolizer, Feature feature,
+            LiteShape2 shape, NumberRange<Double> scaleRange) {
+        Integer layerKey = Integer.valueOf(layerId);
+        List<LabelRequest> layerLabels = labels.get(layerKey);
+        if (layerLabels == null) {
+            layerLabels = new ArrayList<LabelRequest>();
+            labels.put(layerKey, layerLabels);
+        }
+        layerLabels.add(new LabelRequest(layerId, symbolizer, feature, shape, scaleRange));
+    }
+
+    public synchronized void put(Rectangle2D area) {
+        obstacles.add(area);
+    }
+
+    public void start() {
+        // nothing to do
+    }
+
+    public void startLayer(String layerId) {
+        // nothing to do
+    }
+
+    public void endLayer(String layerId, Graphics2D graphics, Rectangle displayArea) {
+        // nothing to do, labels will be placed by the target label cache
+    }
+
+    public void end(Graphics2D graphics, Rectangle displayArea) {
+        // nothing to do, labels will be placed by the target label cache
+    }
+
+    public void stop() {
+        // nothing to do
+    }
+
+    public synchronized void clear() {
+        labels.clear();
+        obstacles.clear();
+    }
+
+    public synchronized void clear(String layerId) {
+        labels.remove(Integer.valueOf(layerId));
+    }
+
+    public void disableLayer(String layerId) {
+        // nothing to do
+    }
+
+    public void enableLayer(String layerId) {
+        // nothing to do
+    }
+
+    public List orderedLabels() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Replays the labels and obstacles recorded by the tile caches into the target cache. The
+     * caller is still responsible for calling {@link LabelCache#end(Graphics2D, Rectangle)} on
+     * the target to get the labels placed and painted.
+     *
+     * @param tiles The tile label caches, in tile order
+     * @param target The label cache performing the actual conflict resolution
+     * @param graphics The graphics the labels will be painted onto
+     * @param displayArea The full display area
+     */
+    static void replay(List<TileLabelCache> tiles, LabelCache target, Graphics2D graphics,
+            Rectangle displayArea) {
+        // collect all layer ids, in painting order
+        Set<Integer> layerIds = new TreeSet<Integer>();
+        for (TileLabelCache tile : tiles) {
+            layerIds.addAll(tile.labels.keySet());
+        }
+
+        // obstacles first, they do not depend on layers
+        for (TileLabelCache tile : tiles) {
+            for (Rectangle2D obstacle : tile.obstacles) {
+                target.put(obstacle);
+            }
+        }
+
+        Set<List<Object>> added = new HashSet<List<Object>>();
+        for (Integer layerKey : layerIds) {
+            String layerId = String.valueOf(layerKey);
+            target.startLayer(layerId);
+            for (TileLabelCache tile : tiles) {
+                List<LabelRequest> layerLabels = tile.labels.get(layerKey);
+                if (layerLabels == null) {
+                    continue;
+                }
+                for (LabelRequest label : layerLabels) {
+                    if (added.add(label.getKey())) {
+                        target.put(label.layerId, label.symbolizer, label.feature, label.shape,
+                                label.scaleRange);
+                    }
+                }
+            }
+            target.endLayer(layerId, graphics, displayArea);
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.label;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.geotools.geometry.jts.LiteShape2;
+import org.geotools.renderer.label.LabelCacheImpl.LabelRenderingMode;
+import org.geotools.renderer.style.TextStyle2D;
+import org.geotools.styling.StyleFactoryImpl;
+import org.geotools.styling.TextSymbolizer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class GlyphLayoutCacheTest {
+
+    BufferedImage image;
+
+    Graphics2D graphics;
+
+    TextStyle2D style;
+
+    TextSymbolizer symbolizer;
+
+    LiteShape2 shape;
+
+    @Before
+    public void setUp() throws Exception {
+        image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+        style = new TextStyle2D();
+        style.setFont(new Font("Serif", Font.PLAIN, 10));
+        shape = new LiteShape2(new GeometryFactory().createPoint(new Coordinate(10, 10)), null,
+                null, false);
+        symbolizer = new StyleFactoryImpl().createTextSymbolizer();
+    }
+
+    @After
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    private LabelPainter painter(GlyphLayoutCache cache) {
+        LabelPainter painter = new LabelPainter(graphics, LabelRenderingMode.STRING);
+        painter.setLayoutCache(cache);
+        return painter;
+    }
+
+    private LabelCacheItem item(String label, int autoWrap) {
+        LabelCacheItem item = new LabelCacheItem("LAYERID", style, shape, label, symbolizer);
+        item.setAutoWrap(autoWrap);
+        return item;
+    }
+
+    @Test
+    public void testReuseLayout() {
+        GlyphLayoutCache cache = new GlyphLayoutCache(10);
+        LabelPainter painter = painter(cache);
+
+        painter.setLabel(item("Main Street", 0));
+        List<LineInfo> first = painter.lines;
+        painter.setLabel(item("Main Street", 0));
+        List<LineInfo> second = painter.lines;
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio(), 0d);
+
+        // same glyphs, but private lines the painter can position freely
+        assertNotSame(first.get(0), second.get(0));
+        assertSame(first.get(0).getComponents().get(0).getGlyphVector(), second.get(0)
+                .getComponents().get(0).getGlyphVector());
+        assertEquals(first.get(0).getComponents().get(0).getX(), second.get(0).getComponents()
+                .get(0).getX(), 0d);
+
+        // the wrapping is part of the key
+        painter.setLabel(item("Main Street", 5));
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, painter.getLineCount());
+    }
+
+    @Test
+    public void testRenderContext() {
+        GlyphLayoutCache cache = new GlyphLayoutCache(10);
+        painter(cache).setLabel(item("Main Street", 0));
+        graphics.setTransform(AffineTransform.getScaleInstance(2, 2));
+        painter(cache).setLabel(item("Main Street", 0));
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testBounded() {
+        GlyphLayoutCache cache = new GlyphLayoutCache(2);
+        LabelPainter painter = painter(cache);
+        painter.setLabel(item("a", 0));
+        painter.setLabel(item("b", 0));
+        painter.setLabel(item("a", 0));
+        painter.setLabel(item("c", 0));
+        assertEquals(2, cache.size());
+        // "b" was the least recently used one
+        painter.setLabel(item("b", 0));
+        painter.setLabel(item("a", 0));
+        assertEquals(1, cache.getHits());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void testDisabled() {
+        GlyphLayoutCache cache = new GlyphLayoutCache(0);
+        LabelPainter painter = painter(cache);
+        painter.setLabel(item("Main Street", 0));
+        painter.setLabel(item("Main Street", 0));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+}
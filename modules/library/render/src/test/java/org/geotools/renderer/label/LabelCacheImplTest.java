@@ -1,10 +1,20 @@
 package org.geotools.renderer.label;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
@@ -19,7 +29,9 @@ import org.junit.Test;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
+import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKTReader;
@@ -123,6 +135,59 @@ public class LabelCacheImplTest {
         assertEquals(Arrays.asList(L2), item2.getGeoms());
     }
 
+    @Test
+    public void testParallelPlacement() throws Exception {
+        TextSymbolizer ts = sb.createTextSymbolizer(Color.BLACK, (Font) null, "name");
+        ts.getOptions().put(TextSymbolizer.FOLLOW_LINE_KEY, "true");
+        ts.getOptions().put(TextSymbolizer.MAX_DISPLACEMENT_KEY, "20");
+
+        BufferedImage serial = paintLines(ts, null);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            BufferedImage parallel = paintLines(ts, pool);
+            int[] expected = ((DataBufferInt) serial.getRaster().getDataBuffer()).getData();
+            int[] actual = ((DataBufferInt) parallel.getRaster().getDataBuffer()).getData();
+            // something got painted, and the very same labels won
+            boolean painted = false;
+            for (int pixel : expected) {
+                painted |= pixel != 0;
+            }
+            assertTrue(painted);
+            assertArrayEquals(expected, actual);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private BufferedImage paintLines(TextSymbolizer ts, ExecutorService pool) throws Exception {
+        LabelCacheImpl cache = new LabelCacheImpl();
+        cache.setPlacementThreadPool(pool);
+        cache.startLayer(LAYER_ID);
+        // enough labels to span multiple preparation batches, with lots of conflicts
+        Random random = new Random(0);
+        GeometryFactory gf = new GeometryFactory();
+        for (int i = 0; i < 300; i++) {
+            double x = random.nextInt(250);
+            double y = random.nextInt(250);
+            LineString line = gf.createLineString(new Coordinate[] { new Coordinate(x, y),
+                    new Coordinate(x + 40, y + random.nextInt(20)),
+                    new Coordinate(x + 80, y + random.nextInt(40)) });
+            SimpleFeature f = createFeature("street " + i, line);
+            cache.put(LAYER_ID, ts, f, new LiteShape2(line, null, null, false), ALL_SCALES);
+        }
+        cache.endLayer(LAYER_ID, null, null);
+
+        BufferedImage image = new BufferedImage(300, 300, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        try {
+            cache.end(graphics, new Rectangle(0, 0, 300, 300));
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
     private SimpleFeature createFeature(String label, Geometry geom) {
         fb.add(label);
         fb.add(geom);
@@ -0,0 +1,65 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.label;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class LabelIndexTest {
+
+    @Test
+    public void testOverlap() {
+        LabelIndex index = new LabelIndex();
+        index.addLabel(null, new Rectangle2D.Double(10, 10, 50, 10));
+
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(50, 15, 30, 10), 0));
+        // touching counts as overlapping
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(60, 10, 30, 10), 0));
+        assertFalse(index.labelsWithinDistance(new Rectangle2D.Double(61, 10, 30, 10), 0));
+        // negative distance disables the check
+        assertFalse(index.labelsWithinDistance(new Rectangle2D.Double(20, 10, 30, 10), -1));
+    }
+
+    @Test
+    public void testDistanceAcrossCells() {
+        LabelIndex index = new LabelIndex();
+        // a label spanning a cell border, and one in negative coordinates
+        index.addLabel(null, new Rectangle2D.Double(60, 60, 10, 10));
+        index.addLabel(null, new Rectangle2D.Double(-100, -100, 10, 10));
+
+        assertFalse(index.labelsWithinDistance(new Rectangle2D.Double(100, 60, 10, 10), 20));
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(100, 60, 10, 10), 30));
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(-85, -85, 10, 10), 5));
+        // a search covering a large area
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(0, 0, 1, 1), 1000));
+    }
+
+    @Test
+    public void testReservedArea() {
+        LabelIndex index = new LabelIndex();
+        index.reserveArea(Collections.<Rectangle2D> singletonList(new Rectangle2D.Double(0, 0,
+                2000, 2000)));
+
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(1500, 1500, 10, 10), 0));
+        assertFalse(index.labelsWithinDistance(new Rectangle2D.Double(2100, 1500, 10, 10), 0));
+    }
+}
@@ -33,10 +33,14 @@ import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.media.jai.Interpolation;
@@ -431,6 +435,57 @@ public class StreamingRendererTest {
                 screen.height - 1) != 0);
     }
     
+    @Test
+    public void testTileParallelRendering() throws Exception {
+        // a grid of points, many of them straddling the tile boundaries
+        DefaultFeatureCollection fc = new DefaultFeatureCollection();
+        for (int x = 5; x < 100; x += 10) {
+            for (int y = 0; y <= 100; y += 5) {
+                fc.add(createPoint(x, y));
+            }
+        }
+        MapContent mc = new MapContent();
+        mc.addLayer(new FeatureLayer(fc, createPointStyle()));
+        Rectangle screen = new Rectangle(0, 0, 100, 100);
+        ReferencedEnvelope world = new ReferencedEnvelope(0, 100, 0, 100,
+                DefaultGeographicCRS.WGS84);
+
+        // serial rendering
+        BufferedImage expected = new BufferedImage(screen.width, screen.height,
+                BufferedImage.TYPE_4BYTE_ABGR);
+        StreamingRenderer sr = new StreamingRenderer();
+        sr.setMapContent(mc);
+        Graphics2D graphics = expected.createGraphics();
+        sr.paint(graphics, screen, world);
+        graphics.dispose();
+
+        // tile parallel rendering
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BufferedImage actual = new BufferedImage(screen.width, screen.height,
+                    BufferedImage.TYPE_4BYTE_ABGR);
+            sr = new StreamingRenderer();
+            sr.setMapContent(mc);
+            sr.setTilesThreadPool(executor);
+            Map<Object, Object> hints = new HashMap<Object, Object>();
+            hints.put(StreamingRenderer.PARALLEL_TILES_KEY, 4);
+            sr.setRendererHints(hints);
+            graphics = actual.createGraphics();
+            sr.paint(graphics, screen, world);
+            graphics.dispose();
+
+            for (int x = 0; x < screen.width; x++) {
+                for (int y = 0; y < screen.height; y++) {
+                    assertEquals("Pixel differs at " + x + "," + y, expected.getRGB(x, y),
+                            actual.getRGB(x, y));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        mc.dispose();
+    }
+    
     @Test
     public void testRepeatedEnvelopeExpansion() throws Exception {
         final List<Filter> filters = new ArrayList<Filter>();
@@ -16,8 +16,13 @@
  */
 package org.geotools.renderer.lite;
 
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
 import java.net.URL;
@@ -32,6 +37,7 @@ import org.geotools.geometry.jts.Decimator;
 import org.geotools.geometry.jts.JTSFactoryFinder;
 import org.geotools.geometry.jts.LiteShape2;
 import org.geotools.referencing.operation.transform.ProjectiveTransform;
+import org.geotools.renderer.style.MarkStyle2D;
 import org.geotools.styling.ExternalGraphic;
 import org.geotools.styling.GraphicImpl;
 import org.geotools.styling.GraphicLegend;
@@ -259,4 +265,99 @@ public class StyledShapePainterTest extends TestCase {
 
     }
 
+    public void testSpritesBuiltForRepeatedStyles() throws Exception {
+        PointSpriteCache cache = new PointSpriteCache();
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            // styles painted once, like the per feature ones, do not get sprites
+            for (int i = 0; i < 10; i++) {
+                MarkStyle2D mark = new MarkStyle2D();
+                mark.setShape(new Ellipse2D.Double(-0.5, -0.5, 1, 1));
+                mark.setSize(10);
+                mark.setFill(Color.RED);
+                assertNull(cache.getSprites(mark, graphics));
+            }
+            assertEquals(0, cache.size());
+
+            MarkStyle2D mark = new MarkStyle2D();
+            mark.setShape(new Ellipse2D.Double(-0.5, -0.5, 1, 1));
+            mark.setSize(10);
+            mark.setFill(Color.RED);
+            assertNull(cache.getSprites(mark, graphics));
+            assertNotNull(cache.getSprites(mark, graphics));
+            assertEquals(1, cache.size());
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    public void testMarkSprites() throws Exception {
+        MarkStyle2D mark = new MarkStyle2D();
+        mark.setShape(new Ellipse2D.Double(-0.5, -0.5, 1, 1));
+        mark.setSize(10);
+        mark.setFill(Color.RED);
+        mark.setFillComposite(AlphaComposite.SrcOver);
+        mark.setContour(Color.BLACK);
+        mark.setStroke(new BasicStroke(1));
+        mark.setContourComposite(AlphaComposite.SrcOver);
+
+        boolean spritesEnabled = StyledShapePainter.POINT_SPRITES;
+        try {
+            StyledShapePainter.POINT_SPRITES = false;
+            StyledShapePainter vectorPainter = new StyledShapePainter();
+            BufferedImage expected = paintPoints(vectorPainter, mark);
+
+            StyledShapePainter.POINT_SPRITES = true;
+            StyledShapePainter spritePainter = new StyledShapePainter();
+            BufferedImage actual = paintPoints(spritePainter, mark);
+
+            // the sprites have been built and used
+            Graphics2D graphics = actual.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            PointSpriteCache.Sprites sprites = spritePainter.spriteCache.getSprites(mark,
+                    graphics);
+            graphics.dispose();
+            assertNotNull(sprites);
+            int variants = 0;
+            for (BufferedImage variant : sprites.variants) {
+                if (variant != null) {
+                    variants++;
+                }
+            }
+            assertTrue(variants > 1);
+
+            // the points are on quarters of pixel, so there is only rounding involved
+            for (int y = 0; y < expected.getHeight(); y++) {
+                for (int x = 0; x < expected.getWidth(); x++) {
+                    int e = expected.getRGB(x, y);
+                    int a = actual.getRGB(x, y);
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        int diff = Math.abs(((e >> shift) & 0xFF) - ((a >> shift) & 0xFF));
+                        assertTrue("Pixel " + x + "," + y + " differs", diff <= 4);
+                    }
+                }
+            }
+        } finally {
+            StyledShapePainter.POINT_SPRITES = spritesEnabled;
+        }
+    }
+
+    private BufferedImage paintPoints(StyledShapePainter painter, MarkStyle2D mark)
+            throws Exception {
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        GeometryFactory gf = new GeometryFactory();
+        for (int i = 0; i < 36; i++) {
+            Point point = gf.createPoint(new Coordinate(10 + (i % 6) * 15.25 + (i % 4) * 0.25,
+                    10 + (i / 6) * 15.5 + (i % 3) * 0.25));
+            painter.paint(graphics, new LiteShape2(point, null, null, false), mark, 1);
+        }
+        graphics.dispose();
+        return image;
+    }
+
 }
@@ -0,0 +1,85 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Rectangle;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.geotools.feature.simple.SimpleFeatureImpl;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.LiteShape2;
+import org.geotools.styling.StyleBuilder;
+import org.geotools.styling.TextSymbolizer;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+public class TileLabelCacheTest {
+
+    @Test
+    public void testReplayWithoutIdentifiers() throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("labels");
+        tb.add("geom", Point.class);
+        tb.add("name", String.class);
+        SimpleFeatureType type = tb.buildFeatureType();
+        TextSymbolizer ts = new StyleBuilder().createTextSymbolizer();
+        ts.setLabel(new StyleBuilder().attributeExpression("name"));
+
+        // the same feature, without an identifier, returned by two tiles
+        GeometryFactory gf = new GeometryFactory();
+        TileLabelCache first = new TileLabelCache();
+        TileLabelCache second = new TileLabelCache();
+        for (TileLabelCache tile : Arrays.asList(first, second)) {
+            Point p = gf.createPoint(new Coordinate(10, 10));
+            tile.put("0", ts, new SimpleFeatureImpl(Arrays.<Object> asList(p, "a"), type, null),
+                    new LiteShape2(p, null, null, false), null);
+        }
+        // a different label at the same location, and the same label elsewhere
+        Point p = gf.createPoint(new Coordinate(10, 10));
+        second.put("0", ts, new SimpleFeatureImpl(Arrays.<Object> asList(p, "b"), type, null),
+                new LiteShape2(p, null, null, false), null);
+        p = gf.createPoint(new Coordinate(20, 20));
+        second.put("0", ts, new SimpleFeatureImpl(Arrays.<Object> asList(p, "a"), type, null),
+                new LiteShape2(p, null, null, false), null);
+
+        final List<Object> replayed = new ArrayList<Object>();
+        LabelCache target = (LabelCache) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { LabelCache.class }, new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("put".equals(method.getName()) && args.length == 5) {
+                            replayed.add(args[2]);
+                        }
+                        return null;
+                    }
+                });
+        TileLabelCache.replay(Arrays.asList(first, second), target, null,
+                new Rectangle(0, 0, 100, 100));
+        assertEquals(3, replayed.size());
+    }
+}
@@ -63,6 +63,7 @@ import org.geotools.coverage.grid.io.imageio.MaskOverviewProvider.SpiHelper;
 import org.geotools.data.DataUtilities;
 import org.geotools.factory.Hints;
 import org.geotools.factory.Hints.Key;
+import org.geotools.gce.imagemosaic.GranuleReaderPool.PooledReader;
 import org.geotools.geometry.GeneralEnvelope;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.geometry.jts.ReferencedEnvelope;
@@ -315,6 +316,9 @@ public class GranuleDescriptor {
 
     ImageInputStreamSpi cachedStreamSPI;
 
+    /** Whether readers on this granule can be shared through the {@link GranuleReaderPool} */
+    boolean poolReaders;
+
     private GridToEnvelopeMapper geMapper;
 
     /** {@link DatasetLayout} object containing information about granule internal structure */
@@ -342,6 +346,8 @@ public class GranuleDescriptor {
         AbstractGridCoverage2DReader gcReader = null;
         ImageInputStream inStream = null;
         ImageReader reader = null;
+        PooledReader pooled = null;
+        boolean initialized = false;
         try {
 
             gcReader = format.getReader(granuleFile, hints);
@@ -363,8 +369,22 @@ public class GranuleDescriptor {
                 cachedStreamSPI = ovrProvider.getInputStreamSpi();
             }
             assert cachedStreamSPI != null : "no cachedStreamSPI available!";
-            inStream = cachedStreamSPI.createInputStreamInstance(granuleUrl, ImageIO.getUseCache(),
-                    ImageIO.getCacheDirectory());
+            if (cachedReaderSPI == null) {
+                cachedReaderSPI = ovrProvider.getImageReaderSpi();
+            }
+            // multidimensional readers get customized with the request hints, do not share them
+            poolReaders = !isMultidim && cachedReaderSPI != null;
+            if (poolReaders) {
+                pooled = GranuleReaderPool.getInstance().acquire(granuleUrl, cachedStreamSPI,
+                        cachedReaderSPI);
+                if (pooled != null) {
+                    inStream = pooled.getStream();
+                    reader = pooled.getReader();
+                }
+            } else {
+                inStream = cachedStreamSPI.createInputStreamInstance(granuleUrl,
+                        ImageIO.getUseCache(), ImageIO.getCacheDirectory());
+            }
             if (inStream == null) {
                 final File file = DataUtilities.urlToFile(granuleUrl);
                 if (file != null) {
@@ -378,9 +398,6 @@ public class GranuleDescriptor {
             }
 
             // get a reader and try to cache the suggested SPI first
-            if (cachedReaderSPI == null) {
-                cachedReaderSPI = ovrProvider.getImageReaderSpi();
-            }
             if (reader == null) {
                 if (cachedReaderSPI == null) {
                     throw new IllegalArgumentException(
@@ -395,9 +412,11 @@ public class GranuleDescriptor {
                         "Unable to get an ImageReader for the provided file "
                                 + granuleUrl.toString());
 
-            boolean ignoreMetadata = isMultidim ? customizeReaderInitialization(reader, hints)
-                    : false;
-            reader.setInput(inStream, false, ignoreMetadata);
+            if (pooled == null) {
+                boolean ignoreMetadata = isMultidim
+                        ? customizeReaderInitialization(reader, hints) : false;
+                reader.setInput(inStream, false, ignoreMetadata);
+            }
             // get selected level and base level dimensions
             final Rectangle originalDimension = Utils.getDimension(0, reader);
 
@@ -454,6 +473,7 @@ public class GranuleDescriptor {
                     checkPamDataset();
                 }
             }
+            initialized = true;
 
         } catch (IllegalStateException e) {
             throw new IllegalArgumentException(e);
@@ -461,7 +481,16 @@ public class GranuleDescriptor {
         } catch (IOException e) {
             throw new IllegalArgumentException(e);
         } finally {
-            // close/dispose stream and readers
+            // close/dispose stream and readers, pooled ones are kept open for the following reads
+            if (pooled != null) {
+                if (initialized) {
+                    GranuleReaderPool.getInstance().release(pooled);
+                } else {
+                    GranuleReaderPool.getInstance().discard(pooled);
+                }
+                inStream = null;
+                reader = null;
+            }
             try {
                 if (inStream != null) {
                     inStream.close();
@@ -499,8 +528,7 @@ public class GranuleDescriptor {
     private boolean customizeReaderInitialization(ImageReader reader, Hints hints) {
 
         // Special Management for NetCDF readers to set external Auxiliary File
-        if (hints != null && (hints.containsKey(Utils.AUXILIARY_FILES_PATH)
-                || hints.containsKey(Utils.AUXILIARY_DATASTORE_PATH))) {
+        if (isCustomizingReader(hints)) {
             try {
                 updateReaderWithAuxiliaryPath(hints, reader, Utils.AUXILIARY_FILES_PATH,
                         "setAuxiliaryFilesPath");
@@ -520,6 +548,14 @@ public class GranuleDescriptor {
 
     }
 
+    /**
+     * Returns true if the hints require a reader customized for them, which cannot be pooled
+     */
+    private boolean isCustomizingReader(Hints hints) {
+        return hints != null && (hints.containsKey(Utils.AUXILIARY_FILES_PATH)
+                || hints.containsKey(Utils.AUXILIARY_DATASTORE_PATH));
+    }
+
     private void updateReaderWithAuxiliaryPath(Hints hints, ImageReader reader, Key key,
             String method)
             throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
@@ -738,6 +774,8 @@ public class GranuleDescriptor {
 
         ImageInputStream inStream = null;
         ImageReader reader = null;
+        PooledReader pooled = null;
+        boolean pooledReadFailed = false;
         boolean cleanupInFinally = request.getReadType() != ReadType.JAI_IMAGEREAD;
         try {
             //
@@ -746,32 +784,42 @@ public class GranuleDescriptor {
 
             // get a stream
             assert cachedStreamSPI != null : "no cachedStreamSPI available!";
-            inStream = cachedStreamSPI.createInputStreamInstance(granuleUrl, ImageIO.getUseCache(),
-                    ImageIO.getCacheDirectory());
-            if (inStream == null)
-                return null;
+            if (poolReaders && cachedReaderSPI != null && !isCustomizingReader(hints)) {
+                // reuse an already initialized reader if possible
+                pooled = GranuleReaderPool.getInstance().acquire(granuleUrl, cachedStreamSPI,
+                        cachedReaderSPI);
+                if (pooled == null)
+                    return null;
+                inStream = pooled.getStream();
+                reader = pooled.getReader();
+            } else {
+                inStream = cachedStreamSPI.createInputStreamInstance(granuleUrl,
+                        ImageIO.getUseCache(), ImageIO.getCacheDirectory());
+                if (inStream == null)
+                    return null;
 
-            // get a reader and try to cache the relevant SPI
-            if (cachedReaderSPI == null) {
-                reader = ImageIOExt.getImageioReader(inStream);
-                if (reader != null)
-                    cachedReaderSPI = reader.getOriginatingProvider();
-            } else
-                reader = cachedReaderSPI.createReaderInstance();
-            if (reader == null) {
-                if (LOGGER.isLoggable(java.util.logging.Level.WARNING)) {
-                    LOGGER.warning(
-                            new StringBuilder("Unable to get s reader for granuleDescriptor ")
-                                    .append(this.toString()).append(" with request ")
-                                    .append(request.toString())
-                                    .append(" Resulting in no granule loaded: Empty result")
-                                    .toString());
+                // get a reader and try to cache the relevant SPI
+                if (cachedReaderSPI == null) {
+                    reader = ImageIOExt.getImageioReader(inStream);
+                    if (reader != null)
+                        cachedReaderSPI = reader.getOriginatingProvider();
+                } else
+                    reader = cachedReaderSPI.createReaderInstance();
+                if (reader == null) {
+                    if (LOGGER.isLoggable(java.util.logging.Level.WARNING)) {
+                        LOGGER.warning(
+                                new StringBuilder("Unable to get s reader for granuleDescriptor ")
+                                        .append(this.toString()).append(" with request ")
+                                        .append(request.toString())
+                                        .append(" Resulting in no granule loaded: Empty result")
+                                        .toString());
+                    }
+                    return null;
                 }
-                return null;
+                // set input
+                customizeReaderInitialization(reader, hints);
+                reader.setInput(inStream);
             }
-            // set input
-            customizeReaderInitialization(reader, hints);
-            reader.setInput(inStream);
 
             // Checking for heterogeneous granules and if the mosaic is not multidimensional
             if (request.isHeterogeneousGranules() && (originator == null || originator.getAttribute("imageindex") == null)) {
@@ -795,13 +843,18 @@ public class GranuleDescriptor {
             // If the file is external we must update the Granule elements
             if (isExternal) {
                 // Disposing File Reader and Stream
-                try {
-                    if (inStream != null) {
-                        inStream.close();
-                    }
-                } finally {
-                    if (reader != null) {
-                        reader.dispose();
+                if (pooled != null) {
+                    GranuleReaderPool.getInstance().release(pooled);
+                    pooled = null;
+                } else {
+                    try {
+                        if (inStream != null) {
+                            inStream.close();
+                        }
+                    } finally {
+                        if (reader != null) {
+                            reader.dispose();
+                        }
                     }
                 }
                 granuleURLUpdated = ovrProvider.getOvrURL();
@@ -901,6 +954,7 @@ public class GranuleDescriptor {
                         selectedlevel.rasterDimensions, reader, hints, false);
 
             } catch (Throwable e) {
+                pooledReadFailed = true;
                 if (LOGGER.isLoggable(java.util.logging.Level.FINE)) {
                     LOGGER.log(java.util.logging.Level.FINE,
                             "Unable to load raster for granuleDescriptor " + this.toString()
@@ -911,6 +965,17 @@ public class GranuleDescriptor {
                 return null;
             }
 
+            if (pooled != null) {
+                if (raster == null) {
+                    // the read methods return null when the reader failed
+                    pooledReadFailed = true;
+                } else if (!cleanupInFinally) {
+                    // the deferred JAI ImageRead owns the reader now, and will dispose it
+                    GranuleReaderPool.getInstance().detach(pooled);
+                    pooled = null;
+                }
+            }
+
             // use fixed source area
             sourceArea.setRect(readParameters.getSourceRegion());
 
@@ -1113,13 +1178,22 @@ public class GranuleDescriptor {
             return null;
 
         } finally {
-            try {
-                if (cleanupInFinally && inStream != null) {
-                    inStream.close();
+            if (pooled != null) {
+                // the reader has not been handed over to a deferred read, give it back
+                if (pooledReadFailed) {
+                    GranuleReaderPool.getInstance().discard(pooled);
+                } else {
+                    GranuleReaderPool.getInstance().release(pooled);
                 }
-            } finally {
-                if (cleanupInFinally && reader != null) {
-                    reader.dispose();
+            } else {
+                try {
+                    if (cleanupInFinally && inStream != null) {
+                        inStream.close();
+                    }
+                } finally {
+                    if (cleanupInFinally && reader != null) {
+                        reader.dispose();
+                    }
                 }
             }
         }
@@ -1174,6 +1248,34 @@ public class GranuleDescriptor {
         // create the base grid to world transformation
         ImageInputStream inStream = null;
         ImageReader reader = null;
+        if (granuleLevels.containsKey(Integer.valueOf(index))) {
+            return granuleLevels.get(Integer.valueOf(index));
+        }
+        if (poolReaders && cachedReaderSPI != null) {
+            PooledReader pooled = null;
+            boolean loaded = false;
+            try {
+                pooled = GranuleReaderPool.getInstance().acquire(granuleUrl, cachedStreamSPI,
+                        cachedReaderSPI);
+                if (pooled == null)
+                    throw new IllegalArgumentException(
+                            "Unable to create an inputstream for the granuleurl:" + granuleUrl);
+                GranuleOverviewLevelDescriptor level = getLevel(index, pooled.getReader(), index,
+                        false);
+                loaded = true;
+                return level;
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            } finally {
+                if (pooled != null) {
+                    if (loaded) {
+                        GranuleReaderPool.getInstance().release(pooled);
+                    } else {
+                        GranuleReaderPool.getInstance().discard(pooled);
+                    }
+                }
+            }
+        }
         try {
 
             // get a stream
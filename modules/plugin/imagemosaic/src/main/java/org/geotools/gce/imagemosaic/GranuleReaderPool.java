@@ -0,0 +1,530 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.spi.ImageInputStreamSpi;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+
+import org.geotools.data.DataUtilities;
+
+/**
+ * A pool of {@link ImageReader}s with their input already set, shared by all the
+ * {@link GranuleDescriptor}s of the JVM, so that mosaics made of many small granules do not pay
+ * the cost of opening the file and parsing its headers each time a granule is read.
+ * <p>
+ * Readers are pooled by granule URL and reader SPI. At most {@link #getMaxIdlePerGranule()} idle
+ * readers are kept for each granule, and the number of files kept open by the pool, borrowed or
+ * idle, is bounded by {@link #getMaxOpenFiles()}: when the budget is exceeded the least recently
+ * used idle readers are closed, and readers released while over budget are closed instead of
+ * being pooled. Borrowing never blocks. Idle readers are closed after
+ * {@link #getIdleTimeout()} milliseconds, and readers whose file changed on disk are never
+ * handed out again. Removing granules, or disposing a mosaic, should be followed by a call to
+ * {@link #invalidate(URL)}, so that the pool does not keep their files open.
+ * </p>
+ * <p>
+ * The defaults can be changed with the {@code org.geotools.imagemosaic.readerPool.maxOpenFiles},
+ * {@code org.geotools.imagemosaic.readerPool.maxIdlePerGranule} and
+ * {@code org.geotools.imagemosaic.readerPool.idleTimeout} system variables, a max open files
+ * budget of zero disables pooling.
+ * </p>
+ */
+public class GranuleReaderPool {
+
+    private final static Logger LOGGER = org.geotools.util.logging.Logging
+            .getLogger(GranuleReaderPool.class);
+
+    static final int DEFAULT_MAX_OPEN_FILES = Integer.getInteger(
+            "org.geotools.imagemosaic.readerPool.maxOpenFiles", 256);
+
+    static final int DEFAULT_MAX_IDLE_PER_GRANULE = Integer.getInteger(
+            "org.geotools.imagemosaic.readerPool.maxIdlePerGranule", 2);
+
+    static final long DEFAULT_IDLE_TIMEOUT = Long.getLong(
+            "org.geotools.imagemosaic.readerPool.idleTimeout", 60000);
+
+    private static final GranuleReaderPool INSTANCE = new GranuleReaderPool(
+            DEFAULT_MAX_OPEN_FILES, DEFAULT_MAX_IDLE_PER_GRANULE, DEFAULT_IDLE_TIMEOUT);
+
+    /**
+     * Returns the pool shared by all the mosaics
+     */
+    public static GranuleReaderPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * A reader borrowed from the pool, along with its input stream
+     */
+    public static final class PooledReader {
+
+        final Key key;
+
+        final ImageReader reader;
+
+        final ImageInputStream stream;
+
+        final long lastModified;
+
+        final long length;
+
+        long lastUsed;
+
+        /**
+         * Set when the granule has been invalidated while the reader was borrowed, or being
+         * created
+         */
+        boolean invalid;
+
+        PooledReader(Key key, ImageReader reader, ImageInputStream stream, long lastModified,
+                long length) {
+            this.key = key;
+            this.reader = reader;
+            this.stream = stream;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        public ImageReader getReader() {
+            return reader;
+        }
+
+        public ImageInputStream getStream() {
+            return stream;
+        }
+
+        void close() {
+            try {
+                stream.close();
+            } catch (Throwable t) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, t.getLocalizedMessage(), t);
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    static final class Key {
+        final String url;
+
+        final Class<?> readerSpi;
+
+        /** The granule file, null if the granule is not a file */
+        final File file;
+
+        Key(URL url, ImageReaderSpi readerSpi) {
+            this.url = url.toExternalForm();
+            this.readerSpi = readerSpi.getClass();
+            this.file = DataUtilities.urlToFile(url);
+        }
+
+        /**
+         * Returns true if the granule is the specified one, or is contained in the specified
+         * directory
+         */
+        boolean isIn(String location, File target) {
+            if (file != null && target != null) {
+                String path = target.getAbsolutePath();
+                String granule = file.getAbsolutePath();
+                return granule.equals(path) || granule.startsWith(path.endsWith(File.separator)
+                        ? path : path + File.separator);
+            }
+            return url.equals(location) || (location.endsWith("/") && url.startsWith(location));
+        }
+
+        @Override
+        public int hashCode() {
+            return url.hashCode() * 31 + readerSpi.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return url.equals(other.url) && readerSpi.equals(other.readerSpi);
+        }
+
+        @Override
+        public String toString() {
+            return url + " (" + readerSpi.getSimpleName() + ")";
+        }
+    }
+
+    /** The idle readers of each granule, most recently used last */
+    final Map<Key, ArrayDeque<PooledReader>> idle = new HashMap<Key, ArrayDeque<PooledReader>>();
+
+    /** All the idle readers, least recently used first */
+    final LinkedHashMap<PooledReader, PooledReader> lru = new LinkedHashMap<PooledReader, PooledReader>();
+
+    /** The readers currently borrowed */
+    final Set<PooledReader> borrowed = new HashSet<PooledReader>();
+
+    int open;
+
+    volatile int maxOpenFiles;
+
+    volatile int maxIdlePerGranule;
+
+    volatile long idleTimeout;
+
+    ScheduledExecutorService evictor;
+
+    public GranuleReaderPool(int maxOpenFiles, int maxIdlePerGranule, long idleTimeout) {
+        this.maxOpenFiles = maxOpenFiles;
+        this.maxIdlePerGranule = maxIdlePerGranule;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Borrows a reader for the granule, with its input set, creating a new one if no idle reader
+     * is available. The reader must be given back with {@link #release(PooledReader)},
+     * {@link #discard(PooledReader)} or {@link #detach(PooledReader)}.
+     *
+     * @return the reader, or null if an input stream could not be created for the granule
+     */
+    public PooledReader acquire(URL url, ImageInputStreamSpi streamSpi, ImageReaderSpi readerSpi)
+            throws IOException {
+        Key key = new Key(url, readerSpi);
+        File file = key.file;
+        long lastModified = file != null ? file.lastModified() : 0;
+        long length = file != null ? file.length() : 0;
+
+        List<PooledReader> evicted = new ArrayList<PooledReader>();
+        PooledReader result = null;
+        PooledReader placeholder = null;
+        synchronized (this) {
+            ArrayDeque<PooledReader> readers = idle.get(key);
+            while (readers != null && !readers.isEmpty() && result == null) {
+                PooledReader candidate = readers.pollLast();
+                lru.remove(candidate);
+                if (candidate.lastModified == lastModified && candidate.length == length) {
+                    result = candidate;
+                } else {
+                    // the file changed since the reader was opened
+                    open--;
+                    evicted.add(candidate);
+                }
+            }
+            if (readers != null && readers.isEmpty()) {
+                idle.remove(key);
+            }
+            if (result == null) {
+                open++;
+                evictOverBudget(evicted);
+                // stands for the reader being created, so that invalidate() can flag it
+                placeholder = new PooledReader(key, null, null, lastModified, length);
+                borrowed.add(placeholder);
+            } else {
+                borrowed.add(result);
+            }
+        }
+        close(evicted);
+        if (result != null) {
+            return result;
+        }
+
+        ImageInputStream stream = null;
+        ImageReader reader = null;
+        try {
+            stream = streamSpi.createInputStreamInstance(url, ImageIO.getUseCache(),
+                    ImageIO.getCacheDirectory());
+            if (stream == null) {
+                abort(placeholder, null, null);
+                return null;
+            }
+            reader = readerSpi.createReaderInstance();
+            reader.setInput(stream, false, false);
+            PooledReader pooled = new PooledReader(key, reader, stream, lastModified, length);
+            synchronized (this) {
+                borrowed.remove(placeholder);
+                pooled.invalid = placeholder.invalid;
+                borrowed.add(pooled);
+            }
+            return pooled;
+        } catch (IOException e) {
+            abort(placeholder, reader, stream);
+            throw e;
+        } catch (RuntimeException e) {
+            abort(placeholder, reader, stream);
+            throw e;
+        }
+    }
+
+    /**
+     * Gives up on a reader whose creation failed, closing whatever was opened
+     */
+    private void abort(PooledReader placeholder, ImageReader reader, ImageInputStream stream) {
+        synchronized (this) {
+            borrowed.remove(placeholder);
+        }
+        discard(new PooledReader(placeholder.key, reader, stream, placeholder.lastModified,
+                placeholder.length));
+    }
+
+    /**
+     * Gives back a reader, which is kept open for reuse if the pool has room for it, closed
+     * otherwise
+     */
+    public void release(PooledReader reader) {
+        boolean pooled = false;
+        List<PooledReader> evicted = new ArrayList<PooledReader>();
+        synchronized (this) {
+            borrowed.remove(reader);
+            if (!reader.invalid && open <= maxOpenFiles) {
+                ArrayDeque<PooledReader> readers = idle.get(reader.key);
+                if (readers == null) {
+                    readers = new ArrayDeque<PooledReader>();
+                    idle.put(reader.key, readers);
+                }
+                if (readers.size() < maxIdlePerGranule) {
+                    reader.lastUsed = System.currentTimeMillis();
+                    readers.addLast(reader);
+                    lru.put(reader, reader);
+                    pooled = true;
+                    startEvictor();
+                } else if (readers.isEmpty()) {
+                    idle.remove(reader.key);
+                }
+            }
+            if (!pooled) {
+                open--;
+            }
+            evictIdle(System.currentTimeMillis(), evicted);
+        }
+        if (!pooled) {
+            reader.close();
+        }
+        close(evicted);
+    }
+
+    /**
+     * Closes a reader that cannot be reused, e.g. because reading from it failed
+     */
+    public void discard(PooledReader reader) {
+        synchronized (this) {
+            borrowed.remove(reader);
+            open--;
+        }
+        if (reader.stream != null && reader.reader != null) {
+            reader.close();
+        } else if (reader.stream != null) {
+            try {
+                reader.stream.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, e.getLocalizedMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Removes a reader from the pool without closing it, when its ownership is transferred, e.g.
+     * to a deferred JAI ImageRead operation that will dispose it
+     */
+    public synchronized void detach(PooledReader reader) {
+        borrowed.remove(reader);
+        open--;
+    }
+
+    /**
+     * Closes the idle readers of the granule, or of all the granules contained in the directory,
+     * the URL points to. The readers of those granules currently borrowed are closed when given
+     * back, instead of being pooled.
+     */
+    public void invalidate(URL url) {
+        final String location = url.toExternalForm();
+        final File target = DataUtilities.urlToFile(url);
+        List<PooledReader> evicted = new ArrayList<PooledReader>();
+        synchronized (this) {
+            Iterator<PooledReader> it = lru.keySet().iterator();
+            while (it.hasNext()) {
+                PooledReader reader = it.next();
+                if (reader.key.isIn(location, target)) {
+                    it.remove();
+                    removeIdle(reader);
+                    evicted.add(reader);
+                }
+            }
+            for (PooledReader reader : borrowed) {
+                if (reader.key.isIn(location, target)) {
+                    reader.invalid = true;
+                }
+            }
+        }
+        close(evicted);
+    }
+
+    /**
+     * Closes the readers that have been idle for longer than the timeout
+     */
+    public void evictIdle() {
+        List<PooledReader> evicted = new ArrayList<PooledReader>();
+        synchronized (this) {
+            evictIdle(System.currentTimeMillis(), evicted);
+        }
+        close(evicted);
+    }
+
+    /**
+     * Closes all the idle readers
+     */
+    public void clear() {
+        List<PooledReader> evicted = new ArrayList<PooledReader>();
+        synchronized (this) {
+            evicted.addAll(lru.keySet());
+            open -= lru.size();
+            lru.clear();
+            idle.clear();
+        }
+        close(evicted);
+    }
+
+    private void evictIdle(long now, List<PooledReader> evicted) {
+        Iterator<PooledReader> it = lru.keySet().iterator();
+        while (it.hasNext()) {
+            PooledReader reader = it.next();
+            if (now - reader.lastUsed < idleTimeout) {
+                break;
+            }
+            it.remove();
+            removeIdle(reader);
+            evicted.add(reader);
+        }
+    }
+
+    private void evictOverBudget(List<PooledReader> evicted) {
+        Iterator<PooledReader> it = lru.keySet().iterator();
+        while (open > maxOpenFiles && it.hasNext()) {
+            PooledReader reader = it.next();
+            it.remove();
+            removeIdle(reader);
+            evicted.add(reader);
+        }
+    }
+
+    /**
+     * Removes a reader from the per granule lists and from the open files count
+     */
+    private void removeIdle(PooledReader reader) {
+        ArrayDeque<PooledReader> readers = idle.get(reader.key);
+        if (readers != null) {
+            readers.remove(reader);
+            if (readers.isEmpty()) {
+                idle.remove(reader.key);
+            }
+        }
+        open--;
+    }
+
+    private void close(List<PooledReader> readers) {
+        for (PooledReader reader : readers) {
+            if (LOGGER.isLoggable(Level.FINER)) {
+                LOGGER.finer("Closing pooled reader for " + reader.key);
+            }
+            reader.close();
+        }
+    }
+
+    private void startEvictor() {
+        if (evictor == null) {
+            evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ImageMosaic reader pool evictor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            long period = Math.max(1000, idleTimeout / 2);
+            evictor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    evictIdle();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * The number of files currently open by the pool, including the ones of borrowed readers
+     */
+    public synchronized int getOpenFiles() {
+        return open;
+    }
+
+    /**
+     * The number of idle readers in the pool
+     */
+    public synchronized int getIdleReaders() {
+        return lru.size();
+    }
+
+    /**
+     * The maximum number of files kept open by the pool
+     */
+    public int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    public void setMaxOpenFiles(int maxOpenFiles) {
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    /**
+     * The maximum number of idle readers kept for each granule
+     */
+    public int getMaxIdlePerGranule() {
+        return maxIdlePerGranule;
+    }
+
+    public void setMaxIdlePerGranule(int maxIdlePerGranule) {
+        this.maxIdlePerGranule = maxIdlePerGranule;
+    }
+
+    /**
+     * The time, in milliseconds, after which idle readers are closed
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+}
@@ -1211,6 +1211,10 @@ public class ImageMosaicConfigHandler {
         }
         properties.setProperty(Utils.Prop.CACHING,
                 Boolean.toString(catalogConfigurationBean.isCaching()));
+        if (catalogConfigurationBean.isPackedIndex()) {
+            // Avoid setting this property when false, since it's default
+            properties.setProperty(Utils.Prop.PACKED_INDEX, Boolean.toString(true));
+        }
         if (mosaicConfiguration.getAuxiliaryFilePath() != null) {
             properties.setProperty(Utils.Prop.AUXILIARY_FILE,
                     mosaicConfiguration.getAuxiliaryFilePath());
@@ -1371,6 +1375,8 @@ public class ImageMosaicConfigHandler {
             final CatalogConfigurationBean catalogConfigurationBean = new CatalogConfigurationBean();
             catalogConfigurationBean
                     .setCaching(IndexerUtils.getParameterAsBoolean(Prop.CACHING, indexer));
+            catalogConfigurationBean.setPackedIndex(
+                    IndexerUtils.getParameterAsBoolean(Prop.PACKED_INDEX, indexer));
             catalogConfigurationBean.setAbsolutePath(
                     IndexerUtils.getParameterAsBoolean(Prop.ABSOLUTE_PATH, indexer));
 
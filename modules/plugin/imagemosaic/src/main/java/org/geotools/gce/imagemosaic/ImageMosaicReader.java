@@ -964,6 +964,12 @@ public class ImageMosaicReader extends AbstractGridCoverage2DReader
             } catch (Exception e) {
                 if (LOGGER.isLoggable(Level.FINE))
                     LOGGER.log(Level.FINE, e.getLocalizedMessage(), e);
+            } finally {
+                // do not keep the granule files open once the mosaic is gone
+                if (parentDirectory != null) {
+                    GranuleReaderPool.getInstance().invalidate(
+                            DataUtilities.fileToURL(parentDirectory));
+                }
             }
         }
     }
@@ -1312,6 +1312,7 @@ public class RasterManager {
             // remove them all, assuming the schema has not changed
             final Query query = new Query(type.getTypeName());
             query.setFilter(Filter.INCLUDE);
+            invalidateGranuleReaders(query);
             granuleCatalog.removeGranules(query);
         }
     }
@@ -1361,6 +1362,9 @@ public class RasterManager {
         for (String feature : features) {
             final URL rasterPath = pathType.resolvePath(
                     DataUtilities.fileToURL(parentReader.parentDirectory).toString(), feature);
+            if (rasterPath != null) {
+                GranuleReaderPool.getInstance().invalidate(rasterPath);
+            }
             boolean delete = true;
             if (checkForReferences) {
                 delete = !checkForReferences(coverageName);
@@ -1395,6 +1399,28 @@ public class RasterManager {
         }
     }
 
+    /**
+     * Closes the readers pooled for the granules matching the query, so that the
+     * {@link GranuleReaderPool} does not keep their files open once they are removed.
+     *
+     * @param query
+     * @throws IOException
+     */
+    public void invalidateGranuleReaders(Query query) throws IOException {
+        final SimpleFeatureCollection collection = granuleCatalog.getGranules(query);
+        UniqueVisitor visitor = new UniqueVisitor(parentReader.locationAttributeName);
+        collection.accepts(visitor, null);
+        Set<String> locations = visitor.getUnique();
+        final String parentLocation = DataUtilities.fileToURL(parentReader.parentDirectory)
+                .toString();
+        for (String location : locations) {
+            final URL granuleUrl = pathType.resolvePath(parentLocation, location);
+            if (granuleUrl != null) {
+                GranuleReaderPool.getInstance().invalidate(granuleUrl);
+            }
+        }
+    }
+
     /**
      * Check if there is any granule referred by other coverages.
      *
@@ -266,6 +266,8 @@ public class Utils {
 
         public final static String CACHING = "Caching";
 
+        public final static String PACKED_INDEX = "PackedIndex";
+
         public static final String WRAP_STORE = "WrapStore";
 
         public static final String GRANULE_ACCEPTORS = "GranuleAcceptors";
@@ -469,6 +471,7 @@ public class Utils {
                 FileFilterUtils.suffixFileFilter("shp"), FileFilterUtils.suffixFileFilter("dbf"),
                 FileFilterUtils.suffixFileFilter("sbn"), FileFilterUtils.suffixFileFilter("sbx"),
                 FileFilterUtils.suffixFileFilter("shx"), FileFilterUtils.suffixFileFilter("qix"),
+                FileFilterUtils.suffixFileFilter("grx"), FileFilterUtils.suffixFileFilter("gcx"),
                 FileFilterUtils.suffixFileFilter("lyr"), FileFilterUtils.suffixFileFilter("prj"),
                 FileFilterUtils.suffixFileFilter("ncx"), FileFilterUtils.suffixFileFilter("gbx9"),
                 FileFilterUtils.suffixFileFilter("ncx2"), FileFilterUtils.suffixFileFilter("ncx3"),
@@ -486,6 +489,7 @@ public class Utils {
                 FileFilterUtils.suffixFileFilter("shp"), FileFilterUtils.suffixFileFilter("dbf"),
                 FileFilterUtils.suffixFileFilter("sbn"), FileFilterUtils.suffixFileFilter("sbx"),
                 FileFilterUtils.suffixFileFilter("shx"), FileFilterUtils.suffixFileFilter("qix"),
+                FileFilterUtils.suffixFileFilter("grx"), FileFilterUtils.suffixFileFilter("gcx"),
                 FileFilterUtils.suffixFileFilter("lyr"), FileFilterUtils.suffixFileFilter("prj"),
                 FileFilterUtils.suffixFileFilter("sample_image"),
                 FileFilterUtils.suffixFileFilter("db"));
@@ -670,6 +674,14 @@ public class Utils {
             }
         }
 
+        //
+        // memory mapped granule index
+        //
+        if (properties.containsKey(Prop.PACKED_INDEX)) {
+            String packedIndex = properties.getProperty(Prop.PACKED_INDEX).trim();
+            catalogConfigurationBean.setPackedIndex(Boolean.valueOf(packedIndex));
+        }
+
         //
         // name is not optional
         //
@@ -1128,6 +1140,8 @@ public class Utils {
 
     public static final boolean DEFAULT_CONFIGURATION_CACHING = false;
 
+    public static final boolean DEFAULT_CONFIGURATION_PACKED_INDEX = false;
+
     public static Map<String, Serializable> createDataStoreParamsFromPropertiesFile(
             Properties properties, DataStoreFactorySpi spi) throws IOException {
         // get the params
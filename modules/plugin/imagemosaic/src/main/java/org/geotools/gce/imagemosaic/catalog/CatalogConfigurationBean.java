@@ -38,6 +38,9 @@ public class CatalogConfigurationBean {
     /** we want to use caching for our index. */
     private boolean caching = Utils.DEFAULT_CONFIGURATION_CACHING;
 
+    /** we want to query the granules through a memory mapped index. */
+    private boolean packedIndex = Utils.DEFAULT_CONFIGURATION_PACKED_INDEX;
+
     private boolean heterogeneous;
 
     /**
@@ -93,6 +96,14 @@ public class CatalogConfigurationBean {
         this.caching = caching;
     }
 
+    public boolean isPackedIndex() {
+        return packedIndex;
+    }
+
+    public void setPackedIndex(final boolean packedIndex) {
+        this.packedIndex = packedIndex;
+    }
+
     /**
      * @return the suggestedSPI
      */
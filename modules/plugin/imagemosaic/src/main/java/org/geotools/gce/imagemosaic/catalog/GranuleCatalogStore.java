@@ -94,7 +94,14 @@ public class GranuleCatalogStore extends GranuleCatalogSource implements Granule
 
     @Override
     public int removeGranules(Filter filter) {
-        int removed = catalog.removeGranules(new Query(typeName, filter));
+        final Query query = new Query(typeName, filter);
+        try {
+            // do not keep the files of the removed granules open
+            manager.invalidateGranuleReaders(query);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        int removed = catalog.removeGranules(query);
         try {
             // we cannot re-initialize a raster manager if there are no granules
             Query q = new Query(manager.getTypeName());
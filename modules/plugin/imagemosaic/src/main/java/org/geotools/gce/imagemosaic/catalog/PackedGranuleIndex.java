@@ -0,0 +1,750 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic.catalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import org.geotools.data.CloseableIterator;
+import org.geotools.data.shapefile.index.Data;
+import org.geotools.data.shapefile.index.rtree.PackedRTree;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.resources.NIOUtilities;
+import org.geotools.util.Converters;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.ExcludeFilter;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.spatial.BBOX;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+
+/**
+ * A read only, memory mapped, index of the granules of a mosaic, built by
+ * {@link PackedGranuleIndexBuilder}. It is made of two files:
+ * <ul>
+ * <li>a {@link PackedRTree} of the granule bounds, holding the granule record numbers</li>
+ * <li>a columnar store of the granule attributes, with a column for each attribute plus one for
+ * the feature ids, and for each column of numbers, dates or strings, the record numbers sorted
+ * by value, so that the dimension filters (time, elevation, custom domains) can be resolved
+ * with a binary search</li>
+ * </ul>
+ * <p>
+ * Columns file layout (big endian):
+ * <ul>
+ * <li>the magic bytes "GTGRCOLS" and the format version (int)</li>
+ * <li>number of records and number of columns (int), the time stamp of the source the index was
+ * built from (long)</li>
+ * <li>for each column, the name (short length plus UTF-8 bytes), the type (byte), the positions
+ * of the null bitmap, the values, the variable length data, the sorted record numbers (long),
+ * and the number of sorted record numbers (int)</li>
+ * <li>the column sections: the null bitmap, a long or double per record for fixed size columns,
+ * the start of each value in the variable length data (numRecords + 1 longs) for the others,
+ * the UTF-8 strings or WKB geometries, the record numbers of the non null values sorted by
+ * value (int)</li>
+ * </ul>
+ * Each section is mapped separately and cannot exceed 2GB.
+ * </p>
+ */
+class PackedGranuleIndex {
+
+    static final byte[] MAGIC = new byte[] { 'G', 'T', 'G', 'R', 'C', 'O', 'L', 'S' };
+
+    static final int VERSION = 1;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Name of the column holding the feature ids */
+    static final String FID_COLUMN = "@fid";
+
+    /** Integral numbers and booleans, as a long */
+    static final byte LONG = 0;
+
+    /** Floating point numbers, as a double */
+    static final byte DOUBLE = 1;
+
+    /** Dates, as milliseconds since the epoch */
+    static final byte DATE = 2;
+
+    /** Strings, as UTF-8 */
+    static final byte STRING = 3;
+
+    /** Geometries, as WKB */
+    static final byte GEOMETRY = 4;
+
+    /** Anything else, converted to string */
+    static final byte OTHER = 5;
+
+    /**
+     * Returns the column type used to store values of the specified class
+     */
+    static byte getColumnType(Class<?> binding) {
+        if (Geometry.class.isAssignableFrom(binding)) {
+            return GEOMETRY;
+        } else if (Integer.class.equals(binding) || Long.class.equals(binding)
+                || Short.class.equals(binding) || Byte.class.equals(binding)
+                || BigInteger.class.equals(binding) || Boolean.class.equals(binding)) {
+            return LONG;
+        } else if (Number.class.isAssignableFrom(binding)) {
+            return DOUBLE;
+        } else if (Date.class.isAssignableFrom(binding)) {
+            return DATE;
+        } else if (String.class.equals(binding)) {
+            return STRING;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Returns true if the column can be sorted, and searched, by value
+     */
+    static boolean isSortable(byte type) {
+        return type == LONG || type == DOUBLE || type == DATE || type == STRING;
+    }
+
+    /**
+     * Byte size of the header entry of a column
+     */
+    static int headerEntrySize(String name) {
+        return 2 + name.getBytes(UTF8).length + 1 + 4 * 8 + 4;
+    }
+
+    static int headerStartSize() {
+        return MAGIC.length + 4 + 4 + 4 + 8;
+    }
+
+    /**
+     * A column of the store
+     */
+    static final class Column {
+        final String name;
+
+        final byte type;
+
+        final ByteBuffer nulls;
+
+        final ByteBuffer values;
+
+        final ByteBuffer data;
+
+        final ByteBuffer sorted;
+
+        final int sortedCount;
+
+        Column(String name, byte type, ByteBuffer nulls, ByteBuffer values, ByteBuffer data,
+                ByteBuffer sorted, int sortedCount) {
+            this.name = name;
+            this.type = type;
+            this.nulls = nulls;
+            this.values = values;
+            this.data = data;
+            this.sorted = sorted;
+            this.sortedCount = sortedCount;
+        }
+
+        boolean isNull(int record) {
+            return (nulls.get(record >>> 3) & (1 << (record & 7))) != 0;
+        }
+
+        double getNumber(int record) {
+            if (type == DOUBLE) {
+                return values.getDouble(record * 8);
+            }
+            return values.getLong(record * 8);
+        }
+
+        long getLong(int record) {
+            return values.getLong(record * 8);
+        }
+
+        byte[] getBytes(int record) {
+            int start = (int) values.getLong(record * 8);
+            int end = (int) values.getLong(record * 8 + 8);
+            byte[] bytes = new byte[end - start];
+            ByteBuffer dup = data.duplicate();
+            dup.position(start);
+            dup.get(bytes);
+            return bytes;
+        }
+
+        String getString(int record) {
+            return new String(getBytes(record), UTF8);
+        }
+
+        /**
+         * Compares the values of two records, nulls excluded
+         */
+        int compare(int a, int b) {
+            if (type == STRING) {
+                return compareBytes(a, getBytes(b));
+            }
+            return Double.compare(getNumber(a), getNumber(b));
+        }
+
+        /**
+         * Compares the value of a record with a key, a Double for numeric columns, a byte[] for
+         * strings
+         */
+        int compare(int record, Object key) {
+            if (type == STRING) {
+                return compareBytes(record, (byte[]) key);
+            }
+            return Double.compare(getNumber(record), (Double) key);
+        }
+
+        private int compareBytes(int record, byte[] key) {
+            int start = (int) values.getLong(record * 8);
+            int end = (int) values.getLong(record * 8 + 8);
+            int length = end - start;
+            int n = Math.min(length, key.length);
+            for (int i = 0; i < n; i++) {
+                int diff = (data.get(start + i) & 0xFF) - (key[i] & 0xFF);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length - key.length;
+        }
+
+        /**
+         * Returns the sorted records whose value is between the specified keys, inclusive
+         */
+        int[] findRange(Object min, Object max) {
+            int from = min == null ? 0 : lowerBound(min);
+            int to = max == null ? sortedCount : upperBound(max);
+            if (from >= to) {
+                return new int[0];
+            }
+            int[] result = new int[to - from];
+            for (int i = from; i < to; i++) {
+                result[i - from] = sorted.getInt(i * 4);
+            }
+            Arrays.sort(result);
+            return result;
+        }
+
+        /** First sorted position whose value is greater than or equal to the key */
+        private int lowerBound(Object key) {
+            int lo = 0, hi = sortedCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(sorted.getInt(mid * 4), key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /** First sorted position whose value is greater than the key */
+        private int upperBound(Object key) {
+            int lo = 0, hi = sortedCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(sorted.getInt(mid * 4), key) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    final File columnsFile;
+
+    final SimpleFeatureType schema;
+
+    final PackedRTree tree;
+
+    final int numRecords;
+
+    final long sourceStamp;
+
+    final long buildTime;
+
+    final Column fids;
+
+    /** The attribute columns, in schema order */
+    final Column[] columns;
+
+    final ByteBuffer[] buffers;
+
+    /**
+     * Opens the index stored in the specified files, checking it matches the schema
+     */
+    public PackedGranuleIndex(File treeFile, File columnsFile, SimpleFeatureType schema)
+            throws IOException {
+        this.columnsFile = columnsFile;
+        this.schema = schema;
+        this.buildTime = columnsFile.lastModified();
+        List<AttributeDescriptor> descriptors = schema.getAttributeDescriptors();
+        this.columns = new Column[descriptors.size()];
+        this.buffers = new ByteBuffer[(descriptors.size() + 1) * 4];
+        RandomAccessFile raf = new RandomAccessFile(columnsFile, "r");
+        Column fidColumn = null;
+        int records = 0;
+        long stamp = 0;
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(channel.size(), Integer.MAX_VALUE));
+            try {
+                byte[] magic = new byte[MAGIC.length];
+                header.get(magic);
+                if (!Arrays.equals(MAGIC, magic)) {
+                    throw new IOException("File " + columnsFile + " is not a granule index");
+                }
+                int version = header.getInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported granule index version " + version);
+                }
+                records = header.getInt();
+                int numColumns = header.getInt();
+                stamp = header.getLong();
+                if (numColumns != descriptors.size() + 1) {
+                    throw new IOException("Granule index " + columnsFile
+                            + " does not match the schema " + schema.getTypeName());
+                }
+                for (int i = 0; i < numColumns; i++) {
+                    byte[] name = new byte[header.getShort()];
+                    header.get(name);
+                    String columnName = new String(name, UTF8);
+                    byte type = header.get();
+                    long nullsOffset = header.getLong();
+                    long valuesOffset = header.getLong();
+                    long dataOffset = header.getLong();
+                    long sortedOffset = header.getLong();
+                    int sortedCount = header.getInt();
+
+                    String expectedName = i == 0 ? FID_COLUMN : descriptors.get(i - 1)
+                            .getLocalName();
+                    byte expectedType = i == 0 ? STRING : getColumnType(descriptors.get(i - 1)
+                            .getType().getBinding());
+                    if (!expectedName.equals(columnName) || expectedType != type) {
+                        throw new IOException("Granule index " + columnsFile
+                                + " does not match the schema " + schema.getTypeName());
+                    }
+
+                    boolean fixed = type == LONG || type == DOUBLE || type == DATE;
+                    long valuesLength = fixed ? records * 8L : (records + 1) * 8L;
+                    ByteBuffer nulls = map(channel, nullsOffset, (records + 7) / 8, i * 4);
+                    ByteBuffer values = map(channel, valuesOffset, valuesLength, i * 4 + 1);
+                    ByteBuffer data = null;
+                    if (!fixed) {
+                        long dataLength = values.getLong(records * 8);
+                        data = map(channel, dataOffset, dataLength, i * 4 + 2);
+                    }
+                    ByteBuffer sorted = null;
+                    if (sortedOffset >= 0) {
+                        sorted = map(channel, sortedOffset, sortedCount * 4L, i * 4 + 3);
+                    }
+                    Column column = new Column(columnName, type, nulls, values, data, sorted,
+                            sorted != null ? sortedCount : 0);
+                    if (i == 0) {
+                        fidColumn = column;
+                    } else {
+                        columns[i - 1] = column;
+                    }
+                }
+            } finally {
+                NIOUtilities.clean(header, true);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw new IOException("Invalid granule index " + columnsFile, e);
+        } finally {
+            raf.close();
+        }
+        this.fids = fidColumn;
+        this.numRecords = records;
+        this.sourceStamp = stamp;
+
+        PackedRTree rtree = null;
+        try {
+            rtree = new PackedRTree(treeFile);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        this.tree = rtree;
+    }
+
+    private ByteBuffer map(FileChannel channel, long position, long length, int slot)
+            throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Granule index sections larger than 2GB are not supported");
+        }
+        if (position + length > channel.size()) {
+            throw new IOException("Granule index " + columnsFile + " is truncated");
+        }
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        buffers[slot] = buffer;
+        return buffer;
+    }
+
+    /**
+     * The number of granules in the index
+     */
+    public int getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * The time stamp of the source the index was built from
+     */
+    public long getSourceStamp() {
+        return sourceStamp;
+    }
+
+    /**
+     * The time the index files were written
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Returns the sorted numbers of the records that might match the filter, using the spatial
+     * index for the bounding box filters and the sorted columns for the comparisons. The caller
+     * still has to evaluate the filter against the features.
+     */
+    public int[] query(Filter filter) {
+        int[] result = filter != null ? lookup(filter) : null;
+        if (result == null) {
+            result = new int[numRecords];
+            for (int i = 0; i < numRecords; i++) {
+                result[i] = i;
+            }
+        }
+        return result;
+    }
+
+    private int[] search(Envelope envelope) {
+        CloseableIterator<Data> it = tree.search(envelope);
+        int[] result = new int[16];
+        int count = 0;
+        try {
+            while (it.hasNext()) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = (Integer) it.next().getValue(0);
+            }
+        } finally {
+            try {
+                it.close();
+            } catch (IOException e) {
+                // nothing to release for packed trees
+            }
+        }
+        result = Arrays.copyOf(result, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the sorted records that might match the filter, or null if the filter cannot be
+     * resolved with the spatial index or the sorted columns
+     */
+    int[] lookup(Filter filter) {
+        if (filter instanceof ExcludeFilter) {
+            return new int[0];
+        } else if (filter instanceof And) {
+            int[] result = null;
+            for (Filter child : ((And) filter).getChildren()) {
+                int[] records = lookup(child);
+                if (records != null) {
+                    result = result == null ? records : intersect(result, records);
+                }
+            }
+            return result;
+        } else if (filter instanceof Or) {
+            int[] result = new int[0];
+            for (Filter child : ((Or) filter).getChildren()) {
+                int[] records = lookup(child);
+                if (records == null) {
+                    return null;
+                }
+                result = union(result, records);
+            }
+            return result;
+        } else if (filter instanceof BBOX) {
+            BBOX bbox = (BBOX) filter;
+            String property = bbox.getPropertyName();
+            GeometryDescriptor geometry = schema.getGeometryDescriptor();
+            if (geometry == null || (property != null && !"".equals(property)
+                    && !geometry.getLocalName().equals(property))) {
+                return null;
+            }
+            return search(ReferencedEnvelope.reference(bbox.getBounds()));
+        } else if (filter instanceof PropertyIsBetween) {
+            PropertyIsBetween between = (PropertyIsBetween) filter;
+            Column column = getSortedColumn(between.getExpression());
+            if (column == null || column.type == STRING) {
+                return null;
+            }
+            Object min = getKey(column, between.getLowerBoundary());
+            Object max = getKey(column, between.getUpperBoundary());
+            if (min == null || max == null) {
+                return null;
+            }
+            return column.findRange(min, max);
+        } else if (filter instanceof BinaryComparisonOperator) {
+            return lookupComparison((BinaryComparisonOperator) filter);
+        }
+        return null;
+    }
+
+    private int[] lookupComparison(BinaryComparisonOperator comparison) {
+        Expression e1 = comparison.getExpression1();
+        Expression e2 = comparison.getExpression2();
+        boolean propertyFirst = e1 instanceof PropertyName && e2 instanceof Literal;
+        if (!propertyFirst && !(e2 instanceof PropertyName && e1 instanceof Literal)) {
+            return null;
+        }
+        Column column = getSortedColumn(propertyFirst ? e1 : e2);
+        if (column == null) {
+            return null;
+        }
+        Object key = getKey(column, propertyFirst ? e2 : e1);
+        if (key == null) {
+            return null;
+        }
+
+        if (comparison instanceof PropertyIsEqualTo) {
+            if (column.type == STRING && !comparison.isMatchingCase()) {
+                return null;
+            }
+            return column.findRange(key, key);
+        } else if (column.type == STRING) {
+            // string ranges are sorted by code point, the filters compare UTF-16 chars
+            return null;
+        }
+        // property < literal or literal > property
+        boolean upper = (comparison instanceof PropertyIsLessThan
+                || comparison instanceof PropertyIsLessThanOrEqualTo) == propertyFirst;
+        boolean lower = (comparison instanceof PropertyIsGreaterThan
+                || comparison instanceof PropertyIsGreaterThanOrEqualTo) == propertyFirst;
+        if (upper && !lower) {
+            return column.findRange(null, key);
+        } else if (lower && !upper) {
+            return column.findRange(key, null);
+        }
+        return null;
+    }
+
+    private Column getSortedColumn(Expression expression) {
+        if (!(expression instanceof PropertyName)) {
+            return null;
+        }
+        int idx = schema.indexOf(((PropertyName) expression).getPropertyName());
+        if (idx < 0 || columns[idx].sorted == null) {
+            return null;
+        }
+        return columns[idx];
+    }
+
+    /**
+     * Converts a literal in a search key for the column, null if not possible
+     */
+    private Object getKey(Column column, Expression expression) {
+        if (!(expression instanceof Literal)) {
+            return null;
+        }
+        Object value = ((Literal) expression).getValue();
+        if (value == null) {
+            return null;
+        }
+        if (column.type == STRING) {
+            // other literals, e.g. numbers, compare leniently with the strings ("1.0" = 1),
+            // leave them to the filter
+            return value instanceof String ? ((String) value).getBytes(UTF8) : null;
+        } else if (column.type == DATE) {
+            Date date = value instanceof Date ? (Date) value : Converters.convert(value,
+                    Date.class);
+            return date != null ? Double.valueOf(date.getTime()) : null;
+        } else {
+            Double number = value instanceof Number ? ((Number) value).doubleValue()
+                    : Converters.convert(value, Double.class);
+            return number == null || number.isNaN() ? null : number;
+        }
+    }
+
+    /**
+     * Builds the feature stored at the specified record
+     *
+     * @param record The record number
+     * @param attributes The names of the attributes to be read, or null to read them all, the
+     *        other ones are left null
+     * @param reader The WKB reader used to parse geometries
+     */
+    public SimpleFeature getFeature(int record, Set<String> attributes, WKBReader reader)
+            throws IOException {
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+        for (int i = 0; i < columns.length; i++) {
+            Column column = columns[i];
+            if (attributes != null && !attributes.contains(column.name)) {
+                continue;
+            }
+            if (!column.isNull(record)) {
+                Class<?> binding = schema.getDescriptor(i).getType().getBinding();
+                builder.set(i, getValue(column, record, binding, reader));
+            }
+        }
+        return builder.buildFeature(fids.getString(record));
+    }
+
+    private Object getValue(Column column, int record, Class<?> binding, WKBReader reader)
+            throws IOException {
+        switch (column.type) {
+        case LONG:
+            long l = column.getLong(record);
+            if (Boolean.class.equals(binding)) {
+                return l != 0;
+            } else if (Long.class.equals(binding)) {
+                return l;
+            } else if (Integer.class.equals(binding)) {
+                return (int) l;
+            } else if (Short.class.equals(binding)) {
+                return (short) l;
+            } else if (Byte.class.equals(binding)) {
+                return (byte) l;
+            }
+            return BigInteger.valueOf(l);
+        case DOUBLE:
+            double d = column.getNumber(record);
+            if (Double.class.equals(binding)) {
+                return d;
+            } else if (Float.class.equals(binding)) {
+                return (float) d;
+            } else if (BigDecimal.class.equals(binding)) {
+                return BigDecimal.valueOf(d);
+            }
+            return Converters.convert(d, binding);
+        case DATE:
+            long time = column.getLong(record);
+            if (Timestamp.class.equals(binding)) {
+                return new Timestamp(time);
+            } else if (java.sql.Date.class.equals(binding)) {
+                return new java.sql.Date(time);
+            } else if (Time.class.equals(binding)) {
+                return new Time(time);
+            }
+            return new Date(time);
+        case STRING:
+            return column.getString(record);
+        case GEOMETRY:
+            try {
+                return reader.read(column.getBytes(record));
+            } catch (ParseException e) {
+                throw new IOException("Invalid geometry in granule index " + columnsFile, e);
+            }
+        default:
+            return Converters.convert(column.getString(record), binding);
+        }
+    }
+
+    /**
+     * Releases the memory mapped buffers
+     */
+    public void close() {
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] != null) {
+                NIOUtilities.clean(buffers[i], true);
+                buffers[i] = null;
+            }
+        }
+        if (tree != null) {
+            tree.close();
+        }
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                result[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[k++] = b[j++];
+            } else {
+                result[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[k++] = a[i++];
+        }
+        while (j < b.length) {
+            result[k++] = b[j++];
+        }
+        return Arrays.copyOf(result, k);
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic.catalog;
+
+import static org.geotools.gce.imagemosaic.catalog.PackedGranuleIndex.DATE;
+import static org.geotools.gce.imagemosaic.catalog.PackedGranuleIndex.DOUBLE;
+import static org.geotools.gce.imagemosaic.catalog.PackedGranuleIndex.GEOMETRY;
+import static org.geotools.gce.imagemosaic.catalog.PackedGranuleIndex.LONG;
+import static org.geotools.gce.imagemosaic.catalog.PackedGranuleIndex.UTF8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.geotools.data.shapefile.index.rtree.PackedRTreeBuilder;
+import org.geotools.gce.imagemosaic.catalog.PackedGranuleIndex.Column;
+import org.geotools.resources.NIOUtilities;
+import org.geotools.util.Converters;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Builds the files of a {@link PackedGranuleIndex}. The variable length values are streamed to
+ * temporary files while the granules are added, only the granule bounds and the null bitmaps are
+ * kept in memory.
+ */
+class PackedGranuleIndexBuilder {
+
+    /**
+     * Collects the values of a column
+     */
+    static final class ColumnWriter {
+        final String name;
+
+        final byte type;
+
+        final boolean fixed;
+
+        final File valuesFile;
+
+        final DataOutputStream values;
+
+        final File dataFile;
+
+        final DataOutputStream data;
+
+        long dataLength;
+
+        byte[] nulls = new byte[64];
+
+        ColumnWriter(String name, byte type) throws IOException {
+            this.name = name;
+            this.type = type;
+            this.fixed = type == LONG || type == DOUBLE || type == DATE;
+            this.valuesFile = File.createTempFile("granules", ".val");
+            this.values = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                    valuesFile)));
+            if (fixed) {
+                this.dataFile = null;
+                this.data = null;
+            } else {
+                this.dataFile = File.createTempFile("granules", ".dat");
+                this.data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                        dataFile)));
+                values.writeLong(0);
+            }
+        }
+
+        void add(int record, Object value, WKBWriter wkbWriter) throws IOException {
+            if (value == null) {
+                if ((record >>> 3) >= nulls.length) {
+                    nulls = Arrays.copyOf(nulls, Math.max(nulls.length * 2, (record >>> 3) + 1));
+                }
+                nulls[record >>> 3] |= 1 << (record & 7);
+            }
+            switch (type) {
+            case LONG:
+                if (value instanceof Boolean) {
+                    values.writeLong(((Boolean) value) ? 1 : 0);
+                } else {
+                    values.writeLong(value != null ? ((Number) value).longValue() : 0);
+                }
+                break;
+            case DOUBLE:
+                values.writeDouble(value != null ? ((Number) value).doubleValue() : 0);
+                break;
+            case DATE:
+                values.writeLong(value != null ? ((Date) value).getTime() : 0);
+                break;
+            default:
+                if (value != null) {
+                    byte[] bytes;
+                    if (type == GEOMETRY) {
+                        bytes = wkbWriter.write((Geometry) value);
+                    } else if (value instanceof String) {
+                        bytes = ((String) value).getBytes(UTF8);
+                    } else {
+                        String string = Converters.convert(value, String.class);
+                        bytes = (string != null ? string : value.toString()).getBytes(UTF8);
+                    }
+                    data.write(bytes);
+                    dataLength += bytes.length;
+                }
+                values.writeLong(dataLength);
+            }
+        }
+
+        void close() throws IOException {
+            values.close();
+            if (data != null) {
+                data.close();
+            }
+        }
+
+        void dispose() {
+            valuesFile.delete();
+            if (dataFile != null) {
+                dataFile.delete();
+            }
+        }
+    }
+
+    final SimpleFeatureType schema;
+
+    final ColumnWriter[] writers;
+
+    final WKBWriter wkbWriter = new WKBWriter();
+
+    int count;
+
+    /** The granule bounds and record numbers, minx, miny, maxx, maxy, record for each granule */
+    double[] boxes = new double[64];
+
+    int numBoxes;
+
+    /**
+     * Creates a new builder for granules of the specified type
+     */
+    public PackedGranuleIndexBuilder(SimpleFeatureType schema) throws IOException {
+        this.schema = schema;
+        List<AttributeDescriptor> descriptors = schema.getAttributeDescriptors();
+        this.writers = new ColumnWriter[descriptors.size() + 1];
+        try {
+            writers[0] = new ColumnWriter(PackedGranuleIndex.FID_COLUMN,
+                    PackedGranuleIndex.STRING);
+            for (int i = 0; i < descriptors.size(); i++) {
+                AttributeDescriptor ad = descriptors.get(i);
+                writers[i + 1] = new ColumnWriter(ad.getLocalName(),
+                        PackedGranuleIndex.getColumnType(ad.getType().getBinding()));
+            }
+        } catch (IOException e) {
+            dispose();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a granule to the index
+     */
+    public void add(SimpleFeature feature) throws IOException {
+        writers[0].add(count, feature.getID(), wkbWriter);
+        for (int i = 1; i < writers.length; i++) {
+            writers[i].add(count, feature.getAttribute(i - 1), wkbWriter);
+        }
+        Geometry geometry = (Geometry) feature.getDefaultGeometry();
+        if (geometry != null && !geometry.isEmpty()) {
+            Envelope envelope = geometry.getEnvelopeInternal();
+            if (numBoxes * 5 + 5 > boxes.length) {
+                boxes = Arrays.copyOf(boxes, boxes.length * 2);
+            }
+            int base = numBoxes * 5;
+            boxes[base] = envelope.getMinX();
+            boxes[base + 1] = envelope.getMinY();
+            boxes[base + 2] = envelope.getMaxX();
+            boxes[base + 3] = envelope.getMaxY();
+            boxes[base + 4] = count;
+            numBoxes++;
+        }
+        count++;
+    }
+
+    /**
+     * Writes the index files, and releases the temporary files. The files are written next to
+     * the target ones, and then moved in place, so that the existing files, that might be
+     * memory mapped by other catalogs, are replaced instead of being truncated.
+     *
+     * @param treeFile The file that will hold the spatial index
+     * @param columnsFile The file that will hold the attribute columns
+     * @param sourceStamp The time stamp of the granule source, used to check if the index is
+     *        up to date
+     */
+    public void write(File treeFile, File columnsFile, long sourceStamp) throws IOException {
+        File treeTemp = null;
+        File columnsTemp = null;
+        try {
+            for (ColumnWriter writer : writers) {
+                writer.close();
+            }
+            columnsTemp = File.createTempFile(columnsFile.getName(), ".tmp",
+                    columnsFile.getAbsoluteFile().getParentFile());
+            writeColumns(columnsTemp, sourceStamp);
+            writeSortedRecords(columnsTemp);
+            treeTemp = File.createTempFile(treeFile.getName(), ".tmp", treeFile
+                    .getAbsoluteFile().getParentFile());
+            writeTree(treeTemp);
+
+            // the columns hold the source stamp, move them last
+            replace(treeTemp, treeFile);
+            treeTemp = null;
+            replace(columnsTemp, columnsFile);
+            columnsTemp = null;
+        } finally {
+            if (treeTemp != null) {
+                treeTemp.delete();
+            }
+            if (columnsTemp != null) {
+                columnsTemp.delete();
+            }
+            dispose();
+        }
+    }
+
+    /**
+     * Moves the source file in place of the target one
+     */
+    private void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // some file systems cannot replace files atomically (or at all, when they are
+            // mapped), unlink the old file and try again
+            target.delete();
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void writeColumns(File columnsFile, long sourceStamp) throws IOException {
+        int headerSize = PackedGranuleIndex.headerStartSize();
+        for (ColumnWriter writer : writers) {
+            headerSize += PackedGranuleIndex.headerEntrySize(writer.name);
+        }
+        int nullsLength = (count + 7) / 8;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(columnsFile)));
+        try {
+            out.write(PackedGranuleIndex.MAGIC);
+            out.writeInt(PackedGranuleIndex.VERSION);
+            out.writeInt(count);
+            out.writeInt(writers.length);
+            out.writeLong(sourceStamp);
+            long position = headerSize;
+            for (ColumnWriter writer : writers) {
+                byte[] name = writer.name.getBytes(UTF8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeByte(writer.type);
+                // null bitmap, values and variable length data follow each other
+                out.writeLong(position);
+                position += nullsLength;
+                out.writeLong(position);
+                position += writer.valuesFile.length();
+                out.writeLong(writer.fixed ? -1 : position);
+                if (!writer.fixed) {
+                    position += writer.dataLength;
+                }
+                // the sorted records are appended once the columns are in place
+                out.writeLong(-1);
+                out.writeInt(0);
+            }
+            for (ColumnWriter writer : writers) {
+                byte[] nulls = Arrays.copyOf(writer.nulls, Math.max(writer.nulls.length,
+                        nullsLength));
+                out.write(nulls, 0, nullsLength);
+                copy(writer.valuesFile, out);
+                if (!writer.fixed) {
+                    copy(writer.dataFile, out);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void copy(File file, DataOutputStream out) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Sorts the records of the sortable columns by value, reading the values back from the
+     * columns file, then appends the sorted record numbers and updates the header
+     */
+    private void writeSortedRecords(File columnsFile) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(columnsFile, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            int position = PackedGranuleIndex.headerStartSize();
+            for (int i = 0; i < writers.length; i++) {
+                ColumnWriter writer = writers[i];
+                int entry = position + PackedGranuleIndex.headerEntrySize(writer.name) - 12;
+                position += PackedGranuleIndex.headerEntrySize(writer.name);
+                // the feature ids are not sortable, lookups by id go through the id filters
+                if (i == 0 || !PackedGranuleIndex.isSortable(writer.type)) {
+                    continue;
+                }
+
+                ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, entry - 24, 24);
+                long nullsOffset = header.getLong();
+                long valuesOffset = header.getLong();
+                long dataOffset = header.getLong();
+                NIOUtilities.clean(header, true);
+
+                int[] order = sort(channel, writer, nullsOffset, valuesOffset, dataOffset);
+                long sortedOffset = channel.size();
+                ByteBuffer sorted = ByteBuffer.allocate(order.length * 4);
+                sorted.asIntBuffer().put(order);
+                channel.write(sorted, sortedOffset);
+
+                ByteBuffer patch = ByteBuffer.allocate(12);
+                patch.putLong(sortedOffset);
+                patch.putInt(order.length);
+                patch.flip();
+                channel.write(patch, entry);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private int[] sort(FileChannel channel, ColumnWriter writer, long nullsOffset,
+            long valuesOffset, long dataOffset) throws IOException {
+        ByteBuffer nulls = channel.map(FileChannel.MapMode.READ_ONLY, nullsOffset,
+                (count + 7) / 8);
+        ByteBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, valuesOffset,
+                writer.valuesFile.length());
+        ByteBuffer data = writer.fixed ? null : channel.map(FileChannel.MapMode.READ_ONLY,
+                dataOffset, writer.dataLength);
+        try {
+            Column column = new Column(writer.name, writer.type, nulls, values, data, null, 0);
+            int[] order = new int[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (!column.isNull(i)) {
+                    order[n++] = i;
+                }
+            }
+            order = Arrays.copyOf(order, n);
+            mergeSort(column, order, new int[n], 0, n);
+            return order;
+        } finally {
+            NIOUtilities.clean(nulls, true);
+            NIOUtilities.clean(values, true);
+            if (data != null) {
+                NIOUtilities.clean(data, true);
+            }
+        }
+    }
+
+    private void mergeSort(Column column, int[] order, int[] temp, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(column, order, temp, from, mid);
+        mergeSort(column, order, temp, mid, to);
+        if (column.compare(order[mid - 1], order[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, temp, from, to - from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            order[k++] = column.compare(temp[j], temp[i]) < 0 ? temp[j++] : temp[i++];
+        }
+        while (i < mid) {
+            order[k++] = temp[i++];
+        }
+        while (j < to) {
+            order[k++] = temp[j++];
+        }
+    }
+
+    private void writeTree(File treeFile) throws IOException {
+        PackedRTreeBuilder builder = new PackedRTreeBuilder(numBoxes);
+        for (int i = 0; i < numBoxes; i++) {
+            int base = i * 5;
+            builder.add(boxes[base], boxes[base + 1], boxes[base + 2], boxes[base + 3],
+                    (int) boxes[base + 4], 0);
+        }
+        builder.write(treeFile);
+    }
+
+    /**
+     * Releases the temporary files
+     */
+    public void dispose() {
+        for (ColumnWriter writer : writers) {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // we are just cleaning up
+                }
+                writer.dispose();
+            }
+        }
+    }
+}
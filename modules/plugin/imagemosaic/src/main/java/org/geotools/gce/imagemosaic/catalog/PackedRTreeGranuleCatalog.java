@@ -0,0 +1,784 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic.catalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.coverage.grid.io.footprint.MultiLevelROI;
+import org.geotools.data.DataStoreFactorySpi;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.QueryCapabilities;
+import org.geotools.data.Transaction;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.Hints;
+import org.geotools.feature.SchemaException;
+import org.geotools.feature.visitor.FeatureAttributeVisitor;
+import org.geotools.feature.visitor.FeatureCalc;
+import org.geotools.filter.FilterAttributeExtractor;
+import org.geotools.gce.imagemosaic.GranuleDescriptor;
+import org.geotools.gce.imagemosaic.Utils;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.Utilities;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.geometry.BoundingBox;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKBReader;
+
+/**
+ * A granule catalog answering the queries out of a memory mapped {@link PackedGranuleIndex},
+ * stored next to the mosaic configuration files, instead of keeping the granules in memory like
+ * the {@link STRTreeGranuleCatalog} does.
+ * <p>
+ * The index is built on first access to each type, from the granules of the wrapped
+ * {@link GTDataStoreGranuleCatalog}, and reused across restarts as long as the granule source is
+ * not modified. Bounding box filters are resolved with the packed R-tree, and the comparisons on
+ * numbers, dates and strings (the time, elevation and additional domains filters) with the
+ * sorted columns, the rest of the filter is then evaluated on the features rebuilt out of the
+ * mapped columns. Only the granule descriptors matching the query are created, and they are not
+ * retained.
+ * </p>
+ * <p>
+ * Modifications are delegated to the wrapped catalog, and invalidate the index of the affected
+ * types, which is rebuilt on next access.
+ * </p>
+ * <p>
+ * Changes made to the granule source behind the back of the catalog are detected via the file
+ * modification times for shapefile based catalogs. Other stores offer no such stamp, and the
+ * only check performed when reopening a persisted index is the granule count: those catalogs
+ * should be modified only through this catalog, or have their index refreshed periodically by
+ * setting the {@code org.geotools.imagemosaic.packedIndex.refreshInterval} system variable to
+ * the max age of the index, in milliseconds.
+ * </p>
+ */
+class PackedRTreeGranuleCatalog extends GranuleCatalog {
+
+    /** Logger. */
+    final static Logger LOGGER = org.geotools.util.logging.Logging
+            .getLogger(PackedRTreeGranuleCatalog.class);
+
+    /** Extension of the spatial index file */
+    static final String TREE_EXTENSION = "grx";
+
+    /** Extension of the attribute columns file */
+    static final String COLUMNS_EXTENSION = "gcx";
+
+    /**
+     * Max age of the indexes of catalogs that cannot tell when the granules were modified, zero
+     * or less to keep them until invalidated by a modification
+     */
+    static final long REFRESH_INTERVAL = Long.getLong(
+            "org.geotools.imagemosaic.packedIndex.refreshInterval", 0);
+
+    private GTDataStoreGranuleCatalog wrappedCatalogue;
+
+    /** The directory holding the index files, null if the index cannot be persisted */
+    private final File indexDirectory;
+
+    /** The shapefile holding the granules, if any, used to check the index is up to date */
+    private final File shapefile;
+
+    private final Map<String, PackedGranuleIndex> indexes = new HashMap<String, PackedGranuleIndex>();
+
+    private final ReadWriteLock rwLock = new ReentrantReadWriteLock(true);
+
+    public PackedRTreeGranuleCatalog(final Properties params, DataStoreFactorySpi spi,
+            final Hints hints) {
+        super(hints);
+        Utilities.ensureNonNull("params", params);
+        this.wrappedCatalogue = new GTDataStoreGranuleCatalog(params, false, spi, hints);
+
+        File directory = null;
+        String parentLocation = (String) params.get(Utils.Prop.PARENT_LOCATION);
+        if (parentLocation != null) {
+            try {
+                directory = DataUtilities.urlToFile(new URL(parentLocation));
+            } catch (Exception e) {
+                if (LOGGER.isLoggable(Level.FINE))
+                    LOGGER.log(Level.FINE, e.getLocalizedMessage(), e);
+            }
+        }
+        if (directory == null || !directory.isDirectory()) {
+            LOGGER.warning("The granule index cannot be stored in " + parentLocation
+                    + ", the granules will be queried from the underlying store");
+            directory = null;
+        }
+        this.indexDirectory = directory;
+
+        File shp = null;
+        Object url = params.get(ShapefileDataStoreFactory.URLP.key);
+        if (url instanceof URL && "file".equals(((URL) url).getProtocol())) {
+            shp = DataUtilities.urlToFile((URL) url);
+        }
+        this.shapefile = shp;
+    }
+
+    /**
+     * Returns the index of the specified type, building it if missing or out of date. Must be
+     * called while holding the read lock, returns null if the index cannot be built.
+     */
+    private PackedGranuleIndex getIndex(String typeName, Lock readLock) throws IOException {
+        if (indexDirectory == null) {
+            return null;
+        }
+        PackedGranuleIndex index = indexes.get(typeName);
+        if (index != null && isUpToDate(index)) {
+            return index;
+        }
+
+        final Lock writeLock = rwLock.writeLock();
+        try {
+            // upgrade the read lock to write lock
+            readLock.unlock();
+            writeLock.lock();
+
+            // someone else might have done the job in the meantime
+            index = indexes.get(typeName);
+            if (index != null && isUpToDate(index)) {
+                return index;
+            }
+            if (index != null) {
+                indexes.remove(typeName);
+                index.close();
+                index = null;
+            }
+
+            SimpleFeatureType schema = wrappedCatalogue.getType(typeName);
+            if (schema == null) {
+                return null;
+            }
+            File treeFile = new File(indexDirectory, typeName + "." + TREE_EXTENSION);
+            File columnsFile = new File(indexDirectory, typeName + "." + COLUMNS_EXTENSION);
+            if (treeFile.exists() && columnsFile.exists()) {
+                try {
+                    index = new PackedGranuleIndex(treeFile, columnsFile, schema);
+                    if (!isUpToDate(index) || (shapefile == null && index
+                            .getNumRecords() != wrappedCatalogue.getGranulesCount(new Query(
+                                    typeName)))) {
+                        index.close();
+                        index = null;
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Ignoring invalid granule index " + columnsFile, e);
+                    index = null;
+                }
+            }
+            if (index == null) {
+                if (LOGGER.isLoggable(Level.FINE))
+                    LOGGER.fine("Building the granule index for " + typeName);
+                try {
+                    buildIndex(typeName, schema, treeFile, columnsFile);
+                    index = new PackedGranuleIndex(treeFile, columnsFile, schema);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not build the granule index for "
+                            + typeName + ", the granules will be queried from the underlying store",
+                            e);
+                    treeFile.delete();
+                    columnsFile.delete();
+                    return null;
+                }
+            }
+            indexes.put(typeName, index);
+            return index;
+        } finally {
+            // get read lock again
+            readLock.lock();
+            // leave write lock
+            writeLock.unlock();
+        }
+    }
+
+    private void buildIndex(String typeName, SimpleFeatureType schema, File treeFile,
+            File columnsFile) throws IOException {
+        // grab the stamp before reading, a concurrent modification will trigger a rebuild
+        long stamp = getSourceStamp();
+        PackedGranuleIndexBuilder builder = new PackedGranuleIndexBuilder(schema);
+        try {
+            SimpleFeatureIterator it = wrappedCatalogue.getGranules(new Query(typeName))
+                    .features();
+            try {
+                while (it.hasNext()) {
+                    builder.add(it.next());
+                }
+            } finally {
+                it.close();
+            }
+            builder.write(treeFile, columnsFile, stamp);
+        } finally {
+            builder.dispose();
+        }
+    }
+
+    private long getSourceStamp() {
+        if (shapefile == null) {
+            return -1;
+        }
+        File dbf = new File(shapefile.getParentFile(), shapefile.getName().replaceAll(
+                "\\.[^.]*$", ".dbf"));
+        return Math.max(shapefile.lastModified(), dbf.lastModified());
+    }
+
+    private boolean isUpToDate(PackedGranuleIndex index) {
+        if (shapefile != null) {
+            return index.getSourceStamp() == getSourceStamp();
+        }
+        // no modification stamp available, rely on the configured max age
+        return REFRESH_INTERVAL <= 0
+                || System.currentTimeMillis() - index.getBuildTime() < REFRESH_INTERVAL;
+    }
+
+    /**
+     * Drops the index of the specified type, or of all types if null. Must be called while
+     * holding the write lock.
+     */
+    private void invalidate(String typeName) {
+        List<String> typeNames = new ArrayList<String>();
+        if (typeName != null) {
+            typeNames.add(typeName);
+        } else {
+            Collections.addAll(typeNames, wrappedCatalogue.getTypeNames());
+            typeNames.addAll(indexes.keySet());
+        }
+        for (String name : typeNames) {
+            PackedGranuleIndex index = indexes.remove(name);
+            if (index != null) {
+                index.close();
+            }
+            if (indexDirectory != null) {
+                new File(indexDirectory, name + "." + TREE_EXTENSION).delete();
+                new File(indexDirectory, name + "." + COLUMNS_EXTENSION).delete();
+            }
+        }
+    }
+
+    private String getTypeName(Query q) {
+        if (q.getTypeName() != null) {
+            return q.getTypeName();
+        }
+        return wrappedCatalogue.typeNames.isEmpty() ? null : wrappedCatalogue.typeNames
+                .iterator().next();
+    }
+
+    /**
+     * Visits the granules matching the query, in the requested order
+     */
+    private interface RecordVisitor {
+        void visit(SimpleFeature feature) throws IOException;
+    }
+
+    /**
+     * Collects the matching features out of the index
+     *
+     * @param attributes The attributes the visitor needs, null for all of them
+     */
+    private void query(PackedGranuleIndex index, Query q, Set<String> attributes,
+            RecordVisitor visitor) throws IOException {
+        final Filter filter = q.getFilter() != null ? q.getFilter() : Filter.INCLUDE;
+        final int[] records = index.query(filter);
+
+        // evaluate the filter on the attributes it needs first, then build the full feature
+        Set<String> filterAttributes = null;
+        if (filter != Filter.INCLUDE) {
+            FilterAttributeExtractor extractor = new FilterAttributeExtractor(index.schema);
+            filter.accept(extractor, null);
+            filterAttributes = extractor.getAttributeNameSet();
+        }
+        final WKBReader reader = new WKBReader();
+        final int maxFeatures = q.getMaxFeatures();
+        final SortBy[] sortBy = q.getSortBy();
+        if (sortBy != null && sortBy.length > 0) {
+            querySorted(index, filter, records, filterAttributes, attributes, sortBy,
+                    maxFeatures > 0 && !q.isMaxFeaturesUnlimited() ? maxFeatures : -1, reader,
+                    visitor);
+            return;
+        }
+
+        int count = 0;
+        for (int record : records) {
+            if (maxFeatures > 0 && count >= maxFeatures) {
+                break;
+            }
+            SimpleFeature feature;
+            if (filterAttributes != null) {
+                feature = index.getFeature(record, filterAttributes, reader);
+                if (!filter.evaluate(feature)) {
+                    continue;
+                }
+                if (attributes == null || !filterAttributes.containsAll(attributes)) {
+                    feature = index.getFeature(record, attributes, reader);
+                }
+            } else {
+                feature = index.getFeature(record, attributes, reader);
+            }
+            count++;
+            visitor.visit(feature);
+        }
+    }
+
+    /**
+     * A record accepted by a sorted query, along with the attributes needed to sort it
+     */
+    private static final class SortEntry {
+        final int record;
+
+        final SimpleFeature keys;
+
+        SortEntry(int record, SimpleFeature keys) {
+            this.record = record;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * Visits the matching features in the requested order. Only the attributes needed by the
+     * filter and the sort are decoded while scanning the candidates, and when the number of
+     * features is limited only the first ones are kept, in a bounded heap, so that the memory
+     * used does not depend on the number of granules.
+     *
+     * @param maxFeatures The max number of features to visit, or -1 for no limit
+     */
+    private void querySorted(PackedGranuleIndex index, Filter filter, int[] records,
+            Set<String> filterAttributes, Set<String> attributes, SortBy[] sortBy,
+            int maxFeatures, WKBReader reader, RecordVisitor visitor) throws IOException {
+        final List<Comparator<SimpleFeature>> comparators = new ArrayList<Comparator<SimpleFeature>>();
+        final Set<String> keyAttributes = new HashSet<String>();
+        for (SortBy sb : sortBy) {
+            comparators.add(DataUtilities.sortComparator(sb));
+            if (sb.getPropertyName() != null) {
+                keyAttributes.add(sb.getPropertyName().getPropertyName());
+            }
+        }
+        if (filterAttributes != null) {
+            keyAttributes.addAll(filterAttributes);
+        }
+        // ties are broken on the record number, to keep the order stable
+        final Comparator<SortEntry> order = new Comparator<SortEntry>() {
+            public int compare(SortEntry e1, SortEntry e2) {
+                for (Comparator<SimpleFeature> comparator : comparators) {
+                    int result = comparator.compare(e1.keys, e2.keys);
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+                return e1.record < e2.record ? -1 : (e1.record == e2.record ? 0 : 1);
+            }
+        };
+
+        // the heap head is the last of the features kept so far
+        PriorityQueue<SortEntry> heap = null;
+        List<SortEntry> selected = null;
+        if (maxFeatures > 0) {
+            heap = new PriorityQueue<SortEntry>(Math.max(1, Math.min(maxFeatures,
+                    records.length)), Collections.reverseOrder(order));
+        } else {
+            selected = new ArrayList<SortEntry>();
+        }
+        for (int record : records) {
+            SimpleFeature keys = index.getFeature(record, keyAttributes, reader);
+            if (filterAttributes != null && !filter.evaluate(keys)) {
+                continue;
+            }
+            SortEntry entry = new SortEntry(record, keys);
+            if (heap == null) {
+                selected.add(entry);
+            } else if (heap.size() < maxFeatures) {
+                heap.add(entry);
+            } else if (order.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        if (heap != null) {
+            selected = new ArrayList<SortEntry>(heap);
+        }
+
+        Collections.sort(selected, order);
+        for (SortEntry entry : selected) {
+            if (attributes != null && keyAttributes.containsAll(attributes)) {
+                visitor.visit(entry.keys);
+            } else {
+                visitor.visit(index.getFeature(entry.record, attributes, reader));
+            }
+        }
+    }
+
+    @Override
+    public void getGranuleDescriptors(Query query, final GranuleCatalogVisitor visitor)
+            throws IOException {
+        Utilities.ensureNonNull("query", query);
+        final Query q = mergeHints(query);
+        final Lock lock = rwLock.readLock();
+        try {
+            lock.lock();
+            checkStore();
+
+            final PackedGranuleIndex index = getIndex(getTypeName(q), lock);
+            if (index == null) {
+                wrappedCatalogue.getGranuleDescriptors(q, visitor);
+                return;
+            }
+
+            // ROI
+            final Utils.BBOXFilterExtractor bboxExtractor = new Utils.BBOXFilterExtractor();
+            if (q.getFilter() != null) {
+                q.getFilter().accept(bboxExtractor, null);
+            }
+            ReferencedEnvelope requestedBBox = bboxExtractor.getBBox();
+            final Geometry intersectionGeometry = requestedBBox != null ? JTS
+                    .toGeometry(requestedBBox) : null;
+
+            query(index, q, null, new RecordVisitor() {
+
+                @Override
+                public void visit(SimpleFeature sf) throws IOException {
+                    MultiLevelROI footprint = getGranuleFootprint(sf);
+                    if (footprint != null && footprint.isEmpty()) {
+                        return;
+                    }
+                    GranuleDescriptor granule = null;
+                    try {
+                        granule = new GranuleDescriptor(sf, wrappedCatalogue.suggestedRasterSPI,
+                                wrappedCatalogue.pathType, wrappedCatalogue.locationAttribute,
+                                wrappedCatalogue.parentLocation, footprint,
+                                wrappedCatalogue.heterogeneous, q.getHints());
+                    } catch (Exception e) {
+                        LOGGER.log(Level.FINE, "Skipping invalid granule", e);
+                        return;
+                    }
+
+                    // check ROI inclusion
+                    final Geometry granuleFootprint = granule.getFootprint();
+                    if (intersectionGeometry == null || granuleFootprint == null
+                            || polygonOverlap(granuleFootprint, intersectionGeometry)) {
+                        visitor.visit(granule, sf);
+                    } else if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.fine("Skipping granule " + granule
+                                + "\n since its ROI does not intersect the requested area");
+                    }
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean polygonOverlap(Geometry g1, Geometry g2) {
+        Geometry intersection = g1.intersection(g2);
+        return intersection != null && intersection.getDimension() == 2;
+    }
+
+    @Override
+    public SimpleFeatureCollection getGranules(Query q) throws IOException {
+        Utilities.ensureNonNull("query", q);
+        q = mergeHints(q);
+        final Lock lock = rwLock.readLock();
+        try {
+            lock.lock();
+            checkStore();
+
+            final PackedGranuleIndex index = getIndex(getTypeName(q), lock);
+            if (index == null) {
+                return wrappedCatalogue.getGranules(q);
+            }
+            final ListFeatureCollection retVal = new ListFeatureCollection(index.schema);
+            query(index, q, null, new RecordVisitor() {
+
+                @Override
+                public void visit(SimpleFeature feature) {
+                    retVal.add(feature);
+                }
+            });
+            return retVal;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getGranulesCount(Query q) throws IOException {
+        Utilities.ensureNonNull("query", q);
+        q = mergeHints(q);
+        final Lock lock = rwLock.readLock();
+        try {
+            lock.lock();
+            checkStore();
+
+            final PackedGranuleIndex index = getIndex(getTypeName(q), lock);
+            if (index == null) {
+                return wrappedCatalogue.getGranulesCount(q);
+            }
+            final Query countQuery = new Query(q);
+            countQuery.setSortBy(null);
+            final int[] count = new int[1];
+            query(index, countQuery, Collections.<String> emptySet(), new RecordVisitor() {
+
+                @Override
+                public void visit(SimpleFeature feature) {
+                    count[0]++;
+                }
+            });
+            return count[0];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void computeAggregateFunction(Query q, final FeatureCalc function)
+            throws IOException {
+        q = mergeHints(q);
+        final Lock lock = rwLock.readLock();
+        try {
+            lock.lock();
+            checkStore();
+
+            final PackedGranuleIndex index = getIndex(getTypeName(q), lock);
+            if (index == null) {
+                wrappedCatalogue.computeAggregateFunction(q, function);
+                return;
+            }
+            // read only the attributes the function is going to use
+            Set<String> attributes = null;
+            if (function instanceof FeatureAttributeVisitor) {
+                FilterAttributeExtractor extractor = new FilterAttributeExtractor(index.schema);
+                for (Expression expression : ((FeatureAttributeVisitor) function)
+                        .getExpressions()) {
+                    expression.accept(extractor, null);
+                }
+                attributes = new HashSet<String>(extractor.getAttributeNameSet());
+            }
+            query(index, q, attributes, new RecordVisitor() {
+
+                @Override
+                public void visit(SimpleFeature feature) {
+                    function.visit(feature);
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @throws IllegalStateException
+     */
+    private void checkStore() throws IllegalStateException {
+        if (wrappedCatalogue == null)
+            throw new IllegalStateException("The underlying store has already been disposed!");
+    }
+
+    @Override
+    public void addGranules(String typeName, Collection<SimpleFeature> granules,
+            Transaction transaction) throws IOException {
+        final Lock lock = rwLock.writeLock();
+        try {
+            lock.lock();
+            checkStore();
+            wrappedCatalogue.addGranules(typeName, granules, transaction);
+            invalidate(typeName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int removeGranules(Query query) {
+        final Lock lock = rwLock.writeLock();
+        try {
+            lock.lock();
+            checkStore();
+            int removed = wrappedCatalogue.removeGranules(query);
+            if (removed > 0) {
+                invalidate(query.getTypeName());
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void createType(String namespace, String typeName, String typeSpec)
+            throws IOException, SchemaException {
+        final Lock lock = rwLock.writeLock();
+        try {
+            lock.lock();
+            checkStore();
+            wrappedCatalogue.createType(namespace, typeName, typeSpec);
+            invalidate(typeName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void createType(SimpleFeatureType featureType) throws IOException {
+        final Lock lock = rwLock.writeLock();
+        try {
+            lock.lock();
+            checkStore();
+            wrappedCatalogue.createType(featureType);
+            invalidate(featureType.getTypeName());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void createType(String identification, String typeSpec)
+            throws SchemaException, IOException {
+        final Lock lock = rwLock.writeLock();
+        try {
+            lock.lock();
+            checkStore();
+            wrappedCatalogue.createType(identification, typeSpec);
+            invalidate(identification);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeType(String typeName) throws IOException {
+        final Lock lock = rwLock.writeLock();
+        try {
+            lock.lock();
+            checkStore();
+            wrappedCatalogue.removeType(typeName);
+            invalidate(typeName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void drop() throws IOException {
+        final Lock lock = rwLock.writeLock();
+        try {
+            lock.lock();
+            checkStore();
+            invalidate(null);
+            wrappedCatalogue.drop();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public BoundingBox getBounds(String typeName) {
+        final Lock lock = rwLock.readLock();
+        try {
+            lock.lock();
+            checkStore();
+            return wrappedCatalogue.getBounds(typeName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public QueryCapabilities getQueryCapabilities(String typeName) {
+        final Lock lock = rwLock.readLock();
+        try {
+            lock.lock();
+            checkStore();
+            return wrappedCatalogue.getQueryCapabilities(typeName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SimpleFeatureType getType(String typeName) throws IOException {
+        final Lock lock = rwLock.readLock();
+        try {
+            lock.lock();
+            checkStore();
+            return wrappedCatalogue.getType(typeName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String[] getTypeNames() {
+        final Lock lock = rwLock.readLock();
+        try {
+            lock.lock();
+            checkStore();
+            return wrappedCatalogue.getTypeNames();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        final Lock l = rwLock.writeLock();
+        try {
+            l.lock();
+            for (PackedGranuleIndex index : indexes.values()) {
+                index.close();
+            }
+            indexes.clear();
+
+            // original index
+            if (wrappedCatalogue != null) {
+                try {
+                    wrappedCatalogue.dispose();
+                } catch (Exception e) {
+                    if (LOGGER.isLoggable(Level.FINE))
+                        LOGGER.log(Level.FINE, e.getLocalizedMessage(), e);
+                }
+            }
+            if (multiScaleROIProvider != null) {
+                multiScaleROIProvider.dispose();
+            }
+        } finally {
+            wrappedCatalogue = null;
+            multiScaleROIProvider = null;
+            l.unlock();
+        }
+    }
+}
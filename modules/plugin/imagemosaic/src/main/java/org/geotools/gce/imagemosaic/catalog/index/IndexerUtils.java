@@ -687,6 +687,9 @@ public class IndexerUtils {
         if (props.containsKey(Utils.Prop.CACHING))
             setParam(parameters, props, Utils.Prop.CACHING);
 
+        if (props.containsKey(Utils.Prop.PACKED_INDEX))
+            setParam(parameters, props, Utils.Prop.PACKED_INDEX);
+
         if (props.containsKey(Utils.Prop.ROOT_MOSAIC_DIR)) {
             // Overriding root mosaic directory
             setParam(parameters, props, Utils.Prop.ROOT_MOSAIC_DIR);
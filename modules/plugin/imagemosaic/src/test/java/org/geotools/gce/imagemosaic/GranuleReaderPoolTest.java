@@ -0,0 +1,239 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Locale;
+
+import javax.imageio.spi.ImageInputStreamSpi;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.geotools.coverage.grid.io.footprint.MultiLevelROI;
+import org.geotools.data.DataUtilities;
+import org.geotools.gce.imagemosaic.GranuleReaderPool.PooledReader;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.image.io.ImageIOExt;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.test.TestData;
+import org.junit.Before;
+import org.junit.Test;
+
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReaderSpi;
+
+public class GranuleReaderPoolTest {
+
+    URL url;
+
+    ImageInputStreamSpi streamSpi;
+
+    ImageReaderSpi readerSpi = new TIFFImageReaderSpi();
+
+    @Before
+    public void setUp() throws Exception {
+        url = TestData.url(this, "/overview/0/D220161A.tif");
+        streamSpi = ImageIOExt.getImageInputStreamSPI(url);
+        assertNotNull(streamSpi);
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        GranuleReaderPool pool = new GranuleReaderPool(10, 2, 60000);
+        PooledReader first = pool.acquire(url, streamSpi, readerSpi);
+        RenderedImage image = first.getReader().read(0);
+        assertEquals(1, pool.getOpenFiles());
+        pool.release(first);
+        assertEquals(1, pool.getIdleReaders());
+
+        // the same reader is handed out again, and can still read
+        PooledReader second = pool.acquire(url, streamSpi, readerSpi);
+        assertSame(first, second);
+        assertEquals(0, pool.getIdleReaders());
+        RenderedImage again = second.getReader().read(0);
+        assertEquals(image.getWidth(), again.getWidth());
+        assertEquals(image.getHeight(), again.getHeight());
+
+        // concurrent borrowers get their own reader
+        PooledReader third = pool.acquire(url, streamSpi, readerSpi);
+        assertNotSame(second, third);
+        assertEquals(2, pool.getOpenFiles());
+        pool.release(second);
+        pool.release(third);
+        assertEquals(2, pool.getIdleReaders());
+
+        pool.clear();
+        assertEquals(0, pool.getIdleReaders());
+        assertEquals(0, pool.getOpenFiles());
+    }
+
+    @Test
+    public void testBounds() throws Exception {
+        GranuleReaderPool pool = new GranuleReaderPool(2, 1, 60000);
+        PooledReader r1 = pool.acquire(url, streamSpi, readerSpi);
+        PooledReader r2 = pool.acquire(url, streamSpi, readerSpi);
+        // only one idle reader per granule is kept
+        pool.release(r1);
+        pool.release(r2);
+        assertEquals(1, pool.getIdleReaders());
+        assertEquals(1, pool.getOpenFiles());
+
+        // borrowing over the budget does not block, but closes the idle readers
+        URL other = TestData.url(this, "/overview/0/1/D220361A.tif");
+        PooledReader r3 = pool.acquire(other, streamSpi, readerSpi);
+        PooledReader r4 = pool.acquire(url, streamSpi, readerSpi);
+        PooledReader r5 = pool.acquire(url, streamSpi, readerSpi);
+        assertEquals(3, pool.getOpenFiles());
+        assertEquals(0, pool.getIdleReaders());
+        // and readers released over budget are closed
+        pool.release(r3);
+        assertEquals(2, pool.getOpenFiles());
+        assertEquals(0, pool.getIdleReaders());
+        pool.detach(r4);
+        pool.discard(r5);
+        assertEquals(0, pool.getOpenFiles());
+        r4.close();
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        GranuleReaderPool pool = new GranuleReaderPool(10, 2, 0);
+        pool.release(pool.acquire(url, streamSpi, readerSpi));
+        pool.evictIdle();
+        assertEquals(0, pool.getIdleReaders());
+        assertEquals(0, pool.getOpenFiles());
+    }
+
+    @Test
+    public void testModifiedFile() throws Exception {
+        File source = TestData.file(this, "/overview/0/D220161A.tif");
+        File copy = File.createTempFile("pool", ".tif");
+        try {
+            FileUtils.copyFile(source, copy);
+            URL copyUrl = copy.toURI().toURL();
+            GranuleReaderPool pool = new GranuleReaderPool(10, 2, 60000);
+            PooledReader first = pool.acquire(copyUrl, streamSpi, readerSpi);
+            pool.release(first);
+
+            assertEquals(1, pool.getIdleReaders());
+            assertSame(first, pool.acquire(copyUrl, streamSpi, readerSpi));
+            pool.release(first);
+
+            copy.setLastModified(copy.lastModified() - 10000);
+            PooledReader second = pool.acquire(copyUrl, streamSpi, readerSpi);
+            assertNotSame(first, second);
+            assertEquals(1, pool.getOpenFiles());
+            pool.discard(second);
+        } finally {
+            copy.delete();
+        }
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        GranuleReaderPool pool = new GranuleReaderPool(10, 2, 60000);
+        URL other = TestData.url(this, "/overview/0/1/D220361A.tif");
+        pool.release(pool.acquire(url, streamSpi, readerSpi));
+        pool.release(pool.acquire(other, streamSpi, readerSpi));
+        PooledReader borrowed = pool.acquire(url, streamSpi, readerSpi);
+        assertEquals(1, pool.getIdleReaders());
+        assertEquals(2, pool.getOpenFiles());
+
+        // the idle reader of the granule is closed, the borrowed one once given back
+        pool.invalidate(url);
+        assertEquals(1, pool.getIdleReaders());
+        assertEquals(2, pool.getOpenFiles());
+        pool.release(borrowed);
+        assertEquals(1, pool.getIdleReaders());
+        assertEquals(1, pool.getOpenFiles());
+
+        // invalidating a directory closes the readers of the granules it contains
+        pool.invalidate(DataUtilities.fileToURL(DataUtilities.urlToFile(url).getParentFile()));
+        assertEquals(0, pool.getIdleReaders());
+        assertEquals(0, pool.getOpenFiles());
+    }
+
+    @Test
+    public void testInvalidateWhileCreating() throws Exception {
+        final GranuleReaderPool pool = new GranuleReaderPool(10, 2, 60000);
+        // invalidates the granule while the pool is opening a new reader for it
+        ImageInputStreamSpi invalidatingSpi = new ImageInputStreamSpi() {
+
+            @Override
+            public ImageInputStream createInputStreamInstance(Object input, boolean useCache,
+                    File cacheDir) throws IOException {
+                pool.invalidate(url);
+                return streamSpi.createInputStreamInstance(input, useCache, cacheDir);
+            }
+
+            @Override
+            public String getDescription(Locale locale) {
+                return streamSpi.getDescription(locale);
+            }
+        };
+        PooledReader reader = pool.acquire(url, invalidatingSpi, readerSpi);
+        assertNotNull(reader);
+        assertEquals(1, pool.getOpenFiles());
+
+        // the reader is closed when given back, instead of being pooled
+        pool.release(reader);
+        assertEquals(0, pool.getIdleReaders());
+        assertEquals(0, pool.getOpenFiles());
+    }
+
+    @Test
+    public void testInvalidateGranuleDescriptor() throws Exception {
+        File directory = new File(TestData.file(this, "."), "pool-invalidate");
+        FileUtils.deleteQuietly(directory);
+        directory.mkdirs();
+        try {
+            File granule = new File(directory, "granule.tif");
+            FileUtils.copyFile(TestData.file(this, "/overview/0/D220161A.tif"), granule);
+            URL granuleUrl = DataUtilities.fileToURL(granule);
+
+            // the descriptor leaves a reader in the shared pool after parsing the granule
+            GranuleReaderPool pool = GranuleReaderPool.getInstance();
+            ReferencedEnvelope bbox = new ReferencedEnvelope(12.139578206197234,
+                    15.036279855058655, 40.5313698832181, 42.5511689138571,
+                    DefaultGeographicCRS.WGS84);
+            GranuleDescriptor descriptor = new GranuleDescriptor(granule.getAbsolutePath(), bbox,
+                    readerSpi, (MultiLevelROI) null);
+            assertNotNull(descriptor.getLevel(0));
+            int idle = pool.getIdleReaders();
+            assertTrue(idle > 0);
+            PooledReader pooled = pool.acquire(granuleUrl, descriptor.cachedStreamSPI, readerSpi);
+            assertEquals(idle - 1, pool.getIdleReaders());
+            pool.release(pooled);
+
+            // once invalidated, the granule file is no longer held open
+            pool.invalidate(DataUtilities.fileToURL(directory));
+            assertEquals(idle - 1, pool.getIdleReaders());
+            assertTrue(granule.delete());
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.visitor.UniqueVisitor;
+import org.geotools.gce.imagemosaic.PathType;
+import org.geotools.gce.imagemosaic.Utils;
+import org.geotools.geometry.jts.JTS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.sort.SortOrder;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class PackedRTreeGranuleCatalogTest {
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    File directory;
+
+    File shapefile;
+
+    Properties params;
+
+    List<GranuleCatalog> catalogs = new ArrayList<GranuleCatalog>();
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new File("./target/packed-index");
+        FileUtils.deleteQuietly(directory);
+        assertTrue(directory.mkdirs());
+        shapefile = new File(directory, "granules.shp");
+
+        // a 10x10 grid of granules, with 5 times, 4 elevations and 3 bands
+        SimpleFeatureType type = DataUtilities.createType("granules",
+                "the_geom:Polygon,location:String,time:java.util.Date,elevation:Double,band:Integer");
+        ShapefileDataStore store = new ShapefileDataStore(DataUtilities.fileToURL(shapefile));
+        try {
+            store.createSchema(type);
+            FeatureWriter<SimpleFeatureType, SimpleFeature> writer = store
+                    .getFeatureWriterAppend(Transaction.AUTO_COMMIT);
+            try {
+                for (int i = 0; i < 100; i++) {
+                    double x = (i % 10) * 10, y = (i / 10) * 10;
+                    SimpleFeature feature = writer.next();
+                    feature.setDefaultGeometry(JTS.toGeometry(new Envelope(x, x + 10, y, y + 10)));
+                    feature.setAttribute("location", "granule_" + i + ".tif");
+                    feature.setAttribute("time", new Date((i % 5) * 86400000L));
+                    feature.setAttribute("elevation", i % 7 == 0 ? null : (double) (i % 4) * 10);
+                    feature.setAttribute("band", i % 3);
+                    writer.write();
+                }
+            } finally {
+                writer.close();
+            }
+        } finally {
+            store.dispose();
+        }
+
+        params = new Properties();
+        params.put(Utils.Prop.PATH_TYPE, PathType.RELATIVE);
+        params.put(Utils.Prop.LOCATION_ATTRIBUTE, "location");
+        params.put(Utils.Prop.PARENT_LOCATION, DataUtilities.fileToURL(directory).toString());
+        params.put(Utils.Prop.HETEROGENEOUS, false);
+        params.put(Utils.Prop.WRAP_STORE, false);
+        params.put(ShapefileDataStoreFactory.URLP.key, DataUtilities.fileToURL(shapefile));
+    }
+
+    @After
+    public void tearDown() {
+        for (GranuleCatalog catalog : catalogs) {
+            catalog.dispose();
+        }
+        FileUtils.deleteQuietly(directory);
+    }
+
+    private PackedRTreeGranuleCatalog createPacked() {
+        PackedRTreeGranuleCatalog catalog = new PackedRTreeGranuleCatalog(params,
+                Utils.SHAPE_SPI, null);
+        catalogs.add(catalog);
+        return catalog;
+    }
+
+    private GTDataStoreGranuleCatalog createPlain() {
+        GTDataStoreGranuleCatalog catalog = new GTDataStoreGranuleCatalog(params, false,
+                Utils.SHAPE_SPI, null);
+        catalogs.add(catalog);
+        return catalog;
+    }
+
+    @Test
+    public void testQueriesMatchStore() throws Exception {
+        GranuleCatalog plain = createPlain();
+        GranuleCatalog packed = createPacked();
+
+        UniqueVisitor times = new UniqueVisitor("time");
+        plain.computeAggregateFunction(new Query("granules"), times);
+        Date time = (Date) new TreeSet<Object>(times.getUnique()).last();
+
+        Filter[] filters = new Filter[] { Filter.INCLUDE, Filter.EXCLUDE,
+                FF.bbox("the_geom", 5, 5, 25, 25, null),
+                FF.equals(FF.property("time"), FF.literal(time)),
+                FF.between(FF.property("elevation"), FF.literal(10), FF.literal(20)),
+                FF.greater(FF.property("elevation"), FF.literal(10)),
+                FF.less(FF.literal(20), FF.property("elevation")),
+                FF.lessOrEqual(FF.property("time"), FF.literal(time)),
+                FF.and(FF.bbox("the_geom", 0, 0, 50, 50, null),
+                        FF.equals(FF.property("band"), FF.literal(1))),
+                FF.or(FF.equals(FF.property("band"), FF.literal(0)),
+                        FF.less(FF.property("elevation"), FF.literal(10))),
+                FF.or(FF.bbox("the_geom", 0, 0, 5, 5, null),
+                        FF.bbox("the_geom", 85, 85, 95, 95, null)),
+                FF.equals(FF.property("location"), FF.literal("granule_5.tif")),
+                FF.like(FF.property("location"), "granule_1*"),
+                FF.not(FF.equals(FF.property("band"), FF.literal(1))),
+                FF.isNull(FF.property("elevation")) };
+        for (Filter filter : filters) {
+            Query query = new Query("granules", filter);
+            Set<String> expected = getIds(plain, query);
+            assertEquals(filter.toString(), expected, getIds(packed, query));
+            assertEquals(filter.toString(), expected.size(), packed.getGranulesCount(query));
+        }
+        assertTrue(new File(directory, "granules.grx").exists());
+        assertTrue(new File(directory, "granules.gcx").exists());
+
+        // aggregates
+        UniqueVisitor packedTimes = new UniqueVisitor("time");
+        packed.computeAggregateFunction(new Query("granules"), packedTimes);
+        assertEquals(times.getUnique(), packedTimes.getUnique());
+
+        // sorting and paging
+        Query query = new Query("granules", FF.and(
+                FF.greater(FF.property("band"), FF.literal(0)),
+                FF.not(FF.isNull(FF.property("elevation")))));
+        query.setSortBy(new org.opengis.filter.sort.SortBy[] {
+                FF.sort("elevation", SortOrder.DESCENDING), FF.sort("location",
+                        SortOrder.ASCENDING) });
+        query.setMaxFeatures(10);
+        assertEquals(getLocations(plain, query), getLocations(packed, query));
+        query.setMaxFeatures(1);
+        assertEquals(getLocations(plain, query), getLocations(packed, query));
+        query.setMaxFeatures(Query.DEFAULT_MAX);
+        assertEquals(getLocations(plain, query), getLocations(packed, query));
+        query.setFilter(Filter.INCLUDE);
+        query.setSortBy(new org.opengis.filter.sort.SortBy[] {
+                FF.sort("band", SortOrder.ASCENDING), FF.sort("location", SortOrder.DESCENDING) });
+        query.setMaxFeatures(15);
+        assertEquals(getLocations(plain, query), getLocations(packed, query));
+    }
+
+    @Test
+    public void testIndexReused() throws Exception {
+        GranuleCatalog packed = createPacked();
+        Query query = new Query("granules", FF.equals(FF.property("band"), FF.literal(1)));
+        assertEquals(33, packed.getGranulesCount(query));
+        packed.dispose();
+        catalogs.remove(packed);
+
+        // a new catalog picks up the index on disk
+        File columns = new File(directory, "granules.gcx");
+        long stamp = shapefile.lastModified() - 100000;
+        assertTrue(columns.setLastModified(stamp));
+        packed = createPacked();
+        assertEquals(33, packed.getGranulesCount(query));
+        assertEquals(stamp, columns.lastModified());
+
+        // unless the shapefile has been modified in the meantime
+        packed.dispose();
+        catalogs.remove(packed);
+        assertTrue(shapefile.setLastModified(shapefile.lastModified() + 10000));
+        packed = createPacked();
+        assertEquals(33, packed.getGranulesCount(query));
+        assertFalse(stamp == columns.lastModified());
+    }
+
+    @Test
+    public void testRemoveInvalidates() throws Exception {
+        GranuleCatalog packed = createPacked();
+        Query query = new Query("granules", FF.equals(FF.property("band"), FF.literal(1)));
+        assertEquals(33, packed.getGranulesCount(query));
+        assertEquals(100, packed.getGranulesCount(new Query("granules")));
+
+        assertEquals(33, packed.removeGranules(query));
+        assertEquals(0, packed.getGranulesCount(query));
+        assertEquals(67, packed.getGranulesCount(new Query("granules")));
+    }
+
+    private Set<String> getIds(GranuleCatalog catalog, Query query) throws Exception {
+        Set<String> ids = new TreeSet<String>();
+        SimpleFeatureIterator it = catalog.getGranules(query).features();
+        try {
+            while (it.hasNext()) {
+                SimpleFeature feature = it.next();
+                assertNotNull(feature.getDefaultGeometry());
+                ids.add(feature.getID());
+            }
+        } finally {
+            it.close();
+        }
+        return ids;
+    }
+
+    private List<String> getLocations(GranuleCatalog catalog, Query query) throws Exception {
+        List<String> locations = new ArrayList<String>();
+        SimpleFeatureIterator it = catalog.getGranules(query).features();
+        try {
+            while (it.hasNext()) {
+                locations.add((String) it.next().getAttribute("location"));
+            }
+        } finally {
+            it.close();
+        }
+        return locations;
+    }
+}
@@ -425,6 +425,31 @@ public class H2Dialect extends SQLDialect {
         //return JTS.geometryFromBytes( bytes );
     }
 
+    @Override
+    public boolean isRawGeometryDecodingSupported() {
+        return true;
+    }
+
+    @Override
+    public Object readRawGeometryValue(GeometryDescriptor descriptor, ResultSet rs, int column,
+            Connection cx) throws IOException, SQLException {
+        return rs.getBytes(column);
+    }
+
+    @Override
+    public Geometry decodeRawGeometryValue(GeometryDescriptor descriptor, Object raw,
+            GeometryFactory factory) throws IOException {
+        if (raw == null) {
+            return null;
+        }
+
+        try {
+            return new WKBReader(factory).read((byte[]) raw);
+        } catch (ParseException e) {
+            throw (IOException) new IOException().initCause(e);
+        }
+    }
+
     public void encodePrimaryKey(String column, StringBuffer sql) {
         encodeColumnName(null, column, sql);
         sql.append(" int AUTO_INCREMENT(1) PRIMARY KEY");
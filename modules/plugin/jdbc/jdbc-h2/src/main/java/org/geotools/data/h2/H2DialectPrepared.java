@@ -203,6 +203,23 @@ public class H2DialectPrepared extends PreparedStatementSQLDialect {
             throws IOException, SQLException {
         return delegate.decodeGeometryValue(descriptor, rs, column, factory, cx);
     }
+
+    @Override
+    public boolean isRawGeometryDecodingSupported() {
+        return delegate.isRawGeometryDecodingSupported();
+    }
+
+    @Override
+    public Object readRawGeometryValue(GeometryDescriptor descriptor, ResultSet rs, int column,
+            Connection cx) throws IOException, SQLException {
+        return delegate.readRawGeometryValue(descriptor, rs, column, cx);
+    }
+
+    @Override
+    public Geometry decodeRawGeometryValue(GeometryDescriptor descriptor, Object raw,
+            GeometryFactory factory) throws IOException {
+        return delegate.decodeRawGeometryValue(descriptor, raw, factory);
+    }
     
     @Override
     public boolean isLimitOffsetSupported() {
@@ -0,0 +1,382 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.geotools.factory.Hints;
+import org.geotools.geometry.jts.CurvedGeometry;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.util.Converters;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.type.AttributeDescriptor;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.io.ByteOrderValues;
+import com.vividsolutions.jts.io.OutputStreamOutStream;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Encodes features in the PostgreSQL binary COPY format, see the <a
+ * href="https://www.postgresql.org/docs/current/static/sql-copy.html">COPY</a> documentation.
+ * Geometries are encoded as EWKB, the other values in the binary representation of their
+ * column native type, which must be one of the types returned by {@link #isSupported(String)}.
+ */
+class BinaryCopyWriter {
+
+    static final byte[] SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r',
+            '\n', 0 };
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Microseconds between the Unix and the PostgreSQL (2000-01-01) epochs */
+    static final long EPOCH_OFFSET_MICROS = 946684800000000L;
+
+    /** Days between the Unix and the PostgreSQL (2000-01-01) epochs */
+    static final long EPOCH_OFFSET_DAYS = 10957;
+
+    static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    static final int EWKB_SRID_FLAG = 0x20000000;
+
+    enum ColumnType {
+        BOOLEAN(Boolean.class), SHORT(Short.class), INTEGER(Integer.class), LONG(Long.class),
+        FLOAT(Float.class), DOUBLE(Double.class), NUMERIC(BigDecimal.class), TEXT(String.class),
+        BYTES(byte[].class), DATE(java.sql.Date.class), TIMESTAMP(Timestamp.class),
+        TIMESTAMPTZ(Timestamp.class), GEOMETRY(Geometry.class);
+
+        final Class<?> binding;
+
+        ColumnType(Class<?> binding) {
+            this.binding = binding;
+        }
+    }
+
+    static final Map<String, ColumnType> TYPES = new HashMap<String, ColumnType>();
+    static {
+        TYPES.put("bool", ColumnType.BOOLEAN);
+        TYPES.put("int2", ColumnType.SHORT);
+        TYPES.put("smallserial", ColumnType.SHORT);
+        TYPES.put("int4", ColumnType.INTEGER);
+        TYPES.put("serial", ColumnType.INTEGER);
+        TYPES.put("int8", ColumnType.LONG);
+        TYPES.put("bigserial", ColumnType.LONG);
+        TYPES.put("float4", ColumnType.FLOAT);
+        TYPES.put("float8", ColumnType.DOUBLE);
+        TYPES.put("numeric", ColumnType.NUMERIC);
+        TYPES.put("text", ColumnType.TEXT);
+        TYPES.put("varchar", ColumnType.TEXT);
+        TYPES.put("bpchar", ColumnType.TEXT);
+        TYPES.put("bytea", ColumnType.BYTES);
+        TYPES.put("date", ColumnType.DATE);
+        TYPES.put("timestamp", ColumnType.TIMESTAMP);
+        TYPES.put("timestamptz", ColumnType.TIMESTAMPTZ);
+        TYPES.put("geometry", ColumnType.GEOMETRY);
+        TYPES.put("geography", ColumnType.GEOMETRY);
+    }
+
+    /**
+     * Returns true if values of the specified native type can be written by this class
+     */
+    static boolean isSupported(String nativeTypeName) {
+        return nativeTypeName != null && TYPES.containsKey(nativeTypeName.toLowerCase());
+    }
+
+    /**
+     * Returns true if the attribute has a native timestamp type, whose binary representation
+     * depends on the server integer_datetimes setting
+     */
+    static boolean isTimestamp(AttributeDescriptor ad) {
+        ColumnType type = getColumnType(ad);
+        return type == ColumnType.TIMESTAMP || type == ColumnType.TIMESTAMPTZ;
+    }
+
+    static ColumnType getColumnType(AttributeDescriptor ad) {
+        String typeName = (String) ad.getUserData().get(JDBCDataStore.JDBC_NATIVE_TYPENAME);
+        return typeName == null ? null : TYPES.get(typeName.toLowerCase());
+    }
+
+    final DataOutputStream out;
+
+    final AttributeDescriptor[] attributes;
+
+    final ColumnType[] types;
+
+    final boolean integerDateTimes;
+
+    final ByteArrayOutputStream wkb = new ByteArrayOutputStream();
+
+    int count;
+
+    /**
+     * @param out The COPY stream
+     * @param attributes The attributes to be written, in the order they appear in the COPY
+     *        statement
+     * @param integerDateTimes The server integer_datetimes setting
+     */
+    BinaryCopyWriter(OutputStream out, List<AttributeDescriptor> attributes,
+            boolean integerDateTimes) {
+        this.out = new DataOutputStream(out);
+        this.attributes = attributes.toArray(new AttributeDescriptor[attributes.size()]);
+        this.types = new ColumnType[this.attributes.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = getColumnType(this.attributes[i]);
+            if (types[i] == null) {
+                throw new IllegalArgumentException("Attribute "
+                        + this.attributes[i].getLocalName()
+                        + " has a native type that cannot be written in binary COPY format");
+            }
+        }
+        this.integerDateTimes = integerDateTimes;
+    }
+
+    void writeHeader() throws IOException {
+        out.write(SIGNATURE);
+        // flags, header extension length
+        out.writeInt(0);
+        out.writeInt(0);
+    }
+
+    void writeTrailer() throws IOException {
+        out.writeShort(-1);
+        out.flush();
+    }
+
+    /**
+     * Writes the feature as a tuple, the values are looked up by attribute name
+     */
+    void write(SimpleFeature feature) throws IOException {
+        out.writeShort(attributes.length);
+        for (int i = 0; i < attributes.length; i++) {
+            String name = attributes[i].getLocalName();
+            Object value = feature.getAttribute(name);
+            if (value == null) {
+                out.writeInt(-1);
+                continue;
+            }
+            ColumnType type = types[i];
+            Object converted = Converters.convert(value, type.binding);
+            if (converted == null) {
+                throw new IOException("Cannot convert value " + value + " of attribute " + name
+                        + " to " + type.binding.getSimpleName());
+            }
+            writeValue(attributes[i], type, converted);
+        }
+        count++;
+    }
+
+    /**
+     * The number of features written so far
+     */
+    int getCount() {
+        return count;
+    }
+
+    private void writeValue(AttributeDescriptor ad, ColumnType type, Object value)
+            throws IOException {
+        switch (type) {
+        case BOOLEAN:
+            out.writeInt(1);
+            out.writeByte(((Boolean) value) ? 1 : 0);
+            break;
+        case SHORT:
+            out.writeInt(2);
+            out.writeShort((Short) value);
+            break;
+        case INTEGER:
+            out.writeInt(4);
+            out.writeInt((Integer) value);
+            break;
+        case LONG:
+            out.writeInt(8);
+            out.writeLong((Long) value);
+            break;
+        case FLOAT:
+            out.writeInt(4);
+            out.writeFloat((Float) value);
+            break;
+        case DOUBLE:
+            out.writeInt(8);
+            out.writeDouble((Double) value);
+            break;
+        case NUMERIC:
+            writeNumeric((BigDecimal) value);
+            break;
+        case TEXT:
+            writeBytes(((String) value).getBytes(UTF8));
+            break;
+        case BYTES:
+            writeBytes((byte[]) value);
+            break;
+        case DATE:
+            Date date = (Date) value;
+            long local = date.getTime() + TimeZone.getDefault().getOffset(date.getTime());
+            out.writeInt(4);
+            out.writeInt((int) (Math.floorDiv(local, MILLIS_PER_DAY) - EPOCH_OFFSET_DAYS));
+            break;
+        case TIMESTAMP:
+        case TIMESTAMPTZ:
+            writeTimestamp((Timestamp) value, type == ColumnType.TIMESTAMP);
+            break;
+        case GEOMETRY:
+            writeGeometry(ad, (Geometry) value);
+            break;
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Timestamps without time zone are written as wall clock time in the default time zone,
+     * the same way the JDBC driver binds them
+     */
+    private void writeTimestamp(Timestamp ts, boolean local) throws IOException {
+        long millis = ts.getTime();
+        if (local) {
+            millis += TimeZone.getDefault().getOffset(millis);
+        }
+        long micros = Math.floorDiv(millis, 1000) * 1000000 + ts.getNanos() / 1000
+                - EPOCH_OFFSET_MICROS;
+        out.writeInt(8);
+        if (integerDateTimes) {
+            out.writeLong(micros);
+        } else {
+            out.writeDouble(micros / 1000000d);
+        }
+    }
+
+    /**
+     * Writes the value as a sequence of base 10000 digits, the weight being the exponent of the
+     * first one
+     */
+    void writeNumeric(BigDecimal value) throws IOException {
+        if (value.scale() < 0) {
+            value = value.setScale(0);
+        }
+        int scale = value.scale();
+        String digits = value.unscaledValue().abs().toString();
+        int intLength = digits.length() - scale;
+        String intPart, fracPart;
+        if (intLength > 0) {
+            intPart = digits.substring(0, intLength);
+            fracPart = digits.substring(intLength);
+        } else {
+            intPart = "";
+            fracPart = zeros(-intLength) + digits;
+        }
+        // align both parts to groups of four digits around the decimal point
+        intPart = zeros((4 - intPart.length() % 4) % 4) + intPart;
+        fracPart = fracPart + zeros((4 - fracPart.length() % 4) % 4);
+        String all = intPart + fracPart;
+        int weight = intPart.length() / 4 - 1;
+        short[] groups = new short[all.length() / 4];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = Short.parseShort(all.substring(i * 4, i * 4 + 4));
+        }
+
+        // strip the leading and trailing zero groups
+        int start = 0;
+        while (start < groups.length && groups[start] == 0) {
+            start++;
+            weight--;
+        }
+        int end = groups.length;
+        while (end > start && groups[end - 1] == 0) {
+            end--;
+        }
+        if (start == end) {
+            weight = 0;
+        }
+
+        out.writeInt(8 + 2 * (end - start));
+        out.writeShort(end - start);
+        out.writeShort(weight);
+        out.writeShort(value.signum() < 0 ? 0x4000 : 0);
+        out.writeShort(scale);
+        for (int i = start; i < end; i++) {
+            out.writeShort(groups[i]);
+        }
+    }
+
+    /**
+     * Writes the geometry as EWKB, the server decodes it with the same code used for the
+     * geometry binary input, which accepts both WKB and EWKB
+     */
+    private void writeGeometry(AttributeDescriptor ad, Geometry g) throws IOException {
+        if (g instanceof CurvedGeometry) {
+            throw new IOException("Curved geometries cannot be bulk loaded, attribute "
+                    + ad.getLocalName());
+        }
+        if (g instanceof LinearRing) {
+            // postgis does not handle linear rings, convert to just a line string
+            g = g.getFactory().createLineString(((LinearRing) g).getCoordinateSequence());
+        }
+
+        int srid = -1;
+        Object nativeSrid = ad.getUserData().get(JDBCDataStore.JDBC_NATIVE_SRID);
+        if (nativeSrid instanceof Integer) {
+            srid = (Integer) nativeSrid;
+        }
+        if (srid <= 0) {
+            srid = g.getSRID();
+        }
+        int dimension = 2;
+        Object nativeDimension = ad.getUserData().get(Hints.COORDINATE_DIMENSION);
+        if (nativeDimension instanceof Integer) {
+            dimension = Math.min(3, Math.max(2, (Integer) nativeDimension));
+        }
+
+        // plain WKB from JTS, the srid is spliced right after the geometry type
+        wkb.reset();
+        new WKBWriter(dimension, ByteOrderValues.BIG_ENDIAN).write(g,
+                new OutputStreamOutStream(wkb));
+        byte[] bytes = wkb.toByteArray();
+        if (srid > 0) {
+            out.writeInt(bytes.length + 4);
+            out.writeByte(bytes[0]);
+            int type = ((bytes[1] & 0xFF) << 24) | ((bytes[2] & 0xFF) << 16)
+                    | ((bytes[3] & 0xFF) << 8) | (bytes[4] & 0xFF);
+            out.writeInt(type | EWKB_SRID_FLAG);
+            out.writeInt(srid);
+            out.write(bytes, 5, bytes.length - 5);
+        } else {
+            writeBytes(bytes);
+        }
+    }
+
+    private static String zeros(int n) {
+        char[] chars = new char[n];
+        Arrays.fill(chars, '0');
+        return new String(chars);
+    }
+}
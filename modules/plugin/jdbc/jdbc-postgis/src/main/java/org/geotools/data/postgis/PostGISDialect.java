@@ -36,7 +36,12 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 
+import org.geotools.data.Base64;
+import org.geotools.data.Transaction;
 import org.geotools.data.jdbc.FilterToSQL;
+import org.geotools.data.jdbc.datasource.DataSourceFinder;
+import org.geotools.data.jdbc.datasource.UnWrapper;
+import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.factory.Hints;
 import org.geotools.geometry.jts.CircularRing;
 import org.geotools.geometry.jts.CircularString;
@@ -47,6 +52,7 @@ import org.geotools.geometry.jts.CurvedRing;
 import org.geotools.geometry.jts.MultiCurve;
 import org.geotools.geometry.jts.MultiSurface;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.geometry.jts.TileGrid;
 import org.geotools.geometry.jts.WKTWriter2;
 import org.geotools.jdbc.BasicSQLDialect;
 import org.geotools.jdbc.ColumnMetadata;
@@ -57,6 +63,8 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
@@ -164,6 +172,11 @@ public class PostGISDialect extends BasicSQLDialect {
     
     static final Version PGSQL_V_9_1 = new Version("9.1");
 
+    /**
+     * Size of the buffer used to stream the bulk load data to the server
+     */
+    static final int COPY_BUFFER_SIZE = 64 * 1024;
+
     public PostGISDialect(JDBCDataStore dataStore) {
         super(dataStore);
     }
@@ -278,6 +291,26 @@ public class PostGISDialect extends BasicSQLDialect {
         return (Geometry) reader.read(rs, column);
     }
 
+    @Override
+    public boolean isRawGeometryDecodingSupported() {
+        return true;
+    }
+
+    @Override
+    public Object readRawGeometryValue(GeometryDescriptor descriptor, ResultSet rs, int column,
+            Connection cx) throws IOException, SQLException {
+        return rs.getBytes(column);
+    }
+
+    @Override
+    public Geometry decodeRawGeometryValue(GeometryDescriptor descriptor, Object raw,
+            GeometryFactory factory) throws IOException {
+        // the WKB readers are thread local, so this can be called by many threads in parallel
+        WKBAttributeIO reader = getWKBReader(factory);
+
+        return (Geometry) reader.read((byte[]) raw);
+    }
+
     private WKBAttributeIO getWKBReader(GeometryFactory factory) {
         WKBAttributeIO reader = wkbReader.get();
         if(reader == null) {
@@ -289,6 +322,113 @@ public class PostGISDialect extends BasicSQLDialect {
         return reader;
     }
 
+    @Override
+    public boolean isBulkLoadSupported(SimpleFeatureType featureType,
+            List<AttributeDescriptor> attributes) {
+        if (attributes.isEmpty()) {
+            return false;
+        }
+        for (AttributeDescriptor ad : attributes) {
+            if (!BinaryCopyWriter.isSupported((String) ad.getUserData().get(
+                    JDBCDataStore.JDBC_NATIVE_TYPENAME))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Streams the features to the table with a <code>COPY ... FROM STDIN WITH BINARY</code>
+     * statement, geometries are sent as EWKB
+     */
+    @Override
+    public int bulkLoad(SimpleFeatureType featureType, String table,
+            List<AttributeDescriptor> attributes, SimpleFeatureIterator features, Connection cx)
+            throws IOException, SQLException {
+        StringBuffer sql = new StringBuffer("COPY ");
+        sql.append(table).append(" (");
+        boolean timestamps = false;
+        for (AttributeDescriptor ad : attributes) {
+            encodeColumnName(null, ad.getLocalName(), sql);
+            sql.append(",");
+            timestamps |= BinaryCopyWriter.isTimestamp(ad);
+        }
+        sql.setLength(sql.length() - 1);
+        sql.append(") FROM STDIN WITH BINARY");
+        boolean integerDateTimes = !timestamps || isIntegerDateTimes(cx);
+
+        dataStore.getLogger().fine(sql.toString());
+        PGCopyOutputStream os = new PGCopyOutputStream(unwrapConnection(cx), sql.toString(),
+                COPY_BUFFER_SIZE);
+        try {
+            BinaryCopyWriter writer = new BinaryCopyWriter(os, attributes, integerDateTimes);
+            writer.writeHeader();
+            while (features.hasNext()) {
+                writer.write(features.next());
+            }
+            writer.writeTrailer();
+            os.endCopy();
+            return writer.getCount();
+        } finally {
+            if (os.isActive()) {
+                // something went wrong, abort the copy and leave the connection usable
+                try {
+                    os.cancelCopy();
+                } catch (SQLException e) {
+                    dataStore.getLogger().log(Level.FINE, "Failed to cancel the COPY operation", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the server uses 64 bit integers for timestamps (the default since
+     * PostgreSQL 8.4), false if it uses floating point values
+     */
+    boolean isIntegerDateTimes(Connection cx) throws SQLException {
+        Statement st = cx.createStatement();
+        try {
+            ResultSet rs = st.executeQuery("SHOW integer_datetimes");
+            try {
+                return !rs.next() || "on".equalsIgnoreCase(rs.getString(1));
+            } finally {
+                dataStore.closeSafe(rs);
+            }
+        } finally {
+            dataStore.closeSafe(st);
+        }
+    }
+
+    /**
+     * Gets to the native connection, which might be wrapped by the connection pool and by the
+     * store itself
+     */
+    PGConnection unwrapConnection(Connection cx) throws SQLException {
+        if (cx instanceof PGConnection) {
+            return (PGConnection) cx;
+        }
+        if (cx.isWrapperFor(PGConnection.class)) {
+            return cx.unwrap(PGConnection.class);
+        }
+        try {
+            Connection current = cx;
+            UnWrapper unwrapper;
+            while ((unwrapper = DataSourceFinder.getUnWrapper(current)) != null) {
+                Connection unwrapped = unwrapper.unwrap(current);
+                if (unwrapped instanceof PGConnection) {
+                    return (PGConnection) unwrapped;
+                } else if (unwrapped == null || unwrapped == current) {
+                    break;
+                }
+                current = unwrapped;
+            }
+        } catch (IOException e) {
+            dataStore.getLogger().log(Level.FINE, "Failed to look up a connection unwrapper", e);
+        }
+        throw new SQLException("Could not obtain the native PostgreSQL connection from " + cx
+                + ", the bulk load requires it");
+    }
+
     @Override
     public void encodeGeometryColumn(GeometryDescriptor gatt, String prefix, int srid,
             StringBuffer sql) {
@@ -362,6 +502,62 @@ public class PostGISDialect extends BasicSQLDialect {
         }
     }
 
+    /**
+     * Clips the geometry to the tile (ST_ClipByBox2D), moves it to the grid space and snaps it to
+     * the grid cells, to finally encode it as TWKB, which in grid space is made of small
+     * integer deltas, and thus very compact. Requires PostGIS 2.2 or later.
+     */
+    @Override
+    public void encodeGeometryColumnTiled(GeometryDescriptor gatt, String prefix, int srid,
+            StringBuffer sql, TileGrid grid) {
+        Envelope clip = grid.getClipEnvelope();
+        Envelope bounds = grid.getBounds();
+        double resx = grid.getResolutionX();
+        double resy = grid.getResolutionY();
+
+        sql.append("encode(ST_AsTWKB(ST_SnapToGrid(ST_Affine(ST_ClipByBox2D(");
+        sql.append(getForce2DFunction()).append("(");
+        boolean geography = "geography".equals(gatt.getUserData().get(
+                JDBCDataStore.JDBC_NATIVE_TYPENAME));
+        if (geography) {
+            encodeColumnName(prefix, gatt.getLocalName(), sql);
+            sql.append("::geometry");
+        } else if (NON_CURVED_GEOMETRY_CLASSES.contains(gatt.getType().getBinding())) {
+            encodeColumnName(prefix, gatt.getLocalName(), sql);
+        } else {
+            // we can have curves mixed in
+            sql.append("ST_CurveToLine(");
+            encodeColumnName(prefix, gatt.getLocalName(), sql);
+            sql.append(")");
+        }
+        sql.append("), ST_MakeEnvelope(").append(clip.getMinX()).append(", ");
+        sql.append(clip.getMinY()).append(", ").append(clip.getMaxX()).append(", ");
+        sql.append(clip.getMaxY()).append(")::box2d), ");
+        sql.append(1 / resx).append(", 0, 0, ").append(1 / resy).append(", ");
+        sql.append(-bounds.getMinX() / resx).append(", ").append(-bounds.getMinY() / resy);
+        sql.append("), 1), 0),'base64')");
+    }
+
+    @Override
+    public Geometry decodeTiledGeometryValue(GeometryDescriptor descriptor, ResultSet rs,
+            int column, TileGrid grid, GeometryFactory factory, Connection cx)
+            throws IOException, SQLException {
+        return decodeRawTiledGeometryValue(descriptor, rs.getBytes(column), grid, factory);
+    }
+
+    @Override
+    public Geometry decodeRawTiledGeometryValue(GeometryDescriptor descriptor, Object raw,
+            TileGrid grid, GeometryFactory factory) throws IOException {
+        if (raw == null) {
+            return null;
+        }
+        TWKBReader reader = new TWKBReader(factory);
+        Envelope bounds = grid.getBounds();
+        reader.setTransform(bounds.getMinX(), bounds.getMinY(), grid.getResolutionX(),
+                grid.getResolutionY());
+        return reader.read(Base64.decode((byte[]) raw));
+    }
+
     @Override
     public void encodeGeometryEnvelope(String tableName, String geometryColumn,
             StringBuffer sql) {
@@ -1231,6 +1427,30 @@ public class PostGISDialect extends BasicSQLDialect {
         if(isSimplifyEnabled()) {
             hints.add(Hints.GEOMETRY_SIMPLIFICATION);
         }
+        // ST_AsTWKB and ST_ClipByBox2D are available since PostGIS 2.2
+        Version postgisVersion = lookupVersion();
+        if (postgisVersion != null && postgisVersion.compareTo(V_2_2_0) >= 0) {
+            hints.add(Hints.GEOMETRY_TILE_GRID);
+        }
+    }
+
+    /**
+     * Returns the PostGIS version, looking it up with a new connection if no connection has been
+     * initialized yet, or null if it cannot be determined
+     */
+    private Version lookupVersion() {
+        if (version == null) {
+            Connection cx = null;
+            try {
+                cx = dataStore.getConnection(Transaction.AUTO_COMMIT);
+                getVersion(cx);
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Failed to look up the PostGIS version", e);
+            } finally {
+                dataStore.closeSafe(cx);
+            }
+        }
+        return version;
     }
 
     /**
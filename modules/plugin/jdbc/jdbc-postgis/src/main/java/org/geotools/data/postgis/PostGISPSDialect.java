@@ -22,14 +22,19 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.factory.Hints;
+import org.geotools.geometry.jts.TileGrid;
 import org.geotools.jdbc.ColumnMetadata;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.PreparedFilterToSQL;
 import org.geotools.jdbc.PreparedStatementSQLDialect;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
 
 import com.vividsolutions.jts.geom.Envelope;
@@ -84,6 +89,66 @@ public class PostGISPSDialect extends PreparedStatementSQLDialect {
                 .decodeGeometryValue(descriptor, rs, column, factory, cx);
     }
 
+    @Override
+    public boolean isRawGeometryDecodingSupported() {
+        return delegate.isRawGeometryDecodingSupported();
+    }
+
+    @Override
+    public Object readRawGeometryValue(GeometryDescriptor descriptor, ResultSet rs, int column,
+            Connection cx) throws IOException, SQLException {
+        return delegate.readRawGeometryValue(descriptor, rs, column, cx);
+    }
+
+    @Override
+    public Geometry decodeRawGeometryValue(GeometryDescriptor descriptor, Object raw,
+            GeometryFactory factory) throws IOException {
+        return delegate.decodeRawGeometryValue(descriptor, raw, factory);
+    }
+
+    @Override
+    public void encodeGeometryColumnSimplified(GeometryDescriptor gatt, String prefix, int srid,
+            StringBuffer sql, Double distance) {
+        delegate.encodeGeometryColumnSimplified(gatt, prefix, srid, sql, distance);
+    }
+
+    @Override
+    protected void addSupportedHints(Set<Hints.Key> hints) {
+        delegate.addSupportedHints(hints);
+    }
+
+    @Override
+    public void encodeGeometryColumnTiled(GeometryDescriptor gatt, String prefix, int srid,
+            StringBuffer sql, TileGrid grid) {
+        delegate.encodeGeometryColumnTiled(gatt, prefix, srid, sql, grid);
+    }
+
+    @Override
+    public Geometry decodeTiledGeometryValue(GeometryDescriptor descriptor, ResultSet rs,
+            int column, TileGrid grid, GeometryFactory factory, Connection cx)
+            throws IOException, SQLException {
+        return delegate.decodeTiledGeometryValue(descriptor, rs, column, grid, factory, cx);
+    }
+
+    @Override
+    public Geometry decodeRawTiledGeometryValue(GeometryDescriptor descriptor, Object raw,
+            TileGrid grid, GeometryFactory factory) throws IOException {
+        return delegate.decodeRawTiledGeometryValue(descriptor, raw, grid, factory);
+    }
+
+    @Override
+    public boolean isBulkLoadSupported(SimpleFeatureType featureType,
+            List<AttributeDescriptor> attributes) {
+        return delegate.isBulkLoadSupported(featureType, attributes);
+    }
+
+    @Override
+    public int bulkLoad(SimpleFeatureType featureType, String table,
+            List<AttributeDescriptor> attributes, SimpleFeatureIterator features, Connection cx)
+            throws IOException, SQLException {
+        return delegate.bulkLoad(featureType, table, attributes, features, cx);
+    }
+
     @Override
     public void encodeGeometryColumn(GeometryDescriptor gatt, String prefix, int srid,
             StringBuffer sql) {
@@ -0,0 +1,301 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis;
+
+import java.io.IOException;
+
+import org.geotools.data.DataSourceException;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Parses geometries in the <a href="https://github.com/TWKB/Specification">TWKB</a> format, as
+ * returned by PostGIS ST_AsTWKB. Only the x and y ordinates are retained.
+ * <p>
+ * The ordinates are mapped through an optional scale and offset, which allows to read
+ * geometries that have been moved to a grid space before encoding (e.g., a tile grid) back in
+ * their native space. The class is not thread safe.
+ */
+class TWKBReader {
+
+    static final int POINT = 1;
+
+    static final int LINESTRING = 2;
+
+    static final int POLYGON = 3;
+
+    static final int MULTIPOINT = 4;
+
+    static final int MULTILINESTRING = 5;
+
+    static final int MULTIPOLYGON = 6;
+
+    static final int GEOMETRYCOLLECTION = 7;
+
+    static final int BBOX_FLAG = 0x01;
+
+    static final int SIZE_FLAG = 0x02;
+
+    static final int IDLIST_FLAG = 0x04;
+
+    static final int EXTENDED_DIMS_FLAG = 0x08;
+
+    static final int EMPTY_FLAG = 0x10;
+
+    final GeometryFactory factory;
+
+    double offsetX = 0, offsetY = 0, scaleX = 1, scaleY = 1;
+
+    // parse state
+    byte[] bytes;
+
+    int position;
+
+    int dimensions;
+
+    double precisionScale;
+
+    /** The last decoded values, the ordinates are delta encoded across the whole geometry */
+    long[] last = new long[4];
+
+    TWKBReader(GeometryFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Sets up the mapping applied to the decoded ordinates:
+     * <code>x = offsetX + decodedX * scaleX</code> and
+     * <code>y = offsetY + decodedY * scaleY</code>
+     */
+    void setTransform(double offsetX, double offsetY, double scaleX, double scaleY) {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+    }
+
+    Geometry read(byte[] bytes) throws IOException {
+        this.bytes = bytes;
+        this.position = 0;
+        try {
+            return readGeometry();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new DataSourceException("Unexpected end of TWKB data", e);
+        } finally {
+            this.bytes = null;
+        }
+    }
+
+    private Geometry readGeometry() throws IOException {
+        int typeAndPrecision = bytes[position++] & 0xFF;
+        int type = typeAndPrecision & 0x0F;
+        int precision = unzigzag(typeAndPrecision >> 4);
+        precisionScale = Math.pow(10, -precision);
+
+        int metadata = bytes[position++] & 0xFF;
+        dimensions = 2;
+        if ((metadata & EXTENDED_DIMS_FLAG) != 0) {
+            int extended = bytes[position++] & 0xFF;
+            if ((extended & 0x01) != 0) {
+                dimensions++;
+            }
+            if ((extended & 0x02) != 0) {
+                dimensions++;
+            }
+        }
+        if ((metadata & SIZE_FLAG) != 0) {
+            readUnsignedVarInt();
+        }
+        if ((metadata & BBOX_FLAG) != 0) {
+            // min and delta for each dimension
+            for (int i = 0; i < dimensions * 2; i++) {
+                readVarLong();
+            }
+        }
+        for (int i = 0; i < last.length; i++) {
+            last[i] = 0;
+        }
+
+        boolean empty = (metadata & EMPTY_FLAG) != 0;
+        boolean idList = (metadata & IDLIST_FLAG) != 0;
+        switch (type) {
+        case POINT:
+            return empty ? factory.createPoint((CoordinateSequence) null) : readPoint();
+        case LINESTRING:
+            return empty ? factory.createLineString((CoordinateSequence) null) : readLineString();
+        case POLYGON:
+            return empty ? factory.createPolygon(null, null) : readPolygon();
+        case MULTIPOINT: {
+            Point[] points = new Point[empty ? 0 : readCount(idList)];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = readPoint();
+            }
+            return factory.createMultiPoint(points);
+        }
+        case MULTILINESTRING: {
+            LineString[] lines = new LineString[empty ? 0 : readCount(idList)];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = readLineString();
+            }
+            return factory.createMultiLineString(lines);
+        }
+        case MULTIPOLYGON: {
+            Polygon[] polygons = new Polygon[empty ? 0 : readCount(idList)];
+            for (int i = 0; i < polygons.length; i++) {
+                polygons[i] = readPolygon();
+            }
+            return factory.createMultiPolygon(polygons);
+        }
+        case GEOMETRYCOLLECTION: {
+            Geometry[] geometries = new Geometry[empty ? 0 : readCount(idList)];
+            for (int i = 0; i < geometries.length; i++) {
+                // each member is a full TWKB geometry, with its own header
+                geometries[i] = readGeometry();
+            }
+            return factory.createGeometryCollection(geometries);
+        }
+        default:
+            throw new DataSourceException("Unknown TWKB geometry type " + type);
+        }
+    }
+
+    /**
+     * Reads the number of members of a collection, skipping the eventual id list
+     */
+    private int readCount(boolean idList) {
+        int count = readUnsignedVarInt();
+        if (idList) {
+            for (int i = 0; i < count; i++) {
+                readVarLong();
+            }
+        }
+        return count;
+    }
+
+    private Point readPoint() {
+        return factory.createPoint(readCoordinates(1, 1));
+    }
+
+    private LineString readLineString() {
+        int count = readUnsignedVarInt();
+        // snapping might have collapsed the line to a single point
+        return factory.createLineString(readCoordinates(count, count == 1 ? 2 : count));
+    }
+
+    private Polygon readPolygon() {
+        int numRings = readUnsignedVarInt();
+        LinearRing shell = null;
+        LinearRing[] holes = new LinearRing[Math.max(0, numRings - 1)];
+        int numHoles = 0;
+        for (int i = 0; i < numRings; i++) {
+            LinearRing ring = readRing();
+            if (i == 0) {
+                shell = ring;
+            } else if (ring != null) {
+                holes[numHoles++] = ring;
+            }
+        }
+        if (shell == null) {
+            return factory.createPolygon(null, null);
+        }
+        if (numHoles < holes.length) {
+            LinearRing[] copy = new LinearRing[numHoles];
+            System.arraycopy(holes, 0, copy, 0, numHoles);
+            holes = copy;
+        }
+        return factory.createPolygon(shell, holes);
+    }
+
+    /**
+     * Reads a ring, closing it if necessary. Returns null if the ring has collapsed
+     */
+    private LinearRing readRing() {
+        int count = readUnsignedVarInt();
+        CoordinateSequence cs = readCoordinates(count, count);
+        boolean closed = count > 0
+                && cs.getOrdinate(0, 0) == cs.getOrdinate(count - 1, 0)
+                && cs.getOrdinate(0, 1) == cs.getOrdinate(count - 1, 1);
+        if ((closed ? count : count + 1) < 4) {
+            return null;
+        }
+        if (!closed) {
+            CoordinateSequence copy = factory.getCoordinateSequenceFactory().create(count + 1, 2);
+            for (int i = 0; i < count; i++) {
+                copy.setOrdinate(i, 0, cs.getOrdinate(i, 0));
+                copy.setOrdinate(i, 1, cs.getOrdinate(i, 1));
+            }
+            copy.setOrdinate(count, 0, cs.getOrdinate(0, 0));
+            copy.setOrdinate(count, 1, cs.getOrdinate(0, 1));
+            cs = copy;
+        }
+        return factory.createLinearRing(cs);
+    }
+
+    /**
+     * Reads count points into a sequence of the specified size. Extra positions are filled
+     * with the last point read
+     */
+    private CoordinateSequence readCoordinates(int count, int size) {
+        CoordinateSequence cs = factory.getCoordinateSequenceFactory().create(size, 2);
+        double x = 0, y = 0;
+        for (int i = 0; i < count; i++) {
+            for (int d = 0; d < dimensions; d++) {
+                last[d] += readVarLong();
+            }
+            x = offsetX + last[0] * precisionScale * scaleX;
+            y = offsetY + last[1] * precisionScale * scaleY;
+            cs.setOrdinate(i, 0, x);
+            cs.setOrdinate(i, 1, y);
+        }
+        for (int i = count; i < size; i++) {
+            cs.setOrdinate(i, 0, x);
+            cs.setOrdinate(i, 1, y);
+        }
+        return cs;
+    }
+
+    private int readUnsignedVarInt() {
+        return (int) readUnsignedVarLong();
+    }
+
+    private long readVarLong() {
+        long value = readUnsignedVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readUnsignedVarLong() {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = bytes[position++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -53,10 +53,15 @@ public class WKBAttributeIO {
     
     public WKBAttributeIO(GeometryFactory gf) {
         wkbr = new WKBReader(gf);
+        this.gf = gf;
     }
     
     public void setGeometryFactory(GeometryFactory gf) {
-        wkbr = new WKBReader(gf);
+        // this is called once per geometry read, avoid rebuilding the reader if not needed
+        if (gf != this.gf) {
+            wkbr = new WKBReader(gf);
+            this.gf = gf;
+        }
     }
 
     /**
@@ -114,6 +119,18 @@ public class WKBAttributeIO {
         }
     }
 
+    /**
+     * Decodes the base64 encoded WKB bytes read from the result set, as returned by
+     * {@link ResultSet#getBytes(int)}
+     * 
+     * @param bytes the raw value, can be null
+     */
+    public Object read(byte[] bytes) throws IOException {
+        if (bytes == null) // ie. its a null column -> return a null geometry!
+            return null;
+        return wkb2Geometry(Base64.decode(bytes));
+    }
+
     /**
      * @see org.geotools.data.jdbc.attributeio.AttributeIO#write(java.sql.PreparedStatement, int, java.lang.Object)
      */
@@ -0,0 +1,121 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.jdbc.JDBCDataStore;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.io.WKBReader;
+
+public class BinaryCopyWriterTest {
+
+    @Test
+    public void testNumeric() throws Exception {
+        // 123.45 -> digits 123, 4500 with weight 0
+        assertNumeric(new BigDecimal("123.45"), 2, 0, 0, 2, 123, 4500);
+        // 0.0001 -> single digit 1 with weight -1
+        assertNumeric(new BigDecimal("0.0001"), 1, -1, 0, 4, 1);
+        // 10000 -> single digit 1 with weight 1, trailing zero digit stripped
+        assertNumeric(new BigDecimal("10000"), 1, 1, 0, 0, 1);
+        assertNumeric(new BigDecimal("-12345678.9"), 3, 1, 0x4000, 1, 1234, 5678, 9000);
+        assertNumeric(new BigDecimal("0.00"), 0, 0, 0, 2);
+    }
+
+    private void assertNumeric(BigDecimal value, int ndigits, int weight, int sign, int dscale,
+            int... digits) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BinaryCopyWriter writer = new BinaryCopyWriter(bos,
+                Collections.<AttributeDescriptor> emptyList(), true);
+        writer.writeNumeric(value);
+        writer.out.flush();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(8 + 2 * ndigits, in.readInt());
+        assertEquals(ndigits, in.readShort());
+        assertEquals(weight, in.readShort());
+        assertEquals(sign, in.readShort());
+        assertEquals(dscale, in.readShort());
+        for (int digit : digits) {
+            assertEquals(digit, in.readShort());
+        }
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void testTuple() throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("test");
+        tb.userData(JDBCDataStore.JDBC_NATIVE_TYPENAME, "int4");
+        tb.add("id", Integer.class);
+        tb.userData(JDBCDataStore.JDBC_NATIVE_TYPENAME, "geometry");
+        tb.userData(JDBCDataStore.JDBC_NATIVE_SRID, 4326);
+        tb.add("geom", Point.class);
+        tb.userData(JDBCDataStore.JDBC_NATIVE_TYPENAME, "varchar");
+        tb.add("name", String.class);
+        SimpleFeatureType type = tb.buildFeatureType();
+
+        Point point = new GeometryFactory().createPoint(new Coordinate(1, 2));
+        // the value gets converted to the native type
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        fb.set("id", 10);
+        fb.set("geom", point);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BinaryCopyWriter writer = new BinaryCopyWriter(bos, type.getAttributeDescriptors(),
+                true);
+        writer.writeHeader();
+        writer.write(fb.buildFeature(null));
+        writer.writeTrailer();
+        assertEquals(1, writer.getCount());
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        byte[] signature = new byte[BinaryCopyWriter.SIGNATURE.length];
+        in.readFully(signature);
+        assertArrayEquals(BinaryCopyWriter.SIGNATURE, signature);
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+
+        assertEquals(3, in.readShort());
+        assertEquals(4, in.readInt());
+        assertEquals(10, in.readInt());
+        byte[] ewkb = new byte[in.readInt()];
+        in.readFully(ewkb);
+        Point read = (Point) new WKBReader().read(ewkb);
+        assertTrue(point.equalsExact(read));
+        assertEquals(4326, read.getSRID());
+        // null name
+        assertEquals(-1, in.readInt());
+
+        assertEquals(-1, in.readShort());
+        assertEquals(0, in.available());
+    }
+}
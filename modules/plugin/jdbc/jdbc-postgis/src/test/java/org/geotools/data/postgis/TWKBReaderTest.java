@@ -0,0 +1,106 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class TWKBReaderTest {
+
+    TWKBReader reader;
+
+    @Before
+    public void setup() {
+        reader = new TWKBReader(new GeometryFactory());
+    }
+
+    @Test
+    public void testPoint() throws Exception {
+        assertGeometry("POINT(1 2)", reader.read(bytes(0x01, 0x00, 0x02, 0x04)));
+    }
+
+    @Test
+    public void testEmptyPoint() throws Exception {
+        Geometry g = reader.read(bytes(0x01, 0x10));
+        assertTrue(g instanceof Point);
+        assertTrue(g.isEmpty());
+    }
+
+    @Test
+    public void testMultiByteVarInt() throws Exception {
+        assertGeometry("POINT(300 0)", reader.read(bytes(0x01, 0x00, 0xD8, 0x04, 0x00)));
+    }
+
+    @Test
+    public void testPrecision() throws Exception {
+        // precision 1, zigzag encoded in the upper nibble
+        assertGeometry("POINT(1.5 -0.2)", reader.read(bytes(0x21, 0x00, 0x1E, 0x03)));
+    }
+
+    @Test
+    public void testTransform() throws Exception {
+        reader.setTransform(100, 200, 10, 0.5);
+        assertGeometry("POINT(110 201)", reader.read(bytes(0x01, 0x00, 0x02, 0x04)));
+    }
+
+    @Test
+    public void testCollapsedLine() throws Exception {
+        assertGeometry("LINESTRING(1 1, 1 1)", reader.read(bytes(0x02, 0x00, 0x01, 0x02, 0x02)));
+    }
+
+    @Test
+    public void testUnclosedPolygon() throws Exception {
+        byte[] twkb = bytes(0x03, 0x00, 0x01, 0x04, 0x00, 0x00, 0x04, 0x00, 0x00, 0x04, 0x03,
+                0x00);
+        assertGeometry("POLYGON((0 0, 2 0, 2 2, 0 2, 0 0))", reader.read(twkb));
+    }
+
+    @Test
+    public void testMultiLineDeltas() throws Exception {
+        // the second line deltas start from the last point of the first one
+        byte[] twkb = bytes(0x05, 0x00, 0x02, 0x02, 0x00, 0x00, 0x02, 0x02, 0x02, 0x02, 0x02,
+                0x02, 0x02);
+        assertGeometry("MULTILINESTRING((0 0, 1 1), (2 2, 3 3))", reader.read(twkb));
+    }
+
+    @Test
+    public void testBoundingBoxSkipped() throws Exception {
+        // bbox: xmin 1, deltax 0, ymin 2, deltay 0
+        byte[] twkb = bytes(0x01, 0x01, 0x02, 0x00, 0x04, 0x00, 0x02, 0x04);
+        assertGeometry("POINT(1 2)", reader.read(twkb));
+    }
+
+    private void assertGeometry(String expected, Geometry actual) throws Exception {
+        Geometry g = new WKTReader().read(expected);
+        assertTrue("Expected " + expected + " but got " + actual, g.equalsExact(actual));
+    }
+
+    private byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+}
@@ -6,8 +6,12 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -24,13 +28,32 @@ import org.geotools.data.shapefile.index.CachedQuadTree;
 import org.geotools.data.shapefile.index.Data;
 import org.geotools.data.shapefile.index.DataDefinition;
 import org.geotools.data.shapefile.index.TreeException;
+import org.geotools.data.shapefile.index.attribute.AttributeIndex;
 import org.geotools.data.shapefile.index.quadtree.QuadTree;
 import org.geotools.data.shapefile.index.quadtree.StoreException;
 import org.geotools.data.shapefile.index.quadtree.fs.FileSystemIndexStore;
+import org.geotools.data.shapefile.index.rtree.PackedRTree;
 import org.geotools.data.shapefile.shp.IndexFile;
+import org.geotools.filter.LikeMatcher;
 import org.geotools.util.NullProgressListener;
 import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.Filter;
 import org.opengis.filter.Id;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.identity.Identifier;
 
 import com.vividsolutions.jts.geom.Envelope;
@@ -46,10 +69,18 @@ class IndexManager {
 
     static final int DEFAULT_MAX_QIX_CACHE_SIZE;
 
+    /**
+     * The spatial index type used by default, {@link ShpFileType#QIX} unless the
+     * "org.geotools.shapefile.spatialIndexType" system property is set to "PRT"
+     */
+    static final ShpFileType DEFAULT_SPATIAL_INDEX_TYPE;
+
     ShpFiles shpFiles;
 
     int maxQixCacheSize = DEFAULT_MAX_QIX_CACHE_SIZE;
 
+    ShpFileType spatialIndexType = DEFAULT_SPATIAL_INDEX_TYPE;
+
     CachedQuadTree cachedTree;
 
     ShapefileDataStore store;
@@ -76,6 +107,17 @@ class IndexManager {
             LOGGER.log(Level.SEVERE, "Could not set the max qix cache size", t);
         }
         DEFAULT_MAX_QIX_CACHE_SIZE = max;
+
+        ShpFileType indexType = QIX;
+        try {
+            String type = System.getProperty("org.geotools.shapefile.spatialIndexType");
+            if (type != null && type.trim().equalsIgnoreCase(PRT.extension)) {
+                indexType = PRT;
+            }
+        } catch (Throwable t) {
+            LOGGER.log(Level.SEVERE, "Could not set the spatial index type", t);
+        }
+        DEFAULT_SPATIAL_INDEX_TYPE = indexType;
     }
 
     public IndexManager(ShpFiles shpFiles, ShapefileDataStore store) {
@@ -92,12 +134,13 @@ class IndexManager {
     public boolean createSpatialIndex(boolean force) {
         // create index as needed
         try {
-            if (shpFiles.isLocal() && (isIndexStale(QIX) || force)) {
+            if (shpFiles.isLocal() && (isIndexStale(spatialIndexType) || force)) {
                 ShapefileDataStoreFactory.LOGGER.fine("Creating spatial index for "
                         + shpFiles.get(SHP));
 
                 ShapeFileIndexer indexer = new ShapeFileIndexer();
                 indexer.setShapeFileName(shpFiles);
+                indexer.setIndexType(spatialIndexType);
                 indexer.index(false, new NullProgressListener());
 
                 return true;
@@ -176,7 +219,7 @@ class IndexManager {
      * @return
      */
     boolean isSpatialIndexAvailable() {
-        return shpFiles.isLocal() && shpFiles.exists(QIX);
+        return shpFiles.isLocal() && shpFiles.exists(spatialIndexType);
     }
 
     /**
@@ -297,6 +340,24 @@ class IndexManager {
         // check if the spatial index needs recreating
         createSpatialIndex(false);
 
+        if (spatialIndexType == PRT) {
+            // the packed tree is memory mapped, opening it is cheap, and the search is
+            // performed eagerly, so that the mapping can be released right away
+            PackedRTree packedTree = openPackedRTree();
+            if (packedTree != null) {
+                try {
+                    if (!bbox.contains(packedTree.getBounds())) {
+                        return packedTree.search(bbox);
+                    } else {
+                        return null;
+                    }
+                } finally {
+                    packedTree.close();
+                }
+            }
+            // fall back on the quadtree, if any
+        }
+
         if (cachedTree == null) {
             boolean canCache = false;
             URL treeURL = shpFiles.acquireRead(QIX, writer);
@@ -373,6 +434,471 @@ class IndexManager {
         }
     }
 
+    /**
+     * Convenience method for opening a packed R-tree index.
+     * 
+     * @return A new PackedRTree, or null if the index is not available or cannot be read
+     */
+    protected PackedRTree openPackedRTree() {
+        if (!shpFiles.isLocal()) {
+            return null;
+        }
+        URL treeURL = shpFiles.acquireRead(PRT, writer);
+        try {
+            File treeFile = DataUtilities.urlToFile(treeURL);
+
+            if (treeFile == null || !treeFile.exists() || (treeFile.length() == 0)) {
+                return null;
+            }
+
+            try {
+                return new PackedRTree(treeFile);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not open the packed R-tree " + treeFile
+                        + ", falling back on the quadtree index, if any", e);
+                return null;
+            }
+        } finally {
+            shpFiles.unlockRead(treeURL, writer);
+        }
+    }
+
+    /**
+     * Builds the attribute index of the specified dbf fields, keeping the ones already indexed
+     * 
+     * @param fieldNames The dbf fields to be indexed
+     * @throws IOException
+     */
+    public void createAttributeIndex(String... fieldNames) throws IOException {
+        if (!shpFiles.isLocal()) {
+            throw new IOException("Attribute indexes can be created only on local files");
+        }
+        Set<String> fields = new LinkedHashSet<String>(getAttributeIndexFields());
+        fields.addAll(Arrays.asList(fieldNames));
+
+        ShapeFileIndexer indexer = new ShapeFileIndexer();
+        indexer.setShapeFileName(shpFiles);
+        indexer.setCharset(store.getCharset());
+        indexer.indexAttributes(new ArrayList<String>(fields));
+
+        // on file systems with a coarse time stamp granularity the index might look as old as
+        // the dbf it has just been built from, make sure it's not deemed stale
+        URL indexURL = shpFiles.acquireWrite(AIX, writer);
+        URL dbfURL = shpFiles.acquireRead(DBF, writer);
+        try {
+            File indexFile = DataUtilities.urlToFile(indexURL);
+            File dbfFile = DataUtilities.urlToFile(dbfURL);
+            if (indexFile != null && dbfFile != null
+                    && indexFile.lastModified() <= dbfFile.lastModified()) {
+                indexFile.setLastModified(dbfFile.lastModified() + 1000);
+            }
+        } finally {
+            shpFiles.unlockRead(dbfURL, writer);
+            shpFiles.unlockWrite(indexURL, writer);
+        }
+    }
+
+    /**
+     * Rebuilds the attribute index, if any. The index is removed if it cannot be rebuilt.
+     * 
+     * @return true if the index has been rebuilt
+     */
+    boolean updateAttributeIndex() {
+        if (!shpFiles.isLocal() || !shpFiles.exists(AIX)) {
+            return false;
+        }
+        try {
+            createAttributeIndex();
+            return true;
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "Could not rebuild the attribute index, removing it", t);
+            URL indexURL = shpFiles.acquireWrite(AIX, writer);
+            try {
+                DataUtilities.urlToFile(indexURL).delete();
+            } finally {
+                shpFiles.unlockWrite(indexURL, writer);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Marks the attribute index, if any, as out of date after the dbf has been modified. Like
+     * the spatial index, it will be rebuilt on next use, keeping the same fields.
+     */
+    void invalidateAttributeIndex() {
+        if (!shpFiles.isLocal() || !shpFiles.exists(AIX)) {
+            return;
+        }
+        URL indexURL = shpFiles.acquireWrite(AIX, writer);
+        try {
+            File indexFile = DataUtilities.urlToFile(indexURL);
+            // an epoch time stamp makes the index older than any dbf
+            if (!indexFile.setLastModified(0)) {
+                indexFile.delete();
+            }
+        } finally {
+            shpFiles.unlockWrite(indexURL, writer);
+        }
+    }
+
+    /**
+     * Returns true if the attribute index is not newer than the dbf file
+     */
+    boolean isAttributeIndexStale() {
+        URL indexURL = shpFiles.acquireRead(AIX, writer);
+        URL dbfURL = shpFiles.acquireRead(DBF, writer);
+        try {
+            File indexFile = DataUtilities.urlToFile(indexURL);
+            File dbfFile = DataUtilities.urlToFile(dbfURL);
+            return indexFile == null || dbfFile == null
+                    || indexFile.lastModified() <= dbfFile.lastModified();
+        } finally {
+            if (dbfURL != null) {
+                shpFiles.unlockRead(dbfURL, writer);
+            }
+            shpFiles.unlockRead(indexURL, writer);
+        }
+    }
+
+    /**
+     * Returns the names of the dbf fields in the attribute index, if any
+     */
+    List<String> getAttributeIndexFields() {
+        AttributeIndex index = openAttributeIndex(false);
+        if (index == null) {
+            return new ArrayList<String>();
+        }
+        try {
+            return index.getFieldNames();
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Convenience method for opening the attribute index.
+     * 
+     * @param checkStale If true, the index is rebuilt first if it's not newer than the dbf file
+     * @return A new AttributeIndex, or null if the index is not available or cannot be read
+     */
+    protected AttributeIndex openAttributeIndex(boolean checkStale) {
+        if (!shpFiles.isLocal() || !shpFiles.exists(AIX)) {
+            return null;
+        }
+        if (checkStale && isAttributeIndexStale()) {
+            LOGGER.fine("Attribute index is older than the dbf, rebuilding it");
+            if (!updateAttributeIndex()) {
+                return null;
+            }
+        }
+        URL indexURL = shpFiles.acquireRead(AIX, writer);
+        try {
+            File indexFile = DataUtilities.urlToFile(indexURL);
+            if (indexFile == null || !indexFile.exists() || indexFile.length() == 0) {
+                return null;
+            }
+
+            try {
+                return new AttributeIndex(indexFile);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not open the attribute index " + indexFile, e);
+                return null;
+            }
+        } finally {
+            shpFiles.unlockRead(indexURL, writer);
+        }
+    }
+
+    /**
+     * The records an attribute index lookup found
+     */
+    static final class AttributeIndexLookup {
+        /** The sorted record numbers */
+        final int[] recnos;
+
+        /** The number of records indexed, to check the index against the shx file */
+        final int indexedRecords;
+
+        AttributeIndexLookup(int[] recnos, int indexedRecords) {
+            this.recnos = recnos;
+            this.indexedRecords = indexedRecords;
+        }
+
+        int size() {
+            return recnos.length;
+        }
+    }
+
+    /**
+     * Uses the attribute index to lookup the records that might match the filter. The result is
+     * a superset of the matching records, the filter still has to be evaluated on them.
+     * 
+     * @param filter The query filter
+     * @param schema The full feature type of the shapefile
+     * @return The candidates, or null if the attribute index is missing or cannot help with the
+     *         filter
+     */
+    AttributeIndexLookup lookupAttributeIndex(Filter filter, SimpleFeatureType schema) {
+        AttributeIndex index = openAttributeIndex(true);
+        if (index == null) {
+            return null;
+        }
+        try {
+            int[] recnos = lookup(index, filter, schema);
+            return recnos == null ? null : new AttributeIndexLookup(recnos,
+                    index.getNumRecords());
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Returns the records found by an attribute index lookup, along with their shp offsets
+     * 
+     * @return The record numbers and shp offsets of the candidates, sorted by record number, or
+     *         null if the attribute index does not match the shapefile
+     * @throws IOException
+     */
+    List<Data> getRecords(AttributeIndexLookup lookup) throws IOException {
+        IndexFile shx = store.shpManager.openIndexFile();
+        try {
+            if (shx == null || shx.getRecordCount() != lookup.indexedRecords) {
+                LOGGER.fine("Attribute index does not match the number of records, ignoring it");
+                return null;
+            }
+
+            DataDefinition def = new DataDefinition("US-ASCII");
+            def.addField(Integer.class);
+            def.addField(Long.class);
+            List<Data> records = new ArrayList<Data>(lookup.recnos.length);
+            for (int recno : lookup.recnos) {
+                try {
+                    Data data = new Data(def);
+                    data.addValue(new Integer(recno));
+                    data.addValue(new Long(shx.getOffsetInBytes(recno - 1)));
+                    records.add(data);
+                } catch (Exception e) {
+                    throw new IOException("Error reading the shx offset of record " + recno, e);
+                }
+            }
+            return records;
+        } finally {
+            if (shx != null) {
+                shx.close();
+            }
+        }
+    }
+
+    /**
+     * Uses the attribute index to lookup the records that might match the filter, see
+     * {@link #lookupAttributeIndex(Filter, SimpleFeatureType)} and
+     * {@link #getRecords(AttributeIndexLookup)}
+     */
+    List<Data> queryAttributeIndex(Filter filter, SimpleFeatureType schema) throws IOException {
+        AttributeIndexLookup lookup = lookupAttributeIndex(filter, schema);
+        return lookup != null ? getRecords(lookup) : null;
+    }
+
+    /**
+     * Returns the sorted record numbers that might match the filter, or null if the filter
+     * cannot be resolved against the index
+     */
+    private int[] lookup(AttributeIndex index, Filter filter, SimpleFeatureType schema) {
+        if (filter instanceof And) {
+            // any indexable child restricts the candidates
+            int[] result = null;
+            for (Filter child : ((And) filter).getChildren()) {
+                int[] recnos = lookup(index, child, schema);
+                if (recnos != null) {
+                    result = result == null ? recnos : AttributeIndex.intersect(result, recnos);
+                }
+            }
+            return result;
+        } else if (filter instanceof Or) {
+            // all the children must be indexable
+            int[] result = new int[0];
+            for (Filter child : ((Or) filter).getChildren()) {
+                int[] recnos = lookup(index, child, schema);
+                if (recnos == null) {
+                    return null;
+                }
+                result = AttributeIndex.union(result, recnos);
+            }
+            return result;
+        } else if (filter instanceof PropertyIsEqualTo) {
+            PropertyIsEqualTo equal = (PropertyIsEqualTo) filter;
+            return lookupComparison(index, schema, equal.getExpression1(),
+                    equal.getExpression2(), true, equal.isMatchingCase());
+        } else if (filter instanceof PropertyIsLessThan
+                || filter instanceof PropertyIsLessThanOrEqualTo) {
+            BinaryComparisonOperator less = (BinaryComparisonOperator) filter;
+            return lookupComparison(index, schema, less.getExpression1(), less.getExpression2(),
+                    false, less.isMatchingCase());
+        } else if (filter instanceof PropertyIsGreaterThan
+                || filter instanceof PropertyIsGreaterThanOrEqualTo) {
+            BinaryComparisonOperator greater = (BinaryComparisonOperator) filter;
+            return lookupComparison(index, schema, greater.getExpression2(),
+                    greater.getExpression1(), false, greater.isMatchingCase());
+        } else if (filter instanceof PropertyIsBetween) {
+            PropertyIsBetween between = (PropertyIsBetween) filter;
+            String field = getIndexedField(index, schema, between.getExpression());
+            if (field == null || !index.isNumeric(field)) {
+                return null;
+            }
+            Double lower = getNumber(between.getLowerBoundary());
+            Double upper = getNumber(between.getUpperBoundary());
+            if (lower == null || upper == null) {
+                return null;
+            }
+            return findRange(index, schema, between.getExpression(), field, lower, upper);
+        } else if (filter instanceof PropertyIsLike) {
+            PropertyIsLike like = (PropertyIsLike) filter;
+            String field = getIndexedField(index, schema, like.getExpression());
+            if (field == null || index.isNumeric(field) || !like.isMatchingCase()
+                    || like.getLiteral() == null) {
+                return null;
+            }
+            String prefix = LikeMatcher.compile(like).getPrefix();
+            byte[] key = encode(prefix);
+            if (prefix.length() == 0 || key == null) {
+                return null;
+            }
+            return index.findPrefix(field, key);
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a comparison between a property and a literal, in either order.
+     * 
+     * @param lower The expression that is lower, or equal, to the other one
+     * @param upper The expression that is greater, or equal, to the other one
+     * @param equal Whether the two expressions must be equal
+     * @param matchCase Whether string comparisons are case sensitive
+     */
+    private int[] lookupComparison(AttributeIndex index, SimpleFeatureType schema,
+            Expression lower, Expression upper, boolean equal, boolean matchCase) {
+        Expression property;
+        Literal literal;
+        boolean propertyIsLower;
+        if (lower instanceof PropertyName && upper instanceof Literal) {
+            property = lower;
+            literal = (Literal) upper;
+            propertyIsLower = true;
+        } else if (upper instanceof PropertyName && lower instanceof Literal) {
+            property = upper;
+            literal = (Literal) lower;
+            propertyIsLower = false;
+        } else {
+            return null;
+        }
+        String field = getIndexedField(index, schema, property);
+        if (field == null) {
+            return null;
+        }
+
+        if (index.isNumeric(field)) {
+            Double value = getNumber(literal);
+            if (value == null) {
+                return null;
+            }
+            if (equal) {
+                return findRange(index, schema, property, field, value, value);
+            } else if (propertyIsLower) {
+                return findRange(index, schema, property, field, Double.NEGATIVE_INFINITY, value);
+            } else {
+                return findRange(index, schema, property, field, value, Double.POSITIVE_INFINITY);
+            }
+        } else if (equal && matchCase) {
+            // character fields are indexed by raw bytes, only exact matches can be looked up
+            Object value = literal.getValue();
+            if (!(value instanceof String)) {
+                return null;
+            }
+            byte[] key = encode((String) value);
+            return key == null ? null : index.findEqual(field, key);
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a numeric range, widening it so that the conversions of the literals to the
+     * attribute binding performed by the filters cannot exclude matching records
+     */
+    private int[] findRange(AttributeIndex index, SimpleFeatureType schema, Expression property,
+            String field, double min, double max) {
+        Class<?> binding = schema.getDescriptor(((PropertyName) property).getPropertyName())
+                .getType().getBinding();
+        if (binding == Integer.class || binding == Long.class || binding == Short.class
+                || binding == Byte.class) {
+            min = Math.floor(min);
+            max = Math.ceil(max);
+        } else if (binding == Double.class || binding == Float.class) {
+            min = Math.nextDown(min);
+            max = Math.nextUp(max);
+        } else {
+            return null;
+        }
+        return index.findRange(field, min, max);
+    }
+
+    /**
+     * Returns the dbf field indexed for the expression, if it's a property name mapping to an
+     * indexed field, null otherwise
+     */
+    private String getIndexedField(AttributeIndex index, SimpleFeatureType schema,
+            Expression expression) {
+        if (!(expression instanceof PropertyName)) {
+            return null;
+        }
+        AttributeDescriptor descriptor = schema.getDescriptor(((PropertyName) expression)
+                .getPropertyName());
+        if (descriptor == null
+                || descriptor.getUserData().get(ShapefileDataStore.ORIGINAL_FIELD_NAME) != null) {
+            // renamed duplicate fields are not indexed
+            return null;
+        }
+        String name = descriptor.getLocalName();
+        return index.isIndexed(name) ? name : null;
+    }
+
+    /**
+     * Returns the numeric value of a literal, or null if it does not have one
+     */
+    private Double getNumber(Expression expression) {
+        if (!(expression instanceof Literal)) {
+            return null;
+        }
+        Object value = ((Literal) expression).getValue();
+        double number;
+        if (value instanceof Number) {
+            number = ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+            try {
+                number = Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        return Double.isNaN(number) ? null : number;
+    }
+
+    /**
+     * Encodes a value in the dbf charset, returns null if it cannot be encoded losslessly, or if
+     * the charset is not ASCII compatible, since the index keys are trimmed as ASCII bytes
+     */
+    private byte[] encode(String value) {
+        Charset charset = store.getCharset();
+        if (" ".getBytes(charset).length != 1 || value.indexOf('\uFFFD') >= 0) {
+            return null;
+        }
+        byte[] key = value.getBytes(charset);
+        return new String(key, charset).equals(value) ? key : null;
+    }
+
     public void dispose() {
         this.cachedTree = null;
     }
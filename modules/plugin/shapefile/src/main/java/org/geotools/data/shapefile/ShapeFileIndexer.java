@@ -19,7 +19,9 @@ package org.geotools.data.shapefile;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -27,17 +29,21 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
+import org.geotools.data.shapefile.dbf.DbaseFileReader.Row;
 import org.geotools.data.shapefile.files.FileWriter;
 import org.geotools.data.shapefile.files.ShpFileType;
 import org.geotools.data.shapefile.files.ShpFiles;
 import org.geotools.data.shapefile.files.StorageFile;
 import org.geotools.data.shapefile.index.LockTimeoutException;
 import org.geotools.data.shapefile.index.TreeException;
+import org.geotools.data.shapefile.index.attribute.AttributeIndexBuilder;
 import org.geotools.data.shapefile.index.quadtree.Node;
 import org.geotools.data.shapefile.index.quadtree.QuadTree;
 import org.geotools.data.shapefile.index.quadtree.StoreException;
 import org.geotools.data.shapefile.index.quadtree.fs.FileSystemIndexStore;
 import org.geotools.data.shapefile.index.quadtree.fs.IndexHeader;
+import org.geotools.data.shapefile.index.rtree.PackedRTreeBuilder;
 import org.geotools.data.shapefile.shp.IndexFile;
 import org.geotools.data.shapefile.shp.ShapefileHeader;
 import org.geotools.data.shapefile.shp.ShapefileReader;
@@ -62,10 +68,13 @@ class ShapeFileIndexer implements FileWriter {
     
     private int max = -1;
     private int leafSize = 16;
+    private ShpFileType indexType = ShpFileType.QIX;
 
 	private String byteOrder;
     private boolean interactive = false;
     private ShpFiles shpFiles;
+    private Charset charset = ShapefileDataStore.DEFAULT_STRING_CHARSET;
+    private List<String> attributeFields;
 
     public static void main(String[] args) throws IOException {
         if ((args.length < 1) || (((args.length - 1) % 2) != 0)) {
@@ -79,15 +88,23 @@ class ShapeFileIndexer implements FileWriter {
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("-t")) {
-                // idx.setIdxType(IndexType.valueOf(args[++i]));
-                // just skip it for backwards compatibility
-                i++;
+                String type = args[++i];
+                if (type.equalsIgnoreCase("PRT") || type.equalsIgnoreCase("RTREE")) {
+                    idx.setIndexType(ShpFileType.PRT);
+                } else {
+                    // QIX, QUADTREE and anything else, for backwards compatibility
+                    idx.setIndexType(ShpFileType.QIX);
+                }
             } else if (args[i].equals("-M")) {
                 idx.setMax(Integer.parseInt(args[++i]));
             } else if (args[i].equals("-s")) {
                 idx.setLeafSize(Integer.parseInt(args[++i]));
             } else if (args[i].equals("-b")) {
                 idx.setByteOrder(args[++i]);
+            } else if (args[i].equals("-a")) {
+                idx.attributeFields = Arrays.asList(args[++i].split(","));
+            } else if (args[i].equals("-c")) {
+                idx.setCharset(Charset.forName(args[++i]));
             } else {
                 if (!args[i].toLowerCase().endsWith(".shp")) {
                     System.out.println("File extension must be '.shp'");
@@ -101,7 +118,12 @@ class ShapeFileIndexer implements FileWriter {
         try {
             System.out.print("Indexing ");
 
-            int cnt = idx.index(true, new NullProgressListener());
+            int cnt;
+            if (idx.attributeFields != null) {
+                cnt = idx.indexAttributes(idx.attributeFields);
+            } else {
+                cnt = idx.index(true, new NullProgressListener());
+            }
             System.out.println();
             System.out.print(cnt + " features indexed ");
             System.out.println("in " + (System.currentTimeMillis() - start)
@@ -115,15 +137,20 @@ class ShapeFileIndexer implements FileWriter {
     }
 
     private static void usage() {
-        System.out.println("Usage: ShapeFileIndexer " + "-t <QIX> "
+        System.out.println("Usage: ShapeFileIndexer " + "-t <QIX | PRT> "
                 + "[-M <max tree depth>] "
                 + "[-b <byte order NL | NM>] " + "<shape file>"
                 + "[-s <max number of items in a leaf>]");
+        System.out.println("       ShapeFileIndexer -a <field,field,...> [-c <dbf charset>] "
+                + "<shape file>");
 
         System.out.println();
 
         System.out.println("Options:");
-        System.out.println("\t-t Index type: RTREE or QUADTREE");
+        System.out.println("\t-t Index type: QIX (quadtree, default) or PRT (packed R-tree)");
+        System.out.println("\t-s max number of items in a leaf, or node size for PRT");
+        System.out.println("\t-a builds the attribute index (AIX) of the listed dbf fields");
+        System.out.println("\t-c charset of the dbf field names, used with -a");
         System.out.println();
         System.out.println("Following options apllies only to QUADTREE:");
         System.out.println("\t-b byte order to use: NL = LSB; "
@@ -165,32 +192,36 @@ class ShapeFileIndexer implements FileWriter {
         ShapefileReader reader = null;
 
         // Temporary file for building...
-        StorageFile storage = shpFiles.getStorageFile(ShpFileType.QIX);
+        StorageFile storage = shpFiles.getStorageFile(indexType);
         File treeFile = storage.getFile();
 
         try {
             reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
             
-            if(max == -1) {
-                // compute a reasonable index max depth, considering a fully developed
-                // 10 levels one already contains 200k index nodes, good for indexing up
-                // to 3M features without consuming too much memory
-                int features = reader.getCount(0);
-                max = 1;
-                int nodes = 1;
-                while(nodes * leafSize < features) {
-                    max++;
-                    nodes *= 4;
-                }
-                if(max < 10) {
-                    max = 10;
+            if (indexType == ShpFileType.PRT) {
+                cnt = this.buildPackedRTree(reader, treeFile, verbose);
+            } else {
+                if(max == -1) {
+                    // compute a reasonable index max depth, considering a fully developed
+                    // 10 levels one already contains 200k index nodes, good for indexing up
+                    // to 3M features without consuming too much memory
+                    int features = reader.getCount(0);
+                    max = 1;
+                    int nodes = 1;
+                    while(nodes * leafSize < features) {
+                        max++;
+                        nodes *= 4;
+                    }
+                    if(max < 10) {
+                        max = 10;
+                    }
+                    
+                    reader.close();
+                    reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
                 }
                 
-                reader.close();
-                reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
+                cnt = this.buildQuadTree(reader, treeFile, verbose);
             }
-            
-            cnt = this.buildQuadTree(reader, treeFile, verbose);
         } finally {
             if (reader != null)
                 reader.close();
@@ -202,6 +233,81 @@ class ShapeFileIndexer implements FileWriter {
         return cnt;
     }
 
+    /**
+     * Builds the attribute index of the specified dbf fields, replacing the existing one, if any.
+     * Only character and numeric fields can be indexed.
+     * 
+     * @param fieldNames The dbf field names
+     * @return The number of indexed records
+     * @throws IOException
+     */
+    public int indexAttributes(List<String> fieldNames) throws IOException {
+        if (this.shpFiles == null) {
+            throw new IOException("You have to set a shape file name!");
+        }
+
+        StorageFile storage = shpFiles.getStorageFile(ShpFileType.AIX);
+        File indexFile = storage.getFile();
+        LOGGER.fine("Building attribute index of " + fieldNames + " for file "
+                + indexFile.getAbsolutePath());
+
+        int cnt = 0;
+        DbaseFileReader reader = new DbaseFileReader(shpFiles, false, charset);
+        try {
+            AttributeIndexBuilder builder = new AttributeIndexBuilder(reader.getHeader(),
+                    fieldNames);
+            int recno = 0;
+            while (reader.hasNext()) {
+                Row row = reader.readRow();
+                recno++;
+                if (!row.isDeleted()) {
+                    builder.add(recno, reader);
+                    cnt++;
+                }
+            }
+            builder.write(indexFile);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            reader.close();
+        }
+
+        storage.replaceOriginal();
+
+        return cnt;
+    }
+
+    private int buildPackedRTree(ShapefileReader reader, File file, boolean verbose)
+            throws IOException {
+        LOGGER.fine("Building packed R-tree spatial index for file " + file.getAbsolutePath());
+
+        IndexFile shpIndex = new IndexFile(shpFiles, false);
+        int cnt = 0;
+        try {
+            int numRecs = shpIndex.getRecordCount();
+            PackedRTreeBuilder builder = new PackedRTreeBuilder(numRecs,
+                    leafSize > 1 ? leafSize : PackedRTreeBuilder.DEFAULT_NODE_SIZE);
+            while (reader.hasNext() && cnt < numRecs) {
+                Record rec = reader.nextRecord();
+                builder.add(rec.minX, rec.minY, rec.maxX, rec.maxY, cnt + 1,
+                        shpIndex.getOffsetInBytes(cnt));
+                cnt++;
+
+                if (verbose && ((cnt % 1000) == 0)) {
+                    System.out.print('.');
+                }
+                if (verbose && cnt % 100000 == 0)
+                    System.out.print('\n');
+            }
+            if (verbose)
+                System.out.println("done");
+            builder.write(file);
+        } finally {
+            shpIndex.close();
+        }
+        return cnt;
+    }
+
     private int buildQuadTree(ShapefileReader reader, File file, boolean verbose)
             throws IOException, StoreException {
         LOGGER.fine("Building quadtree spatial index with depth " +  max + " for file " + file.getAbsolutePath());
@@ -237,7 +343,7 @@ class ShapeFileIndexer implements FileWriter {
                 if (verbose && ((cnt % 1000) == 0)) {
                     System.out.print('.');
                 }
-                if (cnt % 100000 == 0)
+                if (verbose && cnt % 100000 == 0)
                     System.out.print('\n');
             }
             if (verbose)
@@ -401,6 +507,23 @@ class ShapeFileIndexer implements FileWriter {
         max = i;
     }
 
+    /**
+     * Sets the type of spatial index to be built, either {@link ShpFileType#QIX} (the default)
+     * or {@link ShpFileType#PRT}
+     * 
+     * @param indexType
+     */
+    public void setIndexType(ShpFileType indexType) {
+        if (indexType != ShpFileType.QIX && indexType != ShpFileType.PRT) {
+            throw new IllegalArgumentException("Unsupported spatial index type " + indexType);
+        }
+        this.indexType = indexType;
+    }
+
+    public ShpFileType getIndexType() {
+        return indexType;
+    }
+
     /**
      * DOCUMENT ME!
      * 
@@ -421,6 +544,15 @@ class ShapeFileIndexer implements FileWriter {
         this.byteOrder = byteOrder;
     }
 
+    /**
+     * Sets the charset used to decode the dbf field names when building the attribute index
+     * 
+     * @param charset
+     */
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
     public String id() {
         return getClass().getName();
     }
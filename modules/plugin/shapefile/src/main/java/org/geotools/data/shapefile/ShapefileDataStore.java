@@ -199,6 +199,19 @@ public class ShapefileDataStore extends ContentDataStore implements FileDataStor
         this.indexed = indexed;
     }
     
+    /**
+     * Builds, or extends, the attribute index of the shapefile so that it covers the specified
+     * attributes. The index is used to speed up the queries whose filters compare the attributes
+     * with literals, or match them against prefix like patterns, and is rebuilt when the shapefile
+     * is modified. Only character and numeric attributes can be indexed.
+     * 
+     * @param attributeNames The attributes to be indexed
+     * @throws IOException If the shapefile is not local, or the attributes cannot be indexed
+     */
+    public void createAttributeIndex(String... attributeNames) throws IOException {
+        indexManager.createAttributeIndex(attributeNames);
+    }
+
     /**
      * The current max shapefile size
      * @return
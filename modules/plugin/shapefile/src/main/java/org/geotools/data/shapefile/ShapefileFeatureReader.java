@@ -17,13 +17,17 @@
 package org.geotools.data.shapefile;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureReader;
+import org.geotools.data.shapefile.dbf.DbaseColumnBatch;
 import org.geotools.data.shapefile.dbf.DbaseFileHeader;
 import org.geotools.data.shapefile.dbf.DbaseFileReader;
 import org.geotools.data.shapefile.dbf.DbaseFileReader.Row;
@@ -31,15 +35,22 @@ import org.geotools.data.shapefile.fid.IndexedFidReader;
 import org.geotools.data.shapefile.shp.ShapeType;
 import org.geotools.data.shapefile.shp.ShapefileReader;
 import org.geotools.data.shapefile.shp.ShapefileReader.Record;
+import org.geotools.data.simple.SimpleFeatureBatchReader;
+import org.geotools.feature.simple.SimpleFeatureBatch;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.filter.LikeFilterImpl;
+import org.geotools.filter.LikeMatcher;
 import org.geotools.geometry.jts.LiteCoordinateSequence;
 import org.geotools.renderer.ScreenMap;
+import org.geotools.util.Converters;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.And;
 import org.opengis.filter.Filter;
+import org.opengis.filter.expression.PropertyName;
 import org.opengis.referencing.operation.TransformException;
 
 import com.vividsolutions.jts.geom.Envelope;
@@ -47,7 +58,8 @@ import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
 
-class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature>,
+        SimpleFeatureBatchReader {
 
     static final Logger LOGGER = Logging.getLogger(ShapefileFeatureReader.class);
 
@@ -86,6 +98,49 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
 
     Filter filter;
 
+    /**
+     * Number of dbf records read in one shot when using columnar dbf reads
+     */
+    static final int DBF_BATCH_SIZE = 1024;
+
+    /**
+     * The batch used for columnar dbf reads, or null if the dbf is read row by row
+     */
+    DbaseColumnBatch dbfBatch;
+
+    /**
+     * The position of each attribute in the dbf batch, -1 for the geometry
+     */
+    int[] batchColumns;
+
+    /**
+     * The current row in the dbf batch
+     */
+    int batchRow;
+
+    /**
+     * The feature batch being filled by {@link #read(SimpleFeatureBatch)}, null when reading
+     * feature by feature
+     */
+    SimpleFeatureBatch featureBatch;
+
+    /**
+     * For each attribute, whether its values can be copied from the dbf batch as primitive
+     * doubles, lazily computed
+     */
+    boolean[] primitiveDoubles;
+
+    /**
+     * The attributes targeted by the like filters that can be matched against the raw dbf
+     * records, before parsing the geometry and building the feature, null if there are none
+     */
+    int[] likeAttributes;
+
+    /**
+     * The matchers of the like filters, one per entry in {@link #likeAttributes}
+     */
+    LikeMatcher[] likeMatchers;
+
     public ShapefileFeatureReader(SimpleFeatureType schema, ShapefileReader shp, DbaseFileReader dbf, IndexedFidReader fidReader)
             throws IOException {
         this.schema = schema;
@@ -152,6 +207,69 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
         }
     }
 
+    /**
+     * Fills the batch decoding the records straight into its columns, without building the
+     * intermediate feature objects. When the dbf is read in columnar mode, floating point fields
+     * are copied as primitive doubles.
+     */
+    @Override
+    public int read(SimpleFeatureBatch batch) throws IOException {
+        if (batch.getFeatureType() != schema && !batch.getFeatureType().equals(schema)) {
+            throw new IllegalArgumentException("The batch feature type is not the reader one");
+        }
+        batch.clear();
+        if (nextFeature != null) {
+            // already read by hasNext()
+            batch.addFeature(nextFeature);
+            nextFeature = null;
+        }
+        featureBatch = batch;
+        try {
+            // while filling a batch, each call to hasNext() adds a row to it
+            while (!batch.isFull() && hasNext()) {
+                nextFeature = null;
+            }
+        } finally {
+            featureBatch = null;
+        }
+        return batch.size();
+    }
+
+    /**
+     * Switches the reader to columnar dbf reads, which copy and decode only the fields of the
+     * dbf that are actually part of the read schema, for blocks of records. Worth using when the
+     * schema contains a small subset of the dbf fields. Only valid for sequential reads.
+     */
+    void enableColumnarDbfReads() {
+        if (dbf == null || dbfindexes == null) {
+            return;
+        }
+        batchColumns = new int[dbfindexes.length];
+        int count = 0;
+        for (int i = 0; i < dbfindexes.length; i++) {
+            batchColumns[i] = dbfindexes[i] == -1 ? -1 : count++;
+        }
+        int[] fields = new int[count];
+        for (int i = 0; i < dbfindexes.length; i++) {
+            if (batchColumns[i] != -1) {
+                fields[batchColumns[i]] = dbfindexes[i];
+            }
+        }
+        dbfBatch = dbf.createColumnBatch(fields, DBF_BATCH_SIZE);
+        batchRow = 0;
+    }
+
+    /**
+     * Moves to the next dbf record in the columnar batch, reading a new batch if needed
+     */
+    private void nextBatchRow() throws IOException {
+        batchRow++;
+        if (batchRow >= dbfBatch.size()) {
+            dbf.readColumns(dbfBatch);
+            batchRow = 0;
+        }
+    }
+
     /**
      * Returns true if the lower level readers, shp and dbf, have one more record to read
      * 
@@ -162,7 +280,8 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
         if (dbf == null) {
             return shp.hasNext();
         } else {
-            boolean dbfHasNext = dbf.hasNext();
+            boolean dbfHasNext = dbf.hasNext()
+                    || (dbfBatch != null && batchRow + 1 < dbfBatch.size());
             boolean shpHasNext = shp.hasNext();
             if (dbfHasNext && shpHasNext) {
                 return true;
@@ -179,23 +298,45 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
         while (nextFeature == null && filesHaveMore()) {
             Record record = shp.nextRecord();
 
-            Geometry geometry = getGeometry(record);
-            if (geometry != SKIP) {
-                // also grab the dbf row
-                Row row;
-                if (dbf != null) {
-                    row = dbf.readRow();
-                    if(row.isDeleted()) {
-                        continue;
+            if (dbfBatch != null) {
+                // columnar reads, the batch row has to be moved forward for each shp record
+                nextBatchRow();
+                if (!dbfBatch.isDeleted(batchRow) && matchesLikeFilters()) {
+                    Geometry geometry = getGeometry(record);
+                    if (geometry != SKIP) {
+                        nextFeature = buildFeature(record.number, geometry, null,
+                                record.envelope());
+                    }
+                }
+            } else if (likeMatchers != null) {
+                // check the dbf row first, the geometry is parsed only if it matches
+                Row row = dbf.readRow();
+                if (!row.isDeleted() && matchesLikeFilters()) {
+                    Geometry geometry = getGeometry(record);
+                    if (geometry != SKIP) {
+                        nextFeature = buildFeature(record.number, geometry, row,
+                                record.envelope());
                     }
-                } else {
-                    row = null;
                 }
-
-                nextFeature = buildFeature(record.number, geometry, row, record.envelope());
             } else {
-                if (dbf != null) {
-                    dbf.skip();
+                Geometry geometry = getGeometry(record);
+                if (geometry != SKIP) {
+                    // also grab the dbf row
+                    Row row;
+                    if (dbf != null) {
+                        row = dbf.readRow();
+                        if (row.isDeleted()) {
+                            continue;
+                        }
+                    } else {
+                        row = null;
+                    }
+
+                    nextFeature = buildFeature(record.number, geometry, row, record.envelope());
+                } else {
+                    if (dbf != null) {
+                        dbf.skip();
+                    }
                 }
             }
         }
@@ -203,6 +344,29 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
         return nextFeature != null;
     }
 
+    /**
+     * Matches the like filters against the current dbf record, or batch row, without decoding
+     * the values. A record failing them would be rejected by the full filter as well.
+     */
+    boolean matchesLikeFilters() {
+        if (likeMatchers == null) {
+            return true;
+        }
+        for (int i = 0; i < likeMatchers.length; i++) {
+            int attribute = likeAttributes[i];
+            CharSequence value;
+            if (dbfBatch != null) {
+                value = dbfBatch.getCharSequence(batchRow, batchColumns[attribute]);
+            } else {
+                value = dbf.readCharSequence(dbfindexes[attribute]);
+            }
+            if (value == null || !likeMatchers[i].matches(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Reads the geometry, it will return {@link #SKIP} if the records is to be skipped because of
      * the screenmap or because it does not match the target bbox
@@ -246,10 +410,15 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
 
     SimpleFeature buildFeature(int number, Geometry geometry, Row row, Envelope envelope)
             throws IOException {
+        if (featureBatch != null) {
+            return buildBatchRow(number, geometry, row, envelope);
+        }
         if (dbfindexes != null) {
             for (int i = 0; i < dbfindexes.length; i++) {
                 if (dbfindexes[i] == -1) {
                     builder.add(geometry);
+                } else if (dbfBatch != null) {
+                    builder.add(dbfBatch.getValue(batchRow, batchColumns[i]));
                 } else {
                     builder.add(row.read(dbfindexes[i]));
                 }
@@ -283,6 +452,87 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
 
         return feature;
     }
+
+    /**
+     * Same as {@link #buildFeature(int, Geometry, Row, Envelope)}, but adds a row to the
+     * feature batch being filled, and returns a view on it
+     */
+    SimpleFeature buildBatchRow(int number, Geometry geometry, Row row, Envelope envelope)
+            throws IOException {
+        SimpleFeatureBatch batch = featureBatch;
+        int batchFeature;
+        if (fidReader == null) {
+            // same as buildFeatureId, without building the string
+            batchFeature = batch.addRow((long) number);
+        } else {
+            batchFeature = batch.addRow(buildFeatureId(number));
+        }
+        if (dbfindexes != null) {
+            if (primitiveDoubles == null) {
+                primitiveDoubles = new boolean[dbfindexes.length];
+                for (int i = 0; i < dbfindexes.length; i++) {
+                    // the fields whose values readObject would parse as doubles
+                    primitiveDoubles[i] = dbfBatch != null && dbfindexes[i] != -1
+                            && dbfBatch.isNumeric(batchColumns[i])
+                            && dbf.getHeader().getFieldClass(dbfindexes[i]) == Double.class
+                            && schema.getDescriptor(i).getType().getBinding() == Double.class;
+                }
+            }
+            for (int i = 0; i < dbfindexes.length; i++) {
+                if (dbfindexes[i] == -1) {
+                    batch.setValue(batchFeature, i, convert(geometry, i));
+                } else if (primitiveDoubles[i] && !dbfBatch.isNull(batchRow, batchColumns[i])) {
+                    batch.setDouble(batchFeature, i,
+                            dbfBatch.getDouble(batchRow, batchColumns[i]));
+                } else if (dbfBatch != null) {
+                    batch.setValue(batchFeature, i,
+                            convert(dbfBatch.getValue(batchRow, batchColumns[i]), i));
+                } else {
+                    batch.setValue(batchFeature, i, convert(row.read(dbfindexes[i]), i));
+                }
+            }
+        } else if (geometry != null) {
+            batch.setValue(batchFeature, 0, convert(geometry, 0));
+        }
+
+        SimpleFeature feature = batch.getFeature(batchFeature);
+        if (filter != null && !filter.evaluate(feature)) {
+            batch.removeLastRow();
+            return null;
+        }
+        if (screenMap != null) {
+            try {
+                screenMap.checkAndSet(envelope);
+            } catch (TransformException e) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Failed to set screenmap", e);
+                }
+            }
+        }
+        return feature;
+    }
+
+    /**
+     * Converts the value to the attribute binding, the same way {@link SimpleFeatureBuilder}
+     * does
+     */
+    private Object convert(Object value, int attribute) {
+        AttributeDescriptor descriptor = schema.getDescriptor(attribute);
+        if (value == null) {
+            if (!descriptor.isNillable()) {
+                value = descriptor.getDefaultValue();
+                if (value == null) {
+                    value = DataUtilities.defaultValue(descriptor.getType().getBinding());
+                }
+            }
+        } else {
+            Object converted = Converters.convert(value, descriptor.getType().getBinding());
+            if (converted != null) {
+                value = converted;
+            }
+        }
+        return value;
+    }
     
     protected String buildFeatureId(int number) throws IOException {
         if(fidReader == null) {
@@ -371,6 +621,48 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
 
     public void setFilter(Filter filter) {
         this.filter = filter;
+        this.likeAttributes = null;
+        this.likeMatchers = null;
+        if (filter == null || dbf == null) {
+            return;
+        }
+
+        // collect the like filters on character fields that must hold for the filter to pass
+        List<Filter> children;
+        if (filter instanceof And) {
+            children = ((And) filter).getChildren();
+        } else {
+            children = Collections.singletonList(filter);
+        }
+        List<Integer> attributes = new ArrayList<Integer>();
+        List<LikeMatcher> matchers = new ArrayList<LikeMatcher>();
+        for (Filter child : children) {
+            if (child == null || child.getClass() != LikeFilterImpl.class) {
+                continue;
+            }
+            LikeFilterImpl like = (LikeFilterImpl) child;
+            if (!(like.getExpression() instanceof PropertyName) || like.getLiteral() == null) {
+                continue;
+            }
+            int attribute = schema.indexOf(((PropertyName) like.getExpression())
+                    .getPropertyName());
+            if (attribute < 0 || dbfindexes[attribute] == -1
+                    || schema.getDescriptor(attribute).getType().getBinding() != String.class) {
+                continue;
+            }
+            char type = dbf.getHeader().getFieldType(dbfindexes[attribute]);
+            if (type == 'C' || type == 'c') {
+                attributes.add(attribute);
+                matchers.add(LikeMatcher.compile(like));
+            }
+        }
+        if (!matchers.isEmpty()) {
+            likeAttributes = new int[attributes.size()];
+            for (int i = 0; i < likeAttributes.length; i++) {
+                likeAttributes[i] = attributes.get(i);
+            }
+            likeMatchers = matchers.toArray(new LikeMatcher[matchers.size()]);
+        }
     }
 
 }
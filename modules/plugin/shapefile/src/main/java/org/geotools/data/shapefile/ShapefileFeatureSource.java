@@ -39,6 +39,7 @@ import org.geotools.data.FeatureSource;
 import org.geotools.data.PrjFileReader;
 import org.geotools.data.Query;
 import org.geotools.data.ReTypeFeatureReader;
+import org.geotools.data.shapefile.IndexManager.AttributeIndexLookup;
 import org.geotools.data.shapefile.dbf.DbaseFileHeader;
 import org.geotools.data.shapefile.dbf.DbaseFileReader;
 import org.geotools.data.shapefile.fid.IndexedFidReader;
@@ -50,8 +51,10 @@ import org.geotools.data.shapefile.shp.IndexFile;
 import org.geotools.data.shapefile.shp.JTSUtilities;
 import org.geotools.data.shapefile.shp.ShapefileHeader;
 import org.geotools.data.shapefile.shp.ShapefileReader;
+import org.geotools.data.store.AccessPath;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentFeatureSource;
+import org.geotools.data.store.QueryPlanner;
 import org.geotools.factory.Hints;
 import org.geotools.factory.Hints.Key;
 import org.geotools.feature.AttributeTypeBuilder;
@@ -310,6 +313,99 @@ class ShapefileFeatureSource extends ContentFeatureSource {
 
     }
 
+    @Override
+    protected List<AccessPath> getAccessPaths(Query query) throws IOException {
+        List<AccessPath> paths = new ArrayList<AccessPath>();
+        paths.add(AccessPath.fullScan());
+        Filter filter = query.getFilter();
+        if (isFidLookup(filter)) {
+            paths.add(new AccessPath(AccessPath.Type.FID_LOOKUP, "fid index", filter,
+                    ((Id) filter).getIdentifiers().size()));
+            return paths;
+        }
+
+        IndexManager indexManager = getDataStore().indexManager;
+        if (getDataStore().isIndexed() && filter != null && !Filter.INCLUDE.equals(filter)) {
+            AttributeIndexLookup lookup = indexManager.lookupAttributeIndex(filter, getSchema());
+            if (lookup != null) {
+                paths.add(new AttributeIndexPath(filter, lookup));
+            }
+        }
+
+        Envelope bbox = getTargetBounds(filter);
+        GeometryDescriptor geometry = getSchema().getGeometryDescriptor();
+        if (isSpatialIndexUsable(bbox) && geometry != null) {
+            Filter bboxFilter = getDataStore().getFilterFactory().bbox(geometry.getLocalName(),
+                    bbox.getMinX(), bbox.getMinY(), bbox.getMaxX(), bbox.getMaxY(), null);
+            paths.add(new AccessPath(AccessPath.Type.SPATIAL_INDEX,
+                    indexManager.spatialIndexType.extension + " spatial index", bboxFilter, -1));
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the bounds of the area the filter is restricted to, a null envelope if there is no
+     * restriction
+     */
+    Envelope getTargetBounds(Filter filter) {
+        Envelope bbox = null;
+        if (filter != null) {
+            bbox = (Envelope) filter.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR,
+                    new ReferencedEnvelope());
+        }
+        return bbox != null ? bbox : new ReferencedEnvelope();
+    }
+
+    /**
+     * Returns true if the filter is a fid filter that can be resolved with the fid index
+     */
+    boolean isFidLookup(Filter filter) {
+        return getDataStore().isFidIndexed() && filter instanceof Id
+                && getDataStore().indexManager.hasFidIndex(false);
+    }
+
+    /**
+     * Returns true if the spatial index can be used, or created, to read the features in the
+     * specified area
+     */
+    boolean isSpatialIndexUsable(Envelope bbox) {
+        IndexManager indexManager = getDataStore().indexManager;
+        return getDataStore().isIndexed() && !bbox.isNull() && !Double.isInfinite(bbox.getWidth())
+                && !Double.isInfinite(bbox.getHeight())
+                && (indexManager.isSpatialIndexAvailable() || getDataStore()
+                        .isIndexCreationEnabled());
+    }
+
+    CloseableIterator<Data> queryFidIndex(Id filter) throws IOException {
+        List<Data> records = getDataStore().indexManager.queryFidIndex(filter);
+        return records != null ? new CloseableIteratorWrapper<Data>(records.iterator()) : null;
+    }
+
+    CloseableIterator<Data> queryAttributeIndex(Filter filter) throws IOException {
+        if (!getDataStore().isIndexed() || filter == null || Filter.INCLUDE.equals(filter)
+                || filter instanceof Id) {
+            return null;
+        }
+        List<Data> records = getDataStore().indexManager.queryAttributeIndex(filter, getSchema());
+        return records != null ? new CloseableIteratorWrapper<Data>(records.iterator()) : null;
+    }
+
+    /**
+     * Reads the records found by an attribute index lookup the planner already ran
+     */
+    CloseableIterator<Data> queryAttributeIndex(AttributeIndexLookup lookup) throws IOException {
+        List<Data> records = getDataStore().indexManager.getRecords(lookup);
+        return records != null ? new CloseableIteratorWrapper<Data>(records.iterator()) : null;
+    }
+
+    CloseableIterator<Data> querySpatialIndex(Envelope bbox) throws IOException {
+        try {
+            return getDataStore().indexManager.querySpatialIndex(bbox);
+        } catch (TreeException e) {
+            throw new IOException("Error querying index: " + e.getMessage());
+        }
+    }
+
     @Override
     protected FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query q)
             throws IOException {
@@ -318,32 +414,38 @@ class ShapefileFeatureSource extends ContentFeatureSource {
         GeometryFactory geometryFactory = getGeometryFactory(q);
 
         // grab the target bbox, if any
-        Envelope bbox = new ReferencedEnvelope();
-        if (q.getFilter() != null) {
-            bbox = (Envelope) q.getFilter().accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR, bbox);
-            if(bbox == null) {
-                bbox = new ReferencedEnvelope();
-            }
-        }
+        Envelope bbox = getTargetBounds(q.getFilter());
 
         // see if we can use indexing to speedup the data access
         Filter filter = q != null ? q.getFilter() : null;
-        IndexManager indexManager = getDataStore().indexManager;
         CloseableIterator<Data> goodRecs = null;
-        if (getDataStore().isFidIndexed() && filter instanceof Id && indexManager.hasFidIndex(false)) {
-            Id fidFilter = (Id) filter;
-            List<Data> records = indexManager.queryFidIndex(fidFilter);
-            if (records != null) {
-                goodRecs = new CloseableIteratorWrapper<Data>(records.iterator());
-            }
-        } else if (getDataStore().isIndexed() && !bbox.isNull() 
-                && !Double.isInfinite(bbox.getWidth()) && !Double.isInfinite(bbox.getHeight())) {
-            try {
-                if(indexManager.isSpatialIndexAvailable() || getDataStore().isIndexCreationEnabled()) {
-                    goodRecs = indexManager.querySpatialIndex(bbox);
+        AccessPath accessPath = (AccessPath) q.getHints().get(QueryPlanner.ACCESS_PATH);
+        if (accessPath != null) {
+            // follow the query planner choice
+            switch (accessPath.getType()) {
+            case FID_LOOKUP:
+                goodRecs = queryFidIndex((Id) filter);
+                break;
+            case ATTRIBUTE_INDEX:
+                if (accessPath instanceof AttributeIndexPath) {
+                    goodRecs = queryAttributeIndex(((AttributeIndexPath) accessPath).lookup);
+                } else {
+                    goodRecs = queryAttributeIndex(filter);
                 }
-            } catch (TreeException e) {
-                throw new IOException("Error querying index: " + e.getMessage());
+                break;
+            case SPATIAL_INDEX:
+                goodRecs = querySpatialIndex(bbox);
+                break;
+            default:
+                break;
+            }
+        } else if (isFidLookup(filter)) {
+            goodRecs = queryFidIndex((Id) filter);
+        } else {
+            // the attribute lookups are usually more selective than the spatial ones
+            goodRecs = queryAttributeIndex(filter);
+            if (goodRecs == null && isSpatialIndexUsable(bbox)) {
+                goodRecs = querySpatialIndex(bbox);
             }
         }
         // do we have anything to read at all? If not don't bother opening all the files
@@ -356,7 +458,7 @@ class ShapefileFeatureSource extends ContentFeatureSource {
         
         // get the .fix file reader, if we have a .fix file
         IndexedFidReader fidReader = null;
-        if (getDataStore().isFidIndexed() && filter instanceof Id && indexManager.hasFidIndex(false)) {
+        if (isFidLookup(filter)) {
             fidReader = new IndexedFidReader(shpFiles);
         }
 
@@ -377,6 +479,11 @@ class ShapefileFeatureSource extends ContentFeatureSource {
                     goodRecs);
         } else {
             reader = new ShapefileFeatureReader(readSchema, shapeReader, dbfReader, fidReader);
+            // when reading just a few of the dbf fields, avoid copying and parsing the others
+            if (dbfReader != null
+                    && attributes.size() <= dbfReader.getHeader().getNumFields() / 2) {
+                reader.enableColumnarDbfReads();
+            }
         }
         if (filter != null && !Filter.INCLUDE.equals(filter)) {
             reader.setFilter(filter);
@@ -599,4 +706,17 @@ class ShapefileFeatureSource extends ContentFeatureSource {
         return super.handleVisitor(query, visitor);
     }
 
+    /**
+     * The attribute index access path, carrying the lookup results so that the reader does not
+     * need to search the index again
+     */
+    static class AttributeIndexPath extends AccessPath {
+
+        final AttributeIndexLookup lookup;
+
+        AttributeIndexPath(Filter filter, AttributeIndexLookup lookup) {
+            super(AccessPath.Type.ATTRIBUTE_INDEX, "attribute index", filter, lookup.size());
+            this.lookup = lookup;
+        }
+    }
 }
@@ -0,0 +1,253 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.dbf;
+
+import java.io.IOException;
+
+/**
+ * A batch of dbf records holding only a subset of the fields, organized by column. Numeric
+ * fields (N and F) are parsed as the batch is filled and can be accessed as primitive doubles,
+ * all the other fields are kept in their raw byte form and decoded lazily, on request.
+ * <p>
+ * Batches are built by {@link DbaseFileReader#createColumnBatch(int[], int)} and filled by
+ * {@link DbaseFileReader#readColumns(DbaseColumnBatch)}, the same batch is meant to be reused
+ * over and over, so that a full scan of the file allocates memory only for the values that are
+ * actually decoded. The contents of the batch are valid until the next call to
+ * {@link DbaseFileReader#readColumns(DbaseColumnBatch)}.
+ * <p>
+ * Example of usage: <CODE><PRE>
+ * DbaseColumnBatch batch = reader.createColumnBatch(new int[] {3, 7}, 1024);
+ * while (reader.readColumns(batch) &gt; 0) {
+ *   for (int r = 0; r &lt; batch.size(); r++) {
+ *     if (!batch.isDeleted(r) &amp;&amp; !batch.isNull(r, 1)) {
+ *        total += batch.getDouble(r, 1);
+ *     }
+ *   }
+ * }
+ * </PRE></CODE>
+ */
+public class DbaseColumnBatch {
+
+    /**
+     * A char sequence reading directly from the batch bytes, used when the dbf charset uses a
+     * single byte per char
+     */
+    static final class ByteCharSequence implements CharSequence {
+        final byte[] bytes;
+
+        final int start;
+
+        final int end;
+
+        ByteCharSequence(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int length() {
+            return end - start;
+        }
+
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of range");
+            }
+            return (char) (0x00FF & bytes[start + index]);
+        }
+
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > end - start || from > to) {
+                throw new IndexOutOfBoundsException("Invalid range " + from + "-" + to);
+            }
+            return new ByteCharSequence(bytes, start + from, start + to);
+        }
+
+        public String toString() {
+            final char[] chars = new char[end - start];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) (0x00FF & bytes[start + i]);
+            }
+            return new String(chars);
+        }
+    }
+
+    final DbaseFileReader reader;
+
+    /** The dbf fields read by this batch */
+    final int[] fields;
+
+    /** The offset of each column inside a batch row */
+    final int[] columnOffsets;
+
+    /** The length of a batch row, that is, the sum of the lengths of the fields read */
+    final int rowLength;
+
+    final int capacity;
+
+    /** The raw bytes of the fields read, organized row by row */
+    final byte[] data;
+
+    final boolean[] deleted;
+
+    /** The parsed numbers, for numeric columns, or null for all other columns */
+    final double[][] numbers;
+
+    /** The null flags, for numeric columns, or null for all other columns */
+    final boolean[][] nulls;
+
+    int size;
+
+    DbaseColumnBatch(DbaseFileReader reader, int[] fields, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The batch capacity must be positive");
+        }
+        this.reader = reader;
+        this.fields = fields.clone();
+        this.capacity = capacity;
+        this.columnOffsets = new int[fields.length];
+        this.numbers = new double[fields.length][];
+        this.nulls = new boolean[fields.length][];
+        int offset = 0;
+        for (int c = 0; c < fields.length; c++) {
+            columnOffsets[c] = offset;
+            offset += reader.getFieldLength(fields[c]);
+            char type = reader.getFieldType(fields[c]);
+            if (type == 'N' || type == 'n' || type == 'F' || type == 'f') {
+                numbers[c] = new double[capacity];
+                nulls[c] = new boolean[capacity];
+            }
+        }
+        this.rowLength = offset;
+        this.data = new byte[rowLength * capacity];
+        this.deleted = new boolean[capacity];
+    }
+
+    /**
+     * The number of records read in the last call to
+     * {@link DbaseFileReader#readColumns(DbaseColumnBatch)}
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The maximum number of records this batch can hold
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The number of columns in this batch
+     */
+    public int getColumnCount() {
+        return fields.length;
+    }
+
+    /**
+     * The dbf field number of the specified column
+     */
+    public int getFieldNumber(int column) {
+        return fields[column];
+    }
+
+    /**
+     * Returns true if the specified record has been marked as deleted in the dbf file
+     */
+    public boolean isDeleted(int row) {
+        checkRow(row);
+        return deleted[row];
+    }
+
+    /**
+     * Returns true if the column is numeric, and thus can be accessed with
+     * {@link #getDouble(int, int)}
+     */
+    public boolean isNumeric(int column) {
+        return numbers[column] != null;
+    }
+
+    /**
+     * Returns true if the specified value is null
+     *
+     * @throws IOException
+     */
+    public boolean isNull(int row, int column) throws IOException {
+        checkRow(row);
+        if (numbers[column] != null) {
+            return nulls[column][row];
+        } else {
+            return getValue(row, column) == null;
+        }
+    }
+
+    /**
+     * Returns the value of a numeric column as a primitive double, or {@link Double#NaN} if the
+     * value is null
+     *
+     * @throws IllegalArgumentException if the column is not numeric
+     */
+    public double getDouble(int row, int column) {
+        checkRow(row);
+        final double[] columnNumbers = numbers[column];
+        if (columnNumbers == null) {
+            throw new IllegalArgumentException("Column " + column + " is not numeric");
+        }
+        return columnNumbers[row];
+    }
+
+    /**
+     * Returns the value of a column as a trimmed char sequence, or null if the value is null.
+     * When the dbf charset uses one byte per char the sequence is a view on the batch contents,
+     * so it must be copied if it needs to survive the next batch read.
+     */
+    public CharSequence getCharSequence(int row, int column) {
+        checkRow(row);
+        final int offset = row * rowLength + columnOffsets[column];
+        final int length = reader.getFieldLength(fields[column]);
+        if (length == 0 || data[offset] == '\0' || (numbers[column] != null && nulls[column][row])) {
+            return null;
+        }
+        if (reader.isOneBytePerChar()) {
+            final int start = DbaseFileReader.trimStart(data, offset, length);
+            final int end = DbaseFileReader.trimEnd(data, start, offset + length);
+            return new ByteCharSequence(data, start, end);
+        } else {
+            return new String(data, offset, length, reader.getStringCharset()).trim();
+        }
+    }
+
+    /**
+     * Decodes the specified value, the result is the same as the one of
+     * {@link DbaseFileReader.Row#read(int)}
+     *
+     * @throws IOException
+     */
+    public Object getValue(int row, int column) throws IOException {
+        checkRow(row);
+        final int offset = row * rowLength + columnOffsets[column];
+        return reader.readObject(data, offset, fields[column]);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " is not in the batch, size is "
+                    + size);
+        }
+    }
+}
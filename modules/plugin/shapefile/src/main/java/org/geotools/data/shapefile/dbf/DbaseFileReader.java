@@ -29,6 +29,7 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Locale;
 import java.util.TimeZone;
@@ -77,7 +78,7 @@ public class DbaseFileReader implements FileReader {
         
         public Object read(final int column) throws IOException {
             final int offset = fieldOffsets[column];
-            return readObject(offset, column);
+            return readObject(bytes, offset, column);
         }
 
         public String toString() {
@@ -381,7 +382,7 @@ public class DbaseFileReader implements FileReader {
         final int numFields = header.getNumFields();
 
         for (int j = 0; j < numFields; j++) {
-            entry[j + offset] = readObject(fieldOffsets[j], j);
+            entry[j + offset] = readObject(bytes, fieldOffsets[j], j);
         }
 
         return entry;
@@ -397,7 +398,140 @@ public class DbaseFileReader implements FileReader {
      */
     public Object readField(final int fieldNum)
             throws IOException {
-        return readObject(fieldOffsets[fieldNum], fieldNum);
+        return readObject(bytes, fieldOffsets[fieldNum], fieldNum);
+    }
+
+    /**
+     * Returns a character field of the current record as a trimmed char sequence, or null if the
+     * value is null. When the charset uses one byte per char the sequence is a view on the record
+     * bytes, which allows matching the value without building a String, and it's only valid until
+     * the next record is read.
+     *
+     * @param fieldNum The field number to be read (zero based)
+     * @return The same characters {@link #readField(int)} would return
+     */
+    public CharSequence readCharSequence(final int fieldNum) {
+        final int offset = fieldOffsets[fieldNum];
+        final int length = fieldLengths[fieldNum];
+        if (length == 0 || bytes[offset] == '\0') {
+            return null;
+        }
+        if (oneBytePerChar) {
+            final int start = trimStart(bytes, offset, length);
+            final int end = trimEnd(bytes, start, offset + length);
+            return new DbaseColumnBatch.ByteCharSequence(bytes, start, end);
+        } else {
+            return new String(bytes, offset, length, stringCharset).trim();
+        }
+    }
+
+    /**
+     * Returns a copy of the bytes of a character field of the current record, without the
+     * leading and trailing blanks, or null if the value is null. Decoding them with the dbf
+     * charset gives the value {@link #readField(int)} would return.
+     *
+     * @param fieldNum The field number to be read (zero based)
+     */
+    public byte[] readTrimmedBytes(final int fieldNum) {
+        final int offset = fieldOffsets[fieldNum];
+        final int length = fieldLengths[fieldNum];
+        if (length == 0 || bytes[offset] == '\0') {
+            return null;
+        }
+        final int start = trimStart(bytes, offset, length);
+        final int end = trimEnd(bytes, start, offset + length);
+        return Arrays.copyOfRange(bytes, start, end);
+    }
+
+    /**
+     * Builds a batch that can be used to read the specified fields in columnar fashion with
+     * {@link #readColumns(DbaseColumnBatch)}
+     * 
+     * @param fieldNums The fields to be read (zero based)
+     * @param capacity The maximum number of records read in a single batch
+     * @return
+     */
+    public DbaseColumnBatch createColumnBatch(final int[] fieldNums, final int capacity) {
+        return new DbaseColumnBatch(this, fieldNums, capacity);
+    }
+
+    /**
+     * Reads the next records in the provided batch, up to its capacity, copying only the bytes
+     * of the fields the batch has been created for, and parsing the numeric fields directly into
+     * primitive arrays. Deleted records are read as well, but are marked as such in the batch, so
+     * that the batch records stay aligned with the shapefile ones.
+     * <p>
+     * Mixing this method with the other read methods is possible, the reader just advances past
+     * the records read in the batch.
+     * 
+     * @param batch The batch to be filled, as built by {@link #createColumnBatch(int[], int)}
+     * @return The number of records read, zero if the file has no more records
+     * @throws IOException
+     */
+    public int readColumns(final DbaseColumnBatch batch) throws IOException {
+        if (batch.reader != this) {
+            throw new IllegalArgumentException("The batch has been created by another reader");
+        }
+        batch.size = 0;
+        final int recordLength = header.getRecordLength();
+        final int[] fields = batch.fields;
+        while (batch.size < batch.capacity && hasNext()) {
+            bufferCheck();
+
+            final int row = batch.size;
+            final int recordStart = buffer.position();
+            batch.deleted[row] = buffer.get(recordStart) == '*';
+            final int rowStart = row * batch.rowLength;
+            for (int c = 0; c < fields.length; c++) {
+                final int field = fields[c];
+                final int length = fieldLengths[field];
+                final int dataOffset = rowStart + batch.columnOffsets[c];
+                buffer.position(recordStart + 1 + fieldOffsets[field]);
+                buffer.get(batch.data, dataOffset, length);
+                
+                // parse numbers right away, so that they can be accessed as primitives
+                final double[] numbers = batch.numbers[c];
+                if (numbers != null) {
+                    if (length == 0 || batch.data[dataOffset] == '*') {
+                        batch.nulls[c][row] = true;
+                        numbers[row] = Double.NaN;
+                    } else {
+                        batch.nulls[c][row] = false;
+                        try {
+                            numbers[row] = parseDouble(batch.data, dataOffset, length);
+                        } catch (final NumberFormatException e) {
+                            // same as readObject, indigestible numbers become zero
+                            numbers[row] = 0;
+                        }
+                    }
+                }
+            }
+            buffer.position(recordStart + recordLength);
+
+            cnt++;
+            batch.size++;
+        }
+
+        return batch.size;
+    }
+
+    /**
+     * Returns true if the strings are encoded using one byte per char
+     */
+    boolean isOneBytePerChar() {
+        return oneBytePerChar;
+    }
+
+    Charset getStringCharset() {
+        return stringCharset;
+    }
+
+    int getFieldLength(final int fieldNum) {
+        return fieldLengths[fieldNum];
+    }
+
+    char getFieldType(final int fieldNum) {
+        return fieldTypes[fieldNum];
     }
 
     /**
@@ -449,7 +583,11 @@ public class DbaseFileReader implements FileReader {
     public Object[] readEntry(final Object[] entry) throws IOException {
         return readEntry(entry, 0);
     }
-    private Object readObject(final int fieldOffset, final int fieldNum)
+    /**
+     * Decodes the specified field out of the provided byte array. Besides the current record,
+     * the byte array can also be a {@link DbaseColumnBatch} one, which is decoded lazily
+     */
+    Object readObject(final byte[] bytes, final int fieldOffset, final int fieldNum)
             throws IOException {
         final char type = fieldTypes[fieldNum];
         final int fieldLen = fieldLengths[fieldNum];
@@ -485,9 +623,11 @@ public class DbaseFileReader implements FileReader {
                 if (bytes[fieldOffset] != '\0') {
                     // remember we need to skip trailing and leading spaces
                     if(oneBytePerChar) {
-                        object = fastParse(bytes, fieldOffset, fieldLen).trim();
+                        final int start = trimStart(bytes, fieldOffset, fieldLen);
+                        final int end = trimEnd(bytes, start, fieldOffset + fieldLen);
+                        object = fastParse(bytes, start, end - start);
                     } else {
-                        object = new String(bytes, fieldOffset, fieldLen, stringCharset.name()).trim();
+                        object = new String(bytes, fieldOffset, fieldLen, stringCharset).trim();
                     }
                 }
                 break;
@@ -549,8 +689,23 @@ public class DbaseFileReader implements FileReader {
                 if (bytes[fieldOffset] == '*') {
                     break;
                 } else {
-                    final String string = fastParse(bytes,fieldOffset,fieldLen).trim();
                     Class clazz = header.getFieldClass(fieldNum);
+                    if (clazz == Integer.class || clazz == Long.class) {
+                        // fast path, parse plain integers without building a String
+                        final int start = trimStart(bytes, fieldOffset, fieldLen);
+                        final int end = trimEnd(bytes, start, fieldOffset + fieldLen);
+                        if (isSimpleInteger(bytes, start, end)) {
+                            final long value = parseLong(bytes, start, end);
+                            if (clazz == Integer.class && value >= Integer.MIN_VALUE
+                                    && value <= Integer.MAX_VALUE) {
+                                object = Integer.valueOf((int) value);
+                            } else {
+                                object = Long.valueOf(value);
+                            }
+                            break;
+                        }
+                    }
+                    final String string = fastParse(bytes,fieldOffset,fieldLen).trim();
                     if (clazz == Integer.class) {
                         try {
                             object = Integer.parseInt(string);
@@ -576,7 +731,7 @@ public class DbaseFileReader implements FileReader {
             case 'F': 
                 if (bytes[fieldOffset] != '*') {
                     try {
-                        object = Double.parseDouble(fastParse(bytes,fieldOffset,fieldLen));
+                        object = parseDouble(bytes, fieldOffset, fieldLen);
                     } catch (final NumberFormatException e) {
                         // okay, now whatever we got was truly indigestible. Lets go
                         // with a zero Double.
@@ -602,12 +757,144 @@ public class DbaseFileReader implements FileReader {
     String fastParse(final byte[] bytes, final int fieldOffset, final int fieldLen) {
         // faster reading path, the decoder is for some reason slower,
         // probably because it has to make extra checks to support multibyte chars
-        final char[] chars = new char[fieldLen]; 
+        return new String(fastParseChars(bytes, fieldOffset, fieldLen));
+    }
+
+    /**
+     * Returns the position of the first non blank byte in the range (or the range end, if all
+     * bytes are blanks). Follows the same rules as {@link String#trim()}
+     */
+    static int trimStart(final byte[] bytes, final int offset, final int length) {
+        int start = offset;
+        final int end = offset + length;
+        while (start < end && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Returns the position after the last non blank byte in the range. Follows the same rules
+     * as {@link String#trim()}
+     */
+    static int trimEnd(final byte[] bytes, final int start, final int end) {
+        int result = end;
+        while (result > start && (bytes[result - 1] & 0xFF) <= ' ') {
+            result--;
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if the range contains an optional sign followed by at most 18 digits, that
+     * is, an integer that can be parsed as a long without risk of overflow
+     */
+    static boolean isSimpleInteger(final byte[] bytes, final int start, final int end) {
+        int i = start;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            i++;
+        }
+        final int digits = end - i;
+        if (digits <= 0 || digits > 18) {
+            return false;
+        }
+        for (; i < end; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a long out of a range already validated by
+     * {@link #isSimpleInteger(byte[], int, int)}
+     */
+    static long parseLong(final byte[] bytes, final int start, final int end) {
+        int i = start;
+        boolean negative = false;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            value = value * 10 + (bytes[i] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Powers of ten that can be represented exactly as a double
+     */
+    private static final double[] EXACT_POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6,
+            1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22 };
+
+    /**
+     * The largest integer such that it and all the smaller ones can be represented exactly as a
+     * double
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * Parses a double without allocating a String. Plain decimal numbers whose digits, ignoring
+     * the decimal point, form an integer below 2<sup>53</sup> and whose scale is a power of ten
+     * that can be represented exactly are handled directly: both operands of the division are
+     * exact, so the single, correctly rounded division gives the same result as
+     * {@link Double#parseDouble(String)}. All the other cases, including numbers with more
+     * significant digits, are delegated to {@link Double#parseDouble(String)}
+     * 
+     * @throws NumberFormatException if the value cannot be parsed
+     */
+    static double parseDouble(final byte[] bytes, final int offset, final int length) {
+        final int start = trimStart(bytes, offset, length);
+        final int end = trimEnd(bytes, start, offset + length);
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            final byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (i == end && digits > 0 && digits <= 18 && mantissa <= MAX_EXACT_MANTISSA
+                && scale < EXACT_POWERS_OF_TEN.length) {
+            double value = mantissa;
+            if (scale > 0) {
+                value = value / EXACT_POWERS_OF_TEN[scale];
+            }
+            return negative ? -value : value;
+        }
+
+        // exponents, special values, very long numbers, invalid ones
+        final int len = end - start;
+        return Double.parseDouble(new String(fastParseChars(bytes, start, len)));
+    }
+
+    private static char[] fastParseChars(final byte[] bytes, final int fieldOffset,
+            final int fieldLen) {
+        final char[] chars = new char[fieldLen];
         for (int i = 0; i < fieldLen; i++) {
             // force the byte to a positive integer interpretation before casting to char
-            chars[i] = ((char) (0x00FF & bytes[fieldOffset+i]));
+            chars[i] = ((char) (0x00FF & bytes[fieldOffset + i]));
         }
-        return new String(chars);
+        return chars;
     }
 
     public static void main(final String[] args) throws Exception {
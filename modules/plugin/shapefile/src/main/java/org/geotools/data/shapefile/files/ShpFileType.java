@@ -50,6 +50,16 @@ public enum ShpFileType {
      * format the mapservers shptree tool generates
      */
     QIX("qix"),
+    /**
+     * the .prt file, a packed Hilbert R-tree spatial index of the shapefile, see
+     * {@link org.geotools.data.shapefile.index.rtree.PackedRTree}
+     */
+    PRT("prt"),
+    /**
+     * the .aix file, sorted indexes of some of the dbf fields, see
+     * {@link org.geotools.data.shapefile.index.attribute.AttributeIndex}
+     */
+    AIX("aix"),
     /**
      * the .fix file, it contains all the Feature IDs for constant time lookup
      * by fid also so that the fids stay consistent across deletes and adds
@@ -0,0 +1,405 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.attribute;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.resources.NIOUtilities;
+
+/**
+ * A read only, memory mapped, index of the values of some dbf fields, built by
+ * {@link AttributeIndexBuilder}. Each indexed field is stored as a sorted run of fixed size
+ * (key, record number) entries, which is binary searched, so that equality, range and prefix
+ * lookups cost a logarithmic number of probes plus the size of the result.
+ * <p>
+ * File layout (big endian):
+ * <ul>
+ * <li>the magic bytes "GTATTIDX" and the format version (int)</li>
+ * <li>number of records in the dbf, number of indexed fields (int)</li>
+ * <li>for each field: the name length (short) and ISO-8859-1 bytes, the key type ('N' for
+ * numeric, 'S' for character, byte), the key length, the number of entries and the position
+ * of the first entry (int)</li>
+ * <li>for each field, the entries sorted by key: the key, either a double or the trimmed bytes of
+ * the value padded with zeroes, followed by the one based record number (int)</li>
+ * </ul>
+ * Null values are not part of the index.
+ */
+public class AttributeIndex {
+
+    static final byte[] MAGIC = new byte[] { 'G', 'T', 'A', 'T', 'T', 'I', 'D', 'X' };
+
+    static final int VERSION = 1;
+
+    static final Charset NAME_CHARSET = Charset.forName("ISO-8859-1");
+
+    static final byte NUMERIC = 'N';
+
+    static final byte STRING = 'S';
+
+    static final int[] EMPTY = new int[0];
+
+    /**
+     * The location of the entries of a field
+     */
+    static final class Column {
+        final boolean numeric;
+
+        final int keyLength;
+
+        final int count;
+
+        final int offset;
+
+        Column(boolean numeric, int keyLength, int count, int offset) {
+            this.numeric = numeric;
+            this.keyLength = keyLength;
+            this.count = count;
+            this.offset = offset;
+        }
+
+        int entrySize() {
+            return keyLength + 4;
+        }
+    }
+
+    ByteBuffer buffer;
+
+    int numRecords;
+
+    Map<String, Column> columns = new LinkedHashMap<String, Column>();
+
+    /**
+     * Opens the attribute index stored in the specified file
+     *
+     * @param file
+     * @throws IOException
+     */
+    public AttributeIndex(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Attribute index files larger than 2GB are not supported");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+
+        try {
+            readHeader(file);
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw new IOException("Invalid attribute index file " + file, e);
+        }
+    }
+
+    private void readHeader(File file) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("File " + file + " is not an attribute index");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported attribute index version " + version);
+        }
+        numRecords = buffer.getInt();
+        int numColumns = buffer.getInt();
+        for (int i = 0; i < numColumns; i++) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            byte type = buffer.get();
+            int keyLength = buffer.getInt();
+            int count = buffer.getInt();
+            int offset = buffer.getInt();
+            if ((type != NUMERIC && type != STRING) || keyLength < 0 || count < 0
+                    || offset < 0 || (long) offset + (long) count * (keyLength + 4)
+                            > buffer.capacity()) {
+                throw new IOException("Attribute index " + file + " is corrupted");
+            }
+            columns.put(new String(name, NAME_CHARSET), new Column(type == NUMERIC, keyLength,
+                    count, offset));
+        }
+    }
+
+    /**
+     * Returns the number of records of the dbf file at the time the index was built
+     */
+    public int getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * Returns the names of the indexed fields
+     */
+    public List<String> getFieldNames() {
+        return new ArrayList<String>(columns.keySet());
+    }
+
+    /**
+     * Returns true if the field is indexed
+     */
+    public boolean isIndexed(String fieldName) {
+        return columns.containsKey(fieldName);
+    }
+
+    /**
+     * Returns true if the field is indexed by numeric value, false if it's indexed by character
+     * value or not indexed at all
+     */
+    public boolean isNumeric(String fieldName) {
+        Column column = columns.get(fieldName);
+        return column != null && column.numeric;
+    }
+
+    /**
+     * Returns the records whose value is between the specified bounds, inclusive
+     *
+     * @param fieldName A numeric field
+     * @param min The lower bound, can be {@link Double#NEGATIVE_INFINITY}
+     * @param max The upper bound, can be {@link Double#POSITIVE_INFINITY}
+     * @return The one based record numbers, sorted
+     */
+    public int[] findRange(String fieldName, double min, double max) {
+        final Column column = column(fieldName, true);
+        final double lo = normalize(min);
+        final double hi = normalize(max);
+        if (Double.isNaN(lo) || Double.isNaN(hi) || lo > hi) {
+            return EMPTY;
+        }
+        // first entry not lower than min
+        int low = 0, high = column.count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getDouble(column.offset + mid * column.entrySize()) < lo) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        final int start = low;
+        // first entry greater than max
+        high = column.count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getDouble(column.offset + mid * column.entrySize()) <= hi) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return records(column, start, low);
+    }
+
+    /**
+     * Returns the records whose value is equal to the specified one
+     *
+     * @param fieldName A numeric field
+     * @return The one based record numbers, sorted
+     */
+    public int[] findEqual(String fieldName, double value) {
+        return findRange(fieldName, value, value);
+    }
+
+    /**
+     * Returns the records whose trimmed value bytes are equal to the specified ones
+     *
+     * @param fieldName A character field
+     * @param key The value, encoded in the dbf charset
+     * @return The one based record numbers, sorted
+     */
+    public int[] findEqual(String fieldName, byte[] key) {
+        final Column column = column(fieldName, false);
+        if (key.length > column.keyLength) {
+            return EMPTY;
+        }
+        return findPrefixed(column, key, column.keyLength);
+    }
+
+    /**
+     * Returns the records whose trimmed value bytes start with the specified ones
+     *
+     * @param fieldName A character field
+     * @param prefix The value prefix, encoded in the dbf charset
+     * @return The one based record numbers, sorted
+     */
+    public int[] findPrefix(String fieldName, byte[] prefix) {
+        final Column column = column(fieldName, false);
+        if (prefix.length > column.keyLength) {
+            return EMPTY;
+        }
+        return findPrefixed(column, prefix, prefix.length);
+    }
+
+    /**
+     * Finds the entries whose first length key bytes are equal to the specified key, padded with
+     * zeroes
+     */
+    private int[] findPrefixed(Column column, byte[] key, int length) {
+        int low = 0, high = column.count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(column, mid, key, length) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        final int start = low;
+        high = column.count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(column, mid, key, length) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return records(column, start, low);
+    }
+
+    /**
+     * Compares the first length bytes of an entry key with the key, padded with zeroes
+     */
+    private int compare(Column column, int entry, byte[] key, int length) {
+        final int base = column.offset + entry * column.entrySize();
+        for (int i = 0; i < length; i++) {
+            int a = buffer.get(base + i) & 0xFF;
+            int b = i < key.length ? key[i] & 0xFF : 0;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+
+    private Column column(String fieldName, boolean numeric) {
+        Column column = columns.get(fieldName);
+        if (column == null) {
+            throw new IllegalArgumentException("Field " + fieldName + " is not indexed");
+        }
+        if (column.numeric != numeric) {
+            throw new IllegalArgumentException("Field " + fieldName + " is "
+                    + (column.numeric ? "numeric" : "not numeric"));
+        }
+        return column;
+    }
+
+    /**
+     * Returns the sorted record numbers of the entries in the range
+     */
+    private int[] records(Column column, int start, int end) {
+        if (start >= end) {
+            return EMPTY;
+        }
+        int[] result = new int[end - start];
+        final int entrySize = column.entrySize();
+        int position = column.offset + start * entrySize + column.keyLength;
+        for (int i = 0; i < result.length; i++, position += entrySize) {
+            result[i] = buffer.getInt(position);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Releases the memory mapped buffer
+     */
+    public void close() {
+        if (buffer != null) {
+            NIOUtilities.clean(buffer, true);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Turns negative zero into zero, so that the two compare as equal
+     */
+    static double normalize(double value) {
+        return value + 0.0;
+    }
+
+    /**
+     * Compares two keys as unsigned bytes, the shorter one being padded with zeroes
+     */
+    static int compareKeys(byte[] a, byte[] b) {
+        final int length = Math.max(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int x = i < a.length ? a[i] & 0xFF : 0;
+            int y = i < b.length ? b[i] & 0xFF : 0;
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the records in both the sorted arrays
+     */
+    public static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the records in any of the sorted arrays, without duplicates
+     */
+    public static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, count = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                next = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++];
+                j++;
+            }
+            result[count++] = next;
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
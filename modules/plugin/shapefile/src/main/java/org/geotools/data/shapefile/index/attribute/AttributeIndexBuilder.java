@@ -0,0 +1,264 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.attribute;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.geotools.data.shapefile.dbf.DbaseFileHeader;
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
+
+/**
+ * Collects the values of a set of dbf fields and writes them as an {@link AttributeIndex}. Each
+ * column is sorted by value, character fields are keyed by their raw, trimmed, bytes, so that the
+ * index does not depend on the charset used to decode them, numeric fields by their value as a
+ * double. Null values are not indexed.
+ * <p>
+ * Usage:<CODE><PRE>
+ * AttributeIndexBuilder builder = new AttributeIndexBuilder(header, fields);
+ * while (reader.hasNext()) {
+ *     reader.read();
+ *     builder.add(++recordNumber, reader);
+ * }
+ * builder.write(file);
+ * </PRE></CODE>
+ */
+public class AttributeIndexBuilder {
+
+    /**
+     * The values of a single field
+     */
+    static final class Column {
+        final String name;
+
+        final int field;
+
+        final boolean numeric;
+
+        int count;
+
+        int[] records = new int[1024];
+
+        double[] numbers;
+
+        byte[][] strings;
+
+        int keyLength;
+
+        Column(String name, int field, boolean numeric) {
+            this.name = name;
+            this.field = field;
+            this.numeric = numeric;
+            if (numeric) {
+                numbers = new double[records.length];
+                keyLength = 8;
+            } else {
+                strings = new byte[records.length][];
+            }
+        }
+
+        void add(int record, double number, byte[] string) {
+            if (count == records.length) {
+                records = Arrays.copyOf(records, count * 2);
+                if (numeric) {
+                    numbers = Arrays.copyOf(numbers, count * 2);
+                } else {
+                    strings = Arrays.copyOf(strings, count * 2);
+                }
+            }
+            records[count] = record;
+            if (numeric) {
+                numbers[count] = number;
+            } else {
+                strings[count] = string;
+                keyLength = Math.max(keyLength, string.length);
+            }
+            count++;
+        }
+
+        /**
+         * Returns the positions of the values in key order, ties in insertion order
+         */
+        int[] sort() {
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            mergeSort(order, new int[count], 0, count);
+            return order;
+        }
+
+        private void mergeSort(int[] order, int[] temp, int from, int to) {
+            if (to - from < 2) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            mergeSort(order, temp, from, mid);
+            mergeSort(order, temp, mid, to);
+            if (compare(order[mid - 1], order[mid]) <= 0) {
+                return;
+            }
+            System.arraycopy(order, from, temp, from, to - from);
+            int i = from, j = mid, k = from;
+            while (i < mid && j < to) {
+                order[k++] = compare(temp[j], temp[i]) < 0 ? temp[j++] : temp[i++];
+            }
+            while (i < mid) {
+                order[k++] = temp[i++];
+            }
+            while (j < to) {
+                order[k++] = temp[j++];
+            }
+        }
+
+        private int compare(int a, int b) {
+            if (numeric) {
+                return Double.compare(numbers[a], numbers[b]);
+            } else {
+                return AttributeIndex.compareKeys(strings[a], strings[b]);
+            }
+        }
+    }
+
+    final List<Column> columns = new ArrayList<Column>();
+
+    final int numRecords;
+
+    /**
+     * Builds a new index builder
+     *
+     * @param header The header of the dbf file being indexed
+     * @param fieldNames The names of the fields to be indexed, of character or numeric type
+     * @throws IllegalArgumentException If a field is missing, or cannot be indexed
+     */
+    public AttributeIndexBuilder(DbaseFileHeader header, List<String> fieldNames) {
+        this.numRecords = header.getNumRecords();
+        for (String name : fieldNames) {
+            int field = -1;
+            for (int i = 0; i < header.getNumFields() && field == -1; i++) {
+                if (header.getFieldName(i).equals(name)) {
+                    field = i;
+                }
+            }
+            if (field == -1) {
+                throw new IllegalArgumentException("Field " + name + " not found in the dbf");
+            }
+            char type = Character.toUpperCase(header.getFieldType(field));
+            if (type == 'C') {
+                columns.add(new Column(name, field, false));
+            } else if (type == 'N' || type == 'F') {
+                columns.add(new Column(name, field, true));
+            } else {
+                throw new IllegalArgumentException("Field " + name + " has type " + type
+                        + ", only character and numeric fields can be indexed");
+            }
+        }
+    }
+
+    /**
+     * Adds the values of the current record of the reader
+     *
+     * @param recordNumber The record number, one based
+     * @param reader A reader of the dbf file the builder was created for
+     */
+    public void add(int recordNumber, DbaseFileReader reader) throws IOException {
+        for (Column column : columns) {
+            if (column.numeric) {
+                Object value = reader.readField(column.field);
+                if (value instanceof Number) {
+                    double number = AttributeIndex.normalize(((Number) value).doubleValue());
+                    if (!Double.isNaN(number)) {
+                        column.add(recordNumber, number, null);
+                    }
+                }
+            } else {
+                byte[] value = reader.readTrimmedBytes(column.field);
+                if (value != null) {
+                    column.add(recordNumber, 0, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts the columns and writes the index in the specified file
+     */
+    public void write(File file) throws IOException {
+        // compute the position of each column section
+        int headerSize = AttributeIndex.MAGIC.length + 3 * 4;
+        for (Column column : columns) {
+            headerSize += 2 + column.name.getBytes(AttributeIndex.NAME_CHARSET).length + 1 + 3 * 4;
+        }
+        long position = headerSize;
+        int[] offsets = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            offsets[i] = (int) position;
+            position += (long) column.count * (column.keyLength + 4);
+        }
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("Attribute index files larger than 2GB are not supported");
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file), 64 * 1024));
+        try {
+            out.write(AttributeIndex.MAGIC);
+            out.writeInt(AttributeIndex.VERSION);
+            out.writeInt(numRecords);
+            out.writeInt(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                Column column = columns.get(i);
+                byte[] name = column.name.getBytes(AttributeIndex.NAME_CHARSET);
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeByte(column.numeric ? AttributeIndex.NUMERIC : AttributeIndex.STRING);
+                out.writeInt(column.keyLength);
+                out.writeInt(column.count);
+                out.writeInt(offsets[i]);
+            }
+            for (Column column : columns) {
+                int[] order = column.sort();
+                for (int i = 0; i < order.length; i++) {
+                    int idx = order[i];
+                    if (column.numeric) {
+                        out.writeDouble(column.numbers[idx]);
+                    } else {
+                        byte[] key = column.strings[idx];
+                        out.write(key);
+                        // pad with zeroes, which sort before any other byte
+                        for (int j = key.length; j < column.keyLength; j++) {
+                            out.write(0);
+                        }
+                    }
+                    out.writeInt(column.records[idx]);
+                }
+                // release the memory as we go
+                column.numbers = null;
+                column.strings = null;
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.rtree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.CloseableIterator;
+import org.geotools.data.shapefile.index.Data;
+import org.geotools.data.shapefile.index.DataDefinition;
+import org.geotools.resources.NIOUtilities;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * A read only, memory mapped, packed R-tree. The tree is built by {@link PackedRTreeBuilder},
+ * which sorts the items along a Hilbert curve and packs them into full nodes, so the tree is
+ * stored as a flat array of boxes, level by level, with no need for pointers. Searching it
+ * requires no object allocation besides the result.
+ * <p>
+ * File layout (big endian):
+ * <ul>
+ * <li>the magic bytes "GTPRTREE" and the format version (int)</li>
+ * <li>node size, number of items, number of levels (int)</li>
+ * <li>the end position of each level in the node array (int[])</li>
+ * <li>the overall bounds, minx, miny, maxx, maxy (double)</li>
+ * <li>the node boxes, leaves first, as minx, miny, maxx, maxy (float), rounded outwards</li>
+ * <li>for each leaf, the record number and the byte offset in the shp file (int)</li>
+ * </ul>
+ */
+public class PackedRTree {
+
+    static final byte[] MAGIC = new byte[] { 'G', 'T', 'P', 'R', 'T', 'R', 'E', 'E' };
+
+    static final int VERSION = 1;
+
+    static final DataDefinition DATA_DEFINITION = new DataDefinition("US-ASCII");
+    static {
+        DATA_DEFINITION.addField(Integer.class);
+        DATA_DEFINITION.addField(Long.class);
+    };
+
+    ByteBuffer buffer;
+
+    int nodeSize;
+
+    int numItems;
+
+    int[] levelEnds;
+
+    int nodesStart;
+
+    int itemsStart;
+
+    Envelope bounds;
+
+    /**
+     * Opens the packed R-tree stored in the specified file
+     *
+     * @param file
+     * @throws IOException
+     */
+    public PackedRTree(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Packed R-tree files larger than 2GB are not supported");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+
+        try {
+            readHeader(file);
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw new IOException("Invalid packed R-tree file " + file, e);
+        }
+    }
+
+    private void readHeader(File file) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("File " + file + " is not a packed R-tree");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported packed R-tree version " + version);
+        }
+        nodeSize = buffer.getInt();
+        numItems = buffer.getInt();
+        int numLevels = buffer.getInt();
+        levelEnds = new int[numLevels];
+        for (int i = 0; i < numLevels; i++) {
+            levelEnds[i] = buffer.getInt();
+        }
+        if (!Arrays.equals(levelEnds, computeLevelEnds(numItems, nodeSize))) {
+            throw new IOException("Packed R-tree " + file + " is corrupted, invalid level sizes");
+        }
+        double minX = buffer.getDouble();
+        double minY = buffer.getDouble();
+        double maxX = buffer.getDouble();
+        double maxY = buffer.getDouble();
+        bounds = new Envelope(minX, maxX, minY, maxY);
+        nodesStart = headerSize(numLevels);
+        itemsStart = nodesStart + levelEnds[numLevels - 1] * 16;
+        if (buffer.capacity() < itemsStart + numItems * 8) {
+            throw new IOException("Packed R-tree " + file + " is truncated");
+        }
+    }
+
+    /**
+     * Returns the bounds of the indexed items
+     */
+    public Envelope getBounds() {
+        return new Envelope(bounds);
+    }
+
+    /**
+     * Returns the number of indexed items
+     */
+    public int getNumItems() {
+        return numItems;
+    }
+
+    /**
+     * Searches the tree for the items whose bounding box intersects the specified one. The
+     * results are returned sorted by shp file offset, each {@link Data} holds the record number
+     * (Integer) and the shp file offset (Long). As it happens with the other shapefile indexes,
+     * the same {@link Data} instance is reused across calls to {@link CloseableIterator#next()}
+     *
+     * @param bounds
+     */
+    public CloseableIterator<Data> search(Envelope bounds) {
+        final long[] results = collect(bounds);
+        final Data data = new Data(DATA_DEFINITION);
+        return new CloseableIterator<Data>() {
+            int idx = 0;
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            public Data next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long result = results[idx++];
+                try {
+                    data.clear();
+                    data.addValue(Integer.valueOf((int) result));
+                    data.addValue(Long.valueOf(result >>> 32));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                return data;
+            }
+
+            public boolean hasNext() {
+                return idx < results.length;
+            }
+
+            public void close() throws IOException {
+                // nothing to do
+            }
+        };
+    }
+
+    /**
+     * Collects the matching items as a sorted array of longs holding the shp offset in the
+     * upper 32 bits, and the record number in the lower ones
+     */
+    long[] collect(Envelope env) {
+        if (numItems == 0 || env.isNull()) {
+            return new long[0];
+        }
+        final double minX = env.getMinX();
+        final double minY = env.getMinY();
+        final double maxX = env.getMaxX();
+        final double maxY = env.getMaxY();
+
+        long[] results = new long[16];
+        int count = 0;
+
+        // depth first visit with explicit stacks, at most nodeSize nodes per level are pending
+        final int numLevels = levelEnds.length;
+        int[] nodeStack = new int[numLevels * nodeSize];
+        int[] levelStack = new int[numLevels * nodeSize];
+        int top = 0;
+        nodeStack[top] = levelEnds[numLevels - 1] - 1;
+        levelStack[top] = numLevels - 1;
+        top++;
+        while (top > 0) {
+            top--;
+            final int node = nodeStack[top];
+            final int level = levelStack[top];
+            if (!intersects(node, minX, minY, maxX, maxY)) {
+                continue;
+            }
+            if (level == 0) {
+                final int base = itemsStart + node * 8;
+                final int recno = buffer.getInt(base);
+                final int offset = buffer.getInt(base + 4);
+                if (count == results.length) {
+                    results = Arrays.copyOf(results, count * 2);
+                }
+                results[count++] = ((long) offset << 32) | (recno & 0xFFFFFFFFL);
+            } else {
+                final int levelStart = level == 1 ? 0 : levelEnds[level - 2];
+                final int childLevelEnd = levelEnds[level - 1];
+                final int firstChild = levelStart + (node - levelEnds[level - 1]) * nodeSize;
+                final int lastChild = Math.min(firstChild + nodeSize, childLevelEnd);
+                for (int child = lastChild - 1; child >= firstChild; child--) {
+                    nodeStack[top] = child;
+                    levelStack[top] = level - 1;
+                    top++;
+                }
+            }
+        }
+
+        results = Arrays.copyOf(results, count);
+        Arrays.sort(results);
+        return results;
+    }
+
+    private boolean intersects(int node, double minX, double minY, double maxX, double maxY) {
+        final int base = nodesStart + node * 16;
+        return !(buffer.getFloat(base) > maxX || buffer.getFloat(base + 4) > maxY
+                || buffer.getFloat(base + 8) < minX || buffer.getFloat(base + 12) < minY);
+    }
+
+    /**
+     * Releases the memory mapped buffer
+     */
+    public void close() {
+        if (buffer != null) {
+            NIOUtilities.clean(buffer, true);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Computes the end position of each level in the node array, leaves being level 0 and
+     * occupying the first numItems slots
+     */
+    static int[] computeLevelEnds(int numItems, int nodeSize) {
+        int[] ends = new int[32];
+        int levels = 0;
+        int n = numItems;
+        int total = n;
+        ends[levels++] = total;
+        while (n > 1) {
+            n = (n + nodeSize - 1) / nodeSize;
+            total += n;
+            ends[levels++] = total;
+        }
+        return Arrays.copyOf(ends, levels);
+    }
+
+    static int headerSize(int numLevels) {
+        return MAGIC.length + 4 * 4 + numLevels * 4 + 4 * 8;
+    }
+
+    /**
+     * Returns the largest float smaller than or equal to the specified double
+     */
+    static float floor(double value) {
+        float f = (float) value;
+        if (f > value) {
+            f = Math.nextDown(f);
+        }
+        return f;
+    }
+
+    /**
+     * Returns the smallest float larger than or equal to the specified double
+     */
+    static float ceil(double value) {
+        float f = (float) value;
+        if (f < value) {
+            f = Math.nextUp(f);
+        }
+        return f;
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.rtree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Bulk loads a {@link PackedRTree} and writes it to disk. The items are sorted along a Hilbert
+ * curve, packed into full leaves, and the upper levels are built bottom up, in the same order,
+ * resulting in a tree that is 100% full regardless of the data distribution.
+ * <p>
+ * Usage:<CODE><PRE>
+ * PackedRTreeBuilder builder = new PackedRTreeBuilder(count);
+ * for (...) {
+ *     builder.add(minX, minY, maxX, maxY, recordNumber, shpOffset);
+ * }
+ * builder.write(file);
+ * </PRE></CODE>
+ */
+public class PackedRTreeBuilder {
+
+    /**
+     * The default number of children per node
+     */
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    /**
+     * Resolution of the Hilbert curve used to sort the items
+     */
+    static final int HILBERT_MAX = (1 << 16) - 1;
+
+    int nodeSize;
+
+    int count;
+
+    float[] boxes;
+
+    int[] recordNumbers;
+
+    int[] offsets;
+
+    Envelope bounds = new Envelope();
+
+    /**
+     * Builds a new tree builder with the default node size
+     *
+     * @param numItems The number of items that will be added to the tree
+     */
+    public PackedRTreeBuilder(int numItems) {
+        this(numItems, DEFAULT_NODE_SIZE);
+    }
+
+    /**
+     * Builds a new tree builder
+     *
+     * @param numItems The number of items that will be added to the tree
+     * @param nodeSize The number of children per node, between 2 and 65535
+     */
+    public PackedRTreeBuilder(int numItems, int nodeSize) {
+        if (numItems < 0) {
+            throw new IllegalArgumentException("The number of items cannot be negative");
+        }
+        if (nodeSize < 2 || nodeSize > 65535) {
+            throw new IllegalArgumentException("Invalid node size " + nodeSize
+                    + ", must be between 2 and 65535");
+        }
+        this.nodeSize = nodeSize;
+        this.boxes = new float[numItems * 4];
+        this.recordNumbers = new int[numItems];
+        this.offsets = new int[numItems];
+    }
+
+    /**
+     * Adds an item to the tree
+     *
+     * @param minX
+     * @param minY
+     * @param maxX
+     * @param maxY
+     * @param recordNumber The shapefile record number (one based)
+     * @param offset The record offset in the shp file, in bytes
+     */
+    public void add(double minX, double minY, double maxX, double maxY, int recordNumber,
+            int offset) {
+        if (count == recordNumbers.length) {
+            throw new IllegalStateException("The tree is already full, it was sized for "
+                    + count + " items");
+        }
+        // round outwards, so that the float boxes always contain the original ones
+        int base = count * 4;
+        boxes[base] = PackedRTree.floor(minX);
+        boxes[base + 1] = PackedRTree.floor(minY);
+        boxes[base + 2] = PackedRTree.ceil(maxX);
+        boxes[base + 3] = PackedRTree.ceil(maxY);
+        recordNumbers[count] = recordNumber;
+        offsets[count] = offset;
+        bounds.expandToInclude(minX, minY);
+        bounds.expandToInclude(maxX, maxY);
+        count++;
+    }
+
+    /**
+     * Sorts the items, builds the tree and writes it in the specified file
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        // compute the levels sizes
+        int[] levelEnds = PackedRTree.computeLevelEnds(count, nodeSize);
+        int numNodes = levelEnds[levelEnds.length - 1];
+
+        // sort the items along the Hilbert curve
+        long[] keys = new long[count];
+        double width = bounds.getWidth();
+        double height = bounds.getHeight();
+        for (int i = 0; i < count; i++) {
+            int base = i * 4;
+            double cx = (boxes[base] + boxes[base + 2]) / 2;
+            double cy = (boxes[base + 1] + boxes[base + 3]) / 2;
+            int hx = width > 0 ? (int) Math.floor(HILBERT_MAX * (cx - bounds.getMinX()) / width) : 0;
+            int hy = height > 0 ? (int) Math.floor(HILBERT_MAX * (cy - bounds.getMinY()) / height) : 0;
+            hx = Math.max(0, Math.min(HILBERT_MAX, hx));
+            hy = Math.max(0, Math.min(HILBERT_MAX, hy));
+            long hilbert = hilbert(hx, hy) & 0xFFFFFFFFL;
+            keys[i] = (hilbert << 31) | i;
+        }
+        Arrays.sort(keys);
+
+        // build the node boxes, leaves first
+        float[] nodes = new float[numNodes * 4];
+        int[] sortedRecords = new int[count];
+        int[] sortedOffsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            int source = (int) (keys[i] & 0x7FFFFFFFL);
+            System.arraycopy(boxes, source * 4, nodes, i * 4, 4);
+            sortedRecords[i] = recordNumbers[source];
+            sortedOffsets[i] = offsets[source];
+        }
+        // free memory as soon as possible
+        keys = null;
+        boxes = null;
+
+        int childStart = 0;
+        for (int level = 1; level < levelEnds.length; level++) {
+            int childEnd = levelEnds[level - 1];
+            int node = childEnd;
+            for (int child = childStart; child < childEnd; child += nodeSize, node++) {
+                int last = Math.min(child + nodeSize, childEnd);
+                float minX = Float.POSITIVE_INFINITY;
+                float minY = Float.POSITIVE_INFINITY;
+                float maxX = Float.NEGATIVE_INFINITY;
+                float maxY = Float.NEGATIVE_INFINITY;
+                for (int c = child; c < last; c++) {
+                    int base = c * 4;
+                    minX = Math.min(minX, nodes[base]);
+                    minY = Math.min(minY, nodes[base + 1]);
+                    maxX = Math.max(maxX, nodes[base + 2]);
+                    maxY = Math.max(maxY, nodes[base + 3]);
+                }
+                int base = node * 4;
+                nodes[base] = minX;
+                nodes[base + 1] = minY;
+                nodes[base + 2] = maxX;
+                nodes[base + 3] = maxY;
+            }
+            childStart = childEnd;
+        }
+
+        // write out
+        int headerSize = PackedRTree.headerSize(levelEnds.length);
+        long size = headerSize + numNodes * 16L + count * 8L;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The packed R-tree would be " + size
+                    + " bytes long, files larger than 2GB are not supported");
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(headerSize);
+            buffer.put(PackedRTree.MAGIC);
+            buffer.putInt(PackedRTree.VERSION);
+            buffer.putInt(nodeSize);
+            buffer.putInt(count);
+            buffer.putInt(levelEnds.length);
+            for (int levelEnd : levelEnds) {
+                buffer.putInt(levelEnd);
+            }
+            buffer.putDouble(bounds.getMinX());
+            buffer.putDouble(bounds.getMinY());
+            buffer.putDouble(bounds.getMaxX());
+            buffer.putDouble(bounds.getMaxY());
+            buffer.flip();
+            writeFully(channel, buffer);
+
+            buffer = ByteBuffer.allocate(64 * 1024);
+            for (int i = 0; i < nodes.length; i++) {
+                if (buffer.remaining() < 4) {
+                    buffer.flip();
+                    writeFully(channel, buffer);
+                    buffer.clear();
+                }
+                buffer.putFloat(nodes[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                if (buffer.remaining() < 8) {
+                    buffer.flip();
+                    writeFully(channel, buffer);
+                    buffer.clear();
+                }
+                buffer.putInt(sortedRecords[i]);
+                buffer.putInt(sortedOffsets[i]);
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Computes the position of the specified point along a Hilbert curve covering a 2^16 x 2^16
+     * grid. Based on "Fast Hilbert curve generation, sorting, and range queries" by
+     * rawrunprotected, the result must be interpreted as an unsigned integer.
+     */
+    static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int A = a | (b >>> 1);
+        int B = (a >>> 1) ^ a;
+        int C = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+        int D = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        A = ((a & (a >>> 2)) ^ (b & (b >>> 2)));
+        B = ((a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2)));
+        C ^= ((a & (c >>> 2)) ^ (b & (d >>> 2)));
+        D ^= ((b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2)));
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        A = ((a & (a >>> 4)) ^ (b & (b >>> 4)));
+        B = ((a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4)));
+        C ^= ((a & (c >>> 4)) ^ (b & (d >>> 4)));
+        D ^= ((b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4)));
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        C ^= ((a & (c >>> 8)) ^ (b & (d >>> 8)));
+        D ^= ((b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8)));
+
+        a = C ^ (C >>> 1);
+        b = D ^ (D >>> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+}
@@ -19,6 +19,9 @@ package org.geotools.data.shapefile.shp;
 import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
 
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+
 import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
 import com.vividsolutions.jts.geom.Envelope;
@@ -136,6 +139,8 @@ public class MultiLineHandler implements ShapeHandler {
         int length = 0;
         boolean clonePoint = false;
         final DoubleBuffer doubleBuffer = buffer.asDoubleBuffer();
+        final CoordinateSequenceFactory csf = geometryFactory.getCoordinateSequenceFactory();
+        final boolean lite = dimensions == 2 && csf instanceof LiteCoordinateSequenceFactory;
         for (int part = 0; part < numParts; part++) {
             start = partOffsets[part];
 
@@ -154,17 +159,32 @@ public class MultiLineHandler implements ShapeHandler {
                 clonePoint = false;
             }
 
-            CoordinateSequence cs = geometryFactory.getCoordinateSequenceFactory().create(length, dimensions);
-            double[] xy = new double[xyLength * 2];
-            doubleBuffer.get(xy);
-            for (int i = 0; i < xyLength; i++) {
-                cs.setOrdinate(i, 0, xy[i * 2]);
-                cs.setOrdinate(i, 1, xy[i * 2 + 1]);
-            }
+            CoordinateSequence cs;
+            if (lite) {
+                // decode straight into the array backing the sequence, no intermediate copies
+                double[] ordinates = new double[length * 2];
+                doubleBuffer.get(ordinates, 0, xyLength * 2);
+                if (clonePoint) {
+                    ordinates[2] = ordinates[0];
+                    ordinates[3] = ordinates[1];
+                }
+                cs = new LiteCoordinateSequence(ordinates, 2);
+            } else {
+                cs = csf.create(length, dimensions);
+                // reuse the ordinate buffer across parts and records
+                if (xy == null || xy.length < xyLength * 2) {
+                    xy = new double[xyLength * 2];
+                }
+                doubleBuffer.get(xy, 0, xyLength * 2);
+                for (int i = 0; i < xyLength; i++) {
+                    cs.setOrdinate(i, 0, xy[i * 2]);
+                    cs.setOrdinate(i, 1, xy[i * 2 + 1]);
+                }
 
-            if (clonePoint) {
-                cs.setOrdinate(1, 0, cs.getOrdinate(0, 0));
-                cs.setOrdinate(1, 1, cs.getOrdinate(0, 1));
+                if (clonePoint) {
+                    cs.setOrdinate(1, 0, cs.getOrdinate(0, 0));
+                    cs.setOrdinate(1, 1, cs.getOrdinate(0, 1));
+                }
             }
 
             lines[part] = cs;
@@ -193,8 +213,10 @@ public class MultiLineHandler implements ShapeHandler {
                     clonePoint = false;
                 }
 
-                double[] z = new double[length];
-                doubleBuffer.get(z);
+                if (z == null || z.length < length) {
+                    z = new double[length];
+                }
+                doubleBuffer.get(z, 0, length);
                 for (int i = 0; i < length; i++) {
                     lines[part].setOrdinate(i, 2, z[i]);
                 }
@@ -19,6 +19,9 @@ package org.geotools.data.shapefile.shp;
 import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
 
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Envelope;
@@ -110,11 +113,16 @@ public class MultiPointHandler implements ShapeHandler {
 
         int numpoints = buffer.getInt();
         int dimensions = shapeType == shapeType.MULTIPOINTZ && !flatGeometry ? 3 : 2;
-        CoordinateSequence cs = geometryFactory.getCoordinateSequenceFactory().create(numpoints, dimensions);
-
         DoubleBuffer dbuffer = buffer.asDoubleBuffer();
         double[] ordinates = new double[numpoints * 2];
         dbuffer.get(ordinates);
+        if (dimensions == 2
+                && geometryFactory.getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory) {
+            // the ordinates are already packed the way the sequence wants them
+            return geometryFactory.createMultiPoint(new LiteCoordinateSequence(ordinates, 2));
+        }
+
+        CoordinateSequence cs = geometryFactory.getCoordinateSequenceFactory().create(numpoints, dimensions);
         for (int t = 0; t < numpoints; t++) {
             cs.setOrdinate(t, 0, ordinates[t * 2]);
             cs.setOrdinate(t, 1, ordinates[t * 2 + 1]);
@@ -23,6 +23,8 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
 import org.geotools.geometry.jts.coordinatesequence.CoordinateSequences;
 
 import com.vividsolutions.jts.algorithm.CGAlgorithms;
@@ -148,6 +150,67 @@ public class PolygonHandler implements ShapeHandler {
 
         ArrayList shells = new ArrayList();
         ArrayList holes = new ArrayList();
+        if (dimensions == 2
+                && geometryFactory.getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory) {
+            readLiteRings(buffer, numParts, numPoints, partOffsets, shells, holes);
+        } else {
+            readRings(buffer, numParts, numPoints, partOffsets, dimensions, shells, holes);
+        }
+
+        // quick optimization: if there's only one shell no need to check
+        // for holes inclusion
+        if (shells.size() == 1) {
+            return createMulti((LinearRing) shells.get(0), holes);
+        }
+        // if for some reason, there is only one hole, we just reverse it and
+        // carry on.
+        else if (holes.size() == 1 && shells.size() == 0) {
+            return createMulti((LinearRing) holes.get(0));
+        } else {
+
+            // build an association between shells and holes
+            final ArrayList holesForShells = assignHolesToShells(shells, holes);
+
+            Geometry g = buildGeometries(shells, holes, holesForShells);
+
+            return g;
+        }
+    }
+
+    /**
+     * Reads the rings decoding the ordinates straight into the arrays backing the
+     * {@link LiteCoordinateSequence} of each ring, without intermediate copies
+     */
+    private void readLiteRings(ByteBuffer buffer, int numParts, int numPoints,
+            int[] partOffsets, List shells, List holes) {
+        final DoubleBuffer dbuffer = buffer.asDoubleBuffer();
+        for (int part = 0; part < numParts; part++) {
+            final int start = partOffsets[part];
+            final int finish = part == (numParts - 1) ? numPoints : partOffsets[part + 1];
+            final int length = finish - start;
+
+            int close = 0; // '1' if the ring must be closed, '0' otherwise
+            if (length > 0
+                    && (dbuffer.get(start * 2) != dbuffer.get((finish - 1) * 2) 
+                    || dbuffer.get(start * 2 + 1) != dbuffer.get((finish - 1) * 2 + 1))) {
+                close = 1;
+            }
+
+            double[] ordinates = new double[(length + close) * 2];
+            if (length > 0) {
+                dbuffer.position(start * 2);
+                dbuffer.get(ordinates, 0, length * 2);
+            }
+            if (close == 1) {
+                ordinates[length * 2] = ordinates[0];
+                ordinates[length * 2 + 1] = ordinates[1];
+            }
+            addRing(new LiteCoordinateSequence(ordinates, 2), shells, holes);
+        }
+    }
+
+    private void readRings(ByteBuffer buffer, int numParts, int numPoints, int[] partOffsets,
+            int dimensions, List shells, List holes) {
         CoordinateSequence coords = readCoordinates(buffer, numPoints, dimensions);
 
         int offset = 0;
@@ -195,38 +258,23 @@ public class PolygonHandler implements ShapeHandler {
                     csRing.setOrdinate(length, 2, coords.getOrdinate(start, 2));
                 }
             }
-            // REVISIT: polygons with only 1 or 2 points are not polygons -
-            // geometryFactory will bomb so we skip if we find one.
-            if (csRing.size() == 0 || csRing.size() > 3) {
-                LinearRing ring = geometryFactory.createLinearRing(csRing);
-
-                if (CoordinateSequences.isCCW(csRing)) {
-                    // counter-clockwise
-                    holes.add(ring);
-                } else {
-                    // clockwise
-                    shells.add(ring);
-                }
-            }
-        }
-
-        // quick optimization: if there's only one shell no need to check
-        // for holes inclusion
-        if (shells.size() == 1) {
-            return createMulti((LinearRing) shells.get(0), holes);
+            addRing(csRing, shells, holes);
         }
-        // if for some reason, there is only one hole, we just reverse it and
-        // carry on.
-        else if (holes.size() == 1 && shells.size() == 0) {
-            return createMulti((LinearRing) holes.get(0));
-        } else {
-
-            // build an association between shells and holes
-            final ArrayList holesForShells = assignHolesToShells(shells, holes);
+    }
 
-            Geometry g = buildGeometries(shells, holes, holesForShells);
+    private void addRing(CoordinateSequence csRing, List shells, List holes) {
+        // REVISIT: polygons with only 1 or 2 points are not polygons -
+        // geometryFactory will bomb so we skip if we find one.
+        if (csRing.size() == 0 || csRing.size() > 3) {
+            LinearRing ring = geometryFactory.createLinearRing(csRing);
 
-            return g;
+            if (CoordinateSequences.isCCW(csRing)) {
+                // counter-clockwise
+                holes.add(ring);
+            } else {
+                // clockwise
+                shells.add(ring);
+            }
         }
     }
 
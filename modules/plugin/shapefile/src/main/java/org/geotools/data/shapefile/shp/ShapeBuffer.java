@@ -0,0 +1,251 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.shp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+
+/**
+ * A reusable, growable container for the raw contents of a shape record: parts and packed
+ * ordinates. Filling it through {@link ShapefileReader.Record#read(ShapeBuffer)} decodes the
+ * record straight from the shp buffer without building any JTS object, and once the internal
+ * arrays have grown to the size of the largest record, without allocating any memory at all.
+ * <p>
+ * This is meant for consumers that only need the coordinates, such as rendering or
+ * envelope/measure computations, and can process one record at a time: the contents are
+ * overwritten on each read. Example of usage: <CODE><PRE>
+ * ShapeBuffer shape = new ShapeBuffer();
+ * while (reader.hasNext()) {
+ *     reader.nextRecord().read(shape);
+ *     for (int part = 0; part &lt; shape.getNumParts(); part++) {
+ *         for (int i = shape.getPartStart(part); i &lt; shape.getPartEnd(part); i++) {
+ *             draw(shape.getX(i), shape.getY(i));
+ *         }
+ *     }
+ * }
+ * </PRE></CODE>
+ */
+public class ShapeBuffer {
+
+    ShapeType type = ShapeType.NULL;
+
+    int numParts;
+
+    int numPoints;
+
+    int[] partOffsets = new int[1];
+
+    /** The x/y ordinates, packed */
+    double[] xy = new double[32];
+
+    /** The z ordinates, if the shape has them and they have been read */
+    double[] z = new double[0];
+
+    boolean hasZ;
+
+    double minX, minY, maxX, maxY;
+
+    /**
+     * Reads the shape contents from the buffer, which must be positioned right after the shape
+     * type of the record
+     *
+     * @param buffer
+     * @param type the record shape type
+     * @param flatGeometry if true the z values will be skipped
+     */
+    void read(ByteBuffer buffer, ShapeType type, boolean flatGeometry) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.type = type;
+        this.hasZ = false;
+        if (type == ShapeType.NULL) {
+            numParts = 0;
+            numPoints = 0;
+            minX = minY = maxX = maxY = Double.NaN;
+            return;
+        }
+
+        if (type.isPointType()) {
+            numParts = 1;
+            numPoints = 1;
+            partOffsets[0] = 0;
+            ensureCapacity(1);
+            xy[0] = minX = maxX = buffer.getDouble();
+            xy[1] = minY = maxY = buffer.getDouble();
+            if (type == ShapeType.POINTZ && !flatGeometry) {
+                z[0] = buffer.getDouble();
+                hasZ = true;
+            }
+            return;
+        }
+
+        minX = buffer.getDouble();
+        minY = buffer.getDouble();
+        maxX = buffer.getDouble();
+        maxY = buffer.getDouble();
+
+        if (type.isMultiPointType()) {
+            numParts = 1;
+            numPoints = buffer.getInt();
+            partOffsets[0] = 0;
+        } else {
+            numParts = buffer.getInt();
+            numPoints = buffer.getInt();
+            if (partOffsets.length < numParts) {
+                partOffsets = new int[Math.max(numParts, partOffsets.length * 2)];
+            }
+            for (int i = 0; i < numParts; i++) {
+                partOffsets[i] = buffer.getInt();
+            }
+        }
+
+        ensureCapacity(numPoints);
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        doubles.get(xy, 0, numPoints * 2);
+        boolean zType = type == ShapeType.ARCZ || type == ShapeType.POLYGONZ
+                || type == ShapeType.MULTIPOINTZ;
+        if (zType && !flatGeometry) {
+            // skip z range
+            doubles.position(doubles.position() + 2);
+            doubles.get(z, 0, numPoints);
+            hasZ = true;
+        }
+    }
+
+    private void ensureCapacity(int points) {
+        if (xy.length < points * 2) {
+            xy = new double[Math.max(points * 2, xy.length * 2)];
+        }
+        if (z.length < points) {
+            z = new double[Math.max(points, z.length * 2)];
+        }
+    }
+
+    /**
+     * The shape type of the last record read
+     */
+    public ShapeType getType() {
+        return type;
+    }
+
+    /**
+     * The number of parts (lines, rings) in the shape. Points and multipoints have a single
+     * part, null shapes have none
+     */
+    public int getNumParts() {
+        return numParts;
+    }
+
+    /**
+     * The total number of points in the shape
+     */
+    public int getNumPoints() {
+        return numPoints;
+    }
+
+    /**
+     * The index of the first point of the specified part
+     */
+    public int getPartStart(int part) {
+        checkPart(part);
+        return partOffsets[part];
+    }
+
+    /**
+     * The index of the point following the last point of the specified part
+     */
+    public int getPartEnd(int part) {
+        checkPart(part);
+        return part == numParts - 1 ? numPoints : partOffsets[part + 1];
+    }
+
+    private void checkPart(int part) {
+        if (part < 0 || part >= numParts) {
+            throw new IndexOutOfBoundsException("Part " + part + " is out of range, "
+                    + numParts + " parts available");
+        }
+    }
+
+    public double getX(int point) {
+        return xy[point * 2];
+    }
+
+    public double getY(int point) {
+        return xy[point * 2 + 1];
+    }
+
+    /**
+     * Returns the z of the specified point, or NaN if the shape does not have z values (or they
+     * were not read because of the flat geometry mode)
+     */
+    public double getZ(int point) {
+        return hasZ ? z[point] : Double.NaN;
+    }
+
+    /**
+     * Returns the packed x/y ordinate array. The array is shared and can be longer than
+     * required, only the first {@link #getNumPoints()} * 2 values are significant
+     */
+    public double[] getOrdinates() {
+        return xy;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Copies the x/y ordinates of the specified part into a coordinate sequence. The target
+     * sequence is reused, along with its backing array, if it has the right size, otherwise a
+     * new backing array is allocated for it. If the target is null, a new sequence is created.
+     *
+     * @param part
+     * @param target the sequence to be filled, or null
+     * @return the filled sequence
+     */
+    public LiteCoordinateSequence getPart(int part, LiteCoordinateSequence target) {
+        int start = getPartStart(part);
+        int length = (getPartEnd(part) - start) * 2;
+        double[] coords;
+        if (target != null && target.getDimension() == 2 && target.getArray().length == length) {
+            coords = target.getArray();
+        } else {
+            coords = new double[length];
+        }
+        System.arraycopy(xy, start * 2, coords, 0, length);
+        if (target == null) {
+            return new LiteCoordinateSequence(coords, 2);
+        } else {
+            target.setArray(coords, 2);
+            return target;
+        }
+    }
+}
@@ -119,6 +119,22 @@ public class ShapefileReader implements FileReader {
             return shape;
         }
 
+        /**
+         * Decodes the shape stored in this record into the target buffer, without building any
+         * JTS object. The buffer can be reused across records to avoid any allocation.
+         *
+         * @param target the buffer to be filled, or null to have a new one created
+         * @return the filled buffer
+         */
+        public ShapeBuffer read(ShapeBuffer target) {
+            if (target == null) {
+                target = new ShapeBuffer();
+            }
+            buffer.position(start);
+            target.read(buffer, type, flatGeometry);
+            return target;
+        }
+
         public int offset() {
             return offset;
         }
@@ -0,0 +1,241 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.geotools.data.shapefile.index.attribute.AttributeIndex;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.data.store.AccessPath;
+import org.geotools.data.store.ContentFeatureSource;
+import org.geotools.data.store.QueryPlan;
+import org.geotools.factory.CommonFactoryFinder;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+public class AttributeIndexTest extends TestCaseSupport {
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
+    @Test
+    public void testLookups() throws Exception {
+        File shp = copyShapefiles("shapes/statepop.shp");
+        ShapeFileIndexer indexer = new ShapeFileIndexer();
+        indexer.setShapeFileName(new ShpFiles(shp));
+        int count = indexer.indexAttributes(Arrays.asList("STATE_NAME", "PERSONS"));
+        File aix = sibling(shp, "aix");
+        assertTrue(aix.exists());
+
+        AttributeIndex index = new AttributeIndex(aix);
+        try {
+            assertEquals(count, index.getNumRecords());
+            assertEquals(Arrays.asList("STATE_NAME", "PERSONS"), index.getFieldNames());
+            assertTrue(index.isNumeric("PERSONS"));
+            assertFalse(index.isNumeric("STATE_NAME"));
+
+            assertEquals(1, index.findEqual("STATE_NAME", "Texas".getBytes("ISO-8859-1")).length);
+            assertEquals(0, index.findEqual("STATE_NAME", "Tex".getBytes("ISO-8859-1")).length);
+            // New Hampshire, New Jersey, New Mexico, New York
+            assertEquals(4, index.findPrefix("STATE_NAME", "New".getBytes("ISO-8859-1")).length);
+            assertEquals(count, index.findRange("PERSONS", Double.NEGATIVE_INFINITY,
+                    Double.POSITIVE_INFINITY).length);
+            assertEquals(0, index.findRange("PERSONS", 10, 5).length);
+
+            int[] recnos = index.findRange("PERSONS", 1000000, 5000000);
+            for (int i = 1; i < recnos.length; i++) {
+                assertTrue(recnos[i - 1] < recnos[i]);
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testSetOperations() {
+        int[] a = new int[] { 1, 3, 5, 7 };
+        int[] b = new int[] { 2, 3, 7, 9 };
+        assertArrayEquals(new int[] { 3, 7 }, AttributeIndex.intersect(a, b));
+        assertArrayEquals(new int[] { 1, 2, 3, 5, 7, 9 }, AttributeIndex.union(a, b));
+        assertArrayEquals(new int[0], AttributeIndex.intersect(a, new int[0]));
+        assertArrayEquals(a, AttributeIndex.union(new int[0], a));
+    }
+
+    @Test
+    public void testQueriesMatchUnindexed() throws Exception {
+        File shp = copyShapefiles("shapes/statepop.shp");
+        ShapefileDataStore ds = new ShapefileDataStore(shp.toURI().toURL());
+        ShapefileDataStore plain = new ShapefileDataStore(shp.toURI().toURL());
+        try {
+            ds.createAttributeIndex("STATE_NAME");
+            // extending the index keeps the fields already there
+            ds.createAttributeIndex("PERSONS");
+            assertEquals(Arrays.asList("STATE_NAME", "PERSONS"),
+                    ds.indexManager.getAttributeIndexFields());
+            plain.setIndexed(false);
+
+            Filter[] filters = new Filter[] {
+                    ff.equals(ff.property("STATE_NAME"), ff.literal("Texas")),
+                    ff.equals(ff.literal("Texas"), ff.property("STATE_NAME")),
+                    ff.equal(ff.property("STATE_NAME"), ff.literal("texas"), false),
+                    ff.like(ff.property("STATE_NAME"), "New*"),
+                    ff.like(ff.property("STATE_NAME"), "N*a"),
+                    ff.greater(ff.property("PERSONS"), ff.literal(5000000)),
+                    ff.lessOrEqual(ff.property("PERSONS"), ff.literal("1000000")),
+                    ff.less(ff.literal(10000000), ff.property("PERSONS")),
+                    ff.between(ff.property("PERSONS"), ff.literal(1000000), ff.literal(3000000)),
+                    ff.and(ff.like(ff.property("STATE_NAME"), "M*"),
+                            ff.greater(ff.property("PERSONS"), ff.literal(4000000))),
+                    ff.or(ff.equals(ff.property("STATE_NAME"), ff.literal("Ohio")),
+                            ff.less(ff.property("PERSONS"), ff.literal(600000))),
+                    ff.or(ff.equals(ff.property("STATE_NAME"), ff.literal("Ohio")),
+                            ff.like(ff.property("STATE_ABBR"), "N*")),
+                    ff.and(ff.equals(ff.property("STATE_NAME"), ff.literal("Utah")),
+                            ff.bbox("the_geom", -120, 30, -100, 45, null)) };
+            for (Filter filter : filters) {
+                Set<String> expected = getNames(plain.getFeatureSource(), filter);
+                Set<String> actual = getNames(ds.getFeatureSource(), filter);
+                assertEquals(filter.toString(), expected, actual);
+            }
+            assertEquals(1, getNames(ds.getFeatureSource(), filters[0]).size());
+            assertEquals(4, getNames(ds.getFeatureSource(), filters[3]).size());
+
+            // lookups happen only for the filters the index can help with
+            assertNotNull(ds.indexManager.queryAttributeIndex(filters[0], ds.getSchema()));
+            assertNull(ds.indexManager.queryAttributeIndex(filters[2], ds.getSchema()));
+            assertNull(ds.indexManager.queryAttributeIndex(filters[11], ds.getSchema()));
+            assertEquals(1, ds.indexManager.queryAttributeIndex(filters[12], ds.getSchema())
+                    .size());
+        } finally {
+            ds.dispose();
+            plain.dispose();
+        }
+    }
+
+    @Test
+    public void testStaleIndexRebuilt() throws Exception {
+        File shp = copyShapefiles("shapes/statepop.shp");
+        ShapefileDataStore ds = new ShapefileDataStore(shp.toURI().toURL());
+        try {
+            ds.createAttributeIndex("STATE_NAME");
+            Filter filter = ff.equals(ff.property("STATE_NAME"), ff.literal("Texas"));
+            assertNotNull(ds.indexManager.queryAttributeIndex(filter, ds.getSchema()));
+            assertFalse(ds.indexManager.isAttributeIndexStale());
+
+            // an index as old as the dbf is stale, and gets rebuilt on next use
+            File aix = sibling(shp, "aix");
+            File dbf = sibling(shp, "dbf");
+            assertTrue(aix.setLastModified(dbf.lastModified()));
+            assertTrue(ds.indexManager.isAttributeIndexStale());
+            assertNotNull(ds.indexManager.queryAttributeIndex(filter, ds.getSchema()));
+            assertTrue(aix.lastModified() > dbf.lastModified());
+            assertEquals(Arrays.asList("STATE_NAME"), ds.indexManager.getAttributeIndexFields());
+            assertEquals(1, getNames(ds.getFeatureSource(), filter).size());
+        } finally {
+            ds.dispose();
+        }
+    }
+
+    @Test
+    public void testIndexInvalidatedOnWrite() throws Exception {
+        File shp = copyShapefiles("shapes/statepop.shp");
+        ShapefileDataStore ds = new ShapefileDataStore(shp.toURI().toURL());
+        try {
+            ds.createAttributeIndex("STATE_NAME");
+            Filter texas = ff.equals(ff.property("STATE_NAME"), ff.literal("Texas"));
+            Filter lonestar = ff.equals(ff.property("STATE_NAME"), ff.literal("Lone Star"));
+
+            // the writer marks the index stale instead of rebuilding it
+            FeatureWriter<SimpleFeatureType, SimpleFeature> writer = ds.getFeatureWriter(
+                    ds.getTypeNames()[0], texas, Transaction.AUTO_COMMIT);
+            try {
+                while (writer.hasNext()) {
+                    SimpleFeature feature = writer.next();
+                    feature.setAttribute("STATE_NAME", "Lone Star");
+                    writer.write();
+                }
+            } finally {
+                writer.close();
+            }
+            assertTrue(sibling(shp, "aix").exists());
+            assertTrue(ds.indexManager.isAttributeIndexStale());
+
+            // and it's rebuilt on next use
+            assertEquals(0, getNames(ds.getFeatureSource(), texas).size());
+            assertEquals(1, getNames(ds.getFeatureSource(), lonestar).size());
+            assertFalse(ds.indexManager.isAttributeIndexStale());
+        } finally {
+            ds.dispose();
+        }
+    }
+
+    @Test
+    public void testExplain() throws Exception {
+        File shp = copyShapefiles("shapes/statepop.shp");
+        ShapefileDataStore ds = new ShapefileDataStore(shp.toURI().toURL());
+        try {
+            ds.createAttributeIndex("STATE_NAME");
+            ContentFeatureSource fs = (ContentFeatureSource) ds.getFeatureSource();
+
+            Filter texas = ff.equals(ff.property("STATE_NAME"), ff.literal("Texas"));
+            QueryPlan plan = fs.explain(new Query(null, texas));
+            assertEquals(AccessPath.Type.ATTRIBUTE_INDEX, plan.getAccessPath().getType());
+            assertEquals(1, plan.getChosen().getRows(), 0);
+
+            // reading the whole file out of order costs more than scanning it
+            Filter world = ff.bbox("the_geom", -180, -90, 180, 90, null);
+            plan = fs.explain(new Query(null, world));
+            assertEquals(2, plan.getCandidates().size());
+            assertEquals(AccessPath.Type.SPATIAL_INDEX, plan.getCandidates().get(1).getPath()
+                    .getType());
+            assertEquals(AccessPath.Type.FULL_SCAN, plan.getAccessPath().getType());
+            assertEquals(fs.getCount(Query.ALL), getNames(fs, world).size());
+
+            Filter fid = ff.id(Collections.singleton(ff.featureId("statepop.1")));
+            plan = fs.explain(new Query(null, fid));
+            assertEquals(AccessPath.Type.FID_LOOKUP, plan.getAccessPath().getType());
+        } finally {
+            ds.dispose();
+        }
+    }
+
+    private Set<String> getNames(SimpleFeatureSource fs, Filter filter) throws Exception {
+        Set<String> names = new TreeSet<String>();
+        SimpleFeatureIterator it = fs.getFeatures(new Query(null, filter)).features();
+        try {
+            while (it.hasNext()) {
+                names.add((String) it.next().getAttribute("STATE_NAME"));
+            }
+        } finally {
+            it.close();
+        }
+        return names;
+    }
+}
@@ -17,6 +17,7 @@
 package org.geotools.data.shapefile;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -29,6 +30,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geotools.TestData;
+import org.geotools.data.shapefile.dbf.DbaseColumnBatch;
 import org.geotools.data.shapefile.dbf.DbaseFileHeader;
 import org.geotools.data.shapefile.dbf.DbaseFileReader;
 import org.geotools.data.shapefile.dbf.DbaseFileWriter;
@@ -107,6 +109,38 @@ public class DbaseFileTest extends TestCaseSupport {
         dbf2.close();
     }
 
+    @Test
+    public void testColumnBatchVsRow() throws Exception {
+        int[] fields = new int[] { 0, 4, 10 };
+        DbaseFileReader dbf2 = new DbaseFileReader(shpFiles, false,
+                ShapefileDataStore.DEFAULT_STRING_CHARSET);
+        try {
+            // small capacity to force multiple batch reads
+            DbaseColumnBatch batch = dbf2.createColumnBatch(fields, 10);
+            int count = 0;
+            while (dbf2.readColumns(batch) > 0) {
+                for (int r = 0; r < batch.size(); r++) {
+                    assertFalse(batch.isDeleted(r));
+                    DbaseFileReader.Row row = dbf.readRow();
+                    for (int c = 0; c < fields.length; c++) {
+                        Object expected = row.read(fields[c]);
+                        assertEquals(expected, batch.getValue(r, c));
+                        assertEquals(expected.toString(), batch.getCharSequence(r, c).toString());
+                        if (batch.isNumeric(c)) {
+                            assertEquals(((Number) expected).doubleValue(),
+                                    batch.getDouble(r, c), 0d);
+                        }
+                    }
+                    count++;
+                }
+            }
+            assertEquals(49, count);
+            assertFalse(dbf.hasNext());
+        } finally {
+            dbf2.close();
+        }
+    }
+
     @Test
     public void testHeader() throws Exception {
         DbaseFileHeader header = new DbaseFileHeader();
@@ -0,0 +1,142 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.geotools.data.CloseableIterator;
+import org.geotools.data.Query;
+import org.geotools.data.shapefile.files.ShpFileType;
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.geotools.data.shapefile.index.Data;
+import org.geotools.data.shapefile.index.rtree.PackedRTree;
+import org.geotools.data.shapefile.shp.IndexFile;
+import org.geotools.data.shapefile.shp.ShapefileReader;
+import org.geotools.data.shapefile.shp.ShapefileReader.Record;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.util.NullProgressListener;
+import org.junit.Test;
+import org.opengis.filter.FilterFactory2;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class PackedRTreeTest extends TestCaseSupport {
+
+    @Test
+    public void testSearchMatchesBruteForce() throws Exception {
+        File shp = copyShapefiles("shapes/statepop.shp");
+        ShpFiles shpFiles = new ShpFiles(shp);
+
+        ShapeFileIndexer indexer = new ShapeFileIndexer();
+        indexer.setShapeFileName(shpFiles);
+        indexer.setIndexType(ShpFileType.PRT);
+        indexer.setLeafSize(4);
+        int count = indexer.index(false, new NullProgressListener());
+        File prt = sibling(shp, "prt");
+        assertTrue(prt.exists());
+
+        // collect the record envelopes and offsets
+        List<Envelope> envelopes = new ArrayList<Envelope>();
+        List<Long> offsets = new ArrayList<Long>();
+        IndexFile shx = new IndexFile(shpFiles, false);
+        ShapefileReader reader = new ShapefileReader(shpFiles, false, false,
+                new GeometryFactory());
+        try {
+            while (reader.hasNext()) {
+                Record rec = reader.nextRecord();
+                envelopes.add(new Envelope(rec.minX, rec.maxX, rec.minY, rec.maxY));
+                offsets.add((long) shx.getOffsetInBytes(envelopes.size() - 1));
+            }
+        } finally {
+            reader.close();
+            shx.close();
+        }
+        assertEquals(envelopes.size(), count);
+
+        PackedRTree tree = new PackedRTree(prt);
+        try {
+            assertEquals(count, tree.getNumItems());
+            Envelope bounds = tree.getBounds();
+            Envelope[] queries = new Envelope[] { bounds, new Envelope(-100, -90, 30, 40),
+                    new Envelope(-80, -79, 40, 41), new Envelope(-200, -190, 0, 10),
+                    new Envelope(-120, -70, 25, 30) };
+            for (Envelope query : queries) {
+                Set<Long> expected = new TreeSet<Long>();
+                for (int i = 0; i < envelopes.size(); i++) {
+                    if (envelopes.get(i).intersects(query)) {
+                        expected.add(offsets.get(i));
+                    }
+                }
+
+                List<Long> actual = new ArrayList<Long>();
+                CloseableIterator<Data> it = tree.search(query);
+                try {
+                    while (it.hasNext()) {
+                        Data data = it.next();
+                        int recno = (Integer) data.getValue(0);
+                        long offset = (Long) data.getValue(1);
+                        assertEquals(offsets.get(recno - 1).longValue(), offset);
+                        actual.add(offset);
+                    }
+                } finally {
+                    it.close();
+                }
+                // the envelopes are rounded outwards, the tree may return a few extra candidates
+                assertTrue(actual.containsAll(expected));
+                // results are sorted by offset
+                List<Long> sorted = new ArrayList<Long>(new TreeSet<Long>(actual));
+                assertEquals(sorted, actual);
+            }
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testDataStoreWithPackedRTree() throws Exception {
+        File shp = copyShapefiles("shapes/statepop.shp");
+        ShapefileDataStore ds = new ShapefileDataStore(shp.toURI().toURL());
+        try {
+            ds.indexManager.spatialIndexType = ShpFileType.PRT;
+            FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+            Query q = new Query(ds.getTypeNames()[0]);
+            q.setFilter(ff.bbox("the_geom", -100, 30, -90, 40, null));
+            int filtered = ds.getFeatureSource().getFeatures(q).size();
+            assertTrue(sibling(shp, "prt").exists());
+            assertFalse(sibling(shp, "qix").exists());
+
+            // compare with a non indexed read
+            ShapefileDataStore plain = new ShapefileDataStore(shp.toURI().toURL());
+            try {
+                plain.setIndexed(false);
+                assertEquals(plain.getFeatureSource().getFeatures(q).size(), filtered);
+            } finally {
+                plain.dispose();
+            }
+            assertTrue(filtered > 0);
+        } finally {
+            ds.dispose();
+        }
+    }
+}
@@ -54,6 +54,7 @@ import org.geotools.data.FeatureWriter;
 import org.geotools.data.Query;
 import org.geotools.data.Transaction;
 import org.geotools.data.shapefile.files.ShpFileType;
+import org.geotools.data.simple.SimpleFeatureBatchReader;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
@@ -63,6 +64,7 @@ import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.factory.FactoryRegistryException;
 import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.FeatureTypes;
+import org.geotools.feature.simple.SimpleFeatureBatch;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.feature.type.BasicFeatureTypes;
@@ -167,6 +169,109 @@ public class ShapefileDataStoreTest extends TestCaseSupport {
         loadFeatures(STATE_POP, Query.ALL);
     }
     
+    @Test
+    public void testBatchRead() throws Exception {
+        URL url = TestData.url(STATE_POP);
+        store = new ShapefileDataStore(url);
+        String typeName = store.getTypeNames()[0];
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+        Filter filter = ff.greater(ff.property("PERSONS"), ff.literal(5000000));
+        for (Filter f : new Filter[] { Filter.INCLUDE, filter }) {
+            List<SimpleFeature> expected = new ArrayList<SimpleFeature>();
+            SimpleFeatureIterator it = store.getFeatureSource().getFeatures(f).features();
+            try {
+                while (it.hasNext()) {
+                    expected.add(it.next());
+                }
+            } finally {
+                it.close();
+            }
+
+            FeatureReader<SimpleFeatureType, SimpleFeature> fr = store.getFeatureReader(
+                    new Query(typeName, f), Transaction.AUTO_COMMIT);
+            // the shapefile reader fills the batches natively
+            assertTrue(fr instanceof SimpleFeatureBatchReader);
+            SimpleFeatureBatchReader reader = DataUtilities.batchReader(fr);
+            List<SimpleFeature> actual = new ArrayList<SimpleFeature>();
+            try {
+                // small batches, to have several reads
+                SimpleFeatureBatch batch = new SimpleFeatureBatch(reader.getFeatureType(), 7);
+                while (reader.read(batch) > 0) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        actual.add(SimpleFeatureBuilder.copy(batch.getFeature(i)));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                SimpleFeature e = expected.get(i);
+                SimpleFeature a = actual.get(i);
+                assertEquals(e.getID(), a.getID());
+                assertEquals(e.getAttributes().size(), a.getAttributes().size());
+                for (int j = 0; j < e.getAttributeCount(); j++) {
+                    Object ev = e.getAttribute(j);
+                    Object av = a.getAttribute(j);
+                    if (ev instanceof Geometry) {
+                        assertTrue(((Geometry) ev).equalsExact((Geometry) av));
+                    } else {
+                        assertEquals(ev, av);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLikeFilter() throws Exception {
+        URL url = TestData.url(STATE_POP);
+        store = new ShapefileDataStore(url);
+        SimpleFeatureSource fs = store.getFeatureSource();
+        List<SimpleFeature> all = new ArrayList<SimpleFeature>();
+        SimpleFeatureIterator it = fs.getFeatures().features();
+        try {
+            while (it.hasNext()) {
+                all.add(it.next());
+            }
+        } finally {
+            it.close();
+        }
+
+        // the like filters are matched against the raw dbf records
+        Filter[] filters = {
+                ff.like(ff.property("STATE_NAME"), "New*"),
+                ff.like(ff.property("STATE_NAME"), "*A", "*", "?", "\\", false),
+                ff.like(ff.property("STATE_NAME"), "?o*a"),
+                ff.and(ff.like(ff.property("STATE_NAME"), "*o*"),
+                        ff.greater(ff.property("PERSONS"), ff.literal(5000000))) };
+        for (Filter filter : filters) {
+            Set<String> expected = new TreeSet<String>();
+            for (SimpleFeature feature : all) {
+                if (filter.evaluate(feature)) {
+                    expected.add(feature.getID());
+                }
+            }
+            assertFalse(expected.isEmpty());
+
+            // row by row reads, and columnar reads of a subset of the dbf fields
+            for (String[] properties : new String[][] { null, { "STATE_NAME" } }) {
+                Query query = new Query(store.getTypeNames()[0], filter, properties);
+                Set<String> actual = new TreeSet<String>();
+                it = fs.getFeatures(query).features();
+                try {
+                    while (it.hasNext()) {
+                        actual.add(it.next().getID());
+                    }
+                } finally {
+                    it.close();
+                }
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
     @Test
     public void testNullReproject() throws Exception {
         // try to reproject to the target CRS, used to fail due to a missing check in 
@@ -0,0 +1,86 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.dbf;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DbaseNumberParserTest {
+
+    @Test
+    public void testParseDouble() throws Exception {
+        String[] values = new String[] { "  143986.61", "-0.5 ", "12", "1.", "+3.25", "1e10",
+                "000123.4500", "-0", "0.1", "12345678901234567890.5", "0.00000000000000000000001" };
+        for (String value : values) {
+            byte[] bytes = value.getBytes("ISO-8859-1");
+            double expected = Double.parseDouble(value);
+            double actual = DbaseFileReader.parseDouble(bytes, 0, bytes.length);
+            assertEquals(value, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+        }
+    }
+
+    @Test
+    public void testParseLongDoubles() throws Exception {
+        // 16 to 18 significant digits, beyond the range of exactly representable mantissas
+        String[] values = new String[] { "66408810.9291988338", "9007199254740993",
+                "900719925474099.3", "-12345678.90123456", "0.123456789012345678",
+                "999999999999999999", "1234567890.12345678" };
+        for (String value : values) {
+            assertParsed(value);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            int digits = 16 + random.nextInt(3);
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < digits; j++) {
+                sb.append((char) ('0' + random.nextInt(10)));
+            }
+            sb.insert(1 + random.nextInt(digits - 1), '.');
+            assertParsed(sb.toString());
+        }
+    }
+
+    private void assertParsed(String value) throws Exception {
+        byte[] bytes = value.getBytes("ISO-8859-1");
+        double expected = Double.parseDouble(value);
+        double actual = DbaseFileReader.parseDouble(bytes, 0, bytes.length);
+        assertEquals(value, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseInvalidDouble() throws Exception {
+        byte[] bytes = "12-3".getBytes("ISO-8859-1");
+        DbaseFileReader.parseDouble(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testParseLong() throws Exception {
+        byte[] bytes = "  -1234567 ".getBytes("ISO-8859-1");
+        int start = DbaseFileReader.trimStart(bytes, 0, bytes.length);
+        int end = DbaseFileReader.trimEnd(bytes, start, bytes.length);
+        assertTrue(DbaseFileReader.isSimpleInteger(bytes, start, end));
+        assertEquals(-1234567, DbaseFileReader.parseLong(bytes, start, end));
+
+        bytes = "12.5".getBytes("ISO-8859-1");
+        assertFalse(DbaseFileReader.isSimpleInteger(bytes, 0, bytes.length));
+        bytes = "1234567890123456789".getBytes("ISO-8859-1");
+        assertFalse(DbaseFileReader.isSimpleInteger(bytes, 0, bytes.length));
+    }
+}
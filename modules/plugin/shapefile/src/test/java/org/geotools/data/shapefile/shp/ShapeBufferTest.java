@@ -0,0 +1,101 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.shp;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.data.shapefile.TestCaseSupport;
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.geotools.data.shapefile.shp.ShapefileReader.Record;
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+
+public class ShapeBufferTest extends TestCaseSupport {
+
+    @Test
+    public void testLiteDecodingMatchesDefault() throws Exception {
+        for (String name : new String[] { "shapes/statepop.shp", "shapes/stream.shp",
+                "shapes/pointtest.shp", "shapes/polygontest.shp" }) {
+            File shp = copyShapefiles(name);
+            List<Geometry> expected = readAll(shp, new GeometryFactory());
+            List<Geometry> actual = readAll(shp, new GeometryFactory(
+                    new LiteCoordinateSequenceFactory()));
+            assertEquals(name, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertTrue(name + " record " + i, expected.get(i).equalsExact(actual.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testReadLines() throws Exception {
+        File shp = copyShapefiles("shapes/stream.shp");
+        ShapefileReader reader = new ShapefileReader(new ShpFiles(shp), false, true,
+                new GeometryFactory());
+        try {
+            ShapeBuffer buffer = new ShapeBuffer();
+            LiteCoordinateSequence part = null;
+            while (reader.hasNext()) {
+                Record record = reader.nextRecord();
+                assertSame(buffer, record.read(buffer));
+                Geometry geometry = (Geometry) record.shape();
+
+                assertEquals(record.type, buffer.getType());
+                assertEquals(record.minX, buffer.getMinX(), 0d);
+                assertEquals(record.maxY, buffer.getMaxY(), 0d);
+                assertEquals(geometry.getNumPoints(), buffer.getNumPoints());
+                assertEquals(geometry.getNumGeometries(), buffer.getNumParts());
+                for (int p = 0; p < buffer.getNumParts(); p++) {
+                    LineString ls = (LineString) geometry.getGeometryN(p);
+                    part = buffer.getPart(p, part);
+                    assertEquals(ls.getNumPoints(), part.size());
+                    for (int i = 0; i < ls.getNumPoints(); i++) {
+                        int idx = buffer.getPartStart(p) + i;
+                        assertEquals(ls.getCoordinateN(i).x, buffer.getX(idx), 0d);
+                        assertEquals(ls.getCoordinateN(i).y, buffer.getY(idx), 0d);
+                        assertEquals(ls.getCoordinateN(i).x, part.getX(i), 0d);
+                        assertEquals(ls.getCoordinateN(i).y, part.getY(i), 0d);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private List<Geometry> readAll(File shp, GeometryFactory gf) throws Exception {
+        List<Geometry> result = new ArrayList<Geometry>();
+        ShapefileReader reader = new ShapefileReader(new ShpFiles(shp), false, true, gf);
+        try {
+            while (reader.hasNext()) {
+                result.add((Geometry) reader.nextRecord().shape());
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+}
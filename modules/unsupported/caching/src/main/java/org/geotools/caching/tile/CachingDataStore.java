@@ -0,0 +1,275 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.caching.tile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.FeatureEvent;
+import org.geotools.data.FeatureListener;
+import org.geotools.data.Query;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.data.store.ContentDataStore;
+import org.geotools.data.store.ContentEntry;
+import org.geotools.data.store.ContentFeatureSource;
+import org.geotools.feature.NameImpl;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.type.Name;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Read only data store caching the features of another one.
+ * <p>
+ * The space covered by each feature type is split in a grid of tiles, queries with a bounding
+ * box filter are answered by loading the tiles they touch from the wrapped store, once, and
+ * keeping them serialized in a {@link FeatureTileCache}. Tiles are keyed by the non spatial part
+ * of the filter too, so that different attribute filters are cached separately. Queries without a
+ * bounding box, or touching too many tiles, go straight to the wrapped store.
+ * </p>
+ * <p>
+ * The cached tiles are invalidated by the feature events of the wrapped store: changes should be
+ * made through it, changes it does not know about require an explicit
+ * {@link FeatureTileCache#invalidate(String)}. Disposing this store does not dispose the wrapped
+ * one.
+ * </p>
+ * <p>
+ * Example use:
+ * <pre><code>
+ * CachingDataStore cached = new CachingDataStore(wfs, 64 * 1024 * 1024);
+ * SimpleFeatureSource roads = cached.getFeatureSource("roads");
+ * </code></pre>
+ * </p>
+ *
+ * @since 16.0
+ */
+public class CachingDataStore extends ContentDataStore {
+
+    static final Logger LOGGER = Logging.getLogger(CachingDataStore.class);
+
+    /**
+     * Default number of tiles along each side of the grid
+     */
+    public static final int DEFAULT_GRID_SIZE = 16;
+
+    /**
+     * Default maximum number of tiles a query can touch and still use the cache
+     */
+    public static final int DEFAULT_MAX_TILES = 64;
+
+    /**
+     * The cache state of a feature type
+     */
+    static final class Layer implements FeatureListener {
+        final FeatureTileCache cache;
+
+        final Name delegateName;
+
+        final SimpleFeatureSource source;
+
+        final int gridSize;
+
+        /**
+         * Lazily computed, stays null as long as the type has no bounds
+         */
+        volatile TileGrid grid;
+
+        Layer(FeatureTileCache cache, Name delegateName, SimpleFeatureSource source, int gridSize) {
+            this.cache = cache;
+            this.delegateName = delegateName;
+            this.source = source;
+            this.gridSize = gridSize;
+        }
+
+        TileGrid grid() throws IOException {
+            TileGrid result = grid;
+            if (result == null) {
+                synchronized (this) {
+                    result = grid;
+                    if (result == null) {
+                        ReferencedEnvelope bounds = source.getBounds();
+                        if (bounds != null && !bounds.isNull()) {
+                            result = grid = new TileGrid(bounds, gridSize,
+                                    limits(source.getSchema().getCoordinateReferenceSystem()));
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * The border tiles extend to the area of validity of the CRS, or to infinity if unknown
+         */
+        static Envelope limits(CoordinateReferenceSystem crs) {
+            if (crs != null) {
+                org.opengis.geometry.Envelope validity = CRS.getEnvelope(crs);
+                if (validity != null && validity.getDimension() == 2) {
+                    return new ReferencedEnvelope(validity);
+                }
+            }
+            return new Envelope(-Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+                    Double.MAX_VALUE);
+        }
+
+        public void changed(FeatureEvent event) {
+            String typeName = delegateName.getLocalPart();
+            ReferencedEnvelope bounds = event.getBounds();
+            TileGrid current = grid;
+            if (current == null || bounds == null || bounds.isNull()) {
+                cache.invalidate(typeName);
+            } else {
+                int[] range = current.range(bounds);
+                cache.invalidate(typeName, range[0], range[1], range[2], range[3]);
+            }
+        }
+    }
+
+    final DataStore delegate;
+
+    final FeatureTileCache cache;
+
+    int gridSize = DEFAULT_GRID_SIZE;
+
+    int maxTiles = DEFAULT_MAX_TILES;
+
+    /**
+     * Guarded by this
+     */
+    final Map<String, Layer> layers = new HashMap<String, Layer>();
+
+    /**
+     * Wraps a data store
+     *
+     * @param delegate The data store to be cached
+     * @param maxMemory The maximum amount of memory, in bytes, used by the cached features
+     */
+    public CachingDataStore(DataStore delegate, long maxMemory) {
+        this.delegate = delegate;
+        this.cache = new FeatureTileCache(maxMemory);
+    }
+
+    /**
+     * The wrapped data store
+     */
+    public DataStore getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * The cache, giving access to the cache statistics
+     */
+    public FeatureTileCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Number of tiles along each side of the grid
+     */
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**
+     * Sets the number of tiles along each side of the grid. Only affects the types not accessed
+     * yet.
+     */
+    public void setGridSize(int gridSize) {
+        if (gridSize < 1) {
+            throw new IllegalArgumentException("The grid size must be positive");
+        }
+        this.gridSize = gridSize;
+    }
+
+    /**
+     * Maximum number of tiles a query can touch and still use the cache
+     */
+    public int getMaxTiles() {
+        return maxTiles;
+    }
+
+    /**
+     * Sets the maximum number of tiles a query can touch and still use the cache, larger queries
+     * are sent to the wrapped store
+     */
+    public void setMaxTiles(int maxTiles) {
+        this.maxTiles = maxTiles;
+    }
+
+    @Override
+    protected List<Name> createTypeNames() throws IOException {
+        List<Name> names = new ArrayList<Name>();
+        for (Name name : delegate.getNames()) {
+            names.add(new NameImpl(namespaceURI, name.getLocalPart()));
+        }
+        return names;
+    }
+
+    @Override
+    protected ContentFeatureSource createFeatureSource(ContentEntry entry) throws IOException {
+        return new CachingFeatureSource(entry, Query.ALL);
+    }
+
+    /**
+     * Returns the cache state of a type, registering the invalidation listener on first access
+     */
+    synchronized Layer layer(String typeName) throws IOException {
+        Layer layer = layers.get(typeName);
+        if (layer == null) {
+            Name delegateName = null;
+            for (Name name : delegate.getNames()) {
+                if (name.getLocalPart().equals(typeName)) {
+                    delegateName = name;
+                    break;
+                }
+            }
+            if (delegateName == null) {
+                throw new IOException("Type " + typeName + " not found in the wrapped store");
+            }
+            SimpleFeatureSource source = delegate.getFeatureSource(delegateName);
+            layer = new Layer(cache, delegateName, source, gridSize);
+            source.addFeatureListener(layer);
+            layers.put(typeName, layer);
+        }
+        return layer;
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            for (Layer layer : layers.values()) {
+                try {
+                    layer.source.removeFeatureListener(layer);
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Failed to remove the cache listener", e);
+                }
+            }
+            layers.clear();
+        }
+        cache.clear();
+        super.dispose();
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.caching.tile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.caching.tile.CachingDataStore.Layer;
+import org.geotools.caching.tile.FeatureTileCache.TileKey;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.data.sort.SimpleFeatureIO;
+import org.geotools.data.store.ContentEntry;
+import org.geotools.data.store.ContentFeatureSource;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.And;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.spatial.BBOX;
+import org.opengis.geometry.BoundingBox;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Feature source of the {@link CachingDataStore}, reading the tiles touched by the query
+ * bounding box. Filtering, retyping, reprojection and paging are left to the base class.
+ *
+ * @since 16.0
+ */
+public class CachingFeatureSource extends ContentFeatureSource {
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    /**
+     * A filter split in a bounding box and the remaining, non spatial, part
+     */
+    static final class TiledFilter {
+        final Envelope extent;
+
+        final Filter residual;
+
+        TiledFilter(Envelope extent, Filter residual) {
+            this.extent = extent;
+            this.residual = residual;
+        }
+    }
+
+    public CachingFeatureSource(ContentEntry entry, Query query) {
+        super(entry, query);
+    }
+
+    @Override
+    public CachingDataStore getDataStore() {
+        return (CachingDataStore) super.getDataStore();
+    }
+
+    Layer layer() throws IOException {
+        return getDataStore().layer(entry.getTypeName());
+    }
+
+    /**
+     * Rewrites the query against the wrapped type
+     */
+    Query delegateQuery(Query query, Layer layer) {
+        Query result = new Query(query);
+        result.setTypeName(layer.delegateName.getLocalPart());
+        return result;
+    }
+
+    @Override
+    protected ReferencedEnvelope getBoundsInternal(Query query) throws IOException {
+        Layer layer = layer();
+        return layer.source.getBounds(delegateQuery(query, layer));
+    }
+
+    @Override
+    protected int getCountInternal(Query query) throws IOException {
+        Layer layer = layer();
+        return layer.source.getCount(delegateQuery(query, layer));
+    }
+
+    @Override
+    protected SimpleFeatureType buildFeatureType() throws IOException {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.init(layer().source.getSchema());
+        tb.setName(entry.getName());
+        return tb.buildFeatureType();
+    }
+
+    @Override
+    protected FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query query)
+            throws IOException {
+        CachingDataStore store = getDataStore();
+        Layer layer = layer();
+        TileGrid grid = layer.grid();
+        TiledFilter tiled = split(query.getFilter());
+        if (grid != null && tiled != null) {
+            int[] range = grid.range(tiled.extent);
+            long count = (long) (range[2] - range[0] + 1) * (range[3] - range[1] + 1);
+            if (count <= store.getMaxTiles()) {
+                List<TileKey> keys = new ArrayList<TileKey>();
+                for (int row = range[1]; row <= range[3]; row++) {
+                    for (int col = range[0]; col <= range[2]; col++) {
+                        keys.add(new TileKey(entry.getTypeName(), tiled.residual, col, row));
+                    }
+                }
+                return new TileFeatureReader(this, getAbsoluteSchema(), keys);
+            }
+        }
+
+        store.cache.bypassed();
+        Query delegateQuery = new Query(layer.delegateName.getLocalPart(), query.getFilter());
+        delegateQuery.setHints(query.getHints());
+        return store.delegate.getFeatureReader(delegateQuery, Transaction.AUTO_COMMIT);
+    }
+
+    /**
+     * Splits the filter in the intersection of its bounding boxes on the default geometry and
+     * the rest, returns null if the filter has no such bounding box
+     */
+    TiledFilter split(Filter filter) {
+        List<Filter> children = new ArrayList<Filter>();
+        if (filter instanceof And) {
+            children.addAll(((And) filter).getChildren());
+        } else {
+            children.add(filter);
+        }
+        Envelope extent = null;
+        List<Filter> residual = new ArrayList<Filter>();
+        for (Filter child : children) {
+            Envelope envelope = child instanceof BBOX ? bounds((BBOX) child) : null;
+            if (envelope == null) {
+                residual.add(child);
+            } else if (extent == null) {
+                extent = envelope;
+            } else {
+                extent = extent.intersection(envelope);
+            }
+        }
+        if (extent == null || extent.isNull()) {
+            // an empty intersection is left to the wrapped store, it's a rare case
+            return null;
+        }
+        if (residual.isEmpty()) {
+            return new TiledFilter(extent, Filter.INCLUDE);
+        } else if (residual.size() == 1) {
+            return new TiledFilter(extent, residual.get(0));
+        } else {
+            return new TiledFilter(extent, FF.and(residual));
+        }
+    }
+
+    /**
+     * Returns the native bounds of a bounding box filter on the default geometry, or null
+     */
+    Envelope bounds(BBOX bbox) {
+        GeometryDescriptor geometry = getAbsoluteSchema().getGeometryDescriptor();
+        String property = bbox.getPropertyName();
+        if (geometry == null || (property != null && !"".equals(property)
+                && !property.equals(geometry.getLocalName()))) {
+            return null;
+        }
+        BoundingBox bounds = bbox.getBounds();
+        CoordinateReferenceSystem crs = bounds.getCoordinateReferenceSystem();
+        if (crs != null && geometry.getCoordinateReferenceSystem() != null
+                && !CRS.equalsIgnoreMetadata(crs, geometry.getCoordinateReferenceSystem())) {
+            return null;
+        }
+        return new Envelope(bounds.getMinX(), bounds.getMaxX(), bounds.getMinY(),
+                bounds.getMaxY());
+    }
+
+    /**
+     * Returns the contents of a tile, loading it from the wrapped store if needed
+     */
+    ByteBuffer tile(TileKey key) throws IOException {
+        FeatureTileCache cache = getDataStore().cache;
+        ByteBuffer contents = cache.get(key);
+        if (contents != null) {
+            return contents;
+        }
+        long generation = cache.generation.get();
+        byte[] loaded = load(key);
+        cache.put(key, loaded, generation);
+        return ByteBuffer.wrap(loaded);
+    }
+
+    /**
+     * Serializes the features of a tile, as a feature count followed by each feature id and
+     * attributes
+     */
+    byte[] load(TileKey key) throws IOException {
+        Layer layer = layer();
+        SimpleFeatureType schema = layer.source.getSchema();
+        GeometryDescriptor geometry = schema.getGeometryDescriptor();
+        ReferencedEnvelope extent = new ReferencedEnvelope(layer.grid().tile(key.col, key.row),
+                geometry.getCoordinateReferenceSystem());
+        Filter filter = FF.bbox(FF.property(geometry.getLocalName()), extent);
+        if (key.filter != Filter.INCLUDE) {
+            filter = FF.and(filter, key.filter);
+        }
+        Query query = new Query(layer.delegateName.getLocalPart(), filter);
+
+        List<AttributeDescriptor> descriptors = schema.getAttributeDescriptors();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        // count placeholder
+        out.writeInt(0);
+        int count = 0;
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = getDataStore().delegate
+                .getFeatureReader(query, Transaction.AUTO_COMMIT);
+        try {
+            while (reader.hasNext()) {
+                SimpleFeature feature = reader.next();
+                out.writeUTF(feature.getID());
+                for (int i = 0; i < descriptors.size(); i++) {
+                    SimpleFeatureIO.writeAttribute(out, descriptors.get(i).getType()
+                            .getBinding(), feature.getAttribute(i));
+                }
+                count++;
+            }
+        } finally {
+            reader.close();
+        }
+        out.flush();
+        byte[] result = bytes.toByteArray();
+        ByteBuffer.wrap(result).putInt(0, count);
+        return result;
+    }
+}
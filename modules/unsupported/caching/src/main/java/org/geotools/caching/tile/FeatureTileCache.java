@@ -0,0 +1,278 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.caching.tile;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opengis.filter.Filter;
+
+/**
+ * Size bounded, least recently used cache of serialized feature tiles.
+ * <p>
+ * Each tile holds the features of a type intersecting a cell of a {@link TileGrid} and matching
+ * the non spatial part of a query filter. The serialized tiles are kept in direct buffers, out of
+ * the Java heap, and the least recently used ones are evicted once the memory budget is exceeded.
+ * </p>
+ * <p>
+ * The cache is shared by all the types of a {@link CachingDataStore}, and keeps hit, miss and
+ * memory usage statistics.
+ * </p>
+ *
+ * @since 16.0
+ */
+public class FeatureTileCache {
+
+    /**
+     * Identifies a tile
+     */
+    static final class TileKey {
+        final String typeName;
+
+        final Filter filter;
+
+        final int col;
+
+        final int row;
+
+        TileKey(String typeName, Filter filter, int col, int row) {
+            this.typeName = typeName;
+            this.filter = filter;
+            this.col = col;
+            this.row = row;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = typeName.hashCode();
+            result = 31 * result + filter.hashCode();
+            result = 31 * result + col;
+            return 31 * result + row;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) obj;
+            return col == other.col && row == other.row && typeName.equals(other.typeName)
+                    && filter.equals(other.filter);
+        }
+
+        @Override
+        public String toString() {
+            return typeName + "[" + col + "," + row + "] " + filter;
+        }
+    }
+
+    final long maxMemory;
+
+    /**
+     * The tiles, in access order. Guarded by this.
+     */
+    final LinkedHashMap<TileKey, ByteBuffer> tiles = new LinkedHashMap<TileKey, ByteBuffer>(16,
+            0.75f, true);
+
+    /**
+     * Memory used by the tiles. Guarded by this.
+     */
+    long memoryUsage;
+
+    /**
+     * Incremented at each invalidation, tiles loaded across one are not stored
+     */
+    final AtomicLong generation = new AtomicLong();
+
+    final AtomicLong hits = new AtomicLong();
+
+    final AtomicLong misses = new AtomicLong();
+
+    final AtomicLong bypasses = new AtomicLong();
+
+    final AtomicLong evictions = new AtomicLong();
+
+    final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a new cache
+     *
+     * @param maxMemory The maximum amount of memory, in bytes, used by the serialized tiles
+     */
+    FeatureTileCache(long maxMemory) {
+        if (maxMemory <= 0) {
+            throw new IllegalArgumentException("The cache memory must be positive");
+        }
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Returns a read only view of the tile contents, or null if not cached
+     */
+    synchronized ByteBuffer get(TileKey key) {
+        ByteBuffer tile = tiles.get(key);
+        if (tile == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return tile.asReadOnlyBuffer();
+    }
+
+    /**
+     * Stores a tile, unless the cache was invalidated since the specified generation or the tile
+     * does not fit in the cache at all
+     *
+     * @return true if the tile was stored
+     */
+    synchronized boolean put(TileKey key, byte[] contents, long loadGeneration) {
+        if (loadGeneration != generation.get() || contents.length > maxMemory) {
+            return false;
+        }
+        ByteBuffer tile = ByteBuffer.allocateDirect(contents.length);
+        tile.put(contents);
+        tile.flip();
+        ByteBuffer previous = tiles.put(key, tile);
+        if (previous != null) {
+            memoryUsage -= previous.capacity();
+        }
+        memoryUsage += tile.capacity();
+        for (Iterator<ByteBuffer> it = tiles.values().iterator(); memoryUsage > maxMemory
+                && it.hasNext();) {
+            memoryUsage -= it.next().capacity();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Counts a query that could not be answered from the cache
+     */
+    void bypassed() {
+        bypasses.incrementAndGet();
+    }
+
+    /**
+     * Drops the tiles of the type in the specified range of columns and rows, inclusive
+     */
+    synchronized void invalidate(String typeName, int minCol, int minRow, int maxCol, int maxRow) {
+        generation.incrementAndGet();
+        invalidations.incrementAndGet();
+        for (Iterator<Map.Entry<TileKey, ByteBuffer>> it = tiles.entrySet().iterator(); it
+                .hasNext();) {
+            Map.Entry<TileKey, ByteBuffer> entry = it.next();
+            TileKey key = entry.getKey();
+            if (key.typeName.equals(typeName) && key.col >= minCol && key.col <= maxCol
+                    && key.row >= minRow && key.row <= maxRow) {
+                memoryUsage -= entry.getValue().capacity();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all the tiles of the specified type
+     */
+    public void invalidate(String typeName) {
+        invalidate(typeName, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                Integer.MAX_VALUE);
+    }
+
+    /**
+     * Drops all the tiles
+     */
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        tiles.clear();
+        memoryUsage = 0;
+    }
+
+    /**
+     * The maximum amount of memory used by the tiles, in bytes
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * The amount of memory currently used by the tiles, in bytes
+     */
+    public synchronized long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * The number of tiles currently cached
+     */
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * The number of tile lookups answered from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * The number of tile lookups that required loading the tile from the wrapped store
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * The ratio of tile lookups answered from the cache, between 0 and 1
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * The number of queries that could not use the cache, and went straight to the wrapped store
+     */
+    public long getBypassCount() {
+        return bypasses.get();
+    }
+
+    /**
+     * The number of tiles evicted to make room for new ones
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * The number of invalidations caused by changes in the wrapped store
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return "FeatureTileCache[tiles=" + getTileCount() + ", memory=" + getMemoryUsage() + "/"
+                + maxMemory + ", hitRatio=" + getHitRatio() + "]";
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.caching.tile;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.geotools.caching.tile.FeatureTileCache.TileKey;
+import org.geotools.data.simple.SimpleFeatureReader;
+import org.geotools.data.sort.SimpleFeatureIO;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+/**
+ * Reads the features of a list of tiles, loading the missing tiles on demand. Features
+ * spanning several tiles are returned only once, but no other filtering is performed.
+ */
+class TileFeatureReader implements SimpleFeatureReader {
+
+    final CachingFeatureSource source;
+
+    final SimpleFeatureType schema;
+
+    Iterator<TileKey> tiles;
+
+    final SimpleFeatureBuilder builder;
+
+    final Class<?>[] bindings;
+
+    final Set<String> returned = new HashSet<String>();
+
+    DataInputStream tile;
+
+    int remaining;
+
+    SimpleFeature next;
+
+    TileFeatureReader(CachingFeatureSource source, SimpleFeatureType schema, List<TileKey> tiles) {
+        this.source = source;
+        this.schema = schema;
+        this.tiles = tiles.iterator();
+        this.builder = new SimpleFeatureBuilder(schema);
+        List<AttributeDescriptor> descriptors = schema.getAttributeDescriptors();
+        this.bindings = new Class<?>[descriptors.size()];
+        for (int i = 0; i < bindings.length; i++) {
+            bindings[i] = descriptors.get(i).getType().getBinding();
+        }
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return schema;
+    }
+
+    public boolean hasNext() throws IOException {
+        while (next == null) {
+            if (remaining == 0) {
+                if (!tiles.hasNext()) {
+                    return false;
+                }
+                tile = new DataInputStream(new ByteBufferInputStream(source.tile(tiles.next())));
+                remaining = tile.readInt();
+                continue;
+            }
+            remaining--;
+            String id = tile.readUTF();
+            for (int i = 0; i < bindings.length; i++) {
+                builder.set(i, SimpleFeatureIO.readAttribute(tile, bindings[i]));
+            }
+            SimpleFeature feature = builder.buildFeature(id);
+            if (returned.add(id)) {
+                next = feature;
+            }
+        }
+        return true;
+    }
+
+    public SimpleFeature next() throws IOException, IllegalArgumentException,
+            NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more features");
+        }
+        SimpleFeature result = next;
+        next = null;
+        return result;
+    }
+
+    public void close() throws IOException {
+        tiles = Collections.<TileKey> emptyIterator();
+        tile = null;
+        remaining = 0;
+        returned.clear();
+    }
+
+    /**
+     * Streams the contents of a buffer
+     */
+    static class ByteBufferInputStream extends InputStream {
+        final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(len, buffer.remaining());
+            buffer.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.remaining();
+        }
+    }
+}
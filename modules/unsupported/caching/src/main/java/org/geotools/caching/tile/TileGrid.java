@@ -0,0 +1,83 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.caching.tile;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * A regular grid of tiles laid over the bounds of a feature type.
+ * <p>
+ * The tiles on the border of the grid extend up to the specified limits, usually the domain of
+ * validity of the coordinate reference system, so that the grid also covers the features added
+ * outside of the original bounds.
+ * </p>
+ */
+class TileGrid {
+
+    final Envelope bounds;
+
+    final Envelope limits;
+
+    final int size;
+
+    final double tileWidth;
+
+    final double tileHeight;
+
+    TileGrid(Envelope bounds, int size, Envelope limits) {
+        this.bounds = new Envelope(bounds);
+        this.limits = new Envelope(limits);
+        this.limits.expandToInclude(bounds);
+        this.size = size;
+        // degenerate bounds, e.g. a single point, still need a usable tile size
+        this.tileWidth = bounds.getWidth() > 0 ? bounds.getWidth() / size : 1;
+        this.tileHeight = bounds.getHeight() > 0 ? bounds.getHeight() / size : 1;
+    }
+
+    int col(double x) {
+        return clamp((int) Math.floor((x - bounds.getMinX()) / tileWidth));
+    }
+
+    int row(double y) {
+        return clamp((int) Math.floor((y - bounds.getMinY()) / tileHeight));
+    }
+
+    private int clamp(int index) {
+        return Math.max(0, Math.min(size - 1, index));
+    }
+
+    /**
+     * Returns the tiles intersecting the envelope, as min col, min row, max col and max row
+     */
+    int[] range(Envelope envelope) {
+        return new int[] { col(envelope.getMinX()), row(envelope.getMinY()),
+                col(envelope.getMaxX()), row(envelope.getMaxY()) };
+    }
+
+    /**
+     * Returns the extent of a tile
+     */
+    Envelope tile(int col, int row) {
+        double minx = col == 0 ? limits.getMinX() : bounds.getMinX() + col * tileWidth;
+        double maxx = col == size - 1 ? limits.getMaxX() : bounds.getMinX() + (col + 1)
+                * tileWidth;
+        double miny = row == 0 ? limits.getMinY() : bounds.getMinY() + row * tileHeight;
+        double maxy = row == size - 1 ? limits.getMaxY() : bounds.getMinY() + (row + 1)
+                * tileHeight;
+        return new Envelope(minx, maxx, miny, maxy);
+    }
+}
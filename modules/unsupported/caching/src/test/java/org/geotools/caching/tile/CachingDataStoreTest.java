@@ -0,0 +1,202 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2016, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.caching.tile;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class CachingDataStoreTest {
+
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+    GeometryFactory gf = JTSFactoryFinder.getGeometryFactory();
+
+    SimpleFeatureType type;
+
+    MemoryDataStore delegate;
+
+    CachingDataStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        type = DataUtilities.createType("test", "geom:Point,code:Integer");
+        delegate = new MemoryDataStore(type);
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            delegate.addFeature(feature(i, random.nextDouble() * 100,
+                    random.nextDouble() * 100));
+        }
+        store = new CachingDataStore(delegate, 10 * 1024 * 1024);
+        store.setGridSize(8);
+    }
+
+    @After
+    public void tearDown() {
+        store.dispose();
+        delegate.dispose();
+    }
+
+    SimpleFeature feature(int i, double x, double y) {
+        return SimpleFeatureBuilder.build(type,
+                new Object[] { gf.createPoint(new Coordinate(x, y)), i % 10 }, "test." + i);
+    }
+
+    Map<String, SimpleFeature> read(SimpleFeatureSource source, Filter filter) throws Exception {
+        Map<String, SimpleFeature> result = new HashMap<String, SimpleFeature>();
+        SimpleFeatureIterator it = source.getFeatures(filter).features();
+        try {
+            while (it.hasNext()) {
+                SimpleFeature feature = it.next();
+                assertNull("Duplicate feature " + feature.getID(),
+                        result.put(feature.getID(), feature));
+            }
+        } finally {
+            it.close();
+        }
+        return result;
+    }
+
+    void assertSameContents(Filter filter) throws Exception {
+        Map<String, SimpleFeature> expected = read(delegate.getFeatureSource("test"), filter);
+        Map<String, SimpleFeature> actual = read(store.getFeatureSource("test"), filter);
+        assertEquals(expected.keySet(), actual.keySet());
+        for (SimpleFeature feature : expected.values()) {
+            SimpleFeature cached = actual.get(feature.getID());
+            assertEquals(feature.getAttribute("code"), cached.getAttribute("code"));
+            Geometry geometry = (Geometry) feature.getDefaultGeometry();
+            assertTrue(geometry.equalsExact((Geometry) cached.getDefaultGeometry()));
+        }
+    }
+
+    @Test
+    public void testCachedQuery() throws Exception {
+        FeatureTileCache cache = store.getCache();
+        Filter bbox = ff.bbox("geom", 10, 10, 30, 30, null);
+        assertSameContents(bbox);
+        long misses = cache.getMissCount();
+        assertTrue(misses > 0);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(misses, cache.getTileCount());
+        assertTrue(cache.getMemoryUsage() > 0);
+
+        assertSameContents(bbox);
+        assertEquals(misses, cache.getHitCount());
+        assertEquals(misses, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 0d);
+
+        // an overlapping query reuses the tiles
+        assertSameContents(ff.bbox("geom", 15, 15, 25, 25, null));
+        assertEquals(misses, cache.getMissCount());
+    }
+
+    @Test
+    public void testAttributeFilter() throws Exception {
+        FeatureTileCache cache = store.getCache();
+        Filter bbox = ff.bbox("geom", 10, 10, 30, 30, null);
+        Filter equal = ff.equals(ff.property("code"), ff.literal(3));
+        assertSameContents(bbox);
+        int tiles = cache.getTileCount();
+        assertSameContents(ff.and(bbox, equal));
+        assertEquals(2 * tiles, cache.getTileCount());
+        assertSameContents(ff.and(equal, bbox));
+        assertEquals(2 * tiles, cache.getTileCount());
+        assertEquals(0, cache.getBypassCount());
+    }
+
+    @Test
+    public void testBypass() throws Exception {
+        FeatureTileCache cache = store.getCache();
+        assertSameContents(Filter.INCLUDE);
+        assertSameContents(ff.equals(ff.property("code"), ff.literal(3)));
+        store.setMaxTiles(4);
+        assertSameContents(ff.bbox("geom", 10, 10, 90, 90, null));
+        assertEquals(3, cache.getBypassCount());
+        assertEquals(0, cache.getTileCount());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        FeatureTileCache cache = store.getCache();
+        Filter bbox = ff.bbox("geom", 10, 10, 30, 30, null);
+        Filter far = ff.bbox("geom", 80, 80, 90, 90, null);
+        assertSameContents(bbox);
+        assertSameContents(far);
+        int tiles = cache.getTileCount();
+
+        SimpleFeatureStore fs = (SimpleFeatureStore) delegate.getFeatureSource("test");
+        fs.addFeatures(DataUtilities.collection(feature(2000, 20, 20)));
+        assertTrue(cache.getInvalidationCount() > 0);
+        assertTrue(cache.getTileCount() < tiles);
+        assertTrue(read(store.getFeatureSource("test"), bbox).containsKey("test.2000"));
+        assertSameContents(bbox);
+
+        // the far away tiles were not touched
+        long misses = cache.getMissCount();
+        assertSameContents(far);
+        assertEquals(misses, cache.getMissCount());
+
+        fs.removeFeatures(ff.id(ff.featureId("test.2000")));
+        assertFalse(read(store.getFeatureSource("test"), bbox).containsKey("test.2000"));
+    }
+
+    @Test
+    public void testOutsideOriginalBounds() throws Exception {
+        assertSameContents(ff.bbox("geom", 90, 90, 100, 100, null));
+        SimpleFeatureStore fs = (SimpleFeatureStore) delegate.getFeatureSource("test");
+        fs.addFeatures(DataUtilities.collection(feature(2000, 150, 80)));
+        Filter outside = ff.bbox("geom", 140, 70, 160, 90, null);
+        assertEquals(1, read(store.getFeatureSource("test"), outside).size());
+        assertSameContents(outside);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        store.dispose();
+        store = new CachingDataStore(delegate, 4096);
+        store.setGridSize(8);
+        FeatureTileCache cache = store.getCache();
+        for (int i = 0; i < 10; i++) {
+            double x = i * 10;
+            assertSameContents(ff.bbox("geom", x, x, x + 10, x + 10, null));
+            assertTrue(cache.getMemoryUsage() <= cache.getMaxMemory());
+        }
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+}